@@ -0,0 +1,102 @@
+package com.tractive.pettracker.benchmark;
+
+import com.tractive.pettracker.application.service.GeofenceIndex;
+import com.tractive.pettracker.domain.GeoPoint;
+import com.tractive.pettracker.domain.PowerSavingZone;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One fix tested against an owner's zones: the indexed lookup next to a plain ray cast over every edge.
+// 10,000 owners with two zones each; the fixes fall around the first zone of a random owner.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeofenceBenchmark {
+
+    private static final int OWNERS = 10_000;
+    private static final int FIXES = 1 << 14;
+
+    @Param({"8", "1000"})
+    int vertices;
+
+    private final GeofenceIndex index = new GeofenceIndex();
+    private double[][] polygonLat;
+    private double[][] polygonLon;
+    private int[] owners;
+    private double[] lats;
+    private double[] lons;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        List<PowerSavingZone> zones = new ArrayList<>(OWNERS * 2);
+        polygonLat = new double[OWNERS][];
+        polygonLon = new double[OWNERS][];
+        for (int owner = 0; owner < OWNERS; owner++) {
+            double lat = -60 + random.nextDouble() * 120;
+            double lon = -170 + random.nextDouble() * 340;
+            List<GeoPoint> polygon = blob(random, lat, lon);
+            zones.add(new PowerSavingZone(null, owner, "home", polygon));
+            zones.add(new PowerSavingZone(null, owner, "office", blob(random, lat + 0.5, lon + 0.5)));
+            polygonLat[owner] = polygon.stream().mapToDouble(GeoPoint::getLat).toArray();
+            polygonLon[owner] = polygon.stream().mapToDouble(GeoPoint::getLon).toArray();
+        }
+        index.load(zones);
+
+        owners = new int[FIXES];
+        lats = new double[FIXES];
+        lons = new double[FIXES];
+        for (int i = 0; i < FIXES; i++) {
+            owners[i] = random.nextInt(OWNERS);
+            lats[i] = polygonLat[owners[i]][0] - 0.01 + random.nextDouble() * 0.04;
+            lons[i] = polygonLon[owners[i]][0] - 0.03 + random.nextDouble() * 0.04;
+        }
+    }
+
+    @Benchmark
+    public Boolean indexed() {
+        int i = next++ & (FIXES - 1);
+        return index.contains(owners[i], lats[i], lons[i]);
+    }
+
+    @Benchmark
+    public boolean rayCastEveryEdge() {
+        int i = next++ & (FIXES - 1);
+        double[] lat = polygonLat[owners[i]];
+        double[] lon = polygonLon[owners[i]];
+        boolean inside = false;
+        for (int a = 0, b = lat.length - 1; a < lat.length; b = a++) {
+            if ((lat[a] > lats[i]) != (lat[b] > lats[i])
+                && lons[i] < (lon[b] - lon[a]) * (lats[i] - lat[a]) / (lat[b] - lat[a]) + lon[a]) inside = !inside;
+        }
+        return inside;
+    }
+
+    // irregular polygon of roughly 2 km around the centre, vertices in angular order
+    private List<GeoPoint> blob(Random random, double lat, double lon) {
+        List<GeoPoint> polygon = new ArrayList<>(vertices);
+        for (int v = 0; v < vertices; v++) {
+            double angle = 2 * Math.PI * v / vertices;
+            double radius = 0.01 + random.nextDouble() * 0.01;
+            polygon.add(new GeoPoint(lat + radius * Math.sin(angle), lon + radius * Math.cos(angle)));
+        }
+        return polygon;
+    }
+}
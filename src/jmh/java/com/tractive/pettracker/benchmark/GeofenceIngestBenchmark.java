@@ -0,0 +1,121 @@
+package com.tractive.pettracker.benchmark;
+
+import com.tractive.pettracker.PetTrackerApplication;
+import com.tractive.pettracker.api.dto.GeoPointDTO;
+import com.tractive.pettracker.api.dto.LocationFixDTO;
+import com.tractive.pettracker.api.dto.LocationFixResultDTO;
+import com.tractive.pettracker.api.dto.PetRequestDTO;
+import com.tractive.pettracker.api.dto.PowerSavingZoneDTO;
+import com.tractive.pettracker.application.service.GeofenceService;
+import com.tractive.pettracker.application.service.PetService;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// The whole ingest path of POST /api/pets/fixes below HTTP, in fixes per second: pet lookup through the
+// findById cache, zone test, latest-fix check, history append, and a patch for the fixes that change inZone
+// (about one in ten here). Unlike GeofenceBenchmark this includes the storage engine, so it is the number
+// to hold a fixes-per-second target against. Four threads post batches of 100 fixes for 1,000 owners with
+// one zone each and ten pets per owner.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class GeofenceIngestBenchmark {
+
+    private static final int OWNERS = 1_000;
+    private static final int PETS_PER_OWNER = 10;
+    private static final int BATCH = 100;
+    private static final int BATCHES = 1 << 10;
+    // fixes fall up to this far around a zone's 0.02 degree square: about 6% land outside it, so about one
+    // fix in ten has its pet on the other side of the edge than its previous fix
+    private static final double SPREAD = 0.0003;
+
+    @Param({"memory", "h2"})
+    public String backend;
+
+    private ConfigurableApplicationContext context;
+    private GeofenceService geofenceService;
+    private List<List<LocationFixDTO>> batches;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(PetTrackerApplication.class)
+            .web(WebApplicationType.NONE)
+            .properties(
+                "pettracker.storage=" + (backend.equals("memory") ? "memory" : "jpa"),
+                "spring.jpa.show-sql=false",
+                "logging.level.root=WARN")
+            .run();
+        geofenceService = context.getBean(GeofenceService.class);
+        PetService petService = context.getBean(PetService.class);
+
+        Random random = new Random(1);
+        double[] lat = new double[OWNERS];
+        double[] lon = new double[OWNERS];
+        List<long[]> pets = new ArrayList<>(OWNERS);
+        for (int owner = 0; owner < OWNERS; owner++) {
+            lat[owner] = -60 + random.nextDouble() * 120;
+            lon[owner] = -170 + random.nextDouble() * 340;
+            geofenceService.replaceZones(owner, List.of(new PowerSavingZoneDTO(null, "home", List.of(
+                new GeoPointDTO(lat[owner], lon[owner]), new GeoPointDTO(lat[owner], lon[owner] + 0.02),
+                new GeoPointDTO(lat[owner] + 0.02, lon[owner] + 0.02), new GeoPointDTO(lat[owner] + 0.02, lon[owner])))));
+            long[] ids = new long[PETS_PER_OWNER];
+            for (int i = 0; i < PETS_PER_OWNER; i++) {
+                ids[i] = petService.create(new PetRequestDTO(PetType.DOG, TrackerType.MEDIUM, owner, true, null)).id();
+            }
+            pets.add(ids);
+        }
+
+        batches = new ArrayList<>(BATCHES);
+        for (int b = 0; b < BATCHES; b++) {
+            List<LocationFixDTO> batch = new ArrayList<>(BATCH);
+            for (int i = 0; i < BATCH; i++) {
+                int owner = random.nextInt(OWNERS);
+                long petId = pets.get(owner)[random.nextInt(PETS_PER_OWNER)];
+                batch.add(new LocationFixDTO(petId,
+                    lat[owner] - SPREAD + random.nextDouble() * (0.02 + 2 * SPREAD),
+                    lon[owner] - SPREAD + random.nextDouble() * (0.02 + 2 * SPREAD),
+                    null));
+            }
+            batches.add(batch);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public LocationFixResultDTO ingest() {
+        return geofenceService.ingest(batches.get(next.getAndIncrement() & (BATCHES - 1)));
+    }
+}
@@ -0,0 +1,52 @@
+package com.tractive.pettracker.benchmark;
+
+import com.tractive.pettracker.data.jpa.PetEntity;
+import com.tractive.pettracker.data.jpa.PetEntityMapper;
+import com.tractive.pettracker.domain.Cat;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PetEntityMapperBenchmark {
+
+    private final Pet cat = new Cat(1L, TrackerType.BIG, 10, false, true);
+    private final Pet dog = new Pet(2L, PetType.DOG, TrackerType.MEDIUM, 20, true);
+    private final PetEntity catEntity = PetEntityMapper.toEntity(cat);
+    private final PetEntity dogEntity = PetEntityMapper.toEntity(dog);
+
+    @Benchmark
+    public PetEntity catToEntity() {
+        return PetEntityMapper.toEntity(cat);
+    }
+
+    @Benchmark
+    public PetEntity dogToEntity() {
+        return PetEntityMapper.toEntity(dog);
+    }
+
+    @Benchmark
+    public Pet catToDomain() {
+        return PetEntityMapper.toDomain(catEntity);
+    }
+
+    @Benchmark
+    public Pet dogToDomain() {
+        return PetEntityMapper.toDomain(dogEntity);
+    }
+}
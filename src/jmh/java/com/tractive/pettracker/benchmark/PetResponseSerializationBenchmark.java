@@ -0,0 +1,54 @@
+package com.tractive.pettracker.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tractive.pettracker.api.dto.PetResponseDTO;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PetResponseSerializationBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int size;
+
+    // configured like the ObjectMapper Spring MVC uses
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private List<PetResponseDTO> pets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            pets.add(i % 2 == 0
+                ? new PetResponseDTO((long) i, PetType.CAT, TrackerType.SMALL, i, true, false)
+                : new PetResponseDTO((long) i, PetType.DOG, TrackerType.BIG, i, false, null));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(pets);
+    }
+}
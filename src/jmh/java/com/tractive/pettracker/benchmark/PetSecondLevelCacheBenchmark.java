@@ -0,0 +1,106 @@
+package com.tractive.pettracker.benchmark;
+
+import com.tractive.pettracker.PetTrackerApplication;
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.data.jpa.PetSecondLevelCache;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetPatch;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// PetRepositoryImpl on H2 with and without the second-level cache (l2cache profile). One operation reads a
+// random pet and its owner's out-of-zone counts:
+//   cold               - every region is emptied first, so both reads go to the database
+//   warm               - repeated reads over 10,000 pets of 1,000 owners, mostly answered from the regions
+//   invalidationHeavy  - a native PATCH before the reads, which evicts the pet and every cached count
+// The findById cache in front of the repository is disabled so only Hibernate's caching is measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PetSecondLevelCacheBenchmark {
+
+    private static final int PETS = 10_000;
+    private static final int OWNERS = 1_000;
+
+    @Param({"false", "true"})
+    boolean secondLevelCache;
+
+    private ConfigurableApplicationContext context;
+    private PetRepository repository;
+    private PetSecondLevelCache cache;
+    private long[] ids;
+    private int[] owners;
+
+    @Setup
+    public void setup() {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(PetTrackerApplication.class)
+            .web(WebApplicationType.NONE)
+            .properties(
+                "pettracker.cache.enabled=false",
+                "spring.jpa.show-sql=false",
+                "logging.level.root=WARN");
+        if (secondLevelCache) builder.profiles("l2cache");
+        context = builder.run();
+        repository = context.getBean("petStorage", PetRepository.class);
+        cache = context.getBean(PetSecondLevelCache.class);
+
+        List<Pet> pets = new ArrayList<>(PETS);
+        for (int i = 0; i < PETS; i++) {
+            pets.add(new Pet(null, i % 2 == 0 ? PetType.DOG : PetType.CAT, TrackerType.values()[i % 3], i % OWNERS, i % 5 != 0));
+        }
+        List<Pet> saved = repository.saveAll(pets);
+        ids = saved.stream().mapToLong(Pet::getId).toArray();
+        owners = saved.stream().mapToInt(Pet::getOwnerId).toArray();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void cold(Blackhole bh) {
+        cache.evictAll();
+        read(bh, ThreadLocalRandom.current().nextInt(PETS));
+    }
+
+    @Benchmark
+    public void warm(Blackhole bh) {
+        read(bh, ThreadLocalRandom.current().nextInt(PETS));
+    }
+
+    @Benchmark
+    public void invalidationHeavy(Blackhole bh) {
+        int i = ThreadLocalRandom.current().nextInt(PETS);
+        bh.consume(repository.patch(ids[i], new PetPatch(ThreadLocalRandom.current().nextBoolean(), null)));
+        read(bh, i);
+    }
+
+    private void read(Blackhole bh, int i) {
+        bh.consume(repository.findById(ids[i]));
+        bh.consume(repository.countOutsideZoneGroupedByOwner(owners[i]));
+    }
+}
@@ -0,0 +1,187 @@
+package com.tractive.pettracker.benchmark;
+
+import com.tractive.pettracker.PetTrackerApplication;
+import com.tractive.pettracker.api.dto.OutsideZoneSummaryDTO;
+import com.tractive.pettracker.api.dto.PetRequestDTO;
+import com.tractive.pettracker.api.dto.PetResponseDTO;
+import com.tractive.pettracker.application.service.DeduplicationWindow;
+import com.tractive.pettracker.application.service.PetService;
+import com.tractive.pettracker.application.service.PetServiceImpl;
+import com.tractive.pettracker.application.service.PetWriteBehindQueue;
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.domain.Cat;
+import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.OutOfZoneDwell;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetCount;
+import com.tractive.pettracker.domain.PetPatch;
+import com.tractive.pettracker.domain.PetSummaryQuery;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.PetUpsertResult;
+import com.tractive.pettracker.domain.TrackerType;
+import jakarta.validation.Validation;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+// PetServiceImpl against a fixed-answer stub repository (service and mapping cost only),
+// the in-memory storage engine and the H2/JPA storage engine.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PetServiceBenchmark {
+
+    private static final int SEEDED_PETS = 1_000;
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"stub", "memory", "h2"})
+    public String backend;
+
+    private ConfigurableApplicationContext context;
+    private PetService petService;
+    private PetRequestDTO request;
+    private long existingId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (backend.equals("stub")) {
+            var validator = Validation.buildDefaultValidatorFactory().getValidator();
+            var stub = new StubPetRepository();
+            var deduplication = new DeduplicationWindow(1, Duration.ofMinutes(1));
+            petService = new PetServiceImpl(stub, validator, deduplication, new PetWriteBehindQueue(stub, 1, 1, null));
+        } else {
+            context = new SpringApplicationBuilder(PetTrackerApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                    "pettracker.storage=" + (backend.equals("memory") ? "memory" : "jpa"),
+                    "pettracker.cache.enabled=false",
+                    "spring.jpa.show-sql=false",
+                    "logging.level.root=WARN")
+                .run();
+            petService = context.getBean(PetService.class);
+        }
+        request = new PetRequestDTO(PetType.DOG, TrackerType.MEDIUM, 7, false, null);
+        for (int i = 0; i < SEEDED_PETS; i++) {
+            existingId = petService.create(new PetRequestDTO(PetType.CAT, TrackerType.SMALL, i, i % 3 == 0, false)).id();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (context != null) context.close();
+    }
+
+    @Benchmark
+    public PetResponseDTO create() {
+        return petService.create(request);
+    }
+
+    @Benchmark
+    public PetResponseDTO getById() {
+        return petService.getById(existingId);
+    }
+
+    @Benchmark
+    public List<PetResponseDTO> listPage() {
+        return petService.list(null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<OutsideZoneSummaryDTO> outOfZoneSummary() {
+        return petService.outOfZoneSummary();
+    }
+
+    static class StubPetRepository implements PetRepository {
+        private final Cat cat = new Cat(1L, TrackerType.SMALL, 1, true, false);
+        private final List<Pet> page = new ArrayList<>();
+        private final List<OutOfZoneCount> counts = List.of(
+            new OutOfZoneCount(PetType.CAT, TrackerType.SMALL, 12),
+            new OutOfZoneCount(PetType.DOG, TrackerType.BIG, 7));
+
+        StubPetRepository() {
+            for (long id = 1; id <= PAGE_SIZE; id++) page.add(new Pet(id, PetType.DOG, TrackerType.BIG, 1, true));
+        }
+
+        @Override
+        public Pet save(Pet pet) {
+            pet.setId(1L);
+            return pet;
+        }
+
+        @Override
+        public List<Pet> saveAll(List<Pet> pets) {
+            pets.forEach(this::save);
+            return pets;
+        }
+
+        @Override
+        public Pet update(Pet pet) { return pet; }
+
+        @Override
+        public Pet update(Pet pet, long expectedVersion) { return pet; }
+
+        @Override
+        public Optional<Pet> patch(Long id, PetPatch patch) { return Optional.of(patch.applyTo(cat)); }
+
+        @Override
+        public PetUpsertResult upsertByTracker(String trackerId, Pet pet) { return new PetUpsertResult(save(pet), false); }
+
+        @Override
+        public Optional<Pet> findById(Long id) { return Optional.of(cat); }
+
+        @Override
+        public Optional<Long> findVersion(Long id) { return Optional.of(1L); }
+
+        @Override
+        public List<Pet> findAll() { return page; }
+
+        @Override
+        public List<Pet> findPage(Long afterId, int limit) { return page; }
+
+        @Override
+        public List<Pet> findPageByOwner(Integer ownerId, Long afterId, int limit) { return page; }
+
+        @Override
+        public List<OutOfZoneCount> countOutsideZoneGrouped() { return counts; }
+
+        @Override
+        public long outOfZoneGeneration() { return 1L; }
+
+        @Override
+        public List<OutOfZoneCount> countOutsideZoneGroupedByOwner(Integer ownerId) { return counts; }
+
+        @Override
+        public List<OutOfZoneCount> countOutsideZoneGroupedAt(Instant at) { return counts; }
+
+        @Override
+        public List<PetCount> summarize(PetSummaryQuery query) { return List.of(); }
+
+        @Override
+        public List<OutOfZoneDwell> outOfZoneDwell(Instant from, Duration step) { return List.of(); }
+
+        @Override
+        public List<OutOfZoneDwell> outOfZoneDwellByOwner(Integer ownerId, Instant from, Duration step) { return List.of(); }
+    }
+}
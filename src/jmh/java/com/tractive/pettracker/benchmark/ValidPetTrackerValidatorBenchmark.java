@@ -0,0 +1,51 @@
+package com.tractive.pettracker.benchmark;
+
+import com.tractive.pettracker.api.dto.PetRequestDTO;
+import com.tractive.pettracker.api.dto.validation.ValidPetTrackerValidator;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The bare constraint next to the full Bean Validation pass that MVC runs for @Valid
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidPetTrackerValidatorBenchmark {
+
+    private final ValidPetTrackerValidator constraint = new ValidPetTrackerValidator();
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    private final PetRequestDTO validCat = new PetRequestDTO(PetType.CAT, TrackerType.SMALL, 1, true, false);
+    private final PetRequestDTO invalidCat = new PetRequestDTO(PetType.CAT, TrackerType.MEDIUM, 1, true, false);
+
+    @Benchmark
+    public boolean constraintValid() {
+        // the context is only touched when a violation is reported
+        return constraint.isValid(validCat, null);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PetRequestDTO>> validatorValid() {
+        return validator.validate(validCat);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PetRequestDTO>> validatorInvalid() {
+        return validator.validate(invalidCat);
+    }
+}
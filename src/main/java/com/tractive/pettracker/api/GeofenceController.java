@@ -0,0 +1,36 @@
+package com.tractive.pettracker.api;
+
+import com.tractive.pettracker.api.dto.LocationFixDTO;
+import com.tractive.pettracker.api.dto.LocationFixResultDTO;
+import com.tractive.pettracker.api.dto.PowerSavingZoneDTO;
+import com.tractive.pettracker.application.service.GeofenceService;
+import io.micrometer.observation.annotation.Observed;
+import java.util.List;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@Observed(name = "pettracker.api")
+public class GeofenceController implements GeofenceControllerApi {
+
+    private final GeofenceService geofenceService;
+
+    public GeofenceController(GeofenceService geofenceService) {
+        this.geofenceService = geofenceService;
+    }
+
+    @Override
+    public ResponseEntity<List<PowerSavingZoneDTO>> zones(Integer ownerId) {
+        return ResponseEntity.ok(geofenceService.zones(ownerId));
+    }
+
+    @Override
+    public ResponseEntity<List<PowerSavingZoneDTO>> replaceZones(Integer ownerId, List<PowerSavingZoneDTO> zones) {
+        return ResponseEntity.ok(geofenceService.replaceZones(ownerId, zones));
+    }
+
+    @Override
+    public ResponseEntity<LocationFixResultDTO> ingest(List<LocationFixDTO> fixes) {
+        return ResponseEntity.ok(geofenceService.ingest(fixes));
+    }
+}
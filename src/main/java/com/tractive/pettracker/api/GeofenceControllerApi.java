@@ -0,0 +1,28 @@
+package com.tractive.pettracker.api;
+
+import com.tractive.pettracker.api.dto.LocationFixDTO;
+import com.tractive.pettracker.api.dto.LocationFixResultDTO;
+import com.tractive.pettracker.api.dto.PowerSavingZoneDTO;
+import jakarta.validation.Valid;
+import java.util.List;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+@RequestMapping("/api")
+public interface GeofenceControllerApi {
+    @GetMapping("/owners/{ownerId}/zones")
+    ResponseEntity<List<PowerSavingZoneDTO>> zones(@PathVariable Integer ownerId);
+
+    // Replaces all zones of the owner; an empty list removes them, and the owner's pets keep their last inZone
+    @PutMapping("/owners/{ownerId}/zones")
+    ResponseEntity<List<PowerSavingZoneDTO>> replaceZones(@PathVariable Integer ownerId, @Valid @RequestBody List<PowerSavingZoneDTO> zones);
+
+    // Evaluates GPS fixes against the zones of each pet's owner and updates inZone where it changed
+    @PostMapping("/pets/fixes")
+    ResponseEntity<LocationFixResultDTO> ingest(@RequestBody List<LocationFixDTO> fixes);
+}
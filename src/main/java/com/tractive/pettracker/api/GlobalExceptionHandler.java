@@ -1,8 +1,11 @@
 package com.tractive.pettracker.api;
 
+import com.tractive.pettracker.application.exceptions.IngestionQueueFullException;
 import com.tractive.pettracker.application.exceptions.NotFoundException;
 import java.util.HashMap;
 import java.util.Map;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -21,6 +24,23 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(body);
     }
 
+    @ExceptionHandler(IngestionQueueFullException.class)
+    public ResponseEntity<Map<String, Object>> handleQueueFull(IngestionQueueFullException ex) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("error", "TOO_MANY_REQUESTS");
+        body.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").body(body);
+    }
+
+    // A concurrent write won, or If-Match named a version the pet is no longer at
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, Object>> handleConflict(OptimisticLockingFailureException ex) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("error", "CONFLICT");
+        body.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, Object>> handleValidation(MethodArgumentNotValidException ex) {
         Map<String, Object> errors = new HashMap<>();
@@ -0,0 +1,21 @@
+package com.tractive.pettracker.api;
+
+import com.tractive.pettracker.data.OutOfZoneDwellTime;
+import java.time.Duration;
+
+// Windows the dwell time can answer: within the retention, in whole minutes, and a step that divides the window
+final class OutOfZoneDwellWindows {
+
+    static final Duration DEFAULT_WINDOW = Duration.ofHours(1);
+
+    private OutOfZoneDwellWindows() {}
+
+    static boolean valid(Duration window, Duration step) {
+        if (window.isNegative() || window.isZero() || window.compareTo(OutOfZoneDwellTime.RETENTION) > 0) return false;
+        if (step == null) return true;
+        long resolution = OutOfZoneDwellTime.RESOLUTION.toMillis();
+        return step.toMillis() >= resolution
+            && step.toMillis() % resolution == 0
+            && window.toMillis() % step.toMillis() == 0;
+    }
+}
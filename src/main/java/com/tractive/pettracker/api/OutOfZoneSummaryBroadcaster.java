@@ -0,0 +1,175 @@
+package com.tractive.pettracker.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tractive.pettracker.api.dto.OutsideZoneSummaryDTO;
+import com.tractive.pettracker.application.service.PetService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// Pushes the out-of-zone summary to SSE subscribers.
+// Once per interval the summary is read (from the in-memory counters) and, only if it differs from the
+// last frame, serialised once and handed to every subscriber. Any number of writes in between, from any
+// path (create, batch, update, patch, reports, write-behind), collapse into that one frame.
+// Frames are written on a thread per subscriber, never on the scheduler: a slow client only delays its own
+// frames, only the latest unsent one is kept for it, and one stuck in a write longer than send-timeout is
+// dropped from the stream.
+@Component
+public class OutOfZoneSummaryBroadcaster {
+
+    private static final String EVENT_NAME = "out-of-zone-summary";
+
+    private final PetService petService;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("summary-stream-", 0).factory());
+    private final AtomicLong frames = new AtomicLong();
+    private final Counter dropped = Metrics.counter("pettracker.summary.stream.dropped");
+    private List<OutsideZoneSummaryDTO> last;
+    private String lastJson;
+
+    public OutOfZoneSummaryBroadcaster(
+        PetService petService,
+        ObjectMapper objectMapper,
+        @Value("${pettracker.summary-stream.timeout:PT30M}") Duration timeout,
+        @Value("${pettracker.summary-stream.send-timeout:PT10S}") Duration sendTimeout
+    ) {
+        this.petService = petService;
+        this.objectMapper = objectMapper;
+        this.timeoutMillis = timeout.toMillis();
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        Metrics.gauge("pettracker.summary.stream.subscribers", subscribers, Set::size);
+    }
+
+    // The new subscriber gets the latest frame right away instead of waiting for the next change. It is
+    // registered under the lock, so it sees every frame after that one and in order; the first frame is
+    // written on the subscriber's own request thread, outside the lock.
+    public SseEmitter subscribe() throws IOException {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        synchronized (this) {
+            if (lastJson == null) {
+                last = petService.outOfZoneSummary();
+                lastJson = objectMapper.writeValueAsString(last);
+            }
+            subscriber.pending.set(frame(frames.get(), lastJson));
+            subscriber.scheduled.set(true);
+            subscribers.add(subscriber);
+        }
+        subscriber.drain();
+        return emitter;
+    }
+
+    @Scheduled(
+        initialDelayString = "${pettracker.summary-stream.interval:PT1S}",
+        fixedDelayString = "${pettracker.summary-stream.interval:PT1S}"
+    )
+    public synchronized void publish() throws JsonProcessingException {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.sendingSince;
+            if (since != 0 && now - since > sendTimeoutNanos && subscribers.remove(subscriber)) dropped.increment();
+        }
+        if (subscribers.isEmpty()) {
+            // nobody listening: forget the frame so the next subscriber starts from a fresh summary
+            last = null;
+            lastJson = null;
+            return;
+        }
+        List<OutsideZoneSummaryDTO> summary = petService.outOfZoneSummary();
+        if (summary.equals(last)) return;
+        String json = objectMapper.writeValueAsString(summary);
+        long id = frames.incrementAndGet();
+        last = summary;
+        lastJson = json;
+        for (Subscriber subscriber : subscribers) subscriber.offer(frame(id, json));
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        senders.shutdownNow();
+    }
+
+    private static SseEmitter.SseEventBuilder frame(long id, String json) {
+        return SseEmitter.event().name(EVENT_NAME).id(Long.toString(id)).data(json, MediaType.APPLICATION_JSON);
+    }
+
+    // At most one sender per subscriber at a time; a frame offered while it is writing replaces the one
+    // still waiting, so the client catches up to the latest summary instead of working through a backlog
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final AtomicReference<SseEmitter.SseEventBuilder> pending = new AtomicReference<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // System.nanoTime() when the current write started, 0 while idle
+        private volatile long sendingSince;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(SseEmitter.SseEventBuilder frame) {
+            pending.set(frame);
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // shutting down
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            do {
+                SseEmitter.SseEventBuilder frame;
+                while ((frame = pending.getAndSet(null)) != null) {
+                    sendingSince = System.nanoTime();
+                    try {
+                        emitter.send(frame);
+                    } catch (IOException | IllegalStateException e) {
+                        // client went away; the container completes the emitter and onError removes it as well
+                        if (subscribers.remove(this)) dropped.increment();
+                        pending.set(null);
+                        return;
+                    } finally {
+                        sendingSince = 0;
+                    }
+                    if (!subscribers.contains(this)) {
+                        // dropped by publish while stuck in the write: end the stream, EventSource reconnects
+                        emitter.complete();
+                        return;
+                    }
+                }
+                scheduled.set(false);
+                // a frame offered between the last getAndSet and clearing the flag found it still set
+            } while (pending.get() != null && scheduled.compareAndSet(false, true));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.tractive.pettracker.api;
+
+import com.tractive.pettracker.api.dto.OutsideZoneSummaryDTO;
+import com.tractive.pettracker.api.dto.OwnerOutOfZoneDwellDTO;
+import com.tractive.pettracker.api.dto.PetResponseDTO;
+import com.tractive.pettracker.application.service.PetService;
+import io.micrometer.observation.annotation.Observed;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+@RestController
+@Observed(name = "pettracker.api")
+public class OwnerPetController implements OwnerPetControllerApi {
+
+    private final PetService petService;
+
+    public OwnerPetController(PetService petService) {
+        this.petService = petService;
+    }
+
+    @Override
+    public ResponseEntity<List<PetResponseDTO>> list(Integer ownerId, Long after, int limit) {
+        List<PetResponseDTO> page = petService.listByOwner(ownerId, after, limit);
+        if (page.size() < limit) return ResponseEntity.ok(page);
+        URI next = ServletUriComponentsBuilder.fromCurrentRequest()
+            .replaceQueryParam("after", page.get(page.size() - 1).id())
+            .replaceQueryParam("limit", limit)
+            .build()
+            .toUri();
+        return ResponseEntity.ok()
+            .header(HttpHeaders.LINK, "<%s>; rel=\"next\"".formatted(next))
+            .body(page);
+    }
+
+    @Override
+    public ResponseEntity<List<OutsideZoneSummaryDTO>> summary(Integer ownerId) {
+        return ResponseEntity.ok(petService.outOfZoneSummaryByOwner(ownerId));
+    }
+
+    @Override
+    public ResponseEntity<List<OwnerOutOfZoneDwellDTO>> dwell(Integer ownerId, Duration window, Duration step) {
+        Duration length = window != null ? window : OutOfZoneDwellWindows.DEFAULT_WINDOW;
+        if (!OutOfZoneDwellWindows.valid(length, step)) return ResponseEntity.badRequest().build();
+        return ResponseEntity.ok(petService.outOfZoneDwellByOwner(ownerId, length, step));
+    }
+}
@@ -0,0 +1,36 @@
+package com.tractive.pettracker.api;
+
+import com.tractive.pettracker.api.dto.OutsideZoneSummaryDTO;
+import com.tractive.pettracker.api.dto.OwnerOutOfZoneDwellDTO;
+import com.tractive.pettracker.api.dto.PetResponseDTO;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+@RequestMapping("/api/owners/{ownerId}/pets")
+public interface OwnerPetControllerApi {
+    // Keyset pagination on id within the owner's pets; a Link header with rel="next" points at the following page
+    @GetMapping
+    ResponseEntity<List<PetResponseDTO>> list(
+        @PathVariable Integer ownerId,
+        @RequestParam(required = false) Long after,
+        @RequestParam(defaultValue = "100") @Min(1) @Max(1000) int limit
+    );
+
+    @GetMapping("/out-of-zone-summary")
+    ResponseEntity<List<OutsideZoneSummaryDTO>> summary(@PathVariable Integer ownerId);
+
+    // Same windows as /api/pets/out-of-zone-dwell, summed over the owner's pets; one row per window
+    @GetMapping("/out-of-zone-dwell")
+    ResponseEntity<List<OwnerOutOfZoneDwellDTO>> dwell(
+        @PathVariable Integer ownerId,
+        @RequestParam(required = false) Duration window,
+        @RequestParam(required = false) Duration step
+    );
+}
@@ -1,26 +1,59 @@
 package com.tractive.pettracker.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tractive.pettracker.api.dto.BatchResultDTO;
+import com.tractive.pettracker.api.dto.OutOfZoneDwellDTO;
 import com.tractive.pettracker.api.dto.OutsideZoneSummaryDTO;
+import com.tractive.pettracker.api.dto.PetPatchDTO;
 import com.tractive.pettracker.api.dto.PetRequestDTO;
 import com.tractive.pettracker.api.dto.PetResponseDTO;
+import com.tractive.pettracker.api.dto.PetSummaryDTO;
+import com.tractive.pettracker.api.dto.PetSummaryFilterDTO;
+import com.tractive.pettracker.api.dto.TrackerReportDTO;
+import com.tractive.pettracker.api.dto.TrackerReportResultDTO;
 import com.tractive.pettracker.application.service.PetService;
+import io.micrometer.observation.annotation.Observed;
+import java.io.IOException;
 import java.net.URI;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 @RestController
+@Observed(name = "pettracker.api")
 public class PetController implements PetControllerApi {
 
+    private static final int STREAM_PAGE_SIZE = 500;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String RESPOND_ASYNC = "respond-async";
+    // The summary generation restarts with the process, so tags carry an id of this instance
+    private static final String INSTANCE = Long.toHexString(new SecureRandom().nextLong());
+
     private final PetService petService;
+    private final ObjectMapper objectMapper;
+    private final OutOfZoneSummaryBroadcaster summaryBroadcaster;
 
-    public PetController(PetService petService) {
+    public PetController(PetService petService, ObjectMapper objectMapper, OutOfZoneSummaryBroadcaster summaryBroadcaster) {
         this.petService = petService;
+        this.objectMapper = objectMapper;
+        this.summaryBroadcaster = summaryBroadcaster;
     }
 
     @Override
-    public ResponseEntity<PetResponseDTO> create(PetRequestDTO petRequestDTO) {
+    public ResponseEntity<PetResponseDTO> create(String prefer, PetRequestDTO petRequestDTO) {
+        // a preference: without a write-behind log the pet is created synchronously and answered with 201
+        if (prefer != null && prefer.contains(RESPOND_ASYNC) && petService.createAsync(petRequestDTO)) {
+            return ResponseEntity.accepted().header("Preference-Applied", RESPOND_ASYNC).build();
+        }
         var created = petService.create(petRequestDTO);
         URI location = ServletUriComponentsBuilder.fromCurrentRequest()
             .path("/{id}")
@@ -30,22 +63,107 @@ public class PetController implements PetControllerApi {
     }
 
     @Override
-    public ResponseEntity<PetResponseDTO> update(Long id, PetRequestDTO dto) {
-        return ResponseEntity.ok(petService.update(id, dto));
+    public ResponseEntity<BatchResultDTO> createBatch(List<PetRequestDTO> dtos) {
+        return ResponseEntity.ok(petService.createBatch(dtos));
+    }
+
+    @Override
+    public ResponseEntity<TrackerReportResultDTO> report(TrackerReportDTO dto) {
+        var result = petService.report(dto);
+        if (result.status() != TrackerReportResultDTO.Status.CREATED) return ResponseEntity.ok(result);
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+            .path("/api/pets/{id}")
+            .buildAndExpand(result.id())
+            .toUri();
+        return ResponseEntity.created(location).body(result);
+    }
+
+    @Override
+    public ResponseEntity<PetResponseDTO> update(Long id, String ifMatch, PetRequestDTO dto) {
+        if (ifMatch == null || ifMatch.equals("*")) return ResponseEntity.ok(petService.update(id, dto));
+        return ResponseEntity.ok(petService.updateIfVersion(id, dto, version(ifMatch)));
+    }
+
+    @Override
+    public ResponseEntity<PetResponseDTO> patch(Long id, PetPatchDTO dto) {
+        return ResponseEntity.ok(petService.patch(id, dto));
+    }
+
+    // Only the version column is read before deciding; a 304 loads, maps and serialises nothing
+    @Override
+    public ResponseEntity<PetResponseDTO> get(Long id, WebRequest request) {
+        String etag = "W/\"%d\"".formatted(petService.versionOf(id));
+        if (request.checkNotModified(etag)) return null;
+        return ResponseEntity.ok().eTag(etag).body(petService.getById(id));
     }
 
     @Override
-    public ResponseEntity<PetResponseDTO> get(Long id) {
-        return ResponseEntity.ok(petService.getById(id));
+    public ResponseEntity<List<PetResponseDTO>> list(Long after, int limit) {
+        List<PetResponseDTO> page = petService.list(after, limit);
+        if (page.size() < limit) return ResponseEntity.ok(page);
+        URI next = ServletUriComponentsBuilder.fromCurrentRequest()
+            .replaceQueryParam("after", page.get(page.size() - 1).id())
+            .replaceQueryParam("limit", limit)
+            .build()
+            .toUri();
+        return ResponseEntity.ok()
+            .header(HttpHeaders.LINK, "<%s>; rel=\"next\"".formatted(next))
+            .body(page);
     }
 
     @Override
-    public ResponseEntity<List<PetResponseDTO>> list() {
-        return ResponseEntity.ok(petService.list());
+    public ResponseEntity<StreamingResponseBody> stream() {
+        StreamingResponseBody body = out -> {
+            Long after = null;
+            List<PetResponseDTO> page;
+            do {
+                page = petService.list(after, STREAM_PAGE_SIZE);
+                for (PetResponseDTO pet : page) {
+                    out.write(objectMapper.writeValueAsBytes(pet));
+                    out.write('\n');
+                }
+                out.flush();
+                if (!page.isEmpty()) after = page.get(page.size() - 1).id();
+            } while (page.size() == STREAM_PAGE_SIZE);
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
     }
 
+    // Historical counts are rebuilt from the event log and not tagged
     @Override
-    public ResponseEntity<List<OutsideZoneSummaryDTO>> summary() {
-        return ResponseEntity.ok(petService.outOfZoneSummary());
+    public ResponseEntity<List<OutsideZoneSummaryDTO>> summary(Instant at, WebRequest request) {
+        if (at != null) return ResponseEntity.ok(petService.outOfZoneSummaryAt(at));
+        String etag = "W/\"s-%s-%d\"".formatted(INSTANCE, petService.outOfZoneSummaryGeneration());
+        if (request.checkNotModified(etag)) return null;
+        return ResponseEntity.ok().eTag(etag).body(petService.outOfZoneSummary());
+    }
+
+    @Override
+    public ResponseEntity<List<OutOfZoneDwellDTO>> dwell(Duration window, Duration step) {
+        Duration length = window != null ? window : OutOfZoneDwellWindows.DEFAULT_WINDOW;
+        if (!OutOfZoneDwellWindows.valid(length, step)) return ResponseEntity.badRequest().build();
+        return ResponseEntity.ok(petService.outOfZoneDwell(length, step));
+    }
+
+    @Override
+    public ResponseEntity<SseEmitter> summaryStream() throws IOException {
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(summaryBroadcaster.subscribe());
+    }
+
+    @Override
+    public ResponseEntity<List<PetSummaryDTO>> groupedSummary(PetSummaryFilterDTO filter) {
+        return ResponseEntity.ok(petService.summary(filter));
+    }
+
+    // Reverses the pet ETag W/"<version>"; anything else names no version and never matches
+    private static long version(String etag) {
+        String value = etag.trim();
+        if (value.startsWith("W/")) value = value.substring(2);
+        if (value.length() < 2 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') return -1L;
+        try {
+            return Long.parseLong(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
     }
 }
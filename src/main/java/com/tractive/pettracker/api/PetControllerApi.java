@@ -1,32 +1,102 @@
 package com.tractive.pettracker.api;
 
+import com.tractive.pettracker.api.dto.BatchResultDTO;
+import com.tractive.pettracker.api.dto.OutOfZoneDwellDTO;
 import com.tractive.pettracker.api.dto.OutsideZoneSummaryDTO;
+import com.tractive.pettracker.api.dto.PetPatchDTO;
 import com.tractive.pettracker.api.dto.PetRequestDTO;
 import com.tractive.pettracker.api.dto.PetResponseDTO;
+import com.tractive.pettracker.api.dto.PetSummaryDTO;
+import com.tractive.pettracker.api.dto.PetSummaryFilterDTO;
+import com.tractive.pettracker.api.dto.TrackerReportDTO;
+import com.tractive.pettracker.api.dto.TrackerReportResultDTO;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RequestMapping("/api/pets")
 public interface PetControllerApi {
+    // With "Prefer: respond-async" and a write-behind log the pet is logged to disk and committed in the
+    // background: 202 without a body, or 429 when the buffer is full. Without a log it is created as usual.
     @PostMapping
-    ResponseEntity<PetResponseDTO> create(@Valid @RequestBody PetRequestDTO dto);
+    ResponseEntity<PetResponseDTO> create(
+        @RequestHeader(name = "Prefer", required = false) String prefer,
+        @Valid @RequestBody PetRequestDTO dto
+    );
 
+    // Items are validated one by one so a bad report does not reject the rest of the batch;
+    // a batch over the cap is rejected as a whole with 400
+    @PostMapping("/batch")
+    ResponseEntity<BatchResultDTO> createBatch(@RequestBody @Size(max = 1000) List<PetRequestDTO> dtos);
+
+    // Idempotent ingestion keyed by (ownerId, trackerId); repeated messageIds are acknowledged as DUPLICATE
+    @PostMapping("/reports")
+    ResponseEntity<TrackerReportResultDTO> report(@Valid @RequestBody TrackerReportDTO dto);
+
+    // With If-Match carrying the ETag of a previous GET, the pet is only replaced if it has not changed since; 409 otherwise.
+    // Without If-Match, or with *, the version read by the server is checked instead; only a change of the zone
+    // flags is reapplied to the fresh pet on a conflict, up to three times, before 409.
     @PutMapping("/{id}")
-    ResponseEntity<PetResponseDTO> update(@PathVariable Long id, @Valid @RequestBody PetRequestDTO dto);
+    ResponseEntity<PetResponseDTO> update(
+        @PathVariable Long id,
+        @RequestHeader(name = "If-Match", required = false) String ifMatch,
+        @Valid @RequestBody PetRequestDTO dto
+    );
 
+    // Changes only the given fields (inZone, lostTracker) with a single UPDATE
+    @PatchMapping("/{id}")
+    ResponseEntity<PetResponseDTO> patch(@PathVariable Long id, @RequestBody PetPatchDTO dto);
+
+    // Tagged with the pet's row version; If-None-Match with the current tag is answered 304 without loading the pet
     @GetMapping("/{id}")
-    ResponseEntity<PetResponseDTO> get(@PathVariable Long id);
+    ResponseEntity<PetResponseDTO> get(@PathVariable Long id, WebRequest request);
 
+    // Keyset pagination on id; a Link header with rel="next" points at the following page
     @GetMapping
-    ResponseEntity<List<PetResponseDTO>> list();
+    ResponseEntity<List<PetResponseDTO>> list(
+        @RequestParam(required = false) Long after,
+        @RequestParam(defaultValue = "100") @Min(1) @Max(1000) int limit
+    );
+
+    // Streams every pet as newline-delimited JSON, holding at most one page in memory
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    ResponseEntity<StreamingResponseBody> stream();
 
+    // Current counts, or with ?at=<ISO-8601 instant> the counts as they were at that time.
+    // Current counts carry an ETag of the counters' generation and honour If-None-Match.
     @GetMapping("/out-of-zone-summary")
-    ResponseEntity<List<OutsideZoneSummaryDTO>> summary();
+    ResponseEntity<List<OutsideZoneSummaryDTO>> summary(@RequestParam(required = false) Instant at, WebRequest request);
+
+    // Pet-time spent outside the zone per pet type and tracker type over the last window (at most PT24H), as one
+    // sliding window ending now or, with step, as tumbling windows of step; answered from running totals
+    @GetMapping("/out-of-zone-dwell")
+    ResponseEntity<List<OutOfZoneDwellDTO>> dwell(@RequestParam(required = false) Duration window, @RequestParam(required = false) Duration step);
+
+    // Server-sent events carrying the current summary, then a new frame whenever it changed, at most one per interval
+    @GetMapping(value = "/out-of-zone-summary/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    ResponseEntity<SseEmitter> summaryStream() throws IOException;
+
+    // Counts of the pets matching all given filters (inZone, petType, trackerType, lostTracker, ownerFrom, ownerTo),
+    // one row per combination of the groupBy fields, e.g. ?petType=CAT&lostTracker=true&groupBy=TRACKER_TYPE
+    @GetMapping("/summary")
+    ResponseEntity<List<PetSummaryDTO>> groupedSummary(PetSummaryFilterDTO filter);
 }
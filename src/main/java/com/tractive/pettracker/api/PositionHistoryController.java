@@ -0,0 +1,31 @@
+package com.tractive.pettracker.api;
+
+import com.tractive.pettracker.api.dto.PositionSampleDTO;
+import com.tractive.pettracker.application.service.PositionHistoryService;
+import io.micrometer.observation.annotation.Observed;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@Observed(name = "pettracker.api")
+public class PositionHistoryController implements PositionHistoryControllerApi {
+
+    private static final Duration DEFAULT_RANGE = Duration.ofDays(1);
+
+    private final PositionHistoryService historyService;
+
+    public PositionHistoryController(PositionHistoryService historyService) {
+        this.historyService = historyService;
+    }
+
+    @Override
+    public ResponseEntity<List<PositionSampleDTO>> history(Long id, Instant from, Instant to) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(DEFAULT_RANGE);
+        if (start.isAfter(end)) return ResponseEntity.badRequest().build();
+        return ResponseEntity.ok(historyService.history(id, start, end));
+    }
+}
@@ -0,0 +1,22 @@
+package com.tractive.pettracker.api;
+
+import com.tractive.pettracker.api.dto.PositionSampleDTO;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+@RequestMapping("/api/pets/{id}/history")
+public interface PositionHistoryControllerApi {
+    // Positions between from and to (default: the last 24 hours) in time order; older stretches come
+    // downsampled to one position per minute or hour, depending on their age
+    @GetMapping
+    ResponseEntity<List<PositionSampleDTO>> history(
+        @PathVariable Long id,
+        @RequestParam(required = false) Instant from,
+        @RequestParam(required = false) Instant to
+    );
+}
@@ -0,0 +1,169 @@
+package com.tractive.pettracker.api.codec;
+
+import com.tractive.pettracker.api.dto.PetRequestDTO;
+import com.tractive.pettracker.api.dto.PetResponseDTO;
+import com.tractive.pettracker.api.dto.TrackerReportDTO;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+// Fixed-width big-endian encoding of pets, negotiated as application/x-pettracker-pet.
+// A pet is one flag byte (petType:2 trackerType:2 inZone:2 lostTracker:2, all-ones meaning null) and the
+// int ownerId; responses prefix the long id. Lists carry an int count, a tracker report two strings
+// as unsigned-short length (0xFFFF for null) plus UTF-8 bytes ahead of its pet.
+// The whole body is encoded into one exactly sized array, so a page of pets costs a single allocation.
+public class PetBinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final String MEDIA_TYPE_VALUE = "application/x-pettracker-pet";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    static final int REQUEST_SIZE = 1 + 4;
+    static final int RESPONSE_SIZE = 8 + 1 + 4;
+
+    private static final int NULL_ENUM = 3;
+    private static final int NULL_BOOLEAN = 3;
+    private static final int NULL_STRING = 0xFFFF;
+    private static final PetType[] PET_TYPES = PetType.values();
+    private static final TrackerType[] TRACKER_TYPES = TrackerType.values();
+
+    public PetBinaryHttpMessageConverter() {
+        super(MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == PetRequestDTO.class || clazz == PetResponseDTO.class || clazz == TrackerReportDTO.class;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        boolean readable = type == PetRequestDTO.class || type == TrackerReportDTO.class || isListOf(type, PetRequestDTO.class);
+        return readable && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        boolean writable = clazz == PetResponseDTO.class || type == PetResponseDTO.class || isListOf(type, PetResponseDTO.class);
+        return writable && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(inputMessage.getBody().readAllBytes());
+        try {
+            Object value;
+            if (type == PetRequestDTO.class) value = readRequest(in);
+            else if (type == TrackerReportDTO.class) value = new TrackerReportDTO(readString(in), readString(in), readRequest(in));
+            else if (isListOf(type, PetRequestDTO.class)) value = readRequests(in);
+            else throw new HttpMessageNotReadableException("Cannot read %s as %s".formatted(type, MEDIA_TYPE_VALUE), inputMessage);
+            if (in.hasRemaining()) throw new HttpMessageNotReadableException("%d trailing bytes".formatted(in.remaining()), inputMessage);
+            return value;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new HttpMessageNotReadableException("Malformed " + MEDIA_TYPE_VALUE + " body", e, inputMessage);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(encodedSize(value));
+        if (value instanceof PetResponseDTO pet) {
+            writeResponse(out, pet);
+        } else {
+            List<?> pets = (List<?>) value;
+            out.putInt(pets.size());
+            for (Object pet : pets) writeResponse(out, (PetResponseDTO) pet);
+        }
+        outputMessage.getBody().write(out.array());
+    }
+
+    @Override
+    protected Long getContentLength(Object value, MediaType contentType) {
+        return (long) encodedSize(value);
+    }
+
+    private static int encodedSize(Object value) {
+        return value instanceof List<?> pets ? 4 + pets.size() * RESPONSE_SIZE : RESPONSE_SIZE;
+    }
+
+    private static List<PetRequestDTO> readRequests(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining() / REQUEST_SIZE) throw new IllegalArgumentException("bad count " + count);
+        List<PetRequestDTO> pets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) pets.add(readRequest(in));
+        return pets;
+    }
+
+    private static PetRequestDTO readRequest(ByteBuffer in) {
+        int flags = in.get() & 0xFF;
+        int ownerId = in.getInt();
+        return new PetRequestDTO(
+            decodeEnum(PET_TYPES, flags >>> 6),
+            decodeEnum(TRACKER_TYPES, flags >>> 4 & 3),
+            ownerId,
+            decodeBoolean(flags >>> 2 & 3),
+            decodeBoolean(flags & 3)
+        );
+    }
+
+    private static void writeResponse(ByteBuffer out, PetResponseDTO pet) {
+        out.putLong(pet.id() != null ? pet.id() : 0L);
+        out.put((byte) (encodeEnum(pet.petType()) << 6
+            | encodeEnum(pet.trackerType()) << 4
+            | encodeBoolean(pet.inZone()) << 2
+            | encodeBoolean(pet.lostTracker())));
+        out.putInt(pet.ownerId() != null ? pet.ownerId() : 0);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length == NULL_STRING) return null;
+        if (length > in.remaining()) throw new BufferUnderflowException();
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static <E extends Enum<E>> E decodeEnum(E[] values, int code) {
+        if (code == NULL_ENUM) return null;
+        if (code >= values.length) throw new IllegalArgumentException("bad enum code " + code);
+        return values[code];
+    }
+
+    private static int encodeEnum(Enum<?> value) {
+        return value != null ? value.ordinal() : NULL_ENUM;
+    }
+
+    private static Boolean decodeBoolean(int code) {
+        if (code == NULL_BOOLEAN) return null;
+        if (code > 1) throw new IllegalArgumentException("bad boolean code " + code);
+        return code == 1;
+    }
+
+    private static int encodeBoolean(Boolean value) {
+        return value == null ? NULL_BOOLEAN : value ? 1 : 0;
+    }
+
+    private static boolean isListOf(Type type, Class<?> element) {
+        return type instanceof ParameterizedType list
+            && list.getRawType() instanceof Class<?> raw
+            && List.class.isAssignableFrom(raw)
+            && list.getActualTypeArguments()[0] == element;
+    }
+}
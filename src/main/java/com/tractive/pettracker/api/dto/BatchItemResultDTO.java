@@ -0,0 +1,20 @@
+package com.tractive.pettracker.api.dto;
+
+import java.util.Map;
+
+public record BatchItemResultDTO(
+    int index,
+    Status status,
+    Long id,
+    Map<String, String> errors
+) {
+    public enum Status { CREATED, INVALID }
+
+    public static BatchItemResultDTO created(int index, Long id) {
+        return new BatchItemResultDTO(index, Status.CREATED, id, null);
+    }
+
+    public static BatchItemResultDTO invalid(int index, Map<String, String> errors) {
+        return new BatchItemResultDTO(index, Status.INVALID, null, errors);
+    }
+}
@@ -0,0 +1,9 @@
+package com.tractive.pettracker.api.dto;
+
+import java.util.List;
+
+public record BatchResultDTO(
+    int created,
+    int rejected,
+    List<BatchItemResultDTO> items
+) {}
@@ -0,0 +1,11 @@
+package com.tractive.pettracker.api.dto;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+
+// WGS84 degrees
+public record GeoPointDTO(
+    @NotNull @DecimalMin("-90") @DecimalMax("90") Double lat,
+    @NotNull @DecimalMin("-180") @DecimalMax("180") Double lon
+) {}
@@ -0,0 +1,12 @@
+package com.tractive.pettracker.api.dto;
+
+import java.time.Instant;
+
+// Raw GPS position of a pet's tracker; checked per fix so one bad fix does not reject the batch.
+// recordedAt is when the tracker took the fix, the time of arrival if absent.
+public record LocationFixDTO(
+    Long petId,
+    Double lat,
+    Double lon,
+    Instant recordedAt
+) {}
@@ -0,0 +1,16 @@
+package com.tractive.pettracker.api.dto;
+
+// transitions: fixes that moved their pet into or out of its owner's zones
+// unchanged: fixes evaluated without changing the pet's inZone
+// late: fixes older than one already evaluated for their pet; kept in the history, not applied to the pet
+// unknownPets, withoutZones, rejected: fixes not evaluated because the pet does not exist,
+// its owner has no zones, or the fix had no pet id or an invalid position
+public record LocationFixResultDTO(
+    int received,
+    int transitions,
+    int unchanged,
+    int late,
+    int unknownPets,
+    int withoutZones,
+    int rejected
+) {}
@@ -0,0 +1,15 @@
+package com.tractive.pettracker.api.dto;
+
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.time.Instant;
+
+// averageOutOfZone is the time outside divided by the window: the mean number of pets outside during it
+public record OutOfZoneDwellDTO(
+    PetType petType,
+    TrackerType trackerType,
+    Instant from,
+    Instant to,
+    long outOfZoneSeconds,
+    double averageOutOfZone
+) {}
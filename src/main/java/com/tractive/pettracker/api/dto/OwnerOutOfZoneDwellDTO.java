@@ -0,0 +1,10 @@
+package com.tractive.pettracker.api.dto;
+
+import java.time.Instant;
+
+public record OwnerOutOfZoneDwellDTO(
+    Instant from,
+    Instant to,
+    long outOfZoneSeconds,
+    double averageOutOfZone
+) {}
@@ -0,0 +1,7 @@
+package com.tractive.pettracker.api.dto;
+
+// Partial update; only the fields present in the request are changed
+public record PetPatchDTO(
+    Boolean inZone,
+    Boolean lostTracker
+) {}
@@ -0,0 +1,13 @@
+package com.tractive.pettracker.api.dto;
+
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+
+// Fields that were not grouped by are null
+public record PetSummaryDTO(
+    PetType petType,
+    TrackerType trackerType,
+    Boolean inZone,
+    Boolean lostTracker,
+    Long count
+) {}
@@ -0,0 +1,17 @@
+package com.tractive.pettracker.api.dto;
+
+import com.tractive.pettracker.domain.PetSummaryDimension;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.util.List;
+
+// Query parameters of GET /api/pets/summary; every filter is optional and groupBy is comma separated
+public record PetSummaryFilterDTO(
+    Boolean inZone,
+    PetType petType,
+    TrackerType trackerType,
+    Boolean lostTracker,
+    Integer ownerFrom,
+    Integer ownerTo,
+    List<PetSummaryDimension> groupBy
+) {}
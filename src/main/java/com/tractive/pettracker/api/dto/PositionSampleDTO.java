@@ -0,0 +1,10 @@
+package com.tractive.pettracker.api.dto;
+
+import java.time.Instant;
+
+public record PositionSampleDTO(
+    Instant at,
+    double lat,
+    double lon,
+    boolean inZone
+) {}
@@ -0,0 +1,14 @@
+package com.tractive.pettracker.api.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+// Polygon of at least three vertices; the last one connects back to the first. id is assigned on write.
+public record PowerSavingZoneDTO(
+    Long id,
+    @NotBlank @Size(max = 64) String name,
+    @NotNull @Size(min = 3, max = 10000) List<@NotNull @Valid GeoPointDTO> vertices
+) {}
@@ -0,0 +1,13 @@
+package com.tractive.pettracker.api.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+// State report sent by a tracker; retries of the same report carry the same messageId, which is unique per tracker
+public record TrackerReportDTO(
+    @Size(max = 128) String messageId,
+    @NotBlank @Size(max = 64) String trackerId,
+    @NotNull @Valid PetRequestDTO pet
+) {}
@@ -0,0 +1,21 @@
+package com.tractive.pettracker.api.dto;
+
+public record TrackerReportResultDTO(
+    Status status,
+    Long id
+) {
+    // DUPLICATE: the same tracker sent this messageId recently and the report was dropped without touching storage
+    public enum Status { CREATED, UPDATED, DUPLICATE }
+
+    public static TrackerReportResultDTO created(Long id) {
+        return new TrackerReportResultDTO(Status.CREATED, id);
+    }
+
+    public static TrackerReportResultDTO updated(Long id) {
+        return new TrackerReportResultDTO(Status.UPDATED, id);
+    }
+
+    public static TrackerReportResultDTO duplicate(Long id) {
+        return new TrackerReportResultDTO(Status.DUPLICATE, id);
+    }
+}
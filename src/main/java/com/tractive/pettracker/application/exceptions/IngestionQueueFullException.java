@@ -0,0 +1,5 @@
+package com.tractive.pettracker.application.exceptions;
+
+public class IngestionQueueFullException extends RuntimeException {
+    public IngestionQueueFullException(String message) { super(message); }
+}
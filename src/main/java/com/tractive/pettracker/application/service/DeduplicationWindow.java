@@ -0,0 +1,45 @@
+package com.tractive.pettracker.application.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+
+// Bounded window of recently seen messages, used to drop tracker retries before they reach storage.
+// A message id is only unique per tracker (many trackers count their messages from 1), so messages are
+// told apart by owner, tracker and message id together.
+// A message is claimed before it is written and released again if the write fails, so a retry after
+// an error is processed instead of being taken for a duplicate.
+public class DeduplicationWindow {
+
+    public record Key(Integer ownerId, String trackerId, String messageId) {}
+
+    private static final long IN_FLIGHT = -1L;
+
+    private final Cache<Key, Long> seen;
+
+    public DeduplicationWindow(long maximumSize, Duration window) {
+        this.seen = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(window)
+            .build();
+    }
+
+    // Returns true if the caller is the first to see this message within the window
+    public boolean claim(Key message) {
+        return seen.asMap().putIfAbsent(message, IN_FLIGHT) == null;
+    }
+
+    public void complete(Key message, Long petId) {
+        seen.put(message, petId);
+    }
+
+    public void release(Key message) {
+        seen.invalidate(message);
+    }
+
+    // Pet the message was applied to, or null while the first delivery is still being written
+    public Long resultOf(Key message) {
+        Long petId = seen.getIfPresent(message);
+        return petId != null && petId != IN_FLIGHT ? petId : null;
+    }
+}
@@ -0,0 +1,50 @@
+package com.tractive.pettracker.application.service;
+
+import com.tractive.pettracker.domain.PowerSavingZone;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Power-saving zones by owner, ready for lookups on the fix ingestion path.
+// A fix only ever concerns the zones of its pet's owner, so the owner id is the first level of the index
+// and a lookup touches a handful of polygons. Reads take no lock; writers publish whole polygon arrays.
+public class GeofenceIndex {
+
+    private volatile Map<Integer, ZonePolygon[]> byOwner = new ConcurrentHashMap<>();
+
+    // null if the owner has no zones, so the caller can tell "outside every zone" from "nothing to evaluate"
+    public Boolean contains(int ownerId, double lat, double lon) {
+        ZonePolygon[] zones = byOwner.get(ownerId);
+        if (zones == null) return null;
+        for (ZonePolygon zone : zones) {
+            if (zone.contains(lat, lon)) return true;
+        }
+        return false;
+    }
+
+    public void replace(Integer ownerId, List<PowerSavingZone> zones) {
+        if (zones.isEmpty()) byOwner.remove(ownerId);
+        else byOwner.put(ownerId, prepare(zones));
+    }
+
+    // Builds the whole index aside and swaps it in, so lookups never see a half-loaded state
+    public void load(List<PowerSavingZone> all) {
+        Map<Integer, List<PowerSavingZone>> grouped = new HashMap<>();
+        for (PowerSavingZone zone : all) grouped.computeIfAbsent(zone.getOwnerId(), k -> new ArrayList<>()).add(zone);
+        Map<Integer, ZonePolygon[]> next = new ConcurrentHashMap<>(Math.max(16, grouped.size() * 2));
+        grouped.forEach((ownerId, zones) -> next.put(ownerId, prepare(zones)));
+        byOwner = next;
+    }
+
+    public int ownerCount() {
+        return byOwner.size();
+    }
+
+    private static ZonePolygon[] prepare(List<PowerSavingZone> zones) {
+        ZonePolygon[] prepared = new ZonePolygon[zones.size()];
+        for (int i = 0; i < prepared.length; i++) prepared[i] = new ZonePolygon(zones.get(i).getVertices());
+        return prepared;
+    }
+}
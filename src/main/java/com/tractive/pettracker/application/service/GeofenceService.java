@@ -0,0 +1,12 @@
+package com.tractive.pettracker.application.service;
+
+import com.tractive.pettracker.api.dto.LocationFixDTO;
+import com.tractive.pettracker.api.dto.LocationFixResultDTO;
+import com.tractive.pettracker.api.dto.PowerSavingZoneDTO;
+import java.util.List;
+
+public interface GeofenceService {
+    List<PowerSavingZoneDTO> zones(Integer ownerId);
+    List<PowerSavingZoneDTO> replaceZones(Integer ownerId, List<PowerSavingZoneDTO> zones);
+    LocationFixResultDTO ingest(List<LocationFixDTO> fixes);
+}
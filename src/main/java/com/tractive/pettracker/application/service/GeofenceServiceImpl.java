@@ -0,0 +1,189 @@
+package com.tractive.pettracker.application.service;
+
+import com.tractive.pettracker.api.dto.GeoPointDTO;
+import com.tractive.pettracker.api.dto.LocationFixDTO;
+import com.tractive.pettracker.api.dto.LocationFixResultDTO;
+import com.tractive.pettracker.api.dto.PowerSavingZoneDTO;
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.data.PositionHistoryRepository;
+import com.tractive.pettracker.data.PowerSavingZoneRepository;
+import com.tractive.pettracker.domain.GeoPoint;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetPatch;
+import com.tractive.pettracker.domain.PositionSample;
+import com.tractive.pettracker.domain.PowerSavingZone;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.observation.annotation.Observed;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+// Derives inZone from raw fixes instead of trusting the tracker's own flag.
+// A fix costs a pet lookup (served by the findById cache) and a test against the owner's zones in memory;
+// only a fix that changes the pet's inZone is written, as a patch, so the out-of-zone counters, the zone
+// event log and the summary stream see it like any other transition. Most fixes write nothing to the pet;
+// every evaluated fix is appended to the pet's buffered location history.
+// recordedAt is event time: a fix older than one already evaluated for the pet (late or backfilled) still
+// goes into the history, but is not applied to the pet, whose state is that of its latest fix.
+// Fixes of the same pet are evaluated one at a time on a node: batches arriving together would otherwise compare
+// against the same state read before either wrote, and a fix finding its zone state "unchanged" could be
+// overtaken by an older fix's write.
+@Service
+@Observed(name = "pettracker.service")
+public class GeofenceServiceImpl implements GeofenceService {
+
+    private static final Counter TRANSITIONS = Metrics.counter("pettracker.geofence.transitions");
+    // Pets whose latest fix time is remembered. A pet not heard from for LATEST_FIX_RETENTION (or pushed out
+    // by LATEST_FIX_PETS more recent ones) is forgotten, and its next fix is applied however old it is.
+    private static final int LATEST_FIX_PETS = 1_000_000;
+    private static final Duration LATEST_FIX_RETENTION = Duration.ofHours(1);
+    // ReentrantLock rather than monitors: request threads are virtual and the lock is held across JDBC calls
+    private static final int PET_LOCKS = 1024;
+
+    private final PetRepository petRepository;
+    private final PowerSavingZoneRepository zoneRepository;
+    private final PositionHistoryRepository historyRepository;
+    private final GeofenceIndex index = new GeofenceIndex();
+    // epoch millis of the latest fix evaluated per pet
+    private final Cache<Long, Long> latestFix = Caffeine.newBuilder()
+        .maximumSize(LATEST_FIX_PETS)
+        .expireAfterAccess(LATEST_FIX_RETENTION)
+        .build();
+    // zone writes of this node so far, guarded by this
+    private long zoneWrites;
+    private final ReentrantLock[] petLocks = new ReentrantLock[PET_LOCKS];
+
+    public GeofenceServiceImpl(PetRepository petRepository, PowerSavingZoneRepository zoneRepository, PositionHistoryRepository historyRepository) {
+        this.petRepository = petRepository;
+        this.zoneRepository = zoneRepository;
+        this.historyRepository = historyRepository;
+        for (int i = 0; i < PET_LOCKS; i++) petLocks[i] = new ReentrantLock();
+        Metrics.gauge("pettracker.geofence.owners", index, GeofenceIndex::ownerCount);
+    }
+
+    @Override
+    public List<PowerSavingZoneDTO> zones(Integer ownerId) {
+        return toDtos(zoneRepository.findByOwner(ownerId));
+    }
+
+    // Serialized with other zone writes, so the index ends up with whichever write committed last. Each one
+    // moves zoneWrites, which tells a refresh that read the table before it not to swap the old zones back in.
+    @Override
+    public synchronized List<PowerSavingZoneDTO> replaceZones(Integer ownerId, List<PowerSavingZoneDTO> zones) {
+        Assert.notNull(zones, "zones must not be null");
+        List<PowerSavingZone> domain = new ArrayList<>(zones.size());
+        for (PowerSavingZoneDTO zone : zones) domain.add(toDomain(ownerId, zone));
+        List<PowerSavingZone> stored = zoneRepository.replaceForOwner(ownerId, domain);
+        index.replace(ownerId, stored);
+        zoneWrites++;
+        return toDtos(stored);
+    }
+
+    @Override
+    public LocationFixResultDTO ingest(List<LocationFixDTO> fixes) {
+        Assert.notNull(fixes, "fixes must not be null");
+        Instant received = Instant.now();
+        int transitions = 0, unchanged = 0, late = 0, unknownPets = 0, withoutZones = 0, rejected = 0;
+        for (LocationFixDTO fix : fixes) {
+            if (!valid(fix)) {
+                rejected++;
+                continue;
+            }
+            switch (evaluate(fix, received)) {
+                case TRANSITION -> transitions++;
+                case UNCHANGED -> unchanged++;
+                case LATE -> late++;
+                case UNKNOWN_PET -> unknownPets++;
+                case WITHOUT_ZONES -> withoutZones++;
+            }
+        }
+        TRANSITIONS.increment(transitions);
+        return new LocationFixResultDTO(fixes.size(), transitions, unchanged, late, unknownPets, withoutZones, rejected);
+    }
+
+    private enum Outcome { TRANSITION, UNCHANGED, LATE, UNKNOWN_PET, WITHOUT_ZONES }
+
+    // Holds the pet's lock from the lookup to the patch, so the state compared against is the one the
+    // previous fix of the pet left behind (the findById cache is invalidated by that patch)
+    private Outcome evaluate(LocationFixDTO fix, Instant received) {
+        ReentrantLock lock = petLocks[Math.floorMod(fix.petId().hashCode(), PET_LOCKS)];
+        lock.lock();
+        try {
+            Optional<Pet> pet = petRepository.findById(fix.petId());
+            if (pet.isEmpty()) return Outcome.UNKNOWN_PET;
+            Boolean inZone = index.contains(pet.get().getOwnerId(), fix.lat(), fix.lon());
+            Instant at = fix.recordedAt() != null ? fix.recordedAt() : received;
+            // without zones the history keeps the zone state the pet reported itself
+            boolean zoneFlag = inZone != null ? inZone : Boolean.TRUE.equals(pet.get().getInZone());
+            historyRepository.append(fix.petId(), new PositionSample(at, fix.lat(), fix.lon(), zoneFlag));
+            boolean latest = isLatest(fix.petId(), at);
+            if (inZone == null) return Outcome.WITHOUT_ZONES;
+            if (!latest) return Outcome.LATE;
+            if (inZone.equals(pet.get().getInZone())) return Outcome.UNCHANGED;
+            // empty if deleted since the lookup
+            return petRepository.patch(fix.petId(), new PetPatch(inZone, null)).isPresent() ? Outcome.TRANSITION : Outcome.UNKNOWN_PET;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Zones written on other nodes become visible here with the next refresh
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+        initialDelayString = "${pettracker.geofence.refresh-interval:PT1M}",
+        fixedDelayString = "${pettracker.geofence.refresh-interval:PT1M}"
+    )
+    // The table is read without holding the lock, so zone writes do not wait for a full reload. A reload
+    // that overlapped a zone write is dropped; the write is already in the index, and the next refresh
+    // brings in whatever other nodes wrote.
+    public void refresh() {
+        long seen;
+        synchronized (this) {
+            seen = zoneWrites;
+        }
+        List<PowerSavingZone> zones = zoneRepository.findAll();
+        synchronized (this) {
+            if (zoneWrites == seen) index.load(zones);
+        }
+    }
+
+    // Records at as the pet's latest fix time unless a later one is known; a fix taken at the same
+    // millisecond as the latest still counts as latest
+    private boolean isLatest(Long petId, Instant at) {
+        long millis = at.toEpochMilli();
+        return latestFix.asMap().merge(petId, millis, Math::max) == millis;
+    }
+
+    private static boolean valid(LocationFixDTO fix) {
+        return fix != null && fix.petId() != null
+            && fix.lat() != null && fix.lat() >= -90 && fix.lat() <= 90
+            && fix.lon() != null && fix.lon() >= -180 && fix.lon() <= 180;
+    }
+
+    private static PowerSavingZone toDomain(Integer ownerId, PowerSavingZoneDTO dto) {
+        List<GeoPoint> vertices = new ArrayList<>(dto.vertices().size());
+        for (GeoPointDTO p : dto.vertices()) vertices.add(new GeoPoint(p.lat(), p.lon()));
+        return new PowerSavingZone(null, ownerId, dto.name(), vertices);
+    }
+
+    private static List<PowerSavingZoneDTO> toDtos(List<PowerSavingZone> zones) {
+        List<PowerSavingZoneDTO> out = new ArrayList<>(zones.size());
+        for (PowerSavingZone zone : zones) {
+            List<GeoPointDTO> vertices = new ArrayList<>(zone.getVertices().size());
+            for (GeoPoint p : zone.getVertices()) vertices.add(new GeoPointDTO(p.getLat(), p.getLon()));
+            out.add(new PowerSavingZoneDTO(zone.getId(), zone.getName(), vertices));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,225 @@
+package com.tractive.pettracker.application.service;
+
+import com.tractive.pettracker.domain.Cat;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Log of the pets accepted by PetWriteBehindQueue, so an accepted pet survives a crash or a redeploy.
+// Records are framed as in the memory engine's journal, [length][crc32][payload], and a record torn by a
+// crash reads as the end of its segment. Every accepted pet is forced to disk before it is acknowledged;
+// concurrent acknowledgements share one force. After each commit the writer appends a marker with the
+// last sequence number it handled, and segments before the one of that pet are deleted. Startup hands
+// back the pets after the last marker. A crash between a commit and its marker reaching the disk creates
+// those pets twice, so delivery is at least once.
+class PetIngestLog implements AutoCloseable {
+
+    record Entry(Pet pet, long seq, long segment, long end) {}
+
+    private static final byte PET = 1;
+    private static final byte COMMITTED = 2;
+    private static final int HEADER = 8;
+    private static final int PET_PAYLOAD = 1 + 8 + 4 + 1 + 1 + 1 + 1;
+    private static final int COMMITTED_PAYLOAD = 1 + 8;
+    private static final byte NULL = 2;
+    private static final long SEGMENT_SIZE = 16L << 20;
+
+    private final Path directory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Object syncLock = new Object();
+    private final CRC32 crc = new CRC32();
+    private final List<Entry> pending;
+    private FileChannel channel;
+    private long segmentNumber;
+    private long segmentBytes;
+    private long nextSeq;
+    private long written;
+    private volatile long synced;
+    private long oldestSegment;
+
+    private PetIngestLog(Path directory, List<Entry> pending) {
+        this.directory = directory;
+        this.pending = pending;
+    }
+
+    // Reads the pets not yet marked committed and starts a fresh segment after the existing ones
+    static PetIngestLog open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        List<Long> segments = segmentNumbers(directory);
+        List<Entry> read = new ArrayList<>();
+        long committed = -1;
+        long lastSeq = -1;
+        for (long number : segments) {
+            ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(segmentPath(directory, number)));
+            CRC32 check = new CRC32();
+            while (log.remaining() >= HEADER) {
+                int length = log.getInt();
+                int checksum = log.getInt();
+                if (length <= 0 || length > log.remaining()) break;
+                check.reset();
+                check.update(log.array(), log.position(), length);
+                if ((int) check.getValue() != checksum) break;
+                ByteBuffer record = log.slice(log.position(), length);
+                log.position(log.position() + length);
+                byte type = record.get();
+                long seq = record.getLong();
+                if (type == PET) {
+                    read.add(new Entry(readPet(record), seq, number, 0));
+                    lastSeq = Math.max(lastSeq, seq);
+                } else if (type == COMMITTED) {
+                    committed = Math.max(committed, seq);
+                }
+            }
+        }
+        List<Entry> pending = new ArrayList<>();
+        for (Entry entry : read) if (entry.seq() > committed) pending.add(entry);
+
+        PetIngestLog log = new PetIngestLog(directory, pending);
+        log.nextSeq = Math.max(lastSeq, committed) + 1;
+        log.oldestSegment = segments.isEmpty() ? 0 : segments.getFirst();
+        log.map(segments.isEmpty() ? 0 : segments.getLast() + 1);
+        return log;
+    }
+
+    // Pets accepted before the last shutdown or crash and not committed since, in the order they were accepted
+    List<Entry> pending() {
+        return pending;
+    }
+
+    // Written to the page cache only; the pet counts as accepted once sync has returned for it
+    Entry append(Pet pet) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(PET_PAYLOAD);
+        lock.lock();
+        try {
+            long seq = nextSeq++;
+            payload.put(PET)
+                .putLong(seq)
+                .putInt(pet.getOwnerId())
+                .put((byte) pet.getPetType().ordinal())
+                .put((byte) pet.getTrackerType().ordinal())
+                .put(flag(pet.getInZone()))
+                .put(flag(pet instanceof Cat cat ? cat.getLostTracker() : null));
+            write(payload.array());
+            return new Entry(pet, seq, segmentNumber, written);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns once everything up to end is on disk. A caller arriving while another one forces waits for it
+    // and usually finds its own record covered.
+    void sync(long end) throws IOException {
+        if (synced >= end) return;
+        synchronized (syncLock) {
+            if (synced >= end) return;
+            long target;
+            FileChannel current;
+            lock.lock();
+            try {
+                target = written;
+                current = channel;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                current.force(false);
+            } catch (ClosedChannelException e) {
+                // rotated in the meantime; rotation forces the old segment before closing it
+            }
+            synced = target;
+        }
+    }
+
+    // Everything up to last has been committed or dead-lettered; called by the single writer only
+    void committed(Entry last) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(COMMITTED_PAYLOAD).put(COMMITTED).putLong(last.seq());
+        lock.lock();
+        try {
+            write(payload.array());
+        } finally {
+            lock.unlock();
+        }
+        for (; oldestSegment < last.segment(); oldestSegment++) Files.deleteIfExists(segmentPath(directory, oldestSegment));
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(byte[] payload) throws IOException {
+        if (segmentBytes + HEADER + payload.length > SEGMENT_SIZE) {
+            channel.force(false);
+            channel.close();
+            map(segmentNumber + 1);
+        }
+        crc.reset();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER + payload.length)
+            .putInt(payload.length)
+            .putInt((int) crc.getValue())
+            .put(payload)
+            .flip();
+        while (record.hasRemaining()) channel.write(record);
+        segmentBytes += HEADER + payload.length;
+        written += HEADER + payload.length;
+    }
+
+    private void map(long number) throws IOException {
+        channel = FileChannel.open(segmentPath(directory, number), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentNumber = number;
+        segmentBytes = 0;
+    }
+
+    private static Pet readPet(ByteBuffer record) {
+        int ownerId = record.getInt();
+        PetType petType = PetType.values()[record.get()];
+        TrackerType trackerType = TrackerType.values()[record.get()];
+        Boolean inZone = unflag(record.get());
+        Boolean lostTracker = unflag(record.get());
+        return petType == PetType.CAT
+            ? new Cat(null, trackerType, ownerId, inZone, lostTracker)
+            : new Pet(null, petType, trackerType, ownerId, inZone);
+    }
+
+    private static byte flag(Boolean value) {
+        return value == null ? NULL : (byte) (value ? 1 : 0);
+    }
+
+    private static Boolean unflag(byte value) {
+        return value == NULL ? null : value == 1;
+    }
+
+    private static List<Long> segmentNumbers(Path directory) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith("ingest-") && name.endsWith(".log"))
+                .forEach(name -> numbers.add(Long.parseLong(name.substring(7, name.length() - 4))));
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    private static Path segmentPath(Path directory, long number) {
+        return directory.resolve("ingest-%010d.log".formatted(number));
+    }
+}
@@ -1,14 +1,39 @@
 package com.tractive.pettracker.application.service;
 
+import com.tractive.pettracker.api.dto.BatchResultDTO;
+import com.tractive.pettracker.api.dto.OutOfZoneDwellDTO;
 import com.tractive.pettracker.api.dto.OutsideZoneSummaryDTO;
+import com.tractive.pettracker.api.dto.OwnerOutOfZoneDwellDTO;
+import com.tractive.pettracker.api.dto.PetPatchDTO;
 import com.tractive.pettracker.api.dto.PetRequestDTO;
 import com.tractive.pettracker.api.dto.PetResponseDTO;
+import com.tractive.pettracker.api.dto.PetSummaryDTO;
+import com.tractive.pettracker.api.dto.PetSummaryFilterDTO;
+import com.tractive.pettracker.api.dto.TrackerReportDTO;
+import com.tractive.pettracker.api.dto.TrackerReportResultDTO;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 
 public interface PetService {
     PetResponseDTO create(PetRequestDTO dto);
+    // false when accepted pets could not survive a crash; the pet is then not taken
+    boolean createAsync(PetRequestDTO dto);
+    BatchResultDTO createBatch(List<PetRequestDTO> dtos);
     PetResponseDTO update(Long id, PetRequestDTO dto);
+    PetResponseDTO updateIfVersion(Long id, PetRequestDTO dto, long expectedVersion);
+    PetResponseDTO patch(Long id, PetPatchDTO dto);
+    TrackerReportResultDTO report(TrackerReportDTO report);
     PetResponseDTO getById(Long id);
-    List<PetResponseDTO> list();
+    long versionOf(Long id);
+    List<PetResponseDTO> list(Long after, int limit);
+    List<PetResponseDTO> listByOwner(Integer ownerId, Long after, int limit);
     List<OutsideZoneSummaryDTO> outOfZoneSummary();
+    long outOfZoneSummaryGeneration();
+    List<OutsideZoneSummaryDTO> outOfZoneSummaryByOwner(Integer ownerId);
+    List<OutsideZoneSummaryDTO> outOfZoneSummaryAt(Instant at);
+    // time outside over the last window, in one sliding window ending now or, with a step, in tumbling windows of step
+    List<OutOfZoneDwellDTO> outOfZoneDwell(Duration window, Duration step);
+    List<OwnerOutOfZoneDwellDTO> outOfZoneDwellByOwner(Integer ownerId, Duration window, Duration step);
+    List<PetSummaryDTO> summary(PetSummaryFilterDTO filter);
 }
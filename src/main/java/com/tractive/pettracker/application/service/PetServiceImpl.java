@@ -1,26 +1,68 @@
 package com.tractive.pettracker.application.service;
 
+import com.tractive.pettracker.api.dto.BatchItemResultDTO;
+import com.tractive.pettracker.api.dto.BatchResultDTO;
+import com.tractive.pettracker.api.dto.OutOfZoneDwellDTO;
 import com.tractive.pettracker.api.dto.OutsideZoneSummaryDTO;
+import com.tractive.pettracker.api.dto.OwnerOutOfZoneDwellDTO;
+import com.tractive.pettracker.api.dto.PetPatchDTO;
 import com.tractive.pettracker.api.dto.PetRequestDTO;
 import com.tractive.pettracker.api.dto.PetResponseDTO;
+import com.tractive.pettracker.api.dto.PetSummaryDTO;
+import com.tractive.pettracker.api.dto.PetSummaryFilterDTO;
+import com.tractive.pettracker.api.dto.TrackerReportDTO;
+import com.tractive.pettracker.api.dto.TrackerReportResultDTO;
+import com.tractive.pettracker.application.exceptions.IngestionQueueFullException;
 import com.tractive.pettracker.application.exceptions.NotFoundException;
+import com.tractive.pettracker.data.OutOfZoneDwellTime;
 import com.tractive.pettracker.data.PetRepository;
 import com.tractive.pettracker.domain.Cat;
 import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.OutOfZoneDwell;
 import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetCount;
+import com.tractive.pettracker.domain.PetPatch;
+import com.tractive.pettracker.domain.PetSummaryDimension;
+import com.tractive.pettracker.domain.PetSummaryQuery;
 import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.PetUpsertResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
 @Service
+@Observed(name = "pettracker.service")
 public class PetServiceImpl implements PetService {
 
+    private static final Timer DTO_MAPPING = Metrics.timer("pettracker.mapping", "from", "domain", "to", "dto");
+    private static final Counter DUPLICATE_REPORTS = Metrics.counter("pettracker.ingest.duplicates");
+    private static final Counter UPDATE_RETRIES = Metrics.counter("pettracker.update.retries");
+    private static final int UPDATE_ATTEMPTS = 3;
+    private static final List<PetSummaryDimension> DEFAULT_GROUPING = List.of(PetSummaryDimension.PET_TYPE, PetSummaryDimension.TRACKER_TYPE);
+
     private final PetRepository petRepository;
+    private final Validator validator;
+    private final DeduplicationWindow deduplication;
+    private final PetWriteBehindQueue writeBehind;
 
-    public PetServiceImpl(PetRepository petRepository) {
+    public PetServiceImpl(PetRepository petRepository, Validator validator, DeduplicationWindow deduplication, PetWriteBehindQueue writeBehind) {
         this.petRepository = petRepository;
+        this.validator = validator;
+        this.deduplication = deduplication;
+        this.writeBehind = writeBehind;
     }
 
     @Override
@@ -31,12 +73,122 @@ public class PetServiceImpl implements PetService {
         return toResponse(saved);
     }
 
+    // Accepted once the pet is in the write-behind log on disk; the id is assigned when the writer commits
+    // the batch. Without a log nothing is accepted, so no 202 is given for a pet a crash could lose.
+    @Override
+    public boolean createAsync(PetRequestDTO petRequestDTO) {
+        Assert.notNull(petRequestDTO, "pet must not be null");
+        if (!writeBehind.isDurable()) return false;
+        if (!writeBehind.offer(toDomain(null, petRequestDTO))) {
+            throw new IngestionQueueFullException("Ingestion queue is full, retry later");
+        }
+        return true;
+    }
+
+    // Invalid items are reported individually instead of failing the whole batch;
+    // the valid ones are persisted together in one transaction.
+    @Override
+    public BatchResultDTO createBatch(List<PetRequestDTO> dtos) {
+        Assert.notNull(dtos, "pets must not be null");
+        BatchItemResultDTO[] results = new BatchItemResultDTO[dtos.size()];
+        List<Integer> validIndexes = new ArrayList<>(dtos.size());
+        List<Pet> valid = new ArrayList<>(dtos.size());
+        for (int i = 0; i < dtos.size(); i++) {
+            Map<String, String> errors = validate(dtos.get(i));
+            if (errors.isEmpty()) {
+                validIndexes.add(i);
+                valid.add(toDomain(null, dtos.get(i)));
+            } else {
+                results[i] = BatchItemResultDTO.invalid(i, errors);
+            }
+        }
+
+        List<Pet> saved = valid.isEmpty() ? List.of() : petRepository.saveAll(valid);
+        for (int i = 0; i < saved.size(); i++) {
+            int index = validIndexes.get(i);
+            results[index] = BatchItemResultDTO.created(index, saved.get(i).getId());
+        }
+        return new BatchResultDTO(saved.size(), dtos.size() - saved.size(), List.of(results));
+    }
+
+    // Without If-Match the PUT is checked against the version the pet had when it was read here, so a write
+    // committed in between fails it with 409 instead of being overwritten. Only a zone flip commutes with other
+    // writes: it is retried a bounded number of times, each time applied to the freshly read row.
     @Override
     public PetResponseDTO update(Long id, PetRequestDTO dto) {
+        // version before the pet: a write between the two reads fails the update rather than being lost
+        long version = versionOf(id);
         Pet existing = petRepository.findById(id).orElseThrow(() -> new NotFoundException("Pet %d not found".formatted(id)));
         Pet updated = toDomain(existing.getId(), dto);
-        Pet saved = petRepository.update(updated);
-        return toResponse(saved);
+        PetPatch flip = zoneFlip(existing, updated);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return toResponse(petRepository.update(updated, version));
+            } catch (OptimisticLockingFailureException e) {
+                if (flip == null || attempt == UPDATE_ATTEMPTS) throw e;
+                UPDATE_RETRIES.increment();
+                version = versionOf(id);
+                updated = flip.applyTo(petRepository.findById(id).orElseThrow(() -> new NotFoundException("Pet %d not found".formatted(id))));
+            }
+        }
+    }
+
+    // The change as a patch if it only sets the zone and lost-tracker flags, which another write to the
+    // pet's type, tracker or owner does not invalidate; null for any other change
+    private static PetPatch zoneFlip(Pet existing, Pet updated) {
+        if (existing.getPetType() != updated.getPetType()
+            || existing.getTrackerType() != updated.getTrackerType()
+            || !existing.getOwnerId().equals(updated.getOwnerId())) return null;
+        return new PetPatch(updated.getInZone(), updated instanceof Cat cat ? cat.getLostTracker() : null);
+    }
+
+    // The client decided based on expectedVersion, so a conflict is not retried but reported
+    @Override
+    public PetResponseDTO updateIfVersion(Long id, PetRequestDTO dto, long expectedVersion) {
+        Pet existing = petRepository.findById(id).orElseThrow(() -> new NotFoundException("Pet %d not found".formatted(id)));
+        return toResponse(petRepository.update(toDomain(existing.getId(), dto), expectedVersion));
+    }
+
+    // No existence check up front: the repository reports a missing pet from the affected row
+    @Override
+    public PetResponseDTO patch(Long id, PetPatchDTO dto) {
+        Assert.notNull(dto, "patch must not be null");
+        Pet patched = petRepository.patch(id, new PetPatch(dto.inZone(), dto.lostTracker()))
+            .orElseThrow(() -> new NotFoundException("Pet %d not found".formatted(id)));
+        return toResponse(patched);
+    }
+
+    // Retries of a report are dropped by (ownerId, trackerId, messageId) before any storage access. A report
+    // whose write fails is released from the window again, so the tracker's next retry is processed.
+    @Override
+    public TrackerReportResultDTO report(TrackerReportDTO report) {
+        Assert.notNull(report, "report must not be null");
+        DeduplicationWindow.Key message = report.messageId() != null
+            ? new DeduplicationWindow.Key(report.pet().ownerId(), report.trackerId(), report.messageId())
+            : null;
+        if (message != null && !deduplication.claim(message)) {
+            DUPLICATE_REPORTS.increment();
+            return TrackerReportResultDTO.duplicate(deduplication.resultOf(message));
+        }
+        try {
+            PetUpsertResult result = upsert(report.trackerId(), toDomain(null, report.pet()));
+            Long id = result.getPet().getId();
+            if (message != null) deduplication.complete(message, id);
+            return result.isCreated() ? TrackerReportResultDTO.created(id) : TrackerReportResultDTO.updated(id);
+        } catch (RuntimeException e) {
+            if (message != null) deduplication.release(message);
+            throw e;
+        }
+    }
+
+    // The first two reports of a new tracker can both take the insert branch; the loser hits the
+    // unique index and is retried once, when the row exists and the upsert becomes an update.
+    private PetUpsertResult upsert(String trackerId, Pet pet) {
+        try {
+            return petRepository.upsertByTracker(trackerId, pet);
+        } catch (DataIntegrityViolationException e) {
+            return petRepository.upsertByTracker(trackerId, pet);
+        }
     }
 
     @Override
@@ -45,17 +197,111 @@ public class PetServiceImpl implements PetService {
         return toResponse(pet);
     }
 
+    // Read ahead of the pet by conditional GETs: a write in between makes the tag older than the body,
+    // which costs the client one more full response instead of a 304 for a state it has not seen
+    @Override
+    public long versionOf(Long id) {
+        return petRepository.findVersion(id).orElseThrow(() -> new NotFoundException("Pet %d not found".formatted(id)));
+    }
+
+    @Override
+    public List<PetResponseDTO> list(Long after, int limit) {
+        return toResponses(petRepository.findPage(after, limit));
+    }
+
+    // An owner without pets gets an empty page rather than 404: owners are not stored on their own
     @Override
-    public List<PetResponseDTO> list() {
-        List<Pet> pets = petRepository.findAll();
-        List<PetResponseDTO> petDtoList = new ArrayList<>();
-        for (Pet p : pets) petDtoList.add(toResponse(p));
-        return petDtoList;
+    public List<PetResponseDTO> listByOwner(Integer ownerId, Long after, int limit) {
+        Assert.notNull(ownerId, "ownerId must not be null");
+        return toResponses(petRepository.findPageByOwner(ownerId, after, limit));
     }
 
     @Override
     public List<OutsideZoneSummaryDTO> outOfZoneSummary() {
-        List<OutOfZoneCount> counts = petRepository.countOutsideZoneGrouped();
+        return toSummary(petRepository.countOutsideZoneGrouped());
+    }
+
+    @Override
+    public long outOfZoneSummaryGeneration() {
+        return petRepository.outOfZoneGeneration();
+    }
+
+    @Override
+    public List<OutsideZoneSummaryDTO> outOfZoneSummaryByOwner(Integer ownerId) {
+        Assert.notNull(ownerId, "ownerId must not be null");
+        return toSummary(petRepository.countOutsideZoneGroupedByOwner(ownerId));
+    }
+
+    @Override
+    public List<OutsideZoneSummaryDTO> outOfZoneSummaryAt(Instant at) {
+        Assert.notNull(at, "at must not be null");
+        return toSummary(petRepository.countOutsideZoneGroupedAt(at));
+    }
+
+    @Override
+    public List<OutOfZoneDwellDTO> outOfZoneDwell(Duration window, Duration step) {
+        Assert.notNull(window, "window must not be null");
+        Instant now = Instant.now();
+        Instant from = dwellStart(now, window, step);
+        List<OutOfZoneDwellDTO> out = new ArrayList<>();
+        for (OutOfZoneDwell d : petRepository.outOfZoneDwell(from, step != null ? step : Duration.between(from, now))) {
+            out.add(new OutOfZoneDwellDTO(d.getPetType(), d.getTrackerType(), d.getFrom(), d.getTo(), d.getOutsideMillis() / 1000, average(d)));
+        }
+        return out;
+    }
+
+    @Override
+    public List<OwnerOutOfZoneDwellDTO> outOfZoneDwellByOwner(Integer ownerId, Duration window, Duration step) {
+        Assert.notNull(ownerId, "ownerId must not be null");
+        Assert.notNull(window, "window must not be null");
+        Instant now = Instant.now();
+        Instant from = dwellStart(now, window, step);
+        List<OwnerOutOfZoneDwellDTO> out = new ArrayList<>();
+        for (OutOfZoneDwell d : petRepository.outOfZoneDwellByOwner(ownerId, from, step != null ? step : Duration.between(from, now))) {
+            out.add(new OwnerOutOfZoneDwellDTO(d.getFrom(), d.getTo(), d.getOutsideMillis() / 1000, average(d)));
+        }
+        return out;
+    }
+
+    // Windows start on whole minutes, the resolution the dwell time is kept at. Tumbling windows are aligned
+    // to multiples of step, so the same window reads the same from one request to the next; the last one is
+    // the current, still open window.
+    private static Instant dwellStart(Instant now, Duration window, Duration step) {
+        long resolution = OutOfZoneDwellTime.RESOLUTION.toMillis();
+        if (step == null) return Instant.ofEpochMilli(Math.floorDiv(now.minus(window).toEpochMilli(), resolution) * resolution);
+        long current = Math.floorDiv(now.toEpochMilli(), step.toMillis()) * step.toMillis();
+        return Instant.ofEpochMilli(current + step.toMillis() - window.toMillis());
+    }
+
+    private static double average(OutOfZoneDwell dwell) {
+        long length = Duration.between(dwell.getFrom(), dwell.getTo()).toMillis();
+        return length > 0 ? (double) dwell.getOutsideMillis() / length : 0;
+    }
+
+    // Without groupBy the counts are per pet type and tracker type, like the out-of-zone summary
+    @Override
+    public List<PetSummaryDTO> summary(PetSummaryFilterDTO filter) {
+        Assert.notNull(filter, "filter must not be null");
+        List<PetSummaryDimension> groupBy = filter.groupBy() != null && !filter.groupBy().isEmpty() ? filter.groupBy() : DEFAULT_GROUPING;
+        PetSummaryQuery query = new PetSummaryQuery(
+            filter.inZone(), filter.petType(), filter.trackerType(), filter.lostTracker(), filter.ownerFrom(), filter.ownerTo(), groupBy
+        );
+        List<PetSummaryDTO> out = new ArrayList<>();
+        for (PetCount c : petRepository.summarize(query)) {
+            out.add(new PetSummaryDTO(c.getPetType(), c.getTrackerType(), c.getInZone(), c.getLostTracker(), c.getCount()));
+        }
+        return out;
+    }
+
+    private List<PetResponseDTO> toResponses(List<Pet> pets) {
+        return DTO_MAPPING.record(() -> {
+            List<PetResponseDTO> petDtoList = new ArrayList<>(pets.size());
+            for (Pet p : pets) petDtoList.add(toResponse(p));
+            return petDtoList;
+        });
+    }
+
+    private static List<OutsideZoneSummaryDTO> toSummary(List<OutOfZoneCount> counts) {
         List<OutsideZoneSummaryDTO> out = new ArrayList<>();
         for (OutOfZoneCount c : counts) {
             out.add(new OutsideZoneSummaryDTO(c.getPetType(), c.getTrackerType(), c.getCount()));
@@ -64,6 +310,18 @@ public class PetServiceImpl implements PetService {
     }
 
 
+    private Map<String, String> validate(PetRequestDTO dto) {
+        Map<String, String> errors = new HashMap<>();
+        if (dto == null) {
+            errors.put("pet", "must not be null");
+            return errors;
+        }
+        for (ConstraintViolation<PetRequestDTO> v : validator.validate(dto)) {
+            errors.put(v.getPropertyPath().toString(), v.getMessage());
+        }
+        return errors;
+    }
+
     // Add validation to ensure that if is not cat and has lost tracker throws an error
     private Pet toDomain(Long id, PetRequestDTO petRequestDTO) {
         if (petRequestDTO.petType() == PetType.CAT) {
@@ -0,0 +1,231 @@
+package com.tractive.pettracker.application.service;
+
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.domain.Cat;
+import com.tractive.pettracker.domain.Pet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+// Bounded write-behind buffer in front of PetRepository.saveAll.
+// Request threads only enqueue; a single writer drains whatever has accumulated (up to maxBatch) and
+// commits it as one transaction, so under load many reports share one commit. A full buffer is
+// reported to the caller instead of blocking it.
+// With a log directory every accepted pet is first forced to a PetIngestLog, and pets not committed before
+// a crash or redeploy are committed on the next start; without one the buffer is memory only and
+// offer refuses everything, so callers fall back to a synchronous write.
+// The callers already have their 202, so a failed commit does not drop the batch: transient failures
+// (lock timeouts, lost connections, an exhausted pool) are retried, and a batch rejected for its data is
+// committed pet by pet so only the pets that are rejected themselves fail. Those go to the
+// pettracker.ingest.deadletter log, one line per pet, to be replayed by hand.
+public class PetWriteBehindQueue implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(PetWriteBehindQueue.class);
+    private static final Logger deadLetters = LoggerFactory.getLogger("pettracker.ingest.deadletter");
+    private static final int COMMIT_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 200;
+    private static final long POLL_MILLIS = 100;
+    private static final long STOP_TIMEOUT_MILLIS = 10_000;
+
+    private final PetRepository petRepository;
+    private final BlockingQueue<PetIngestLog.Entry> queue;
+    private final int maxBatch;
+    private final PetIngestLog ingestLog;
+    // keeps the log and the buffer in the same order, so a commit marker covers every pet before it
+    private final ReentrantLock accepting = new ReentrantLock();
+    private final Timer commitLatency = Metrics.timer("pettracker.ingest.commit");
+    private final DistributionSummary batchSize = Metrics.summary("pettracker.ingest.batch.size");
+    private final Counter retried = Metrics.counter("pettracker.ingest.retried");
+    private final Counter failed = Metrics.counter("pettracker.ingest.failed");
+    private volatile boolean running;
+    private Thread writer;
+
+    // logDirectory null: not durable, every offer is refused
+    public PetWriteBehindQueue(PetRepository petRepository, int capacity, int maxBatch, Path logDirectory) throws IOException {
+        this.petRepository = petRepository;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.ingestLog = logDirectory != null ? PetIngestLog.open(logDirectory) : null;
+        Metrics.gauge("pettracker.ingest.queue.depth", queue, BlockingQueue::size);
+    }
+
+    public boolean isDurable() {
+        return ingestLog != null;
+    }
+
+    // True once the pet is on disk; false when the buffer is full or there is no log, and the pet is not taken
+    public boolean offer(Pet pet) {
+        if (ingestLog == null) return false;
+        PetIngestLog.Entry entry;
+        accepting.lock();
+        try {
+            // only the writer takes from the buffer, so the room checked here is still there below
+            if (queue.remainingCapacity() == 0) return false;
+            entry = ingestLog.append(pet);
+            queue.add(entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            accepting.unlock();
+        }
+        try {
+            ingestLog.sync(entry.end());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = Thread.ofPlatform().name("pet-write-behind").daemon(true).start(this::drain);
+    }
+
+    // Stops accepting work only after the web server is down, then commits what is left
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            writer.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) log.warn("Write-behind queue stopped with {} uncommitted pets, committed on the next start", queue.size());
+        if (ingestLog != null) {
+            try {
+                ingestLog.close();
+            } catch (IOException e) {
+                log.warn("Closing the write-behind log failed", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void drain() {
+        if (ingestLog != null && !ingestLog.pending().isEmpty()) {
+            List<PetIngestLog.Entry> pending = ingestLog.pending();
+            log.info("Committing {} pets accepted before the last stop", pending.size());
+            for (int from = 0; from < pending.size(); from += maxBatch) {
+                commit(pending.subList(from, Math.min(from + maxBatch, pending.size())));
+            }
+            pending.clear();
+        }
+        List<PetIngestLog.Entry> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PetIngestLog.Entry first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PetIngestLog.Entry> entries) {
+        List<Pet> batch = new ArrayList<>(entries.size());
+        for (PetIngestLog.Entry entry : entries) batch.add(entry.pet());
+        long start = System.nanoTime();
+        try {
+            saveWithRetry(batch);
+            batchSize.record(batch.size());
+        } catch (RuntimeException e) {
+            if (batch.size() == 1 || isTransient(e)) {
+                deadLetter(batch, e);
+                return;
+            }
+            log.warn("Write-behind commit of {} pets failed, committing them one by one", batch.size(), e);
+            for (Pet pet : batch) {
+                try {
+                    saveWithRetry(List.of(pet));
+                    batchSize.record(1);
+                } catch (RuntimeException single) {
+                    deadLetter(List.of(pet), single);
+                }
+            }
+        } finally {
+            commitLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            markCommitted(entries.getLast());
+        }
+    }
+
+    // A marker that fails to be written only means these pets are committed again after a restart
+    private void markCommitted(PetIngestLog.Entry last) {
+        if (ingestLog == null) return;
+        try {
+            ingestLog.committed(last);
+        } catch (IOException e) {
+            log.warn("Marking write-behind pets up to {} as committed failed", last.seq(), e);
+        }
+    }
+
+    private void saveWithRetry(List<Pet> pets) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                petRepository.saveAll(pets);
+                return;
+            } catch (RuntimeException e) {
+                if (!isTransient(e) || attempt == COMMIT_ATTEMPTS) throw e;
+                retried.increment();
+                log.warn("Write-behind commit of {} pets failed (attempt {}), retrying", pets.size(), attempt, e);
+                try {
+                    Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+            || e instanceof RecoverableDataAccessException
+            || e instanceof CannotCreateTransactionException;
+    }
+
+    private void deadLetter(List<Pet> pets, RuntimeException cause) {
+        failed.increment(pets.size());
+        log.error("Write-behind commit of {} pets failed, written to the dead-letter log", pets.size(), cause);
+        for (Pet pet : pets) {
+            deadLetters.error("ownerId={} petType={} trackerType={} inZone={} lostTracker={} cause={}",
+                pet.getOwnerId(), pet.getPetType(), pet.getTrackerType(), pet.getInZone(),
+                pet instanceof Cat cat ? cat.getLostTracker() : null, cause.getClass().getSimpleName());
+        }
+    }
+}
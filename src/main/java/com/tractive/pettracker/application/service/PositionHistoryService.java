@@ -0,0 +1,9 @@
+package com.tractive.pettracker.application.service;
+
+import com.tractive.pettracker.api.dto.PositionSampleDTO;
+import java.time.Instant;
+import java.util.List;
+
+public interface PositionHistoryService {
+    List<PositionSampleDTO> history(Long petId, Instant from, Instant to);
+}
@@ -0,0 +1,35 @@
+package com.tractive.pettracker.application.service;
+
+import com.tractive.pettracker.api.dto.PositionSampleDTO;
+import com.tractive.pettracker.application.exceptions.NotFoundException;
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.data.PositionHistoryRepository;
+import com.tractive.pettracker.domain.PositionSample;
+import io.micrometer.observation.annotation.Observed;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.stereotype.Service;
+
+@Service
+@Observed(name = "pettracker.service")
+public class PositionHistoryServiceImpl implements PositionHistoryService {
+
+    private final PetRepository petRepository;
+    private final PositionHistoryRepository historyRepository;
+
+    public PositionHistoryServiceImpl(PetRepository petRepository, PositionHistoryRepository historyRepository) {
+        this.petRepository = petRepository;
+        this.historyRepository = historyRepository;
+    }
+
+    @Override
+    public List<PositionSampleDTO> history(Long petId, Instant from, Instant to) {
+        // the version lookup is the cheapest existence check and keeps unknown ids apart from empty histories
+        petRepository.findVersion(petId).orElseThrow(() -> new NotFoundException("Pet %d not found".formatted(petId)));
+        List<PositionSample> samples = historyRepository.findRange(petId, from, to);
+        List<PositionSampleDTO> out = new ArrayList<>(samples.size());
+        for (PositionSample s : samples) out.add(new PositionSampleDTO(s.getAt(), s.getLat(), s.getLon(), s.isInZone()));
+        return out;
+    }
+}
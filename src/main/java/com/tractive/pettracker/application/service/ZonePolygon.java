@@ -0,0 +1,80 @@
+package com.tractive.pettracker.application.service;
+
+import com.tractive.pettracker.domain.GeoPoint;
+import java.util.List;
+
+// One zone prepared for point-in-polygon tests.
+// The bounding box rejects most points outright. Inside it, the polygon is cut into horizontal latitude bands
+// and each band keeps the edges that overlap it as flat (lat1, lon1, lat2, lon2) runs, so a ray cast only
+// looks at the few edges near the point instead of all of them, without allocating.
+final class ZonePolygon {
+
+    private static final int EDGES_PER_BAND = 4;
+    private static final int MAX_BANDS = 1024;
+
+    private final double minLat;
+    private final double maxLat;
+    private final double minLon;
+    private final double maxLon;
+    private final double bandHeight;
+    private final double[][] bands;
+
+    ZonePolygon(List<GeoPoint> vertices) {
+        int n = vertices.size();
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        double loLat = Double.POSITIVE_INFINITY, hiLat = Double.NEGATIVE_INFINITY;
+        double loLon = Double.POSITIVE_INFINITY, hiLon = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            lat[i] = vertices.get(i).getLat();
+            lon[i] = vertices.get(i).getLon();
+            loLat = Math.min(loLat, lat[i]);
+            hiLat = Math.max(hiLat, lat[i]);
+            loLon = Math.min(loLon, lon[i]);
+            hiLon = Math.max(hiLon, lon[i]);
+        }
+        this.minLat = loLat;
+        this.maxLat = hiLat;
+        this.minLon = loLon;
+        this.maxLon = hiLon;
+        int bandCount = hiLat > loLat ? Math.clamp(n / EDGES_PER_BAND, 1, MAX_BANDS) : 1;
+        this.bandHeight = hiLat > loLat ? (hiLat - loLat) / bandCount : 1;
+
+        // first count the edges per band to size the arrays exactly, then fill them
+        int[] counts = new int[bandCount];
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            for (int b = band(Math.min(lat[i], lat[j]), bandCount); b <= band(Math.max(lat[i], lat[j]), bandCount); b++) counts[b]++;
+        }
+        this.bands = new double[bandCount][];
+        for (int b = 0; b < bandCount; b++) bands[b] = new double[counts[b] * 4];
+        int[] fill = new int[bandCount];
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            for (int b = band(Math.min(lat[i], lat[j]), bandCount); b <= band(Math.max(lat[i], lat[j]), bandCount); b++) {
+                double[] edges = bands[b];
+                int k = fill[b];
+                edges[k] = lat[i];
+                edges[k + 1] = lon[i];
+                edges[k + 2] = lat[j];
+                edges[k + 3] = lon[j];
+                fill[b] = k + 4;
+            }
+        }
+    }
+
+    // Even-odd rule: a ray towards increasing longitude crosses the boundary an odd number of times from inside.
+    // Every edge spanning the point's latitude overlaps the point's band, so checking that band alone is exact.
+    boolean contains(double lat, double lon) {
+        if (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) return false;
+        double[] edges = bands[band(lat, bands.length)];
+        boolean inside = false;
+        for (int k = 0; k < edges.length; k += 4) {
+            double lat1 = edges[k], lon1 = edges[k + 1], lat2 = edges[k + 2], lon2 = edges[k + 3];
+            if ((lat1 > lat) != (lat2 > lat) && lon < (lon2 - lon1) * (lat - lat1) / (lat2 - lat1) + lon1) inside = !inside;
+        }
+        return inside;
+    }
+
+    private int band(double lat, int bandCount) {
+        return Math.min((int) ((lat - minLat) / bandHeight), bandCount - 1);
+    }
+}
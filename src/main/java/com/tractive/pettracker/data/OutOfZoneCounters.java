@@ -0,0 +1,159 @@
+package com.tractive.pettracker.data;
+
+import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Out-of-zone counts indexed by (PetType, TrackerType), maintained from write deltas.
+// For transactional stores, deltas made inside a transaction stay pending until it commits, so rolled back
+// writes never leak into the shared counts while the writing transaction still reads its own changes.
+public class OutOfZoneCounters {
+
+    private static final PetType[] PET_TYPES = PetType.values();
+    private static final TrackerType[] TRACKER_TYPES = TrackerType.values();
+    static final int SLOTS = PET_TYPES.length * TRACKER_TYPES.length;
+
+    private final AtomicIntegerArray committed = new AtomicIntegerArray(SLOTS);
+    private final AtomicLong modifications = new AtomicLong();
+    // bumped whenever a snapshot can differ from the previous one, including resets and corrections
+    private final AtomicLong generation = new AtomicLong();
+    private final boolean deferUntilCommit;
+    private volatile boolean seeded;
+
+    public OutOfZoneCounters() {
+        this(true);
+    }
+
+    private OutOfZoneCounters(boolean deferUntilCommit) {
+        this.deferUntilCommit = deferUntilCommit;
+    }
+
+    // For stores that are not enlisted in Spring transactions: every delta is applied immediately
+    public static OutOfZoneCounters immediate() {
+        return new OutOfZoneCounters(false);
+    }
+
+    public void record(Pet before, Pet after) {
+        if (sameSlot(before, after)) return;
+        if (isOutside(before)) adjust(slot(before.getPetType(), before.getTrackerType()), -1);
+        if (isOutside(after)) adjust(slot(after.getPetType(), after.getTrackerType()), 1);
+    }
+
+    public List<OutOfZoneCount> snapshot() {
+        int[] pending = deferUntilCommit && TransactionSynchronizationManager.isSynchronizationActive()
+            ? (int[]) TransactionSynchronizationManager.getResource(this)
+            : null;
+        List<OutOfZoneCount> out = new ArrayList<>();
+        for (int i = 0; i < SLOTS; i++) {
+            int count = committed.get(i) + (pending != null ? pending[i] : 0);
+            if (count > 0) out.add(new OutOfZoneCount(petType(i), trackerType(i), count));
+        }
+        return out;
+    }
+
+    public boolean isSeeded() { return seeded; }
+
+    public long modifications() { return modifications.get(); }
+
+    public long generation() { return generation.get(); }
+
+    public void reset(List<OutOfZoneCount> counts) {
+        int[] values = toSlots(counts);
+        for (int i = 0; i < SLOTS; i++) committed.set(i, values[i]);
+        seeded = true;
+        generation.incrementAndGet();
+    }
+
+    // Compares against an authoritative aggregate read after observing expectedModifications.
+    // A write committed meanwhile makes the comparison inconclusive, so the pass is skipped.
+    public boolean reconcile(List<OutOfZoneCount> actual, long expectedModifications) {
+        if (modifications.get() != expectedModifications) return false;
+        int[] values = toSlots(actual);
+        boolean drift = false;
+        for (int i = 0; i < SLOTS; i++) {
+            if (committed.getAndSet(i, values[i]) != values[i]) drift = true;
+        }
+        seeded = true;
+        if (drift) generation.incrementAndGet();
+        return drift;
+    }
+
+    private void adjust(int slot, int delta) {
+        if (!deferUntilCommit || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(slot, delta);
+            return;
+        }
+        int[] pending = (int[]) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new int[SLOTS];
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(new PendingDeltas(pending));
+        }
+        pending[slot] += delta;
+    }
+
+    private void apply(int slot, int delta) {
+        committed.addAndGet(slot, delta);
+        modifications.incrementAndGet();
+        generation.incrementAndGet();
+    }
+
+    private boolean sameSlot(Pet before, Pet after) {
+        if (before == null || after == null) return before == after;
+        return before.getPetType() == after.getPetType()
+            && before.getTrackerType() == after.getTrackerType()
+            && isOutside(before) == isOutside(after);
+    }
+
+    private static boolean isOutside(Pet pet) {
+        return pet != null && Boolean.FALSE.equals(pet.getInZone());
+    }
+
+    static int[] toSlots(List<OutOfZoneCount> counts) {
+        int[] values = new int[SLOTS];
+        for (OutOfZoneCount c : counts) values[slot(c.getPetType(), c.getTrackerType())] += c.getCount();
+        return values;
+    }
+
+    static int slot(PetType petType, TrackerType trackerType) {
+        return petType.ordinal() * TRACKER_TYPES.length + trackerType.ordinal();
+    }
+
+    static PetType petType(int slot) { return PET_TYPES[slot / TRACKER_TYPES.length]; }
+
+    static TrackerType trackerType(int slot) { return TRACKER_TYPES[slot % TRACKER_TYPES.length]; }
+
+    private class PendingDeltas implements TransactionSynchronization {
+        private final int[] pending;
+
+        PendingDeltas(int[] pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(OutOfZoneCounters.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(OutOfZoneCounters.this, pending);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(OutOfZoneCounters.this);
+            if (status != STATUS_COMMITTED) return;
+            for (int i = 0; i < SLOTS; i++) {
+                if (pending[i] != 0) apply(i, pending[i]);
+            }
+        }
+    }
+}
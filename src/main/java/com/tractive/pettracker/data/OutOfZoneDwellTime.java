@@ -0,0 +1,289 @@
+package com.tractive.pettracker.data;
+
+import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.OutOfZoneDwell;
+import com.tractive.pettracker.domain.Pet;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Time pets spent outside their zone over the last 24 hours, per (PetType, TrackerType) and per owner.
+// Fed with the same before/after pairs as OutOfZoneCounters and, like them, only once the write commits.
+// Between two changes the number of pets outside is constant, so a change credits count * elapsed time to
+// the minute buckets of its group; a window is the sum of its buckets plus the time since the last change.
+// Queries never look at pets or past writes. An owner sees few changes, so instead of 1440 buckets each
+// keeps its (time, running count) changes within the retention and integrates them on read.
+public class OutOfZoneDwellTime {
+
+    public static final Duration RESOLUTION = Duration.ofMinutes(1);
+    public static final Duration RETENTION = Duration.ofHours(24);
+
+    private static final long BUCKET_MILLIS = RESOLUTION.toMillis();
+    private static final long RETENTION_MILLIS = RETENTION.toMillis();
+    private static final int BUCKETS = (int) (RETENTION_MILLIS / BUCKET_MILLIS);
+    // owners without pets outside and without changes in the retention are dropped every so many changes
+    private static final int EVICTION_PERIOD = 4096;
+
+    private final Clock clock;
+    private final boolean deferUntilCommit;
+    private final GroupBuckets[] groups = new GroupBuckets[OutOfZoneCounters.SLOTS];
+    private final ConcurrentHashMap<Integer, OwnerTimeline> owners = new ConcurrentHashMap<>();
+    private final AtomicLong changes = new AtomicLong();
+
+    public OutOfZoneDwellTime() {
+        this(Clock.systemUTC());
+    }
+
+    public OutOfZoneDwellTime(Clock clock) {
+        this(clock, true);
+    }
+
+    private OutOfZoneDwellTime(Clock clock, boolean deferUntilCommit) {
+        this.clock = clock;
+        this.deferUntilCommit = deferUntilCommit;
+        long now = clock.millis();
+        for (int i = 0; i < groups.length; i++) groups[i] = new GroupBuckets(now);
+    }
+
+    // For stores that are not enlisted in Spring transactions: every change is applied immediately
+    public static OutOfZoneDwellTime immediate() {
+        return immediate(Clock.systemUTC());
+    }
+
+    public static OutOfZoneDwellTime immediate(Clock clock) {
+        return new OutOfZoneDwellTime(clock, false);
+    }
+
+    public void record(Pet before, Pet after) {
+        boolean wasOutside = isOutside(before);
+        boolean isOutside = isOutside(after);
+        if (wasOutside && isOutside && slot(before) == slot(after) && before.getOwnerId().equals(after.getOwnerId())) return;
+        if (wasOutside) change(new Change(slot(before), before.getOwnerId(), -1));
+        if (isOutside) change(new Change(slot(after), after.getOwnerId(), 1));
+    }
+
+    // Starts over from the given pets outside; time before this call counts as zero
+    public void reset(List<OutOfZoneCount> groupCounts, Map<Integer, Integer> ownerCounts) {
+        long now = clock.millis();
+        int[] values = OutOfZoneCounters.toSlots(groupCounts);
+        for (int i = 0; i < groups.length; i++) groups[i] = new GroupBuckets(now, values[i]);
+        owners.clear();
+        ownerCounts.forEach((ownerId, count) -> {
+            if (count > 0) owners.put(ownerId, new OwnerTimeline(now, count));
+        });
+    }
+
+    // Takes over corrected group counts from now on; the time already credited stays as it is
+    public void correct(List<OutOfZoneCount> groupCounts) {
+        long now = clock.millis();
+        int[] values = OutOfZoneCounters.toSlots(groupCounts);
+        for (int i = 0; i < groups.length; i++) groups[i].set(now, values[i]);
+    }
+
+    // One row per group with time outside and per window [from + k*step, from + (k+1)*step) up to now
+    public List<OutOfZoneDwell> byGroup(Instant from, Duration step) {
+        long now = clock.millis();
+        List<OutOfZoneDwell> out = new ArrayList<>();
+        for (int i = 0; i < groups.length; i++) {
+            List<OutOfZoneDwell> rows = new ArrayList<>();
+            long total = 0;
+            for (long start = from.toEpochMilli(); start < now; start += step.toMillis()) {
+                long end = Math.min(now, start + step.toMillis());
+                long outside = groups[i].outside(start, end, now);
+                total += outside;
+                rows.add(new OutOfZoneDwell(OutOfZoneCounters.petType(i), OutOfZoneCounters.trackerType(i), Instant.ofEpochMilli(start), Instant.ofEpochMilli(end), outside));
+            }
+            // groups that were never outside in the range are left out, as in the summary
+            if (total > 0) out.addAll(rows);
+        }
+        return out;
+    }
+
+    public List<OutOfZoneDwell> byOwner(Integer ownerId, Instant from, Duration step) {
+        long now = clock.millis();
+        OwnerTimeline timeline = owners.get(ownerId);
+        List<OutOfZoneDwell> out = new ArrayList<>();
+        for (long start = from.toEpochMilli(); start < now; start += step.toMillis()) {
+            long end = Math.min(now, start + step.toMillis());
+            out.add(new OutOfZoneDwell(null, null, Instant.ofEpochMilli(start), Instant.ofEpochMilli(end), timeline != null ? timeline.outside(start, end, now) : 0));
+        }
+        return out;
+    }
+
+    private void change(Change change) {
+        if (!deferUntilCommit || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(change, clock.millis());
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<Change> pending = (List<Change>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new ArrayList<>(2);
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(new PendingChanges(pending));
+        }
+        pending.add(change);
+    }
+
+    private void apply(Change change, long now) {
+        groups[change.slot].change(now, change.delta);
+        owners.compute(change.ownerId, (id, timeline) -> {
+            if (timeline == null) timeline = new OwnerTimeline(now, 0);
+            timeline.change(now, change.delta);
+            return timeline;
+        });
+        if (changes.incrementAndGet() % EVICTION_PERIOD == 0) evictIdle(now);
+    }
+
+    private void evictIdle(long now) {
+        for (Integer ownerId : owners.keySet()) {
+            owners.computeIfPresent(ownerId, (id, timeline) -> timeline.isIdle(now) ? null : timeline);
+        }
+    }
+
+    private static boolean isOutside(Pet pet) {
+        return pet != null && Boolean.FALSE.equals(pet.getInZone());
+    }
+
+    private static int slot(Pet pet) {
+        return OutOfZoneCounters.slot(pet.getPetType(), pet.getTrackerType());
+    }
+
+    private record Change(int slot, Integer ownerId, int delta) {}
+
+    // Ring of minute buckets with the pet-milliseconds outside credited to each; a bucket is tagged with
+    // its minute so one left over from a previous day reads as empty
+    private static final class GroupBuckets {
+        private final long[] credited = new long[BUCKETS];
+        private final long[] minute = new long[BUCKETS];
+        private int outside;
+        private long since;
+
+        GroupBuckets(long now) {
+            this(now, 0);
+        }
+
+        GroupBuckets(long now, int outside) {
+            Arrays.fill(minute, -1);
+            this.outside = outside;
+            this.since = now;
+        }
+
+        synchronized void change(long now, int delta) {
+            credit(now);
+            outside = Math.max(0, outside + delta);
+        }
+
+        synchronized void set(long now, int count) {
+            credit(now);
+            outside = count;
+        }
+
+        synchronized long outside(long from, long to, long now) {
+            long total = 0;
+            for (long m = from / BUCKET_MILLIS; m * BUCKET_MILLIS < to; m++) {
+                int i = (int) (m % BUCKETS);
+                if (minute[i] == m) total += credited[i];
+            }
+            // not credited yet: the current count since the last change
+            long start = Math.max(since, from);
+            long end = Math.min(now, to);
+            if (outside > 0 && end > start) total += outside * (end - start);
+            return total;
+        }
+
+        private void credit(long now) {
+            if (outside > 0) {
+                for (long t = Math.max(since, now - RETENTION_MILLIS); t < now; ) {
+                    long m = t / BUCKET_MILLIS;
+                    long end = Math.min(now, (m + 1) * BUCKET_MILLIS);
+                    int i = (int) (m % BUCKETS);
+                    if (minute[i] != m) {
+                        minute[i] = m;
+                        credited[i] = 0;
+                    }
+                    credited[i] += outside * (end - t);
+                    t = end;
+                }
+            }
+            since = Math.max(since, now);
+        }
+    }
+
+    // (time, pets outside from then on) pairs; the oldest pair before the retention is kept as the baseline
+    private static final class OwnerTimeline {
+        private final ArrayDeque<long[]> points = new ArrayDeque<>(4);
+        private int outside;
+
+        OwnerTimeline(long now, int outside) {
+            this.outside = outside;
+            points.add(new long[] {now, outside});
+        }
+
+        synchronized void change(long now, int delta) {
+            outside = Math.max(0, outside + delta);
+            points.add(new long[] {now, outside});
+            while (points.size() > 1) {
+                long[] first = points.removeFirst();
+                if (points.getFirst()[0] > now - RETENTION_MILLIS) {
+                    points.addFirst(first);
+                    break;
+                }
+            }
+        }
+
+        synchronized long outside(long from, long to, long now) {
+            long total = 0;
+            long[] previous = null;
+            for (long[] point : points) {
+                if (previous != null) total += overlap(previous[0], point[0], from, to) * previous[1];
+                previous = point;
+            }
+            if (previous != null) total += overlap(previous[0], now, from, to) * previous[1];
+            return total;
+        }
+
+        synchronized boolean isIdle(long now) {
+            return outside == 0 && points.getLast()[0] <= now - RETENTION_MILLIS;
+        }
+
+        private static long overlap(long start, long end, long from, long to) {
+            return Math.max(0, Math.min(end, to) - Math.max(start, from));
+        }
+    }
+
+    private class PendingChanges implements TransactionSynchronization {
+        private final List<Change> pending;
+
+        PendingChanges(List<Change> pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(OutOfZoneDwellTime.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(OutOfZoneDwellTime.this, pending);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(OutOfZoneDwellTime.this);
+            if (status != STATUS_COMMITTED) return;
+            long now = clock.millis();
+            for (Change change : pending) apply(change, now);
+        }
+    }
+}
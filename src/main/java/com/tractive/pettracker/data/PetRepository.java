@@ -1,14 +1,46 @@
 package com.tractive.pettracker.data;
 
 import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.OutOfZoneDwell;
 import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetCount;
+import com.tractive.pettracker.domain.PetPatch;
+import com.tractive.pettracker.domain.PetSummaryQuery;
+import com.tractive.pettracker.domain.PetUpsertResult;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 public interface PetRepository {
     Pet save(Pet pet);
+    List<Pet> saveAll(List<Pet> pets);
     Pet update(Pet pet);
+    // same as update, but fails with OptimisticLockingFailureException unless the pet is still at expectedVersion
+    Pet update(Pet pet, long expectedVersion);
+    // applies the patch in place and returns the new state, or empty if the pet does not exist
+    Optional<Pet> patch(Long id, PetPatch patch);
+    // inserts or updates the pet identified by (ownerId, trackerId); the id of the given pet is ignored
+    PetUpsertResult upsertByTracker(String trackerId, Pet pet);
     Optional<Pet> findById(Long id);
+    // current row version of the pet, changed by every write to it; empty if the pet does not exist
+    Optional<Long> findVersion(Long id);
     List<Pet> findAll();
+    // keyset page of pets ordered by id, starting after the given id (null for the first page)
+    List<Pet> findPage(Long afterId, int limit);
+    // same keyset page restricted to one owner's pets
+    List<Pet> findPageByOwner(Integer ownerId, Long afterId, int limit);
     List<OutOfZoneCount> countOutsideZoneGrouped();
+    // changes whenever countOutsideZoneGrouped may return something different
+    long outOfZoneGeneration();
+    List<OutOfZoneCount> countOutsideZoneGroupedByOwner(Integer ownerId);
+    // counts as they were at the given instant, rebuilt from the zone transition history
+    List<OutOfZoneCount> countOutsideZoneGroupedAt(Instant at);
+    // counts of the pets matching the query's filters, one per group, ordered by the grouped values
+    List<PetCount> summarize(PetSummaryQuery query);
+    // time spent outside the zone per group in consecutive windows of step, from the given instant up to now;
+    // kept for OutOfZoneDwellTime.RETENTION, groups without any time outside are left out
+    List<OutOfZoneDwell> outOfZoneDwell(Instant from, Duration step);
+    // same for one owner's pets, one row per window
+    List<OutOfZoneDwell> outOfZoneDwellByOwner(Integer ownerId, Instant from, Duration step);
 }
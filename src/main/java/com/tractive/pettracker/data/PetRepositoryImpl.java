@@ -1,85 +1,440 @@
 package com.tractive.pettracker.data;
 
 import com.tractive.pettracker.data.jpa.PetEntity;
+import com.tractive.pettracker.data.jpa.PetEntityMapper;
 import com.tractive.pettracker.data.jpa.PetJpaRepository;
+import com.tractive.pettracker.data.jpa.PetRow;
+import com.tractive.pettracker.data.jpa.PetSecondLevelCache;
+import com.tractive.pettracker.data.jpa.PetSummaryCriteria;
+import com.tractive.pettracker.data.jpa.PetZoneCheckpointEntity;
+import com.tractive.pettracker.data.jpa.PetZoneEventEntity;
+import com.tractive.pettracker.data.jpa.PetZoneEventJpaRepository;
 import com.tractive.pettracker.domain.Cat;
 import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.OutOfZoneDwell;
 import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetCount;
+import com.tractive.pettracker.domain.PetPatch;
+import com.tractive.pettracker.domain.PetSummaryQuery;
 import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.PetUpsertResult;
 import com.tractive.pettracker.domain.TrackerType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.persistence.EntityManager;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-@Repository
+@Repository("petStorage")
+@ConditionalOnProperty(name = "pettracker.storage", havingValue = "jpa", matchIfMissing = true)
+@Observed(name = "pettracker.repository")
 public class PetRepositoryImpl implements PetRepository {
 
+    private static final Logger log = LoggerFactory.getLogger(PetRepositoryImpl.class);
+    // keep in sync with hibernate.jdbc.batch_size so every flushed chunk is a single JDBC batch
+    private static final int BATCH_SIZE = 50;
+    private static final Timer ENTITY_MAPPING = Metrics.timer("pettracker.mapping", "from", "entity", "to", "domain");
+    private static final Counter COUNTER_DRIFT = Metrics.counter("pettracker.counters.drift");
+    // A checkpoint sums the events up to this long ago, so transactions that took their event time before
+    // the checkpoint but commit after it are still counted; longer ones are missed by the checkpoint
+    private static final Duration CHECKPOINT_LAG = Duration.ofMinutes(5);
+
     private final PetJpaRepository jpa;
+    private final PetZoneEventJpaRepository events;
+    private final EntityManager entityManager;
+    private final PetSecondLevelCache secondLevelCache;
+    private final OutOfZoneCounters counters = new OutOfZoneCounters();
+    private final OutOfZoneDwellTime dwell = new OutOfZoneDwellTime();
 
-    public PetRepositoryImpl(PetJpaRepository jpa) {
+    public PetRepositoryImpl(PetJpaRepository jpa, PetZoneEventJpaRepository events, EntityManager entityManager, PetSecondLevelCache secondLevelCache) {
         this.jpa = jpa;
+        this.events = events;
+        this.entityManager = entityManager;
+        this.secondLevelCache = secondLevelCache;
     }
 
+    // Every write appends its zone transitions to pet_zone_events in the same transaction,
+    // so the log never disagrees with the current state in pets.
     @Override
+    @Transactional
     public Pet save(Pet pet) {
-        PetEntity entity = toEntity(pet);
+        PetEntity entity = PetEntityMapper.toEntity(pet);
         entity.setId(null);
         PetEntity saved = jpa.save(entity);
-        return toDomain(saved);
+        Pet created = PetEntityMapper.toDomain(saved);
+        counters.record(null, created);
+        dwell.record(null, created);
+        events.saveAll(transitions(null, created, Instant.now(), new ArrayList<>(1)));
+        return created;
+    }
+
+    @Override
+    @Transactional
+    public List<Pet> saveAll(List<Pet> pets) {
+        List<Pet> out = new ArrayList<>(pets.size());
+        Instant now = Instant.now();
+        for (int from = 0; from < pets.size(); from += BATCH_SIZE) {
+            List<PetEntity> chunk = new ArrayList<>(BATCH_SIZE);
+            for (Pet pet : pets.subList(from, Math.min(from + BATCH_SIZE, pets.size()))) {
+                PetEntity entity = PetEntityMapper.toEntity(pet);
+                entity.setId(null);
+                chunk.add(entity);
+            }
+            List<PetZoneEventEntity> appended = new ArrayList<>(chunk.size());
+            for (PetEntity saved : jpa.saveAll(chunk)) {
+                Pet created = PetEntityMapper.toDomain(saved);
+                counters.record(null, created);
+                dwell.record(null, created);
+                transitions(null, created, now, appended);
+                out.add(created);
+            }
+            events.saveAll(appended);
+            jpa.flush();
+            // the chunk is already mapped to out, so its entities need not stay managed until the commit
+            entityManager.clear();
+        }
+        return out;
     }
 
+    // The current row is loaded and changed in place: the previous state is needed for the counter delta,
+    // and the managed entity keeps its version. The flush updates WHERE version = <loaded version>, so a
+    // write committed in between fails this one with ObjectOptimisticLockingFailureException at commit
+    // instead of being overwritten with deltas computed from a stale before.
     @Override
+    @Transactional
     public Pet update(Pet pet) {
+        return write(pet, null);
+    }
+
+    @Override
+    @Transactional
+    public Pet update(Pet pet, long expectedVersion) {
+        return write(pet, expectedVersion);
+    }
+
+    private Pet write(Pet pet, Long expectedVersion) {
         if (pet.getId() == null) throw new IllegalArgumentException("id required for update");
-        PetEntity entity = toEntity(pet);
+        PetEntity entity = jpa.findById(pet.getId())
+            .orElseThrow(() -> new IllegalArgumentException("pet %d not found".formatted(pet.getId())));
+        if (expectedVersion != null && !expectedVersion.equals(entity.getVersion())) {
+            throw new OptimisticLockingFailureException("pet %d is at version %d, not %d".formatted(pet.getId(), entity.getVersion(), expectedVersion));
+        }
+        Pet before = PetEntityMapper.toDomain(entity);
+        PetEntityMapper.copy(pet, entity);
         PetEntity saved = jpa.save(entity);
-        return toDomain(saved);
+        Pet updated = PetEntityMapper.toDomain(saved);
+        counters.record(before, updated);
+        dwell.record(before, updated);
+        events.saveAll(transitions(before, updated, Instant.now(), new ArrayList<>(2)));
+        return updated;
+    }
+
+    // The update returns the previous row, so nothing is loaded into the persistence context and the new
+    // state is derived from it and the patch. The zone events are written by a second statement.
+    @Override
+    @Transactional
+    public Optional<Pet> patch(Long id, PetPatch patch) {
+        List<Object[]> previous = jpa.patchReturningPrevious(id, patch.getInZone(), patch.getLostTracker());
+        if (previous.isEmpty()) return Optional.empty();
+        // the native UPDATE bypasses the persistence context; drop a copy loaded earlier in this transaction
+        // (getReference returns the managed instance if there is one and never queries)
+        entityManager.detach(entityManager.getReference(PetEntity.class, id));
+        secondLevelCache.evictAfterNativeWrite(id);
+        Pet before = PetEntityMapper.toDomain(previous.get(0));
+        Pet patched = patch.applyTo(before);
+        counters.record(before, patched);
+        dwell.record(before, patched);
+        events.saveAll(transitions(before, patched, Instant.now(), new ArrayList<>(2)));
+        return Optional.of(patched);
+    }
+
+    // The upsert returns the previous row of a known tracker; a new tracker needs another statement to read
+    // the generated id, and the zone events are one more. Two first reports of the same tracker racing each
+    // other fail on the unique index, see PetServiceImpl.
+    @Override
+    @Transactional
+    public PetUpsertResult upsertByTracker(String trackerId, Pet pet) {
+        Boolean lostTracker = pet instanceof Cat cat ? cat.getLostTracker() : null;
+        List<Object[]> previous = jpa.upsertByTrackerReturningPrevious(
+            pet.getOwnerId(), trackerId, pet.getPetType().name(), pet.getTrackerType().name(), pet.getInZone(), lostTracker);
+        Pet before = previous.isEmpty() ? null : PetEntityMapper.toDomain(previous.get(0));
+        Long id = before != null ? before.getId() : jpa.findIdByTracker(pet.getOwnerId(), trackerId);
+        entityManager.detach(entityManager.getReference(PetEntity.class, id));
+        secondLevelCache.evictAfterNativeWrite(id);
+        Pet after = pet instanceof Cat cat
+            ? new Cat(id, cat.getTrackerType(), cat.getOwnerId(), cat.getInZone(), cat.getLostTracker())
+            : new Pet(id, pet.getPetType(), pet.getTrackerType(), pet.getOwnerId(), pet.getInZone());
+        counters.record(before, after);
+        dwell.record(before, after);
+        events.saveAll(transitions(before, after, Instant.now(), new ArrayList<>(2)));
+        return new PetUpsertResult(after, before == null);
     }
 
     @Override
     public Optional<Pet> findById(Long id) {
-        return jpa.findById(id).map(this::toDomain);
+        return jpa.findById(id).map(PetEntityMapper::toDomain);
+    }
+
+    @Override
+    public Optional<Long> findVersion(Long id) {
+        return jpa.findVersionById(id);
     }
 
     @Override
     public List<Pet> findAll() {
         List<Pet> out = new ArrayList<>();
-        for (PetEntity e : jpa.findAll()) out.add(toDomain(e));
+        for (PetEntity e : jpa.findAll()) out.add(PetEntityMapper.toDomain(e));
         return out;
     }
 
+    @Override
+    public List<Pet> findPage(Long afterId, int limit) {
+        return toDomain(jpa.findByIdGreaterThanOrderByIdAsc(afterId != null ? afterId : 0L, Limit.of(limit)));
+    }
+
+    @Override
+    public List<Pet> findPageByOwner(Integer ownerId, Long afterId, int limit) {
+        return toDomain(jpa.findByOwnerIdAndIdGreaterThanOrderByIdAsc(ownerId, afterId != null ? afterId : 0L, Limit.of(limit)));
+    }
+
     @Override
     public List<OutOfZoneCount> countOutsideZoneGrouped() {
-        List<Object[]> rows = jpa.countOutsideZoneGrouped();
-        List<OutOfZoneCount> out = new ArrayList<>();
-        for (Object[] r : rows) {
-            PetType petType = (PetType) r[0];
-            TrackerType trackerType = (TrackerType) r[1];
-            Long cnt = (Long) r[2];
-            out.add(new OutOfZoneCount(petType, trackerType, cnt.intValue()));
+        if (!counters.isSeeded()) seedOutOfZoneCounters();
+        return counters.snapshot();
+    }
+
+    @Override
+    public long outOfZoneGeneration() {
+        return counters.generation();
+    }
+
+    // Not kept in the counters: one owner has few pets, so the indexed aggregate is cheap
+    @Override
+    public List<OutOfZoneCount> countOutsideZoneGroupedByOwner(Integer ownerId) {
+        return toCounts(jpa.countOutsideZoneGroupedByOwner(ownerId));
+    }
+
+    // Starts from the latest checkpoint at or before the instant and adds the events after it, so the cost
+    // depends on the checkpoint interval rather than on the length of the history
+    @Override
+    public List<OutOfZoneCount> countOutsideZoneGroupedAt(Instant at) {
+        Map<List<Object>, Long> outside = outsideAt(at);
+        if (outside == null) return toCounts(events.countOutsideZoneGroupedAt(at));
+        List<Object[]> rows = new ArrayList<>(outside.size());
+        outside.forEach((group, count) -> {
+            if (count > 0) rows.add(new Object[] { group.get(0), group.get(1), count });
+        });
+        return toCounts(rows);
+    }
+
+    // Groups that dropped to zero are written as well, so every checkpoint after the first event has rows
+    @Scheduled(
+        initialDelayString = "${pettracker.counters.checkpoint-interval:PT1H}",
+        fixedDelayString = "${pettracker.counters.checkpoint-interval:PT1H}"
+    )
+    @Transactional
+    public void checkpointZoneEvents() {
+        Instant at = Instant.now().minus(CHECKPOINT_LAG);
+        Map<List<Object>, Long> outside = outsideAt(at);
+        if (outside == null) {
+            outside = new HashMap<>();
+            for (Object[] r : events.sumOutOfZoneDeltasUntil(at)) {
+                outside.put(List.of(r[0], r[1]), ((Number) r[2]).longValue());
+            }
         }
+        outside.forEach((group, count) -> entityManager.persist(
+            new PetZoneCheckpointEntity(at, (PetType) group.get(0), (TrackerType) group.get(1), count.intValue())));
+    }
+
+    // Outside per group from the latest checkpoint and the events after it; null without a checkpoint
+    private Map<List<Object>, Long> outsideAt(Instant at) {
+        Instant checkpoint = events.findLatestCheckpointAt(at);
+        if (checkpoint == null) return null;
+        Map<List<Object>, Long> outside = new HashMap<>();
+        for (Object[] r : events.findCheckpoint(checkpoint)) outside.merge(List.of(r[0], r[1]), ((Number) r[2]).longValue(), Long::sum);
+        for (Object[] r : events.sumOutOfZoneDeltasBetween(checkpoint, at)) outside.merge(List.of(r[0], r[1]), ((Number) r[2]).longValue(), Long::sum);
+        return outside;
+    }
+
+    @Override
+    public List<PetCount> summarize(PetSummaryQuery query) {
+        return PetSummaryCriteria.run(entityManager, query);
+    }
+
+    @Override
+    public List<OutOfZoneDwell> outOfZoneDwell(Instant from, Duration step) {
+        return dwell.byGroup(from, step);
+    }
+
+    @Override
+    public List<OutOfZoneDwell> outOfZoneDwellByOwner(Integer ownerId, Instant from, Duration step) {
+        return dwell.byOwner(ownerId, from, step);
+    }
+
+    // Moving pets between shards: rows are read here, copied to the new shard, then removed from this one.
+    // The copy keeps id, tracker and version, so ETags and tracker reports carry on across the move.
+    public List<PetRow> exportRows(Long afterId, int limit) {
+        return toRows(jpa.findRowsAfter(afterId != null ? afterId : 0L, limit));
+    }
+
+    // Moves rows out of this shard in one transaction: they are locked when read, handed to copy (which
+    // writes them to the other shard and returns the ones it took), and only then deleted. A write to one of
+    // them waits for the lock instead of committing here between the copy and the delete. The delete still
+    // checks the version it read; if a row changed anyway the transaction rolls back with an
+    // OptimisticLockingFailureException and the caller has to take its copies back before trying again.
+    @Transactional
+    public List<PetRow> moveOut(List<Long> ids, Function<List<PetRow>, List<PetRow>> copy) {
+        if (ids.isEmpty()) return List.of();
+        List<PetRow> moved = copy.apply(toRows(jpa.lockRows(ids)));
+        Instant now = Instant.now();
+        List<PetZoneEventEntity> appended = new ArrayList<>(moved.size());
+        for (PetRow row : moved) {
+            if (jpa.deleteRow(row.pet().getId(), row.version()) == 0) {
+                throw new OptimisticLockingFailureException("pet %d changed while it was moved".formatted(row.pet().getId()));
+            }
+            removed(row.pet(), now, appended);
+        }
+        events.saveAll(appended);
+        return moved;
+    }
+
+    // A copy left over from a move that did not get to delete its source is replaced: the source still has
+    // the pet and is the one that was written since
+    @Transactional
+    public void importRows(List<PetRow> rows) {
+        if (rows.isEmpty()) return;
+        Map<Long, PetRow> present = new HashMap<>();
+        for (PetRow row : toRows(jpa.lockRows(rows.stream().map(r -> r.pet().getId()).toList()))) present.put(row.pet().getId(), row);
+        Instant now = Instant.now();
+        List<PetZoneEventEntity> appended = new ArrayList<>(rows.size());
+        for (PetRow row : rows) {
+            Pet pet = row.pet();
+            PetRow stale = present.get(pet.getId());
+            if (stale != null) {
+                jpa.deleteRow(pet.getId(), stale.version());
+                entityManager.detach(entityManager.getReference(PetEntity.class, pet.getId()));
+                secondLevelCache.evictAfterNativeWrite(pet.getId());
+            }
+            Boolean lostTracker = pet instanceof Cat cat ? cat.getLostTracker() : null;
+            jpa.insertRow(pet.getId(), pet.getPetType().name(), pet.getTrackerType().name(), pet.getOwnerId(),
+                row.trackerId(), pet.getInZone(), lostTracker, row.version());
+            Pet before = stale != null ? stale.pet() : null;
+            counters.record(before, pet);
+            dwell.record(before, pet);
+            transitions(before, pet, now, appended);
+        }
+        events.saveAll(appended);
+    }
+
+    // Takes back copies of a move that failed; a copy written to since is left alone. Returns the number removed.
+    @Transactional
+    public int removeRows(List<PetRow> rows) {
+        Instant now = Instant.now();
+        List<PetZoneEventEntity> appended = new ArrayList<>(rows.size());
+        for (PetRow row : rows) {
+            if (jpa.deleteRow(row.pet().getId(), row.version()) == 0) continue;
+            removed(row.pet(), now, appended);
+        }
+        events.saveAll(appended);
+        return appended.size();
+    }
+
+    private void removed(Pet pet, Instant now, List<PetZoneEventEntity> appended) {
+        entityManager.detach(entityManager.getReference(PetEntity.class, pet.getId()));
+        secondLevelCache.evictAfterNativeWrite(pet.getId());
+        counters.record(pet, null);
+        dwell.record(pet, null);
+        appended.add(event(pet, Boolean.FALSE.equals(pet.getInZone()) ? -1 : 0, now));
+    }
+
+    private static List<PetRow> toRows(List<Object[]> rows) {
+        List<PetRow> out = new ArrayList<>(rows.size());
+        for (Object[] r : rows) out.add(new PetRow(PetEntityMapper.toDomain(r), (String) r[6], ((Number) r[7]).longValue()));
         return out;
     }
 
-    private PetEntity toEntity(Pet pet) {
-        PetEntity e = new PetEntity();
-        e.setId(pet.getId());
-        e.setPetType(pet.getPetType());
-        e.setTrackerType(pet.getTrackerType());
-        e.setOwnerId(pet.getOwnerId());
-        e.setInZone(pet.getInZone());
-        if (pet instanceof Cat c) e.setLostTracker(c.getLostTracker());
-        else e.setLostTracker(null);
-        return e;
+    // Dwell time starts counting here: pets already outside at startup are outside from now on
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedOutOfZoneCounters() {
+        List<OutOfZoneCount> counts = queryOutsideZoneGrouped();
+        Map<Integer, Integer> owners = new HashMap<>();
+        for (Object[] r : jpa.countOutsideZoneByOwner()) owners.put((Integer) r[0], ((Long) r[1]).intValue());
+        counters.reset(counts);
+        dwell.reset(counts, owners);
+    }
+
+    @Scheduled(
+        initialDelayString = "${pettracker.counters.reconcile-interval:PT5M}",
+        fixedDelayString = "${pettracker.counters.reconcile-interval:PT5M}"
+    )
+    public void reconcileOutOfZoneCounters() {
+        long modifications = counters.modifications();
+        List<OutOfZoneCount> actual = toCounts(jpa.refreshOutsideZoneGrouped());
+        if (counters.reconcile(actual, modifications)) {
+            dwell.correct(actual);
+            COUNTER_DRIFT.increment();
+            log.warn("Out-of-zone counters drifted from the database aggregate and were reset");
+        }
     }
 
-    private Pet toDomain(PetEntity e) {
-        if (e.getPetType() == PetType.CAT) {
-            return new Cat(e.getId(), e.getTrackerType(), e.getOwnerId(), e.getInZone(), e.getLostTracker() != null ? e.getLostTracker() : Boolean.FALSE);
+    private List<OutOfZoneCount> queryOutsideZoneGrouped() {
+        return toCounts(jpa.countOutsideZoneGrouped());
+    }
+
+    // One row per affected (pet type, tracker type) group; writes that change neither the group
+    // nor the zone state of a pet are not transitions and append nothing.
+    private static List<PetZoneEventEntity> transitions(Pet before, Pet after, Instant at, List<PetZoneEventEntity> out) {
+        boolean wasOutside = before != null && Boolean.FALSE.equals(before.getInZone());
+        boolean isOutside = Boolean.FALSE.equals(after.getInZone());
+        if (before == null) {
+            out.add(event(after, isOutside ? 1 : 0, at));
+        } else if (before.getPetType() == after.getPetType() && before.getTrackerType() == after.getTrackerType()) {
+            if (wasOutside != isOutside) out.add(event(after, isOutside ? 1 : -1, at));
         } else {
-            return new Pet(e.getId(), e.getPetType(), e.getTrackerType(), e.getOwnerId(), e.getInZone());
+            out.add(event(before, wasOutside ? -1 : 0, at));
+            out.add(event(after, isOutside ? 1 : 0, at));
         }
+        return out;
+    }
+
+    private static PetZoneEventEntity event(Pet pet, int outOfZoneDelta, Instant at) {
+        return new PetZoneEventEntity(pet.getId(), pet.getPetType(), pet.getTrackerType(), pet.getInZone(), outOfZoneDelta, at);
     }
 
+    private static List<Pet> toDomain(List<PetEntity> page) {
+        return ENTITY_MAPPING.record(() -> {
+            List<Pet> out = new ArrayList<>(page.size());
+            for (PetEntity e : page) out.add(PetEntityMapper.toDomain(e));
+            return out;
+        });
+    }
+
+    private static List<OutOfZoneCount> toCounts(List<Object[]> rows) {
+        List<OutOfZoneCount> out = new ArrayList<>();
+        for (Object[] r : rows) {
+            PetType petType = (PetType) r[0];
+            TrackerType trackerType = (TrackerType) r[1];
+            Long cnt = (Long) r[2];
+            out.add(new OutOfZoneCount(petType, trackerType, cnt.intValue()));
+        }
+        return out;
+    }
 }
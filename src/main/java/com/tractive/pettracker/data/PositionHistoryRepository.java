@@ -0,0 +1,15 @@
+package com.tractive.pettracker.data;
+
+import com.tractive.pettracker.domain.PositionSample;
+import java.time.Instant;
+import java.util.List;
+
+public interface PositionHistoryRepository {
+    // buffered; written with the next flush
+    void append(Long petId, PositionSample sample);
+    // samples with from <= at <= to in time order, each stretch of time in the tier it is currently kept in
+    List<PositionSample> findRange(Long petId, Instant from, Instant to);
+    void flush();
+    // downsamples and deletes the chunks that passed their tier's retention at the given time
+    void compact(Instant now);
+}
@@ -0,0 +1,357 @@
+package com.tractive.pettracker.data;
+
+import com.tractive.pettracker.data.history.PositionChunk;
+import com.tractive.pettracker.data.history.PositionDownsampler;
+import com.tractive.pettracker.data.jpa.PositionChunkEntity;
+import com.tractive.pettracker.data.jpa.PositionChunkJpaRepository;
+import com.tractive.pettracker.domain.PositionResolution;
+import com.tractive.pettracker.domain.PositionSample;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Location history in compressed per-pet chunks (see PositionChunk).
+// Fixes are appended to an open chunk per pet in memory. Every flush interval the chunks that received
+// fixes are written in one transaction, a new chunk as an insert and a chunk written before as an in-place
+// rewrite of its row, so a crash loses at most one interval. A chunk is closed when it is full or has been
+// open for the chunk duration; the next fix of the pet starts a new one.
+// Compaction downsamples the chunks past their tier's retention into the next tier and deletes the
+// coarsest tier when it expires. Like the zones, the history always lives in the relational database.
+@Repository
+@Observed(name = "pettracker.repository")
+public class PositionHistoryRepositoryImpl implements PositionHistoryRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(PositionHistoryRepositoryImpl.class);
+    private static final int COMPACTION_PAGE = 500;
+
+    private final PositionChunkJpaRepository jpa;
+    private final TransactionTemplate transactions;
+    private final Duration chunkDuration;
+    private final Map<PositionResolution, Duration> retention = new EnumMap<>(PositionResolution.class);
+    private final ConcurrentHashMap<Long, OpenChunk> open = new ConcurrentHashMap<>();
+    // closed but not written yet; still answered from memory
+    private final Set<OpenChunk> closed = ConcurrentHashMap.newKeySet();
+    private final Counter compacted = Metrics.counter("pettracker.history.chunks.compacted");
+
+    public PositionHistoryRepositoryImpl(
+        PositionChunkJpaRepository jpa,
+        PlatformTransactionManager transactionManager,
+        @Value("${pettracker.history.chunk-duration:PT1H}") Duration chunkDuration,
+        @Value("${pettracker.history.retention.raw:P7D}") Duration rawRetention,
+        @Value("${pettracker.history.retention.minute:P90D}") Duration minuteRetention,
+        @Value("${pettracker.history.retention.hour:P730D}") Duration hourRetention
+    ) {
+        this.jpa = jpa;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.chunkDuration = chunkDuration;
+        retention.put(PositionResolution.RAW, rawRetention);
+        retention.put(PositionResolution.MINUTE, minuteRetention);
+        retention.put(PositionResolution.HOUR, hourRetention);
+        Metrics.gauge("pettracker.history.open.chunks", open, Map::size);
+    }
+
+    @Override
+    public void append(Long petId, PositionSample sample) {
+        open.compute(petId, (id, chunk) -> {
+            if (chunk == null) chunk = new OpenChunk(id, System.nanoTime());
+            chunk.data.append(sample.getAt().toEpochMilli(), sample.getLat(), sample.getLon(), sample.isInZone());
+            chunk.dirty = true;
+            if (!chunk.data.isFull()) return chunk;
+            closed.add(chunk);
+            return null;
+        });
+    }
+
+    @Override
+    public List<PositionSample> findRange(Long petId, Instant from, Instant to) {
+        List<PositionSample> samples = new ArrayList<>();
+        Set<Long> inMemory = new HashSet<>();
+        List<byte[]> buffered = new ArrayList<>(2);
+        for (OpenChunk chunk : closed) {
+            if (chunk.petId.equals(petId)) buffered.add(chunk.snapshot(inMemory));
+        }
+        open.computeIfPresent(petId, (id, chunk) -> {
+            buffered.add(chunk.snapshot(inMemory));
+            return chunk;
+        });
+        for (byte[] data : buffered) addInRange(PositionChunk.decode(data), from, to, samples);
+        for (PositionChunkEntity entity : jpa.findOverlapping(petId, from, to)) {
+            // the row of a chunk still in memory holds an older copy of it
+            if (!inMemory.contains(entity.getId())) addInRange(PositionChunk.decode(entity.getData()), from, to, samples);
+        }
+        samples.sort(Comparator.comparing(PositionSample::getAt));
+        return samples;
+    }
+
+    @Override
+    @Scheduled(
+        initialDelayString = "${pettracker.history.flush-interval:PT10S}",
+        fixedDelayString = "${pettracker.history.flush-interval:PT10S}"
+    )
+    public synchronized void flush() {
+        long closeBefore = System.nanoTime() - chunkDuration.toNanos();
+        List<Write> writes = new ArrayList<>();
+        for (Long petId : open.keySet()) {
+            open.computeIfPresent(petId, (id, chunk) -> {
+                boolean writing = chunk.dirty;
+                if (writing) writes.add(chunk.prepareWrite());
+                if (chunk.openedAt - closeBefore > 0) return chunk;
+                // until the write commits, readers find the closed chunk in memory; a clean one is already on disk
+                if (writing) closed.add(chunk);
+                return null;
+            });
+        }
+        for (OpenChunk chunk : closed) {
+            synchronized (chunk) {
+                if (chunk.dirty) writes.add(chunk.prepareWrite());
+            }
+        }
+        if (writes.isEmpty()) return;
+        try {
+            transactions.executeWithoutResult(status -> {
+                for (Write write : writes) write.execute(jpa);
+            });
+        } catch (RuntimeException e) {
+            // keep everything for the next flush
+            for (Write write : writes) write.failed();
+            log.warn("Flushing {} history chunks failed, retrying with the next flush", writes.size(), e);
+            return;
+        }
+        closed.removeIf(chunk -> !chunk.dirty);
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Long petId : open.keySet()) {
+            OpenChunk chunk = open.remove(petId);
+            if (chunk != null) closed.add(chunk);
+        }
+        flush();
+        if (!closed.isEmpty()) log.warn("History stopped with {} unwritten chunks", closed.size());
+    }
+
+    @Scheduled(
+        initialDelayString = "${pettracker.history.compaction-interval:PT10M}",
+        fixedDelayString = "${pettracker.history.compaction-interval:PT10M}"
+    )
+    public void compact() {
+        compact(Instant.now());
+    }
+
+    @Override
+    public void compact(Instant now) {
+        for (PositionResolution tier : PositionResolution.values()) {
+            Instant cutoff = now.minus(retention.get(tier));
+            PositionResolution coarser = tier.coarser();
+            if (coarser == null) {
+                Integer deleted = transactions.execute(status -> jpa.deleteExpired(tier, cutoff));
+                if (deleted != null) compacted.increment(deleted);
+                continue;
+            }
+            PageCursor cursor = new PageCursor();
+            int moved;
+            do {
+                moved = transactions.execute(status -> downsamplePage(tier, coarser, cutoff, cursor));
+            } while (moved == COMPACTION_PAGE);
+        }
+    }
+
+    // Rewrites one page of expired chunks as chunks of the coarser tier, one or more per pet.
+    // Chunk boundaries fall anywhere, so a coarse bucket may have samples in several chunks. Each bucket is
+    // downsampled once from all of them: the chunks of the pet that share a bucket with the page are
+    // compacted along with it, and a bucket that is shared with a chunk that cannot be compacted yet (not
+    // expired, or still in memory) stays in its chunk until it can. The walk goes by (end time, id), so the
+    // chunks that keep such samples are not read again by the same run.
+    private int downsamplePage(PositionResolution tier, PositionResolution coarser, Instant cutoff, PageCursor cursor) {
+        // taken before the page is read: a row that is not in memory now will not be rewritten any more
+        Set<Long> inMemory = rowsInMemory();
+        List<PositionChunkEntity> page = cursor.end == null
+            ? jpa.findByResolutionAndEndTimeBeforeOrderByEndTimeAscIdAsc(tier, cutoff, Limit.of(COMPACTION_PAGE))
+            : jpa.findExpiredAfter(tier, cutoff, cursor.end, cursor.id, Limit.of(COMPACTION_PAGE));
+        if (page.isEmpty()) return 0;
+        cursor.end = page.getLast().getEndTime();
+        cursor.id = page.getLast().getId();
+        long bucketMillis = coarser.getBucket().toMillis();
+        Map<Long, Map<Long, PositionChunkEntity>> byPet = new LinkedHashMap<>();
+        for (PositionChunkEntity entity : page) {
+            if (inMemory.contains(entity.getId())) continue;
+            byPet.computeIfAbsent(entity.getPetId(), k -> new LinkedHashMap<>()).put(entity.getId(), entity);
+        }
+        List<PositionChunkEntity> replacements = new ArrayList<>();
+        List<PositionChunkEntity> done = new ArrayList<>(page.size());
+        byPet.forEach((petId, chunks) -> {
+            // first and last bucket of every chunk that has to wait
+            List<long[]> held = tier == PositionResolution.RAW ? bufferedBuckets(petId, bucketMillis) : new ArrayList<>();
+            Set<Long> seen = new HashSet<>(chunks.keySet());
+            List<PositionChunkEntity> added = new ArrayList<>(chunks.values());
+            while (!added.isEmpty()) {
+                long first = Long.MAX_VALUE, last = Long.MIN_VALUE;
+                for (PositionChunkEntity chunk : added) {
+                    first = Math.min(first, Math.floorDiv(chunk.getStartTime().toEpochMilli(), bucketMillis));
+                    last = Math.max(last, Math.floorDiv(chunk.getEndTime().toEpochMilli(), bucketMillis));
+                }
+                added = new ArrayList<>();
+                Instant from = Instant.ofEpochMilli(first * bucketMillis);
+                Instant to = Instant.ofEpochMilli((last + 1) * bucketMillis - 1);
+                for (PositionChunkEntity neighbour : jpa.findOverlapping(petId, from, to)) {
+                    if (neighbour.getResolution() != tier || !seen.add(neighbour.getId())) continue;
+                    if (inMemory.contains(neighbour.getId()) || !neighbour.getEndTime().isBefore(cutoff)) {
+                        held.add(new long[] {
+                            Math.floorDiv(neighbour.getStartTime().toEpochMilli(), bucketMillis),
+                            Math.floorDiv(neighbour.getEndTime().toEpochMilli(), bucketMillis) });
+                    } else {
+                        chunks.put(neighbour.getId(), neighbour);
+                        added.add(neighbour);
+                    }
+                }
+            }
+            List<PositionSample> samples = new ArrayList<>();
+            for (PositionChunkEntity chunk : chunks.values()) {
+                List<PositionSample> kept = new ArrayList<>();
+                for (PositionSample sample : PositionChunk.decode(chunk.getData())) {
+                    (isHeld(sample, held, bucketMillis) ? kept : samples).add(sample);
+                }
+                if (kept.isEmpty()) {
+                    done.add(chunk);
+                } else if (kept.size() < chunk.getSampleCount()) {
+                    PositionChunk rest = PositionChunk.of(kept);
+                    chunk.replaceData(rest.minTime(), rest.maxTime(), rest.count(), rest.encode());
+                }
+            }
+            List<PositionSample> coarse = PositionDownsampler.downsample(samples, coarser);
+            for (int i = 0; i < coarse.size(); i += PositionChunk.MAX_SAMPLES) {
+                PositionChunk chunk = PositionChunk.of(coarse.subList(i, Math.min(coarse.size(), i + PositionChunk.MAX_SAMPLES)));
+                replacements.add(new PositionChunkEntity(petId, coarser, chunk.minTime(), chunk.maxTime(), chunk.count(), chunk.encode()));
+            }
+        });
+        jpa.saveAll(replacements);
+        jpa.deleteAllInBatch(done);
+        compacted.increment(done.size());
+        return page.size();
+    }
+
+    private static boolean isHeld(PositionSample sample, List<long[]> held, long bucketMillis) {
+        long bucket = Math.floorDiv(sample.getAt().toEpochMilli(), bucketMillis);
+        for (long[] range : held) {
+            if (bucket >= range[0] && bucket <= range[1]) return true;
+        }
+        return false;
+    }
+
+    // Buckets of the pet's chunks in memory; their rows, if any, may hold fewer samples
+    private List<long[]> bufferedBuckets(Long petId, long bucketMillis) {
+        List<long[]> buckets = new ArrayList<>(2);
+        for (OpenChunk chunk : closed) {
+            if (chunk.petId.equals(petId)) chunk.addBuckets(bucketMillis, buckets);
+        }
+        open.computeIfPresent(petId, (id, chunk) -> {
+            chunk.addBuckets(bucketMillis, buckets);
+            return chunk;
+        });
+        return buckets;
+    }
+
+    private Set<Long> rowsInMemory() {
+        Set<Long> ids = new HashSet<>();
+        for (OpenChunk chunk : open.values()) if (chunk.rowId != null) ids.add(chunk.rowId);
+        for (OpenChunk chunk : closed) if (chunk.rowId != null) ids.add(chunk.rowId);
+        return ids;
+    }
+
+    private static void addInRange(List<PositionSample> decoded, Instant from, Instant to, List<PositionSample> out) {
+        for (PositionSample sample : decoded) {
+            if (!sample.getAt().isBefore(from) && !sample.getAt().isAfter(to)) out.add(sample);
+        }
+    }
+
+    // Mutated under the map's lock for the pet while open, and under its own monitor once closed
+    private static final class OpenChunk {
+        final Long petId;
+        final long openedAt;
+        final PositionChunk data = new PositionChunk();
+        volatile boolean dirty;
+        volatile Long rowId;
+
+        OpenChunk(Long petId, long openedAt) {
+            this.petId = petId;
+            this.openedAt = openedAt;
+        }
+
+        synchronized byte[] snapshot(Set<Long> rowIds) {
+            if (rowId != null) rowIds.add(rowId);
+            return data.encode();
+        }
+
+        synchronized void addBuckets(long bucketMillis, List<long[]> out) {
+            if (data.count() == 0) return;
+            out.add(new long[] {
+                Math.floorDiv(data.minTime().toEpochMilli(), bucketMillis),
+                Math.floorDiv(data.maxTime().toEpochMilli(), bucketMillis) });
+        }
+
+        synchronized Write prepareWrite() {
+            dirty = false;
+            return new Write(this, data.minTime(), data.maxTime(), data.count(), data.encode());
+        }
+    }
+
+    // Position of a compaction run in its walk over the expired chunks of a tier
+    private static final class PageCursor {
+        Instant end;
+        Long id;
+    }
+
+    private static final class Write {
+        private final OpenChunk chunk;
+        private final Instant start;
+        private final Instant end;
+        private final int count;
+        private final byte[] data;
+        private Long insertedId;
+
+        Write(OpenChunk chunk, Instant start, Instant end, int count, byte[] data) {
+            this.chunk = chunk;
+            this.start = start;
+            this.end = end;
+            this.count = count;
+            this.data = data;
+        }
+
+        void execute(PositionChunkJpaRepository jpa) {
+            if (chunk.rowId != null) {
+                jpa.rewrite(chunk.rowId, start, end, count, data);
+            } else {
+                // taken over right away, so readers skip the row as soon as it is visible
+                insertedId = jpa.save(new PositionChunkEntity(chunk.petId, PositionResolution.RAW, start, end, count, data)).getId();
+                chunk.rowId = insertedId;
+            }
+        }
+
+        void failed() {
+            synchronized (chunk) {
+                chunk.dirty = true;
+                if (insertedId != null) chunk.rowId = null;
+            }
+        }
+    }
+}
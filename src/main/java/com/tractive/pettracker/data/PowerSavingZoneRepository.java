@@ -0,0 +1,11 @@
+package com.tractive.pettracker.data;
+
+import com.tractive.pettracker.domain.PowerSavingZone;
+import java.util.List;
+
+public interface PowerSavingZoneRepository {
+    List<PowerSavingZone> findAll();
+    List<PowerSavingZone> findByOwner(Integer ownerId);
+    // replaces all zones of the owner with the given ones (their ids are ignored) and returns them as stored
+    List<PowerSavingZone> replaceForOwner(Integer ownerId, List<PowerSavingZone> zones);
+}
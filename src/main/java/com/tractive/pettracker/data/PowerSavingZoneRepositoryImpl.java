@@ -0,0 +1,63 @@
+package com.tractive.pettracker.data;
+
+import com.tractive.pettracker.data.jpa.PowerSavingZoneEntity;
+import com.tractive.pettracker.data.jpa.PowerSavingZoneJpaRepository;
+import com.tractive.pettracker.domain.GeoPoint;
+import com.tractive.pettracker.domain.PowerSavingZone;
+import io.micrometer.observation.annotation.Observed;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+// Zones are configuration, not per-request data, so they stay in the relational store whichever engine
+// holds the pets; the geofence keeps its own in-memory copy for evaluation.
+@Repository
+@Observed(name = "pettracker.repository")
+public class PowerSavingZoneRepositoryImpl implements PowerSavingZoneRepository {
+
+    private final PowerSavingZoneJpaRepository jpa;
+
+    public PowerSavingZoneRepositoryImpl(PowerSavingZoneJpaRepository jpa) {
+        this.jpa = jpa;
+    }
+
+    @Override
+    public List<PowerSavingZone> findAll() {
+        return toDomain(jpa.findAll());
+    }
+
+    @Override
+    public List<PowerSavingZone> findByOwner(Integer ownerId) {
+        return toDomain(jpa.findByOwnerIdOrderByIdAsc(ownerId));
+    }
+
+    @Override
+    @Transactional
+    public List<PowerSavingZone> replaceForOwner(Integer ownerId, List<PowerSavingZone> zones) {
+        jpa.deleteByOwnerId(ownerId);
+        List<PowerSavingZoneEntity> entities = new ArrayList<>(zones.size());
+        for (PowerSavingZone zone : zones) entities.add(new PowerSavingZoneEntity(ownerId, zone.getName(), pack(zone.getVertices())));
+        return toDomain(jpa.saveAll(entities));
+    }
+
+    private static List<PowerSavingZone> toDomain(List<PowerSavingZoneEntity> entities) {
+        List<PowerSavingZone> out = new ArrayList<>(entities.size());
+        for (PowerSavingZoneEntity e : entities) out.add(new PowerSavingZone(e.getId(), e.getOwnerId(), e.getName(), unpack(e.getVertices())));
+        return out;
+    }
+
+    private static byte[] pack(List<GeoPoint> vertices) {
+        ByteBuffer out = ByteBuffer.allocate(vertices.size() * 16);
+        for (GeoPoint p : vertices) out.putDouble(p.getLat()).putDouble(p.getLon());
+        return out.array();
+    }
+
+    private static List<GeoPoint> unpack(byte[] packed) {
+        ByteBuffer in = ByteBuffer.wrap(packed);
+        List<GeoPoint> vertices = new ArrayList<>(packed.length / 16);
+        while (in.remaining() >= 16) vertices.add(new GeoPoint(in.getDouble(), in.getDouble()));
+        return vertices;
+    }
+}
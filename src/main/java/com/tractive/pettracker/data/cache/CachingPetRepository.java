@@ -0,0 +1,169 @@
+package com.tractive.pettracker.data.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.OutOfZoneDwell;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetCount;
+import com.tractive.pettracker.domain.PetPatch;
+import com.tractive.pettracker.domain.PetSummaryQuery;
+import com.tractive.pettracker.domain.PetUpsertResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Read-through cache for findById in front of any PetRepository implementation.
+// Entries are bounded by size and time-to-live; writes invalidate the cached pet.
+public class CachingPetRepository implements PetRepository, MeterBinder {
+
+    private final PetRepository delegate;
+    private final Cache<Long, Pet> byId;
+
+    public CachingPetRepository(PetRepository delegate, long maximumSize, Duration timeToLive) {
+        this.delegate = delegate;
+        this.byId = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(timeToLive)
+            .recordStats()
+            .build();
+    }
+
+    @Override
+    public Pet save(Pet pet) {
+        return delegate.save(pet);
+    }
+
+    @Override
+    public List<Pet> saveAll(List<Pet> pets) {
+        return delegate.saveAll(pets);
+    }
+
+    @Override
+    public Pet update(Pet pet) {
+        Pet updated = delegate.update(pet);
+        invalidate(pet.getId());
+        return updated;
+    }
+
+    @Override
+    public Pet update(Pet pet, long expectedVersion) {
+        Pet updated = delegate.update(pet, expectedVersion);
+        invalidate(pet.getId());
+        return updated;
+    }
+
+    @Override
+    public Optional<Pet> patch(Long id, PetPatch patch) {
+        Optional<Pet> patched = delegate.patch(id, patch);
+        invalidate(id);
+        return patched;
+    }
+
+    @Override
+    public PetUpsertResult upsertByTracker(String trackerId, Pet pet) {
+        PetUpsertResult result = delegate.upsertByTracker(trackerId, pet);
+        invalidate(result.getPet().getId());
+        return result;
+    }
+
+    // The load runs inside the cache's compute for the key and an invalidate of the same key waits for it,
+    // so a row read just before a write commits never lands in the cache after that write's invalidation.
+    // A missing pet maps to null, which is not stored.
+    @Override
+    public Optional<Pet> findById(Long id) {
+        return Optional.ofNullable(byId.get(id, key -> delegate.findById(key).orElse(null)));
+    }
+
+    // Not cached: a version that lags behind the row would answer 304 for a pet that changed
+    @Override
+    public Optional<Long> findVersion(Long id) {
+        return delegate.findVersion(id);
+    }
+
+    @Override
+    public List<Pet> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Pet> findPage(Long afterId, int limit) {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public List<Pet> findPageByOwner(Integer ownerId, Long afterId, int limit) {
+        return delegate.findPageByOwner(ownerId, afterId, limit);
+    }
+
+    @Override
+    public List<OutOfZoneCount> countOutsideZoneGrouped() {
+        return delegate.countOutsideZoneGrouped();
+    }
+
+    @Override
+    public long outOfZoneGeneration() {
+        return delegate.outOfZoneGeneration();
+    }
+
+    @Override
+    public List<OutOfZoneCount> countOutsideZoneGroupedByOwner(Integer ownerId) {
+        return delegate.countOutsideZoneGroupedByOwner(ownerId);
+    }
+
+    @Override
+    public List<OutOfZoneCount> countOutsideZoneGroupedAt(Instant at) {
+        return delegate.countOutsideZoneGroupedAt(at);
+    }
+
+    @Override
+    public List<PetCount> summarize(PetSummaryQuery query) {
+        return delegate.summarize(query);
+    }
+
+    @Override
+    public List<OutOfZoneDwell> outOfZoneDwell(Instant from, Duration step) {
+        return delegate.outOfZoneDwell(from, step);
+    }
+
+    @Override
+    public List<OutOfZoneDwell> outOfZoneDwellByOwner(Integer ownerId, Instant from, Duration step) {
+        return delegate.outOfZoneDwellByOwner(ownerId, from, step);
+    }
+
+    // hit, miss, eviction and size meters under cache=pets
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, byId, "pets");
+    }
+
+    public CacheStats stats() {
+        return byId.stats();
+    }
+
+    public long size() {
+        return byId.estimatedSize();
+    }
+
+    // A reader inside the writing transaction may cache the uncommitted row again,
+    // so the entry is dropped once more when the transaction completes either way.
+    private void invalidate(Long id) {
+        byId.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    byId.invalidate(id);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.tractive.pettracker.data.history;
+
+import com.tractive.pettracker.domain.PositionSample;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Append-only, columnar encoding of one pet's positions.
+// Each column holds zigzag varints of the difference to the previous value: timestamps in milliseconds,
+// latitude and longitude in 1e-7 degrees (about 1 cm). Consecutive fixes of a tracker are seconds and
+// metres apart, so most values take one or two bytes; zone flags are a bitmap.
+// Layout: count, the byte lengths of the time, latitude and longitude columns, then the columns and the bitmap.
+// Appending keeps the columns encoded, so an open chunk costs about as much memory as it does on disk.
+public final class PositionChunk {
+
+    public static final int MAX_SAMPLES = 1024;
+    private static final double SCALE = 1e7;
+
+    private final Column times = new Column();
+    private final Column lats = new Column();
+    private final Column lons = new Column();
+    private byte[] flags = new byte[8];
+    private int count;
+    private long lastTime;
+    private long lastLat;
+    private long lastLon;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+
+    public static PositionChunk of(List<PositionSample> samples) {
+        PositionChunk chunk = new PositionChunk();
+        for (PositionSample s : samples) chunk.append(s.getAt().toEpochMilli(), s.getLat(), s.getLon(), s.isInZone());
+        return chunk;
+    }
+
+    // Fixes may arrive out of order; deltas are signed, and readers sort by time
+    public void append(long epochMillis, double lat, double lon, boolean inZone) {
+        long qLat = Math.round(lat * SCALE);
+        long qLon = Math.round(lon * SCALE);
+        times.putZigZag(epochMillis - lastTime);
+        lats.putZigZag(qLat - lastLat);
+        lons.putZigZag(qLon - lastLon);
+        if ((count >> 3) == flags.length) flags = Arrays.copyOf(flags, flags.length * 2);
+        if (inZone) flags[count >> 3] |= (byte) (1 << (count & 7));
+        lastTime = epochMillis;
+        lastLat = qLat;
+        lastLon = qLon;
+        minTime = Math.min(minTime, epochMillis);
+        maxTime = Math.max(maxTime, epochMillis);
+        count++;
+    }
+
+    public int count() { return count; }
+
+    public boolean isFull() { return count >= MAX_SAMPLES; }
+
+    public Instant minTime() { return Instant.ofEpochMilli(minTime); }
+
+    public Instant maxTime() { return Instant.ofEpochMilli(maxTime); }
+
+    public byte[] encode() {
+        int flagBytes = (count + 7) >> 3;
+        ByteBuffer out = ByteBuffer.allocate(4 * 5 + times.size + lats.size + lons.size + flagBytes);
+        putVarInt(out, count);
+        putVarInt(out, times.size);
+        putVarInt(out, lats.size);
+        putVarInt(out, lons.size);
+        out.put(times.bytes, 0, times.size).put(lats.bytes, 0, lats.size).put(lons.bytes, 0, lons.size).put(flags, 0, flagBytes);
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    // All samples of an encoded chunk, in append order
+    public static List<PositionSample> decode(byte[] data) {
+        ByteBuffer header = ByteBuffer.wrap(data);
+        int n = (int) getVarLong(header);
+        int timeBytes = (int) getVarLong(header);
+        int latBytes = (int) getVarLong(header);
+        int lonBytes = (int) getVarLong(header);
+        ByteBuffer time = ByteBuffer.wrap(data, header.position(), timeBytes);
+        ByteBuffer lat = ByteBuffer.wrap(data, header.position() + timeBytes, latBytes);
+        ByteBuffer lon = ByteBuffer.wrap(data, header.position() + timeBytes + latBytes, lonBytes);
+        int flagsAt = header.position() + timeBytes + latBytes + lonBytes;
+        List<PositionSample> samples = new ArrayList<>(n);
+        long t = 0, y = 0, x = 0;
+        for (int i = 0; i < n; i++) {
+            t += zigZagDecode(getVarLong(time));
+            y += zigZagDecode(getVarLong(lat));
+            x += zigZagDecode(getVarLong(lon));
+            boolean inZone = (data[flagsAt + (i >> 3)] & (1 << (i & 7))) != 0;
+            samples.add(new PositionSample(Instant.ofEpochMilli(t), y / SCALE, x / SCALE, inZone));
+        }
+        return samples;
+    }
+
+    private static void putVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // growable byte array of varints
+    private static final class Column {
+        private byte[] bytes = new byte[32];
+        private int size;
+
+        void putZigZag(long value) {
+            long v = (value << 1) ^ (value >> 63);
+            if (size + 10 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            while ((v & ~0x7FL) != 0) {
+                bytes[size++] = (byte) (v & 0x7F | 0x80);
+                v >>>= 7;
+            }
+            bytes[size++] = (byte) v;
+        }
+    }
+}
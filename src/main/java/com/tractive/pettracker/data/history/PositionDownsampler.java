@@ -0,0 +1,37 @@
+package com.tractive.pettracker.data.history;
+
+import com.tractive.pettracker.domain.PositionResolution;
+import com.tractive.pettracker.domain.PositionSample;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Collapses samples into one per bucket of the target resolution: bucket start, mean position, and the
+// zone state at the end of the bucket (the last sample's), so a transition is kept in the bucket it happened in.
+public final class PositionDownsampler {
+
+    private PositionDownsampler() {
+    }
+
+    public static List<PositionSample> downsample(List<PositionSample> samples, PositionResolution resolution) {
+        List<PositionSample> sorted = new ArrayList<>(samples);
+        sorted.sort(Comparator.comparing(PositionSample::getAt));
+        long bucketMillis = resolution.getBucket().toMillis();
+        List<PositionSample> out = new ArrayList<>();
+        int i = 0;
+        while (i < sorted.size()) {
+            long bucket = Math.floorDiv(sorted.get(i).getAt().toEpochMilli(), bucketMillis);
+            double lat = 0, lon = 0;
+            int n = 0;
+            boolean inZone = false;
+            for (; i < sorted.size() && Math.floorDiv(sorted.get(i).getAt().toEpochMilli(), bucketMillis) == bucket; i++, n++) {
+                lat += sorted.get(i).getLat();
+                lon += sorted.get(i).getLon();
+                inZone = sorted.get(i).isInZone();
+            }
+            out.add(new PositionSample(Instant.ofEpochMilli(bucket * bucketMillis), lat / n, lon / n, inZone));
+        }
+        return out;
+    }
+}
@@ -3,12 +3,23 @@ package com.tractive.pettracker.data.jpa;
 import com.tractive.pettracker.domain.PetType;
 import com.tractive.pettracker.domain.TrackerType;
 import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.UpdateTimestamp;
 
+// Only cached when the second-level cache is switched on (l2cache profile). Entity writes keep the region
+// up to date; the native PATCH and upsert statements bypass Hibernate and evict through PetRepositoryImpl.
 @Entity
 @Table(name = "pets")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = PetEntity.CACHE_REGION)
 public class PetEntity {
+    public static final String CACHE_REGION = "pet-entities";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pets_id_seq")
+    @SequenceGenerator(name = "pets_id_seq", sequenceName = "pets_id_seq", allocationSize = 50)
     private Long id;
 
     @Enumerated(EnumType.STRING)
@@ -28,6 +39,16 @@ public class PetEntity {
     @Column(name = "lost_tracker")
     private Boolean lostTracker;
 
+    // incremented by Hibernate on update and by the native PATCH/upsert statements; exposed as the ETag
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    // created_at is filled by the column default; updated_at follows every write
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
     public PetType getPetType() { return petType; }
@@ -40,4 +61,6 @@ public class PetEntity {
     public void setInZone(Boolean inZone) { this.inZone = inZone; }
     public Boolean getLostTracker() { return lostTracker; }
     public void setLostTracker(Boolean lostTracker) { this.lostTracker = lostTracker; }
+    public Long getVersion() { return version; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
 }
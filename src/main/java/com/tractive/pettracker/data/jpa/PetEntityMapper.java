@@ -0,0 +1,49 @@
+package com.tractive.pettracker.data.jpa;
+
+import com.tractive.pettracker.domain.Cat;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+
+public final class PetEntityMapper {
+
+    private PetEntityMapper() {}
+
+    public static PetEntity toEntity(Pet pet) {
+        PetEntity e = new PetEntity();
+        e.setId(pet.getId());
+        copy(pet, e);
+        return e;
+    }
+
+    // Copies the state of pet onto e, leaving its id and version alone
+    public static void copy(Pet pet, PetEntity e) {
+        e.setPetType(pet.getPetType());
+        e.setTrackerType(pet.getTrackerType());
+        e.setOwnerId(pet.getOwnerId());
+        e.setInZone(pet.getInZone());
+        if (pet instanceof Cat c) e.setLostTracker(c.getLostTracker());
+        else e.setLostTracker(null);
+    }
+
+    public static Pet toDomain(PetEntity e) {
+        if (e.getPetType() == PetType.CAT) {
+            return new Cat(e.getId(), e.getTrackerType(), e.getOwnerId(), e.getInZone(), e.getLostTracker() != null ? e.getLostTracker() : Boolean.FALSE);
+        } else {
+            return new Pet(e.getId(), e.getPetType(), e.getTrackerType(), e.getOwnerId(), e.getInZone());
+        }
+    }
+
+    // Row of (id, pet_type, tracker_type, owner_id, in_zone, lost_tracker) from a native query
+    public static Pet toDomain(Object[] row) {
+        Long id = ((Number) row[0]).longValue();
+        PetType petType = PetType.valueOf((String) row[1]);
+        TrackerType trackerType = TrackerType.valueOf((String) row[2]);
+        Integer ownerId = ((Number) row[3]).intValue();
+        Boolean inZone = (Boolean) row[4];
+        if (petType == PetType.CAT) {
+            return new Cat(id, trackerType, ownerId, inZone, row[5] != null ? (Boolean) row[5] : Boolean.FALSE);
+        }
+        return new Pet(id, petType, trackerType, ownerId, inZone);
+    }
+}
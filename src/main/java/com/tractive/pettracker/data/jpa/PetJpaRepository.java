@@ -1,10 +1,87 @@
 package com.tractive.pettracker.data.jpa;
 
+import jakarta.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface PetJpaRepository extends JpaRepository<PetEntity, Long>, PetWriteStatements {
+    // Results of the grouped counts; Hibernate drops them whenever pets is written through an entity or
+    // a bulk statement, and PetRepositoryImpl evicts the region after the native PATCH and upsert
+    String COUNTS_CACHE_REGION = "pet-out-of-zone-counts";
+
+    List<PetEntity> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // Served by ix_pets_owner_id (owner_id, id): a range scan in id order, no sort
+    List<PetEntity> findByOwnerIdAndIdGreaterThanOrderByIdAsc(Integer ownerId, Long id, Limit limit);
+
+    // Primary key lookup of one column, so a conditional GET is answered without materialising the entity
+    @Query("select e.version from PetEntity e where e.id = :id")
+    Optional<Long> findVersionById(Long id);
+
+    @Query(nativeQuery = true, value = "SELECT id FROM pets WHERE owner_id = :ownerId AND tracker_id = :trackerId")
+    Long findIdByTracker(Integer ownerId, String trackerId);
 
-public interface PetJpaRepository extends JpaRepository<PetEntity, Long> {
     @Query("select e.petType, e.trackerType, count(e) from PetEntity e where e.inZone = false group by e.petType, e.trackerType")
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = COUNTS_CACHE_REGION)
+    })
     List<Object[]> countOutsideZoneGrouped();
+
+    // Same aggregate, always read from the database and stored back into the query cache. The reconcile pass
+    // must see writes committed by other nodes, which never invalidate this node's cache.
+    @Query("select e.petType, e.trackerType, count(e) from PetEntity e where e.inZone = false group by e.petType, e.trackerType")
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = COUNTS_CACHE_REGION),
+        @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "REFRESH")
+    })
+    List<Object[]> refreshOutsideZoneGrouped();
+
+    @Query("select e.petType, e.trackerType, count(e) from PetEntity e where e.ownerId = :ownerId and e.inZone = false group by e.petType, e.trackerType")
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = COUNTS_CACHE_REGION)
+    })
+    List<Object[]> countOutsideZoneGroupedByOwner(Integer ownerId);
+
+    @Query("select e.ownerId, count(e) from PetEntity e where e.inZone = false group by e.ownerId")
+    List<Object[]> countOutsideZoneByOwner();
+
+    // Keyset page of whole rows for moving pets between shards, see ShardedPetRepository
+    @Query(nativeQuery = true, value = """
+        SELECT id, pet_type, tracker_type, owner_id, in_zone, lost_tracker, tracker_id, version
+        FROM pets WHERE id > :afterId ORDER BY id LIMIT :limit""")
+    List<Object[]> findRowsAfter(Long afterId, int limit);
+
+    // The same rows by id, locked until the calling transaction ends; a write to one of them waits for it
+    @Query(nativeQuery = true, value = """
+        SELECT id, pet_type, tracker_type, owner_id, in_zone, lost_tracker, tracker_id, version
+        FROM pets WHERE id IN (:ids) ORDER BY id FOR UPDATE""")
+    List<Object[]> lockRows(Collection<Long> ids);
+
+    // Inserts the row as it was on the shard it comes from, id and version included
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+        INSERT INTO pets (id, pet_type, tracker_type, owner_id, tracker_id, in_zone, lost_tracker, version)
+        VALUES (:id, :petType, :trackerType, :ownerId, :trackerId, :inZone, :lostTracker, :version)""")
+    int insertRow(
+        Long id, String petType, String trackerType, Integer ownerId, String trackerId, Boolean inZone, Boolean lostTracker, long version
+    );
+
+    // Native so the row goes without loading it. Only the version that was read is deleted: 0 means the row
+    // changed (or went) since, and whatever was done with the old version has to be undone by the caller.
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = "DELETE FROM pets WHERE id = :id AND version = :version")
+    int deleteRow(Long id, long version);
 }
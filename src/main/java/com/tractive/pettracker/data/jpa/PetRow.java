@@ -0,0 +1,6 @@
+package com.tractive.pettracker.data.jpa;
+
+import com.tractive.pettracker.domain.Pet;
+
+// A pets row with the columns the domain Pet does not carry, so it can be copied to another database as it is
+public record PetRow(Pet pet, String trackerId, long version) {}
@@ -0,0 +1,50 @@
+package com.tractive.pettracker.data.jpa;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Eviction for writes Hibernate does not see. The native PATCH and upsert statements run as queries, so
+// neither the PetEntity region nor the cached counts learn about them. Everything here is a no-op unless
+// the second-level cache is switched on (l2cache profile).
+@Component
+public class PetSecondLevelCache {
+
+    private final Cache cache;
+    private final boolean enabled;
+
+    public PetSecondLevelCache(EntityManagerFactory entityManagerFactory) {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.cache = sessionFactory.getCache();
+        this.enabled = sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled();
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    // Evicts now and again once the transaction is over: a reader that still saw the old row in between
+    // may have put it back
+    public void evictAfterNativeWrite(Long id) {
+        if (!enabled) return;
+        evict(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(id);
+                }
+            });
+        }
+    }
+
+    public void evictAll() {
+        cache.evictAllRegions();
+    }
+
+    private void evict(Long id) {
+        cache.evictEntityData(PetEntity.class, id);
+        cache.evictQueryRegion(PetJpaRepository.COUNTS_CACHE_REGION);
+    }
+}
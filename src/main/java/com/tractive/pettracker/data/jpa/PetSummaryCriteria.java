@@ -0,0 +1,84 @@
+package com.tractive.pettracker.data.jpa;
+
+import com.tractive.pettracker.domain.PetCount;
+import com.tractive.pettracker.domain.PetSummaryDimension;
+import com.tractive.pettracker.domain.PetSummaryQuery;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import java.util.ArrayList;
+import java.util.List;
+
+// Compiles a PetSummaryQuery into one grouped projection:
+// SELECT <grouped columns>, COUNT(*) FROM pets WHERE <filters> GROUP BY <grouped columns> ORDER BY <grouped columns>.
+// Only columns are selected, never entities, so the plan can stay on the summary indexes of V7_0.
+public final class PetSummaryCriteria {
+
+    private PetSummaryCriteria() {}
+
+    public static List<PetCount> run(EntityManager entityManager, PetSummaryQuery query) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+        Root<PetEntity> pet = cq.from(PetEntity.class);
+
+        List<Predicate> where = new ArrayList<>();
+        if (query.getInZone() != null) where.add(cb.equal(pet.get("inZone"), query.getInZone()));
+        if (query.getPetType() != null) where.add(cb.equal(pet.get("petType"), query.getPetType()));
+        if (query.getTrackerType() != null) where.add(cb.equal(pet.get("trackerType"), query.getTrackerType()));
+        if (query.getLostTracker() != null) where.add(cb.equal(pet.get("lostTracker"), query.getLostTracker()));
+        if (query.getOwnerFrom() != null) where.add(cb.ge(pet.get("ownerId"), query.getOwnerFrom()));
+        if (query.getOwnerTo() != null) where.add(cb.le(pet.get("ownerId"), query.getOwnerTo()));
+
+        List<Path<?>> groups = new ArrayList<>();
+        for (PetSummaryDimension dimension : query.getGroupBy()) groups.add(pet.get(attribute(dimension)));
+        List<Selection<?>> select = new ArrayList<>(groups);
+        select.add(cb.count(pet));
+        List<Order> order = new ArrayList<>();
+        for (Path<?> group : groups) order.add(cb.asc(group));
+
+        cq.multiselect(select)
+            .where(where.toArray(Predicate[]::new))
+            .groupBy(new ArrayList<>(groups))
+            .orderBy(order);
+
+        List<Tuple> rows = entityManager.createQuery(cq).getResultList();
+        List<PetCount> out = new ArrayList<>(rows.size());
+        for (Tuple row : rows) out.add(toCount(row, query));
+        return out;
+    }
+
+    private static PetCount toCount(Tuple row, PetSummaryQuery query) {
+        PetType petType = null;
+        TrackerType trackerType = null;
+        Boolean inZone = null;
+        Boolean lostTracker = null;
+        int column = 0;
+        for (PetSummaryDimension dimension : query.getGroupBy()) {
+            Object value = row.get(column++);
+            switch (dimension) {
+                case PET_TYPE -> petType = (PetType) value;
+                case TRACKER_TYPE -> trackerType = (TrackerType) value;
+                case IN_ZONE -> inZone = (Boolean) value;
+                case LOST_TRACKER -> lostTracker = (Boolean) value;
+            }
+        }
+        return new PetCount(petType, trackerType, inZone, lostTracker, (Long) row.get(column));
+    }
+
+    private static String attribute(PetSummaryDimension dimension) {
+        return switch (dimension) {
+            case PET_TYPE -> "petType";
+            case TRACKER_TYPE -> "trackerType";
+            case IN_ZONE -> "inZone";
+            case LOST_TRACKER -> "lostTracker";
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package com.tractive.pettracker.data.jpa;
+
+import java.util.List;
+import org.springframework.transaction.annotation.Transactional;
+
+// Native writes of PetJpaRepository that hand back the row as it was before the change, which the caller
+// needs for the counter delta. The SQL for that differs per database, see PetWriteStatementsImpl.
+public interface PetWriteStatements {
+
+    // The previous row of a patched pet; no row means the id does not exist
+    @Transactional
+    List<Object[]> patchReturningPrevious(Long id, Boolean inZone, Boolean lostTracker);
+
+    // Upsert on the (owner_id, tracker_id) key: the previous row when the tracker was known, no row when it
+    // was inserted. The id is taken from the same sequence Hibernate allocates blocks from, so both paths
+    // never hand out the same id.
+    @Transactional
+    List<Object[]> upsertByTrackerReturningPrevious(
+        Integer ownerId, String trackerId, String petType, String trackerType, Boolean inZone, Boolean lostTracker
+    );
+}
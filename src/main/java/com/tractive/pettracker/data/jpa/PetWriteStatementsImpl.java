@@ -0,0 +1,124 @@
+package com.tractive.pettracker.data.jpa;
+
+import jakarta.persistence.EntityManager;
+import java.util.List;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+// The statements in H2 and PostgreSQL syntax, picked by the dialect Hibernate detected for the database.
+// H2 reads the previous row from OLD TABLE (<data change statement>), which PostgreSQL does not have;
+// PostgreSQL locks and reads it in a CTE and updates it in another one of the same statement. Either way
+// the previous row and the write are one statement; the zone event the caller appends is another.
+// Found by Spring Data as the implementation of the PetWriteStatements fragment of PetJpaRepository.
+public class PetWriteStatementsImpl implements PetWriteStatements {
+
+    private static final String PATCH_H2 = """
+        SELECT id, pet_type, tracker_type, owner_id, in_zone, lost_tracker FROM OLD TABLE (
+          UPDATE pets SET
+            in_zone = COALESCE(:inZone, in_zone),
+            lost_tracker = CASE WHEN pet_type = 'CAT' THEN COALESCE(:lostTracker, lost_tracker) ELSE lost_tracker END,
+            updated_at = CURRENT_TIMESTAMP,
+            version = version + 1
+          WHERE id = :id
+        )""";
+
+    // FOR UPDATE makes previous wait for a concurrent writer and read the row it committed, the same row
+    // version the UPDATE then changes; without it previous could come from the statement's older snapshot
+    private static final String PATCH_POSTGRES = """
+        WITH previous AS (
+          SELECT id, pet_type, tracker_type, owner_id, in_zone, lost_tracker FROM pets WHERE id = :id FOR UPDATE
+        ), changed AS (
+          UPDATE pets p SET
+            in_zone = COALESCE(CAST(:inZone AS BOOLEAN), p.in_zone),
+            lost_tracker = CASE WHEN p.pet_type = 'CAT' THEN COALESCE(CAST(:lostTracker AS BOOLEAN), p.lost_tracker) ELSE p.lost_tracker END,
+            updated_at = CURRENT_TIMESTAMP,
+            version = p.version + 1
+          FROM previous WHERE p.id = previous.id
+          RETURNING p.id
+        )
+        SELECT previous.id, previous.pet_type, previous.tracker_type, previous.owner_id, previous.in_zone, previous.lost_tracker
+        FROM previous JOIN changed ON changed.id = previous.id""";
+
+    private static final String UPSERT_H2 = """
+        SELECT id, pet_type, tracker_type, owner_id, in_zone, lost_tracker FROM OLD TABLE (
+          MERGE INTO pets t
+          USING (VALUES (CAST(:ownerId AS INTEGER), CAST(:trackerId AS VARCHAR(64)))) s(owner_id, tracker_id)
+          ON t.owner_id = s.owner_id AND t.tracker_id = s.tracker_id
+          WHEN MATCHED THEN UPDATE SET
+            pet_type = :petType, tracker_type = :trackerType, in_zone = :inZone, lost_tracker = :lostTracker,
+            updated_at = CURRENT_TIMESTAMP, version = t.version + 1
+          WHEN NOT MATCHED THEN INSERT (id, pet_type, tracker_type, owner_id, tracker_id, in_zone, lost_tracker)
+            VALUES (NEXT VALUE FOR pets_id_seq, :petType, :trackerType, s.owner_id, s.tracker_id, :inZone, :lostTracker)
+        )""";
+
+    // Not INSERT ... ON CONFLICT DO UPDATE: its RETURNING has only the new row, and when two first reports
+    // race, the loser would update the winner's row and still look inserted, counting the pet twice. Here
+    // the loser's insert fails on ux_pets_owner_tracker like the H2 MERGE does, and PetServiceImpl retries.
+    // The insert CTE runs although the final SELECT does not read it.
+    private static final String UPSERT_POSTGRES = """
+        WITH previous AS (
+          SELECT id, pet_type, tracker_type, owner_id, in_zone, lost_tracker FROM pets
+          WHERE owner_id = CAST(:ownerId AS INTEGER) AND tracker_id = CAST(:trackerId AS VARCHAR(64)) FOR UPDATE
+        ), changed AS (
+          UPDATE pets p SET
+            pet_type = :petType, tracker_type = :trackerType,
+            in_zone = CAST(:inZone AS BOOLEAN), lost_tracker = CAST(:lostTracker AS BOOLEAN),
+            updated_at = CURRENT_TIMESTAMP, version = p.version + 1
+          FROM previous WHERE p.id = previous.id
+          RETURNING p.id
+        ), inserted AS (
+          INSERT INTO pets (id, pet_type, tracker_type, owner_id, tracker_id, in_zone, lost_tracker)
+          SELECT nextval('pets_id_seq'), :petType, :trackerType, CAST(:ownerId AS INTEGER), CAST(:trackerId AS VARCHAR(64)),
+            CAST(:inZone AS BOOLEAN), CAST(:lostTracker AS BOOLEAN)
+          WHERE NOT EXISTS (SELECT 1 FROM previous)
+          RETURNING id
+        )
+        SELECT previous.id, previous.pet_type, previous.tracker_type, previous.owner_id, previous.in_zone, previous.lost_tracker
+        FROM previous JOIN changed ON changed.id = previous.id""";
+
+    private final EntityManager entityManager;
+    private volatile Boolean postgres;
+
+    public PetWriteStatementsImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Object[]> patchReturningPrevious(Long id, Boolean inZone, Boolean lostTracker) {
+        return entityManager.createNativeQuery(postgres() ? PATCH_POSTGRES : PATCH_H2)
+            .setParameter("id", id)
+            .setParameter("inZone", inZone)
+            .setParameter("lostTracker", lostTracker)
+            .getResultList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Object[]> upsertByTrackerReturningPrevious(
+        Integer ownerId, String trackerId, String petType, String trackerType, Boolean inZone, Boolean lostTracker
+    ) {
+        return entityManager.createNativeQuery(postgres() ? UPSERT_POSTGRES : UPSERT_H2)
+            .setParameter("ownerId", ownerId)
+            .setParameter("trackerId", trackerId)
+            .setParameter("petType", petType)
+            .setParameter("trackerType", trackerType)
+            .setParameter("inZone", inZone)
+            .setParameter("lostTracker", lostTracker)
+            .getResultList();
+    }
+
+    private boolean postgres() {
+        Boolean known = postgres;
+        if (known == null) {
+            Dialect dialect = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+            if (!(dialect instanceof PostgreSQLDialect) && !(dialect instanceof H2Dialect)) {
+                throw new IllegalStateException("no native pet statements for " + dialect.getClass().getSimpleName());
+            }
+            known = postgres = dialect instanceof PostgreSQLDialect;
+        }
+        return known;
+    }
+}
@@ -0,0 +1,46 @@
+package com.tractive.pettracker.data.jpa;
+
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+
+@Entity
+@Table(name = "pet_zone_checkpoints")
+@IdClass(PetZoneCheckpointEntity.Key.class)
+public class PetZoneCheckpointEntity {
+    public record Key(Instant checkpointAt, PetType petType, TrackerType trackerType) implements Serializable {}
+
+    @Id
+    @Column(name = "checkpoint_at", nullable = false, updatable = false)
+    private Instant checkpointAt;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "pet_type", nullable = false, updatable = false)
+    private PetType petType;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tracker_type", nullable = false, updatable = false)
+    private TrackerType trackerType;
+
+    @Column(name = "outside", nullable = false, updatable = false)
+    private Integer outside;
+
+    protected PetZoneCheckpointEntity() {
+    }
+
+    public PetZoneCheckpointEntity(Instant checkpointAt, PetType petType, TrackerType trackerType, int outside) {
+        this.checkpointAt = checkpointAt;
+        this.petType = petType;
+        this.trackerType = trackerType;
+        this.outside = outside;
+    }
+
+    public Instant getCheckpointAt() { return checkpointAt; }
+    public PetType getPetType() { return petType; }
+    public TrackerType getTrackerType() { return trackerType; }
+    public Integer getOutside() { return outside; }
+}
@@ -0,0 +1,55 @@
+package com.tractive.pettracker.data.jpa;
+
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import jakarta.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "pet_zone_events")
+public class PetZoneEventEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pet_zone_events_id_seq")
+    @SequenceGenerator(name = "pet_zone_events_id_seq", sequenceName = "pet_zone_events_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "pet_id", nullable = false, updatable = false)
+    private Long petId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "pet_type", nullable = false, updatable = false)
+    private PetType petType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tracker_type", nullable = false, updatable = false)
+    private TrackerType trackerType;
+
+    @Column(name = "in_zone", nullable = false, updatable = false)
+    private Boolean inZone;
+
+    @Column(name = "out_of_zone_delta", nullable = false, updatable = false)
+    private Short outOfZoneDelta;
+
+    @Column(name = "occurred_at", nullable = false, updatable = false)
+    private Instant occurredAt;
+
+    protected PetZoneEventEntity() {
+    }
+
+    public PetZoneEventEntity(Long petId, PetType petType, TrackerType trackerType, boolean inZone, int outOfZoneDelta, Instant occurredAt) {
+        this.petId = petId;
+        this.petType = petType;
+        this.trackerType = trackerType;
+        this.inZone = inZone;
+        this.outOfZoneDelta = (short) outOfZoneDelta;
+        this.occurredAt = occurredAt;
+    }
+
+    public Long getId() { return id; }
+    public Long getPetId() { return petId; }
+    public PetType getPetType() { return petType; }
+    public TrackerType getTrackerType() { return trackerType; }
+    public Boolean getInZone() { return inZone; }
+    public Short getOutOfZoneDelta() { return outOfZoneDelta; }
+    public Instant getOccurredAt() { return occurredAt; }
+}
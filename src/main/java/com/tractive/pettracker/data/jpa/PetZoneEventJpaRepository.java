@@ -0,0 +1,29 @@
+package com.tractive.pettracker.data.jpa;
+
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+public interface PetZoneEventJpaRepository extends JpaRepository<PetZoneEventEntity, Long> {
+    @Query("select e.petType, e.trackerType, sum(e.outOfZoneDelta) from PetZoneEventEntity e where e.occurredAt <= :at "
+        + "group by e.petType, e.trackerType having sum(e.outOfZoneDelta) > 0")
+    List<Object[]> countOutsideZoneGroupedAt(Instant at);
+
+    // Same sum without leaving out the groups at zero
+    @Query("select e.petType, e.trackerType, sum(e.outOfZoneDelta) from PetZoneEventEntity e where e.occurredAt <= :at "
+        + "group by e.petType, e.trackerType")
+    List<Object[]> sumOutOfZoneDeltasUntil(Instant at);
+
+    // Net change per group in (from, at]; may be negative or zero
+    @Query("select e.petType, e.trackerType, sum(e.outOfZoneDelta) from PetZoneEventEntity e where e.occurredAt > :from and e.occurredAt <= :at "
+        + "group by e.petType, e.trackerType")
+    List<Object[]> sumOutOfZoneDeltasBetween(Instant from, Instant at);
+
+    // Read through the primary key of pet_zone_checkpoints, which starts with checkpoint_at
+    @Query("select max(c.checkpointAt) from PetZoneCheckpointEntity c where c.checkpointAt <= :at")
+    Instant findLatestCheckpointAt(Instant at);
+
+    @Query("select c.petType, c.trackerType, c.outside from PetZoneCheckpointEntity c where c.checkpointAt = :at")
+    List<Object[]> findCheckpoint(Instant at);
+}
@@ -0,0 +1,62 @@
+package com.tractive.pettracker.data.jpa;
+
+import com.tractive.pettracker.domain.PositionResolution;
+import jakarta.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "pet_position_chunks")
+public class PositionChunkEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pet_position_chunks_id_seq")
+    @SequenceGenerator(name = "pet_position_chunks_id_seq", sequenceName = "pet_position_chunks_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "pet_id", nullable = false, updatable = false)
+    private Long petId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "resolution", nullable = false, updatable = false)
+    private PositionResolution resolution;
+
+    @Column(name = "start_time", nullable = false)
+    private Instant startTime;
+
+    @Column(name = "end_time", nullable = false)
+    private Instant endTime;
+
+    @Column(name = "sample_count", nullable = false)
+    private Integer sampleCount;
+
+    // encoded by PositionChunk
+    @Column(name = "data", nullable = false)
+    private byte[] data;
+
+    protected PositionChunkEntity() {
+    }
+
+    public PositionChunkEntity(Long petId, PositionResolution resolution, Instant startTime, Instant endTime, int sampleCount, byte[] data) {
+        this.petId = petId;
+        this.resolution = resolution;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.sampleCount = sampleCount;
+        this.data = data;
+    }
+
+    public Long getId() { return id; }
+    public Long getPetId() { return petId; }
+    public PositionResolution getResolution() { return resolution; }
+    public Instant getStartTime() { return startTime; }
+    public Instant getEndTime() { return endTime; }
+    public Integer getSampleCount() { return sampleCount; }
+    public byte[] getData() { return data; }
+
+    // compaction leaves the samples it cannot downsample yet in their chunk
+    public void replaceData(Instant startTime, Instant endTime, int sampleCount, byte[] data) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.sampleCount = sampleCount;
+        this.data = data;
+    }
+}
@@ -0,0 +1,31 @@
+package com.tractive.pettracker.data.jpa;
+
+import com.tractive.pettracker.domain.PositionResolution;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+public interface PositionChunkJpaRepository extends JpaRepository<PositionChunkEntity, Long> {
+    // served by (pet_id, end_time)
+    @Query("select c from PositionChunkEntity c where c.petId = :petId and c.endTime >= :from and c.startTime <= :to")
+    List<PositionChunkEntity> findOverlapping(Long petId, Instant from, Instant to);
+
+    List<PositionChunkEntity> findByResolutionAndEndTimeBeforeOrderByEndTimeAscIdAsc(PositionResolution resolution, Instant cutoff, Limit limit);
+
+    // the page after (afterEnd, afterId) in the same order
+    @Query("select c from PositionChunkEntity c where c.resolution = :resolution and c.endTime < :cutoff"
+        + " and (c.endTime > :afterEnd or (c.endTime = :afterEnd and c.id > :afterId)) order by c.endTime, c.id")
+    List<PositionChunkEntity> findExpiredAfter(PositionResolution resolution, Instant cutoff, Instant afterEnd, Long afterId, Limit limit);
+
+    // Flushing an open chunk again replaces its content without loading it
+    @Modifying
+    @Query("update PositionChunkEntity c set c.startTime = :startTime, c.endTime = :endTime, c.sampleCount = :sampleCount, c.data = :data where c.id = :id")
+    int rewrite(Long id, Instant startTime, Instant endTime, int sampleCount, byte[] data);
+
+    @Modifying
+    @Query("delete from PositionChunkEntity c where c.resolution = :resolution and c.endTime < :cutoff")
+    int deleteExpired(PositionResolution resolution, Instant cutoff);
+}
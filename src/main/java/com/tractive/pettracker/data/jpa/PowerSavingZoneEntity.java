@@ -0,0 +1,36 @@
+package com.tractive.pettracker.data.jpa;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "power_saving_zones")
+public class PowerSavingZoneEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "power_saving_zones_id_seq")
+    @SequenceGenerator(name = "power_saving_zones_id_seq", sequenceName = "power_saving_zones_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "owner_id", nullable = false, updatable = false)
+    private Integer ownerId;
+
+    @Column(name = "name", nullable = false, updatable = false)
+    private String name;
+
+    // (lat, lon) pairs as big-endian doubles
+    @Column(name = "vertices", nullable = false, updatable = false)
+    private byte[] vertices;
+
+    protected PowerSavingZoneEntity() {
+    }
+
+    public PowerSavingZoneEntity(Integer ownerId, String name, byte[] vertices) {
+        this.ownerId = ownerId;
+        this.name = name;
+        this.vertices = vertices;
+    }
+
+    public Long getId() { return id; }
+    public Integer getOwnerId() { return ownerId; }
+    public String getName() { return name; }
+    public byte[] getVertices() { return vertices; }
+}
@@ -0,0 +1,15 @@
+package com.tractive.pettracker.data.jpa;
+
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+public interface PowerSavingZoneJpaRepository extends JpaRepository<PowerSavingZoneEntity, Long> {
+    List<PowerSavingZoneEntity> findByOwnerIdOrderByIdAsc(Integer ownerId);
+
+    // One statement instead of loading the zones to delete them one by one
+    @Modifying
+    @Query("delete from PowerSavingZoneEntity z where z.ownerId = :ownerId")
+    int deleteByOwnerId(Integer ownerId);
+}
@@ -0,0 +1,385 @@
+package com.tractive.pettracker.data.memory;
+
+import com.tractive.pettracker.data.OutOfZoneCounters;
+import com.tractive.pettracker.data.OutOfZoneDwellTime;
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.OutOfZoneDwell;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetCount;
+import com.tractive.pettracker.domain.PetPatch;
+import com.tractive.pettracker.domain.PetSummaryQuery;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.PetUpsertResult;
+import com.tractive.pettracker.domain.TrackerType;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+
+// Storage engine that keeps pets in process memory without JPA.
+// Ids are handed out densely from a counter, so a pet lives at a fixed slot of a two-level array addressed
+// by the primitive id: lookups need no hashing or boxing, keyset pages are a sequential scan, and
+// updates are a compare-and-set on the slot, which also yields the exact previous state for the counters.
+// With pettracker.persistence.directory set, every write also goes to a PetJournal and the store is rebuilt
+// from its snapshot and log on startup.
+@Repository("petStorage")
+@ConditionalOnProperty(name = "pettracker.storage", havingValue = "memory")
+@Observed(name = "pettracker.repository")
+public class InMemoryPetRepository implements PetRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryPetRepository.class);
+    private static final int SEGMENT_BITS = 16;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final long MAX_ID = (long) SEGMENT_SIZE * SEGMENT_SIZE - 1;
+    private static final PetType[] PET_TYPES = PetType.values();
+    private static final TrackerType[] TRACKER_TYPES = TrackerType.values();
+
+    private final AtomicReferenceArray<AtomicReferenceArray<StoredPet>> segments = new AtomicReferenceArray<>(SEGMENT_SIZE);
+    private final AtomicLong lastId = new AtomicLong();
+    private final OutOfZoneCounters counters = OutOfZoneCounters.immediate();
+    private final OutOfZoneDwellTime dwell = OutOfZoneDwellTime.immediate();
+    private final OutOfZoneHistory history = new OutOfZoneHistory();
+    private final ConcurrentMap<TrackerKey, Long> trackerIds = new ConcurrentHashMap<>();
+    // ids of each owner's pets in id order, for owner-scoped pages without a scan of the whole store
+    private final ConcurrentMap<Integer, NavigableSet<Long>> petsByOwner = new ConcurrentHashMap<>();
+    private final PetJournal journal;
+
+    public InMemoryPetRepository() {
+        this.journal = null;
+    }
+
+    @Autowired
+    public InMemoryPetRepository(
+        @Value("${pettracker.persistence.directory:}") String directory,
+        @Value("${pettracker.persistence.wal-segment-size:64MB}") DataSize segmentSize
+    ) throws IOException {
+        if (directory.isBlank()) {
+            this.journal = null;
+            return;
+        }
+        long started = System.nanoTime();
+        this.journal = PetJournal.open(Path.of(directory), Math.toIntExact(segmentSize.toBytes()), history, new JournalTarget());
+        // pets restored outside the zone count as outside from now on
+        forEachStored(pet -> {
+            counters.record(null, pet.toDomain());
+            dwell.record(null, pet.toDomain());
+            index(null, pet);
+        });
+        log.info("Restored {} pets from {} in {} ms", lastId.get(), directory, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @Override
+    public Pet save(Pet pet) {
+        long id = lastId.incrementAndGet();
+        if (id > MAX_ID) throw new IllegalStateException("in-memory pet store is full");
+        StoredPet stored = StoredPet.of(id, 1, pet);
+        segment(id, true).set(offset(id), stored);
+        written(null, stored);
+        return stored.toDomain();
+    }
+
+    @Override
+    public List<Pet> saveAll(List<Pet> pets) {
+        List<Pet> out = new ArrayList<>(pets.size());
+        for (Pet pet : pets) out.add(save(pet));
+        return out;
+    }
+
+    @Override
+    public Pet update(Pet pet) {
+        return write(pet, null);
+    }
+
+    // The compare-and-set already rejects a slot changed since it was read; the expected version
+    // additionally covers changes made after the caller read the pet
+    @Override
+    public Pet update(Pet pet, long expectedVersion) {
+        return write(pet, expectedVersion);
+    }
+
+    private Pet write(Pet pet, Long expectedVersion) {
+        if (pet.getId() == null) throw new IllegalArgumentException("id required for update");
+        long id = pet.getId();
+        AtomicReferenceArray<StoredPet> segment = id > 0 && id <= MAX_ID ? segment(id, false) : null;
+        if (segment == null) throw new IllegalArgumentException("pet %d not found".formatted(id));
+        StoredPet previous;
+        StoredPet next;
+        do {
+            previous = segment.get(offset(id));
+            if (previous == null) throw new IllegalArgumentException("pet %d not found".formatted(id));
+            if (expectedVersion != null && previous.version() != expectedVersion) {
+                throw new OptimisticLockingFailureException("pet %d is at version %d, not %d".formatted(id, previous.version(), expectedVersion));
+            }
+            next = StoredPet.of(id, previous.version() + 1, pet);
+        } while (!segment.compareAndSet(offset(id), previous, next));
+        written(previous, next);
+        return next.toDomain();
+    }
+
+    @Override
+    public Optional<Pet> patch(Long id, PetPatch patch) {
+        AtomicReferenceArray<StoredPet> segment = id != null && id > 0 && id <= MAX_ID ? segment(id, false) : null;
+        if (segment == null) return Optional.empty();
+        StoredPet previous;
+        StoredPet next;
+        do {
+            previous = segment.get(offset(id));
+            if (previous == null) return Optional.empty();
+            next = StoredPet.of(id, previous.version() + 1, patch.applyTo(previous.toDomain()));
+        } while (!segment.compareAndSet(offset(id), previous, next));
+        written(previous, next);
+        return Optional.of(next.toDomain());
+    }
+
+    // computeIfAbsent makes the first report of a tracker the only one that creates the pet
+    @Override
+    public PetUpsertResult upsertByTracker(String trackerId, Pet pet) {
+        Pet[] created = new Pet[1];
+        long id = trackerIds.computeIfAbsent(new TrackerKey(pet.getOwnerId(), trackerId), key -> {
+            created[0] = save(pet);
+            return created[0].getId();
+        });
+        if (created[0] != null) {
+            if (journal != null) journal.appendTracker(pet.getOwnerId(), trackerId, id);
+            return new PetUpsertResult(created[0], true);
+        }
+        return new PetUpsertResult(update(StoredPet.of(id, 0, pet).toDomain()), false);
+    }
+
+    @Override
+    public Optional<Pet> findById(Long id) {
+        return Optional.ofNullable(get(id)).map(StoredPet::toDomain);
+    }
+
+    @Override
+    public Optional<Long> findVersion(Long id) {
+        StoredPet stored = get(id);
+        return stored != null ? Optional.of((long) stored.version()) : Optional.empty();
+    }
+
+    @Override
+    public List<Pet> findAll() {
+        return findPage(0L, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Pet> findPage(Long afterId, int limit) {
+        long last = lastId.get();
+        long from = afterId != null ? Math.max(afterId, 0L) : 0L;
+        if (from >= last) return List.of();
+        List<Pet> out = new ArrayList<>(Math.min(limit, 1024));
+        for (long id = from + 1; id <= last && out.size() < limit; id++) {
+            // an id can be allocated but not stored yet by a concurrent save
+            StoredPet stored = get(id);
+            if (stored != null) out.add(stored.toDomain());
+        }
+        return out;
+    }
+
+    @Override
+    public List<Pet> findPageByOwner(Integer ownerId, Long afterId, int limit) {
+        NavigableSet<Long> ids = ownerId != null ? petsByOwner.get(ownerId) : null;
+        if (ids == null) return List.of();
+        List<Pet> out = new ArrayList<>(Math.min(limit, 64));
+        for (Long id : ids.tailSet(afterId != null ? afterId : 0L, false)) {
+            if (out.size() == limit) break;
+            StoredPet stored = ownedBy(ownerId, id);
+            if (stored != null) out.add(stored.toDomain());
+        }
+        return out;
+    }
+
+    @Override
+    public List<OutOfZoneCount> countOutsideZoneGrouped() {
+        return counters.snapshot();
+    }
+
+    @Override
+    public long outOfZoneGeneration() {
+        return counters.generation();
+    }
+
+    @Override
+    public List<OutOfZoneCount> countOutsideZoneGroupedByOwner(Integer ownerId) {
+        NavigableSet<Long> ids = ownerId != null ? petsByOwner.get(ownerId) : null;
+        if (ids == null) return List.of();
+        int[] counts = new int[PET_TYPES.length * TRACKER_TYPES.length];
+        for (Long id : ids) {
+            StoredPet stored = ownedBy(ownerId, id);
+            if (stored != null && !stored.inZone()) counts[stored.petType().ordinal() * TRACKER_TYPES.length + stored.trackerType().ordinal()]++;
+        }
+        List<OutOfZoneCount> out = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) out.add(new OutOfZoneCount(PET_TYPES[i / TRACKER_TYPES.length], TRACKER_TYPES[i % TRACKER_TYPES.length], counts[i]));
+        }
+        return out;
+    }
+
+    @Override
+    public List<OutOfZoneCount> countOutsideZoneGroupedAt(Instant at) {
+        return history.countAt(at.toEpochMilli());
+    }
+
+    @Override
+    public List<OutOfZoneDwell> outOfZoneDwell(Instant from, Duration step) {
+        return dwell.byGroup(from, step);
+    }
+
+    @Override
+    public List<OutOfZoneDwell> outOfZoneDwellByOwner(Integer ownerId, Instant from, Duration step) {
+        return dwell.byOwner(ownerId, from, step);
+    }
+
+    @Scheduled(
+        initialDelayString = "${pettracker.persistence.snapshot-interval:PT1M}",
+        fixedDelayString = "${pettracker.persistence.snapshot-interval:PT1M}"
+    )
+    public void snapshot() {
+        if (journal == null) return;
+        try {
+            journal.snapshot(new JournalTarget());
+        } catch (IOException e) {
+            // the log still holds every write since the previous snapshot
+            log.error("Snapshot of the in-memory store failed", e);
+        }
+    }
+
+    @Scheduled(
+        initialDelayString = "${pettracker.persistence.sync-interval:PT1S}",
+        fixedDelayString = "${pettracker.persistence.sync-interval:PT1S}"
+    )
+    public void sync() {
+        if (journal != null) journal.force();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (journal == null) return;
+        snapshot();
+        journal.close();
+    }
+
+    // The journal records the out-of-zone history under its own lock; without one it is recorded directly
+    private void written(StoredPet before, StoredPet after) {
+        Pet previous = before != null ? before.toDomain() : null;
+        Pet current = after.toDomain();
+        counters.record(previous, current);
+        dwell.record(previous, current);
+        index(before, after);
+        if (journal != null) journal.appendPet(before, after);
+        else history.record(previous, current, System.currentTimeMillis());
+    }
+
+    private void index(StoredPet before, StoredPet after) {
+        if (before != null && before.ownerId() == after.ownerId()) return;
+        NavigableSet<Long> previous = before != null ? petsByOwner.get(before.ownerId()) : null;
+        if (previous != null) previous.remove(after.id());
+        petsByOwner.computeIfAbsent(after.ownerId(), owner -> new ConcurrentSkipListSet<>()).add(after.id());
+    }
+
+    // Racing owner changes can leave an id listed under an owner it has already left; reads skip those
+    private StoredPet ownedBy(int ownerId, long id) {
+        StoredPet stored = get(id);
+        return stored != null && stored.ownerId() == ownerId ? stored : null;
+    }
+
+    private void forEachStored(Consumer<StoredPet> action) {
+        long last = lastId.get();
+        for (long id = 1; id <= last; id++) {
+            StoredPet stored = get(id);
+            if (stored != null) action.accept(stored);
+        }
+    }
+
+    // A full scan: ad-hoc questions are rare next to the per-write counters, and a pass over the
+    // packed records runs at memory bandwidth
+    @Override
+    public List<PetCount> summarize(PetSummaryQuery query) {
+        Map<List<Object>, PetCount> groups = new HashMap<>();
+        forEachStored(stored -> {
+            Pet pet = stored.toDomain();
+            if (!query.matches(pet)) return;
+            PetCount group = query.groupOf(pet, 1);
+            List<Object> key = Arrays.asList(group.getPetType(), group.getTrackerType(), group.getInZone(), group.getLostTracker());
+            groups.merge(key, group, (current, one) -> current.plus(1));
+        });
+        List<PetCount> out = new ArrayList<>(groups.values());
+        out.sort(PetCount.SUMMARY_ORDER);
+        return out;
+    }
+
+    private StoredPet get(Long id) {
+        if (id == null || id <= 0 || id > MAX_ID) return null;
+        AtomicReferenceArray<StoredPet> segment = segment(id, false);
+        return segment != null ? segment.get(offset(id)) : null;
+    }
+
+    private AtomicReferenceArray<StoredPet> segment(long id, boolean create) {
+        int index = (int) (id >>> SEGMENT_BITS);
+        AtomicReferenceArray<StoredPet> segment = segments.get(index);
+        if (segment != null || !create) return segment;
+        segments.compareAndSet(index, null, new AtomicReferenceArray<>(SEGMENT_SIZE));
+        return segments.get(index);
+    }
+
+    private static int offset(long id) {
+        return (int) (id & SEGMENT_MASK);
+    }
+
+    record TrackerKey(int ownerId, String trackerId) {}
+
+    private class JournalTarget implements PetJournal.Target {
+
+        @Override
+        public StoredPet stored(long id) {
+            return get(id);
+        }
+
+        @Override
+        public void restore(StoredPet pet) {
+            segment(pet.id(), true).set(offset(pet.id()), pet);
+            lastId.accumulateAndGet(pet.id(), Math::max);
+        }
+
+        @Override
+        public void restoreTracker(int ownerId, String trackerId, long id) {
+            trackerIds.put(new TrackerKey(ownerId, trackerId), id);
+        }
+
+        @Override
+        public void forEachStored(Consumer<StoredPet> action) {
+            InMemoryPetRepository.this.forEachStored(action);
+        }
+
+        @Override
+        public Map<TrackerKey, Long> trackers() {
+            return trackerIds;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.tractive.pettracker.data.memory;
+
+import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Append-only out-of-zone history for the in-memory engine.
+// Each (PetType, TrackerType) group keeps a timeline of (time, running count) pairs, appended only when the
+// count changes, so the count at any instant is a binary search per group instead of a replay of all events.
+class OutOfZoneHistory {
+
+    private static final PetType[] PET_TYPES = PetType.values();
+    private static final TrackerType[] TRACKER_TYPES = TrackerType.values();
+
+    private final Timeline[] timelines = new Timeline[PET_TYPES.length * TRACKER_TYPES.length];
+
+    OutOfZoneHistory() {
+        for (int i = 0; i < timelines.length; i++) timelines[i] = new Timeline();
+    }
+
+    void record(Pet before, Pet after, long epochMillis) {
+        boolean wasOutside = isOutside(before);
+        boolean isOutside = isOutside(after);
+        if (wasOutside && isOutside && slot(before) == slot(after)) return;
+        if (wasOutside) timelines[slot(before)].append(epochMillis, -1);
+        if (isOutside) timelines[slot(after)].append(epochMillis, 1);
+    }
+
+    List<OutOfZoneCount> countAt(long epochMillis) {
+        List<OutOfZoneCount> out = new ArrayList<>();
+        for (int i = 0; i < timelines.length; i++) {
+            int count = timelines[i].countAt(epochMillis);
+            if (count > 0) out.add(new OutOfZoneCount(PET_TYPES[i / TRACKER_TYPES.length], TRACKER_TYPES[i % TRACKER_TYPES.length], count));
+        }
+        return out;
+    }
+
+    OutOfZoneHistory copy() {
+        OutOfZoneHistory copy = new OutOfZoneHistory();
+        for (int i = 0; i < timelines.length; i++) timelines[i].copyTo(copy.timelines[i]);
+        return copy;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(timelines.length);
+        for (Timeline timeline : timelines) timeline.writeTo(out);
+    }
+
+    // Replaces the current timelines; the group layout must match the one that was written
+    void readFrom(DataInput in) throws IOException {
+        int groups = in.readInt();
+        if (groups != timelines.length) throw new IOException("history has %d groups, expected %d".formatted(groups, timelines.length));
+        for (Timeline timeline : timelines) timeline.readFrom(in);
+    }
+
+    private static boolean isOutside(Pet pet) {
+        return pet != null && Boolean.FALSE.equals(pet.getInZone());
+    }
+
+    private static int slot(Pet pet) {
+        return pet.getPetType().ordinal() * TRACKER_TYPES.length + pet.getTrackerType().ordinal();
+    }
+
+    private static class Timeline {
+        private long[] times = new long[16];
+        private int[] counts = new int[16];
+        private int size;
+
+        synchronized void append(long epochMillis, int delta) {
+            int current = size > 0 ? counts[size - 1] : 0;
+            // concurrent writers may arrive slightly out of clock order; keep the timeline monotonic
+            long time = size > 0 ? Math.max(epochMillis, times[size - 1]) : epochMillis;
+            if (size > 0 && times[size - 1] == time) {
+                counts[size - 1] = current + delta;
+                return;
+            }
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            times[size] = time;
+            counts[size] = current + delta;
+            size++;
+        }
+
+        synchronized void copyTo(Timeline target) {
+            target.times = Arrays.copyOf(times, Math.max(size, 16));
+            target.counts = Arrays.copyOf(counts, Math.max(size, 16));
+            target.size = size;
+        }
+
+        synchronized void writeTo(DataOutput out) throws IOException {
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(times[i]);
+                out.writeInt(counts[i]);
+            }
+        }
+
+        synchronized void readFrom(DataInput in) throws IOException {
+            size = in.readInt();
+            times = new long[Math.max(size, 16)];
+            counts = new int[Math.max(size, 16)];
+            for (int i = 0; i < size; i++) {
+                times[i] = in.readLong();
+                counts[i] = in.readInt();
+            }
+        }
+
+        synchronized int countAt(long epochMillis) {
+            int low = 0;
+            int high = size - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] <= epochMillis) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found >= 0 ? counts[found] : 0;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.tractive.pettracker.data.memory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Write-ahead log plus periodic snapshot for the in-memory engine.
+// Every write is appended to a memory-mapped segment as [length][crc32][payload]; the length goes in last,
+// so a record torn by a crash reads as the end of the log. A snapshot is written at a segment boundary and
+// makes all older segments obsolete; startup loads the snapshot and replays the segments after it.
+// Appends reach the page cache immediately and the disk on force(), so a process crash loses nothing
+// and a machine crash loses at most the writes since the last force.
+class PetJournal implements AutoCloseable {
+
+    // Callbacks into the store that owns the journal, used for replay and snapshots
+    interface Target {
+        StoredPet stored(long id);
+
+        void restore(StoredPet pet);
+
+        void restoreTracker(int ownerId, String trackerId, long id);
+
+        void forEachStored(Consumer<StoredPet> action);
+
+        Map<InMemoryPetRepository.TrackerKey, Long> trackers();
+    }
+
+    private static final int MAGIC = 0x50455453;
+    private static final int FORMAT = 1;
+    private static final byte PET = 1;
+    private static final byte TRACKER = 2;
+    private static final int HEADER = 8;
+    private static final int PET_PAYLOAD = 1 + 8 + 4 + 4 + 1 + 1 + 8;
+    private static final String SNAPSHOT = "snapshot.bin";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final OutOfZoneHistory history;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer petPayload = ByteBuffer.allocate(PET_PAYLOAD);
+    private MappedByteBuffer segment;
+    private long segmentNumber;
+
+    private PetJournal(Path directory, int segmentSize, OutOfZoneHistory history) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.history = history;
+    }
+
+    // Loads the snapshot, replays the log after it into target and history, and starts a fresh segment
+    static PetJournal open(Path directory, int segmentSize, OutOfZoneHistory history, Target target) throws IOException {
+        Files.createDirectories(directory);
+        PetJournal journal = new PetJournal(directory, segmentSize, history);
+        long next = journal.readSnapshot(target);
+        long last = next - 1;
+        for (long number : journal.segmentNumbers()) {
+            if (number < next) continue;
+            journal.replay(journal.segmentPath(number), target);
+            last = number;
+        }
+        journal.map(last + 1);
+        return journal;
+    }
+
+    void appendPet(StoredPet before, StoredPet after) {
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            // recorded under the lock, so a snapshot's history copy covers exactly the records before its segment
+            history.record(before != null ? before.toDomain() : null, after.toDomain(), now);
+            petPayload.clear();
+            petPayload.put(PET)
+                .putLong(after.id())
+                .putInt(after.version())
+                .putInt(after.ownerId())
+                .put(after.packed())
+                .put(before != null ? before.packed() : StoredPet.NONE)
+                .putLong(now);
+            append(petPayload.array(), PET_PAYLOAD);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void appendTracker(int ownerId, String trackerId, long id) {
+        byte[] name = trackerId.getBytes(StandardCharsets.UTF_8);
+        if (name.length > 0xFFFF) throw new IllegalArgumentException("tracker id too long");
+        ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 4 + 2 + name.length)
+            .put(TRACKER)
+            .putLong(id)
+            .putInt(ownerId)
+            .putShort((short) name.length)
+            .put(name);
+        lock.lock();
+        try {
+            append(payload.array(), payload.capacity());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Flushes the mapped pages of the current segment to disk
+    void force() {
+        MappedByteBuffer current;
+        lock.lock();
+        try {
+            current = segment;
+        } finally {
+            lock.unlock();
+        }
+        if (current != null) current.force();
+    }
+
+    // Starts a new segment, then writes the state as of that boundary. Pets written concurrently may
+    // already be in the snapshot as well as in the new segment; replay keeps the higher version.
+    void snapshot(Target target) throws IOException {
+        long next;
+        OutOfZoneHistory historyCopy;
+        lock.lock();
+        try {
+            next = segmentNumber + 1;
+            segment.force();
+            map(next);
+            historyCopy = history.copy();
+        } finally {
+            lock.unlock();
+        }
+
+        Path tmp = directory.resolve(SNAPSHOT + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(next);
+            try {
+                target.forEachStored(pet -> {
+                    try {
+                        out.writeLong(pet.id());
+                        out.writeInt(pet.version());
+                        out.writeInt(pet.ownerId());
+                        out.writeByte(pet.packed());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.writeLong(0L);
+            for (Map.Entry<InMemoryPetRepository.TrackerKey, Long> tracker : target.trackers().entrySet()) {
+                out.writeBoolean(true);
+                out.writeInt(tracker.getKey().ownerId());
+                out.writeUTF(tracker.getKey().trackerId());
+                out.writeLong(tracker.getValue());
+            }
+            out.writeBoolean(false);
+            historyCopy.writeTo(out);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, directory.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (long number : segmentNumbers()) {
+            if (number < next) Files.deleteIfExists(segmentPath(number));
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (segment != null) segment.force();
+            segment = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(byte[] payload, int length) {
+        if (segment.remaining() < HEADER + length) rotate();
+        crc.reset();
+        crc.update(payload, 0, length);
+        int position = segment.position();
+        segment.putInt(position + 4, (int) crc.getValue());
+        segment.put(position + HEADER, payload, 0, length);
+        segment.putInt(position, length);
+        segment.position(position + HEADER + length);
+    }
+
+    private void rotate() {
+        segment.force();
+        try {
+            map(segmentNumber + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void map(long number) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segmentNumber = number;
+    }
+
+    // Returns the first segment not covered by the snapshot
+    private long readSnapshot(Target target) throws IOException {
+        Path file = directory.resolve(SNAPSHOT);
+        if (!Files.exists(file)) return 0L;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) throw new IOException("unrecognised snapshot " + file);
+            long next = in.readLong();
+            for (long id = in.readLong(); id != 0L; id = in.readLong()) {
+                target.restore(StoredPet.unpack(id, in.readInt(), in.readInt(), in.readByte()));
+            }
+            while (in.readBoolean()) {
+                int ownerId = in.readInt();
+                String trackerId = in.readUTF();
+                target.restoreTracker(ownerId, trackerId, in.readLong());
+            }
+            history.readFrom(in);
+            return next;
+        }
+    }
+
+    private void replay(Path path, Target target) throws IOException {
+        ByteBuffer log;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        byte[] payload = new byte[256];
+        while (log.remaining() >= HEADER) {
+            int length = log.getInt();
+            int checksum = log.getInt();
+            if (length <= 0 || length > log.remaining()) break;
+            if (payload.length < length) payload = new byte[length];
+            log.get(payload, 0, length);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum) break;
+            apply(ByteBuffer.wrap(payload, 0, length), target);
+        }
+    }
+
+    private void apply(ByteBuffer record, Target target) {
+        byte type = record.get();
+        long id = record.getLong();
+        if (type == PET) {
+            int version = record.getInt();
+            int ownerId = record.getInt();
+            StoredPet after = StoredPet.unpack(id, version, ownerId, record.get());
+            byte before = record.get();
+            long time = record.getLong();
+            StoredPet current = target.stored(id);
+            if (current == null || current.version() < version) target.restore(after);
+            history.record(before != StoredPet.NONE ? StoredPet.unpack(id, version - 1, ownerId, before).toDomain() : null, after.toDomain(), time);
+        } else if (type == TRACKER) {
+            int ownerId = record.getInt();
+            byte[] name = new byte[record.getShort() & 0xFFFF];
+            record.get(name);
+            target.restoreTracker(ownerId, new String(name, StandardCharsets.UTF_8), id);
+        }
+    }
+
+    private List<Long> segmentNumbers() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith("wal-") && name.endsWith(".log"))
+                .forEach(name -> numbers.add(Long.parseLong(name.substring(4, name.length() - 4))));
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve("wal-%010d.log".formatted(number));
+    }
+}
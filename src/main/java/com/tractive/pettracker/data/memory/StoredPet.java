@@ -0,0 +1,35 @@
+package com.tractive.pettracker.data.memory;
+
+import com.tractive.pettracker.domain.Cat;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+
+// Immutable snapshot of a pet; the domain objects handed out are copies, so callers cannot mutate the store.
+// version counts the writes to the pet, which orders journal records of concurrent writers on replay.
+record StoredPet(long id, int version, PetType petType, TrackerType trackerType, int ownerId, boolean inZone, boolean lostTracker) {
+
+    static final byte NONE = -1;
+
+    private static final PetType[] PET_TYPES = PetType.values();
+    private static final TrackerType[] TRACKER_TYPES = TrackerType.values();
+
+    static StoredPet of(long id, int version, Pet pet) {
+        boolean lost = pet instanceof Cat cat && Boolean.TRUE.equals(cat.getLostTracker());
+        return new StoredPet(id, version, pet.getPetType(), pet.getTrackerType(), pet.getOwnerId(), pet.getInZone(), lost);
+    }
+
+    static StoredPet unpack(long id, int version, int ownerId, byte packed) {
+        return new StoredPet(id, version, PET_TYPES[packed >> 4 & 3], TRACKER_TYPES[packed >> 2 & 3], ownerId, (packed & 2) != 0, (packed & 1) != 0);
+    }
+
+    Pet toDomain() {
+        if (petType == PetType.CAT) return new Cat(id, trackerType, ownerId, inZone, lostTracker);
+        return new Pet(id, petType, trackerType, ownerId, inZone);
+    }
+
+    // Both enums as 2-bit ordinals plus the two flags
+    byte packed() {
+        return (byte) (petType.ordinal() << 4 | trackerType.ordinal() << 2 | (inZone ? 2 : 0) | (lostTracker ? 1 : 0));
+    }
+}
@@ -0,0 +1,49 @@
+package com.tractive.pettracker.data.shard;
+
+import com.tractive.pettracker.data.PetRepositoryImpl;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// One database of the sharded pet store: a PetRepositoryImpl on its own connection pool and persistence unit.
+// Shard i hands out ids from i << ID_BITS on, so ids stay unique across shards and tell which shard a pet was
+// created on. 40 bits leave room for 2^40 pets per shard and keep ids of the first 8192 shards below 2^53,
+// where JSON clients still read them exactly.
+public final class PetShard implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PetShard.class);
+    static final int ID_BITS = 40;
+
+    private final int index;
+    private final PetRepositoryImpl repository;
+    private final List<AutoCloseable> resources;
+
+    // resources are closed in reverse order, after the repository is no longer used
+    public PetShard(int index, PetRepositoryImpl repository, List<AutoCloseable> resources) {
+        this.index = index;
+        this.repository = repository;
+        this.resources = List.copyOf(resources);
+    }
+
+    public int index() { return index; }
+    public PetRepositoryImpl repository() { return repository; }
+
+    public static long firstId(int index) {
+        return index == 0 ? 1L : (long) index << ID_BITS;
+    }
+
+    static int indexOf(long id) {
+        return (int) (id >>> ID_BITS);
+    }
+
+    @Override
+    public void close() {
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            try {
+                resources.get(i).close();
+            } catch (Exception e) {
+                log.warn("Closing a resource of pet shard {} failed", index, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.tractive.pettracker.data.shard;
+
+import java.util.Arrays;
+
+// Consistent hashing of owner ids onto shards.
+// Every shard owns virtualNodes points on a 64-bit ring and an owner belongs to the shard of the first point
+// at or after the owner's hash. A shard's points depend only on its index, so growing the ring from n to n + 1
+// shards leaves the existing points in place: the only owners that change shard are the ones now landing on
+// one of the new shard's points, about 1 / (n + 1) of them, and they all move to the new shard.
+public final class ShardRing {
+
+    // keeps the points apart from the owner hashes, which come from the same mixing function
+    private static final long POINT_SALT = 0x9E3779B97F4A7C15L;
+
+    private final int shardCount;
+    private final long[] points;
+    private final int[] shards;
+
+    public ShardRing(int shardCount, int virtualNodes) {
+        if (shardCount < 1) throw new IllegalArgumentException("at least one shard required");
+        if (virtualNodes < 1) throw new IllegalArgumentException("at least one virtual node per shard required");
+        this.shardCount = shardCount;
+        long[][] ring = new long[shardCount * virtualNodes][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring[shard * virtualNodes + node] = new long[] {mix(((long) shard << 32 | node) ^ POINT_SALT), shard};
+            }
+        }
+        // ties are practically impossible; if one happens the lower shard wins on every node alike
+        Arrays.sort(ring, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        this.points = new long[ring.length];
+        this.shards = new int[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = ring[i][0];
+            shards[i] = (int) ring[i][1];
+        }
+    }
+
+    public int shardOf(int ownerId) {
+        int i = Arrays.binarySearch(points, mix(ownerId));
+        if (i < 0) i = -i - 1;
+        return shards[i == points.length ? 0 : i];
+    }
+
+    public int size() { return shardCount; }
+
+    // SplitMix64 finalizer: consecutive owner ids end up far apart on the ring
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,420 @@
+package com.tractive.pettracker.data.shard;
+
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.data.PetRepositoryImpl;
+import com.tractive.pettracker.data.jpa.PetRow;
+import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.OutOfZoneDwell;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetCount;
+import com.tractive.pettracker.domain.PetPatch;
+import com.tractive.pettracker.domain.PetSummaryQuery;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.PetUpsertResult;
+import com.tractive.pettracker.domain.TrackerType;
+import io.micrometer.observation.annotation.Observed;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+
+// Storage engine that splits the pets across several databases by owner.
+// A ShardRing maps every owner to one shard, so writes and everything asked about one owner (pages, counts,
+// dwell time) go to a single database. A lookup by id goes to the shard whose id range the id is from and
+// only asks the others when the pet has moved since. Reads over all pets are sent to every shard at once
+// and merged: keyset pages by id, counts and summaries by their groups.
+// Created by PetShardingConfig with pettracker.storage=sharded.
+@Observed(name = "pettracker.repository")
+public class ShardedPetRepository implements PetRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedPetRepository.class);
+    // rows read per round trip while rebalancing
+    private static final int MOVE_BATCH = 500;
+    private static final int MOVE_ATTEMPTS = 3;
+    private static final PetType[] PET_TYPES = PetType.values();
+    private static final TrackerType[] TRACKER_TYPES = TrackerType.values();
+    private static final Comparator<OutOfZoneDwell> DWELL_ORDER = Comparator
+        .comparing(OutOfZoneDwell::getPetType)
+        .thenComparing(OutOfZoneDwell::getTrackerType)
+        .thenComparing(OutOfZoneDwell::getFrom);
+
+    private final List<PetShard> shards;
+    private final ShardRing ring;
+    // scatter-gather calls block on JDBC, one cheap thread per shard and call
+    private final ExecutorService scatter = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ShardedPetRepository(List<PetShard> shards, ShardRing ring) {
+        if (shards.size() != ring.size()) {
+            throw new IllegalArgumentException("ring of %d shards for %d databases".formatted(ring.size(), shards.size()));
+        }
+        this.shards = List.copyOf(shards);
+        this.ring = ring;
+    }
+
+    @Override
+    public Pet save(Pet pet) {
+        return shardOf(pet.getOwnerId()).repository().save(pet);
+    }
+
+    // One transaction per shard, written in parallel; a failing shard no longer rolls back the others
+    @Override
+    public List<Pet> saveAll(List<Pet> pets) {
+        Map<PetShard, List<Integer>> positions = new LinkedHashMap<>();
+        for (int i = 0; i < pets.size(); i++) {
+            positions.computeIfAbsent(shardOf(pets.get(i).getOwnerId()), s -> new ArrayList<>()).add(i);
+        }
+        List<Callable<Void>> writes = new ArrayList<>(positions.size());
+        Pet[] out = new Pet[pets.size()];
+        positions.forEach((shard, indexes) -> writes.add(() -> {
+            List<Pet> batch = new ArrayList<>(indexes.size());
+            for (int i : indexes) batch.add(pets.get(i));
+            List<Pet> saved = shard.repository().saveAll(batch);
+            for (int i = 0; i < saved.size(); i++) out[indexes.get(i)] = saved.get(i);
+            return null;
+        }));
+        parallel(writes);
+        return Arrays.asList(out);
+    }
+
+    @Override
+    public Pet update(Pet pet) {
+        return write(pet, null);
+    }
+
+    @Override
+    public Pet update(Pet pet, long expectedVersion) {
+        return write(pet, expectedVersion);
+    }
+
+    // An update that keeps the pet on its shard runs there, with its version check and counters. One that
+    // gives it an owner on another shard is the move itself, see moveUpdated, so the new owner is never
+    // committed on the old owner's shard. A write that waited for a move of the pet finds it gone and
+    // follows it once.
+    private Pet write(Pet pet, Long expectedVersion) {
+        if (pet.getId() == null) throw new IllegalArgumentException("id required for update");
+        PetShard target = shardOf(pet.getOwnerId());
+        for (int attempt = 1; ; attempt++) {
+            PetShard current = locate(pet.getId())
+                .orElseThrow(() -> new IllegalArgumentException("pet %d not found".formatted(pet.getId())));
+            try {
+                if (current != target) return moveUpdated(current, target, pet, expectedVersion);
+                return expectedVersion != null
+                    ? current.repository().update(pet, expectedVersion)
+                    : current.repository().update(pet);
+            } catch (IllegalArgumentException e) {
+                if (attempt == 2) throw e;
+            }
+        }
+    }
+
+    // The row is locked on the source and checked against the expected version, the new state is written to
+    // the target with the next version, and the source row is deleted at the version it was locked at, all
+    // before the source transaction commits. If a step fails the pet stays as it was on the source and a copy
+    // already committed on the target is taken back, so a tracker report for the new owner never finds the
+    // pet missing from their shard and creates it a second time.
+    private Pet moveUpdated(PetShard from, PetShard to, Pet pet, Long expectedVersion) {
+        List<PetRow> copied = new ArrayList<>(1);
+        try {
+            from.repository().moveOut(List.of(pet.getId()), rows -> {
+                if (rows.isEmpty()) throw new IllegalArgumentException("pet %d not found".formatted(pet.getId()));
+                PetRow row = rows.getFirst();
+                if (expectedVersion != null && expectedVersion != row.version()) {
+                    throw new OptimisticLockingFailureException("pet %d is at version %d, not %d".formatted(pet.getId(), row.version(), expectedVersion));
+                }
+                List<PetRow> updated = List.of(new PetRow(pet, row.trackerId(), row.version() + 1));
+                to.repository().importRows(updated);
+                copied.addAll(updated);
+                return rows;
+            });
+        } catch (RuntimeException e) {
+            if (!copied.isEmpty()) to.repository().removeRows(copied);
+            throw e;
+        }
+        return pet;
+    }
+
+    @Override
+    public Optional<Pet> patch(Long id, PetPatch patch) {
+        Optional<Pet> patched = locate(id).flatMap(shard -> shard.repository().patch(id, patch));
+        return patched.isPresent() ? patched : locate(id).flatMap(shard -> shard.repository().patch(id, patch));
+    }
+
+    // The tracker key includes the owner, so the owner's shard is the only one that can know the tracker
+    @Override
+    public PetUpsertResult upsertByTracker(String trackerId, Pet pet) {
+        return shardOf(pet.getOwnerId()).repository().upsertByTracker(trackerId, pet);
+    }
+
+    @Override
+    public Optional<Pet> findById(Long id) {
+        return byId(id, shard -> shard.repository().findById(id));
+    }
+
+    @Override
+    public Optional<Long> findVersion(Long id) {
+        return byId(id, shard -> shard.repository().findVersion(id));
+    }
+
+    @Override
+    public List<Pet> findAll() {
+        return mergeById(all(PetRepositoryImpl::findAll), Integer.MAX_VALUE);
+    }
+
+    // Every shard returns its own first limit pets after the key, so the first limit of their merge are
+    // exactly the first limit overall
+    @Override
+    public List<Pet> findPage(Long afterId, int limit) {
+        return mergeById(all(shard -> shard.findPage(afterId, limit)), limit);
+    }
+
+    @Override
+    public List<Pet> findPageByOwner(Integer ownerId, Long afterId, int limit) {
+        return shardOf(ownerId).repository().findPageByOwner(ownerId, afterId, limit);
+    }
+
+    @Override
+    public List<OutOfZoneCount> countOutsideZoneGrouped() {
+        return mergeCounts(all(PetRepositoryImpl::countOutsideZoneGrouped));
+    }
+
+    // Every shard's generation only grows, so the sum changes whenever one of them does
+    @Override
+    public long outOfZoneGeneration() {
+        long generation = 0;
+        for (PetShard shard : shards) generation += shard.repository().outOfZoneGeneration();
+        return generation;
+    }
+
+    @Override
+    public List<OutOfZoneCount> countOutsideZoneGroupedByOwner(Integer ownerId) {
+        return shardOf(ownerId).repository().countOutsideZoneGroupedByOwner(ownerId);
+    }
+
+    // A pet that moved left -1 in the history of its old shard and +1 in its new one, so the merged history
+    // counts it once at any instant
+    @Override
+    public List<OutOfZoneCount> countOutsideZoneGroupedAt(Instant at) {
+        return mergeCounts(all(shard -> shard.countOutsideZoneGroupedAt(at)));
+    }
+
+    @Override
+    public List<PetCount> summarize(PetSummaryQuery query) {
+        Map<List<Object>, PetCount> groups = new HashMap<>();
+        for (List<PetCount> counts : all(shard -> shard.summarize(query))) {
+            for (PetCount count : counts) {
+                List<Object> key = Arrays.asList(count.getPetType(), count.getTrackerType(), count.getInZone(), count.getLostTracker());
+                groups.merge(key, count, (current, more) -> current.plus(more.getCount()));
+            }
+        }
+        List<PetCount> out = new ArrayList<>(groups.values());
+        out.sort(PetCount.SUMMARY_ORDER);
+        return out;
+    }
+
+    // Shards read their clocks a moment apart, so the last window may end a few milliseconds differently
+    @Override
+    public List<OutOfZoneDwell> outOfZoneDwell(Instant from, Duration step) {
+        Map<List<Object>, OutOfZoneDwell> windows = new HashMap<>();
+        for (List<OutOfZoneDwell> rows : all(shard -> shard.outOfZoneDwell(from, step))) {
+            for (OutOfZoneDwell row : rows) {
+                windows.merge(List.of(row.getPetType(), row.getTrackerType(), row.getFrom()), row, (a, b) -> new OutOfZoneDwell(
+                    a.getPetType(), a.getTrackerType(), a.getFrom(),
+                    a.getTo().isAfter(b.getTo()) ? a.getTo() : b.getTo(),
+                    a.getOutsideMillis() + b.getOutsideMillis()));
+            }
+        }
+        List<OutOfZoneDwell> out = new ArrayList<>(windows.values());
+        out.sort(DWELL_ORDER);
+        return out;
+    }
+
+    // Kept by the owner's current shard only: time from before the owner's pets moved there is not included
+    @Override
+    public List<OutOfZoneDwell> outOfZoneDwellByOwner(Integer ownerId, Instant from, Duration step) {
+        return shardOf(ownerId).repository().outOfZoneDwellByOwner(ownerId, from, step);
+    }
+
+    // The shard repositories are not beans, so their startup and scheduled work is driven from here
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedOutOfZoneCounters() {
+        all(shard -> {
+            shard.seedOutOfZoneCounters();
+            return null;
+        });
+    }
+
+    @Scheduled(
+        initialDelayString = "${pettracker.counters.reconcile-interval:PT5M}",
+        fixedDelayString = "${pettracker.counters.reconcile-interval:PT5M}"
+    )
+    public void reconcileOutOfZoneCounters() {
+        all(shard -> {
+            shard.reconcileOutOfZoneCounters();
+            return null;
+        });
+    }
+
+    @Scheduled(
+        initialDelayString = "${pettracker.counters.checkpoint-interval:PT1H}",
+        fixedDelayString = "${pettracker.counters.checkpoint-interval:PT1H}"
+    )
+    public void checkpointZoneEvents() {
+        all(shard -> {
+            shard.checkpointZoneEvents();
+            return null;
+        });
+    }
+
+    // Moves every pet to the shard the ring puts its owner on, e.g. after a shard was added. Consistent hashing
+    // keeps all other owners where they are, so only the pets of owners that now belong to the new shard are
+    // copied, although every shard is read once to find them. A batch is moved like a single pet, see move,
+    // so it can run while the node takes traffic, and an interrupted pass is completed by running it again.
+    public int rebalance() {
+        int moved = 0;
+        for (PetShard source : shards) {
+            List<PetRow> page;
+            Long after = null;
+            do {
+                page = source.repository().exportRows(after, MOVE_BATCH);
+                Map<PetShard, List<Long>> leaving = new LinkedHashMap<>();
+                for (PetRow row : page) {
+                    PetShard target = shardOf(row.pet().getOwnerId());
+                    if (target != source) leaving.computeIfAbsent(target, s -> new ArrayList<>()).add(row.pet().getId());
+                }
+                for (Map.Entry<PetShard, List<Long>> batch : leaving.entrySet()) moved += move(source, batch.getKey(), batch.getValue());
+                if (!page.isEmpty()) after = page.getLast().pet().getId();
+            } while (page.size() == MOVE_BATCH);
+        }
+        if (moved > 0) log.info("Rebalanced {} pets across {} shards", moved, shards.size());
+        return moved;
+    }
+
+    @PreDestroy
+    public void close() {
+        scatter.close();
+        for (PetShard shard : shards) shard.close();
+    }
+
+    PetShard shardOf(Integer ownerId) {
+        return shards.get(ring.shardOf(ownerId));
+    }
+
+    // Used by rebalance. The rows are read again under a lock on the source, which holds it until they are
+    // deleted there, so a write that arrives meanwhile waits and is never copied stale and then deleted. Rows whose owner is no
+    // longer on the target are left where they are. Should the delete still find a row changed, or the source
+    // fail after the copy was committed, the copies are taken back and the move starts over from a fresh read.
+    private int move(PetShard from, PetShard to, List<Long> ids) {
+        for (int attempt = 1; ; attempt++) {
+            List<PetRow> copied = new ArrayList<>();
+            try {
+                return from.repository().moveOut(ids, rows -> {
+                    List<PetRow> leaving = rows.stream().filter(row -> shardOf(row.pet().getOwnerId()) == to).toList();
+                    to.repository().importRows(leaving);
+                    copied.addAll(leaving);
+                    return leaving;
+                }).size();
+            } catch (RuntimeException e) {
+                if (!copied.isEmpty()) to.repository().removeRows(copied);
+                if (!(e instanceof OptimisticLockingFailureException) || attempt == MOVE_ATTEMPTS) throw e;
+                log.debug("Moving pets {} from shard {} to shard {} again: {}", ids, from.index(), to.index(), e.getMessage());
+            }
+        }
+    }
+
+    private Optional<PetShard> locate(Long id) {
+        return byId(id, shard -> shard.repository().findVersion(id).map(version -> shard));
+    }
+
+    // The shard that created the pet still has it unless it moved, which costs one query per other shard
+    private <T> Optional<T> byId(Long id, Function<PetShard, Optional<T>> lookup) {
+        if (id == null || id <= 0) return Optional.empty();
+        int home = PetShard.indexOf(id);
+        if (home < shards.size()) {
+            Optional<T> found = lookup.apply(shards.get(home));
+            if (found.isPresent()) return found;
+        }
+        List<Callable<Optional<T>>> elsewhere = new ArrayList<>(shards.size());
+        for (PetShard shard : shards) {
+            if (shard.index() != home) elsewhere.add(() -> lookup.apply(shard));
+        }
+        for (Optional<T> found : parallel(elsewhere)) {
+            if (found.isPresent()) return found;
+        }
+        return Optional.empty();
+    }
+
+    private <T> List<T> all(Function<PetRepositoryImpl, T> call) {
+        List<Callable<T>> calls = new ArrayList<>(shards.size());
+        for (PetShard shard : shards) calls.add(() -> call.apply(shard.repository()));
+        return parallel(calls);
+    }
+
+    private <T> List<T> parallel(List<Callable<T>> calls) {
+        List<Future<T>> futures = new ArrayList<>(calls.size());
+        for (Callable<T> call : calls) futures.add(scatter.submit(call));
+        List<T> out = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                out.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for a shard", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException r) throw r;
+                if (e.getCause() instanceof Error error) throw error;
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return out;
+    }
+
+    // k-way merge of lists that are each ordered by id; k is the number of shards, so a linear pick is enough
+    static List<Pet> mergeById(List<List<Pet>> pages, int limit) {
+        int total = 0;
+        for (List<Pet> page : pages) total += page.size();
+        List<Pet> out = new ArrayList<>(Math.min(limit, total));
+        int[] next = new int[pages.size()];
+        while (out.size() < limit) {
+            int best = -1;
+            for (int s = 0; s < pages.size(); s++) {
+                if (next[s] == pages.get(s).size()) continue;
+                if (best < 0 || pages.get(s).get(next[s]).getId() < pages.get(best).get(next[best]).getId()) best = s;
+            }
+            if (best < 0) break;
+            out.add(pages.get(best).get(next[best]++));
+        }
+        return out;
+    }
+
+    // Summed per (pet type, tracker type), in the order OutOfZoneCounters hands them out
+    static List<OutOfZoneCount> mergeCounts(List<List<OutOfZoneCount>> perShard) {
+        int[] totals = new int[PET_TYPES.length * TRACKER_TYPES.length];
+        for (List<OutOfZoneCount> counts : perShard) {
+            for (OutOfZoneCount c : counts) totals[c.getPetType().ordinal() * TRACKER_TYPES.length + c.getTrackerType().ordinal()] += c.getCount();
+        }
+        List<OutOfZoneCount> out = new ArrayList<>();
+        for (int i = 0; i < totals.length; i++) {
+            if (totals[i] > 0) out.add(new OutOfZoneCount(PET_TYPES[i / TRACKER_TYPES.length], TRACKER_TYPES[i % TRACKER_TYPES.length], totals[i]));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,16 @@
+package com.tractive.pettracker.domain;
+
+// WGS84 position in degrees
+public class GeoPoint {
+    private final double lat;
+    private final double lon;
+
+    public GeoPoint(double lat, double lon) {
+        this.lat = lat;
+        this.lon = lon;
+    }
+
+    public double getLat() { return lat; }
+
+    public double getLon() { return lon; }
+}
@@ -0,0 +1,27 @@
+package com.tractive.pettracker.domain;
+
+import java.time.Instant;
+
+// Pet-time spent outside the zone within [from, to): two pets outside for an hour each are two hours.
+// Per-owner rows have no pet or tracker type.
+public class OutOfZoneDwell {
+    private final PetType petType;
+    private final TrackerType trackerType;
+    private final Instant from;
+    private final Instant to;
+    private final long outsideMillis;
+
+    public OutOfZoneDwell(PetType petType, TrackerType trackerType, Instant from, Instant to, long outsideMillis) {
+        this.petType = petType;
+        this.trackerType = trackerType;
+        this.from = from;
+        this.to = to;
+        this.outsideMillis = outsideMillis;
+    }
+
+    public PetType getPetType() { return petType; }
+    public TrackerType getTrackerType() { return trackerType; }
+    public Instant getFrom() { return from; }
+    public Instant getTo() { return to; }
+    public long getOutsideMillis() { return outsideMillis; }
+}
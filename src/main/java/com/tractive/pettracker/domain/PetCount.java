@@ -0,0 +1,37 @@
+package com.tractive.pettracker.domain;
+
+import java.util.Comparator;
+
+// One row of a grouped summary; attributes that were not grouped by are null
+public class PetCount {
+    // same order as the SQL engine in PostgreSQL mode: enums by name, false before true, null last
+    public static final Comparator<PetCount> SUMMARY_ORDER = Comparator
+        .comparing((PetCount c) -> c.getPetType() != null ? c.getPetType().name() : null, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(c -> c.getTrackerType() != null ? c.getTrackerType().name() : null, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(PetCount::getInZone, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(PetCount::getLostTracker, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final PetType petType;
+    private final TrackerType trackerType;
+    private final Boolean inZone;
+    private final Boolean lostTracker;
+    private final long count;
+
+    public PetCount(PetType petType, TrackerType trackerType, Boolean inZone, Boolean lostTracker, long count) {
+        this.petType = petType;
+        this.trackerType = trackerType;
+        this.inZone = inZone;
+        this.lostTracker = lostTracker;
+        this.count = count;
+    }
+
+    public PetType getPetType() { return petType; }
+    public TrackerType getTrackerType() { return trackerType; }
+    public Boolean getInZone() { return inZone; }
+    public Boolean getLostTracker() { return lostTracker; }
+    public long getCount() { return count; }
+
+    public PetCount plus(long more) {
+        return new PetCount(petType, trackerType, inZone, lostTracker, count + more);
+    }
+}
@@ -0,0 +1,25 @@
+package com.tractive.pettracker.domain;
+
+// Field-level change from a tracker message; null fields are left untouched.
+// lostTracker only exists on cats and is ignored for other pets, as on a full update.
+public class PetPatch {
+    private final Boolean inZone;
+    private final Boolean lostTracker;
+
+    public PetPatch(Boolean inZone, Boolean lostTracker) {
+        this.inZone = inZone;
+        this.lostTracker = lostTracker;
+    }
+
+    public Boolean getInZone() { return inZone; }
+
+    public Boolean getLostTracker() { return lostTracker; }
+
+    public Pet applyTo(Pet pet) {
+        Boolean zone = inZone != null ? inZone : pet.getInZone();
+        if (pet instanceof Cat cat) {
+            return new Cat(cat.getId(), cat.getTrackerType(), cat.getOwnerId(), zone, lostTracker != null ? lostTracker : cat.getLostTracker());
+        }
+        return new Pet(pet.getId(), pet.getPetType(), pet.getTrackerType(), pet.getOwnerId(), zone);
+    }
+}
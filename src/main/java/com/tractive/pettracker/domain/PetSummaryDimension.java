@@ -0,0 +1,6 @@
+package com.tractive.pettracker.domain;
+
+// Pet attributes a summary can be grouped by
+public enum PetSummaryDimension {
+    PET_TYPE, TRACKER_TYPE, IN_ZONE, LOST_TRACKER
+}
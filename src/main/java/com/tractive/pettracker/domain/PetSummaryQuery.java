@@ -0,0 +1,57 @@
+package com.tractive.pettracker.domain;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+// Filters of a summary, each null for "any", and the attributes the matching pets are grouped by.
+// lostTracker only exists on cats: any lostTracker filter excludes other pets, and they group under null.
+public class PetSummaryQuery {
+    private final Boolean inZone;
+    private final PetType petType;
+    private final TrackerType trackerType;
+    private final Boolean lostTracker;
+    private final Integer ownerFrom;
+    private final Integer ownerTo;
+    private final Set<PetSummaryDimension> groupBy;
+
+    public PetSummaryQuery(Boolean inZone, PetType petType, TrackerType trackerType, Boolean lostTracker,
+                           Integer ownerFrom, Integer ownerTo, Collection<PetSummaryDimension> groupBy) {
+        this.inZone = inZone;
+        this.petType = petType;
+        this.trackerType = trackerType;
+        this.lostTracker = lostTracker;
+        this.ownerFrom = ownerFrom;
+        this.ownerTo = ownerTo;
+        this.groupBy = groupBy.isEmpty() ? EnumSet.noneOf(PetSummaryDimension.class) : EnumSet.copyOf(groupBy);
+    }
+
+    public Boolean getInZone() { return inZone; }
+    public PetType getPetType() { return petType; }
+    public TrackerType getTrackerType() { return trackerType; }
+    public Boolean getLostTracker() { return lostTracker; }
+    public Integer getOwnerFrom() { return ownerFrom; }
+    public Integer getOwnerTo() { return ownerTo; }
+    // in declaration order of PetSummaryDimension
+    public Set<PetSummaryDimension> getGroupBy() { return groupBy; }
+
+    public boolean matches(Pet pet) {
+        if (inZone != null && !inZone.equals(pet.getInZone())) return false;
+        if (petType != null && petType != pet.getPetType()) return false;
+        if (trackerType != null && trackerType != pet.getTrackerType()) return false;
+        if (lostTracker != null && !(pet instanceof Cat cat && lostTracker.equals(cat.getLostTracker()))) return false;
+        if (ownerFrom != null && pet.getOwnerId() < ownerFrom) return false;
+        return ownerTo == null || pet.getOwnerId() <= ownerTo;
+    }
+
+    // The group a matching pet is counted in, with the attributes not grouped by left null
+    public PetCount groupOf(Pet pet, long count) {
+        return new PetCount(
+            groupBy.contains(PetSummaryDimension.PET_TYPE) ? pet.getPetType() : null,
+            groupBy.contains(PetSummaryDimension.TRACKER_TYPE) ? pet.getTrackerType() : null,
+            groupBy.contains(PetSummaryDimension.IN_ZONE) ? pet.getInZone() : null,
+            groupBy.contains(PetSummaryDimension.LOST_TRACKER) && pet instanceof Cat cat ? cat.getLostTracker() : null,
+            count
+        );
+    }
+}
@@ -0,0 +1,15 @@
+package com.tractive.pettracker.domain;
+
+public class PetUpsertResult {
+    private final Pet pet;
+    private final boolean created;
+
+    public PetUpsertResult(Pet pet, boolean created) {
+        this.pet = pet;
+        this.created = created;
+    }
+
+    public Pet getPet() { return pet; }
+
+    public boolean isCreated() { return created; }
+}
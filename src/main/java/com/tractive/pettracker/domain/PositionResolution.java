@@ -0,0 +1,24 @@
+package com.tractive.pettracker.domain;
+
+import java.time.Duration;
+
+// Tiers of the location history, finest first. Each tier is downsampled into the next once it is older
+// than its retention, so any stretch of time is stored in exactly one tier.
+public enum PositionResolution {
+    RAW(Duration.ZERO),
+    MINUTE(Duration.ofMinutes(1)),
+    HOUR(Duration.ofHours(1));
+
+    private final Duration bucket;
+
+    PositionResolution(Duration bucket) {
+        this.bucket = bucket;
+    }
+
+    public Duration getBucket() { return bucket; }
+
+    // null for the coarsest tier, which is only ever deleted
+    public PositionResolution coarser() {
+        return this == HOUR ? null : values()[ordinal() + 1];
+    }
+}
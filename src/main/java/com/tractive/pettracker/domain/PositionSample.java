@@ -0,0 +1,27 @@
+package com.tractive.pettracker.domain;
+
+import java.time.Instant;
+
+// One point of a pet's location history. In a downsampled tier it stands for a whole bucket: the start of
+// the bucket, the mean position of the fixes in it, and the zone state of the last one.
+public class PositionSample {
+    private final Instant at;
+    private final double lat;
+    private final double lon;
+    private final boolean inZone;
+
+    public PositionSample(Instant at, double lat, double lon, boolean inZone) {
+        this.at = at;
+        this.lat = lat;
+        this.lon = lon;
+        this.inZone = inZone;
+    }
+
+    public Instant getAt() { return at; }
+
+    public double getLat() { return lat; }
+
+    public double getLon() { return lon; }
+
+    public boolean isInZone() { return inZone; }
+}
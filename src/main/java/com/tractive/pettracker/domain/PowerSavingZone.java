@@ -0,0 +1,27 @@
+package com.tractive.pettracker.domain;
+
+import java.util.List;
+
+// Polygon in which an owner's pets count as in zone. Vertices are in order, the last one connects back to
+// the first; edges are straight lines in latitude/longitude, which is exact enough at the size of a zone.
+public class PowerSavingZone {
+    private final Long id;
+    private final Integer ownerId;
+    private final String name;
+    private final List<GeoPoint> vertices;
+
+    public PowerSavingZone(Long id, Integer ownerId, String name, List<GeoPoint> vertices) {
+        this.id = id;
+        this.ownerId = ownerId;
+        this.name = name;
+        this.vertices = List.copyOf(vertices);
+    }
+
+    public Long getId() { return id; }
+
+    public Integer getOwnerId() { return ownerId; }
+
+    public String getName() { return name; }
+
+    public List<GeoPoint> getVertices() { return vertices; }
+}
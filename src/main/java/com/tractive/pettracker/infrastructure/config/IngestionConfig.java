@@ -0,0 +1,33 @@
+package com.tractive.pettracker.infrastructure.config;
+
+import com.tractive.pettracker.application.service.DeduplicationWindow;
+import com.tractive.pettracker.application.service.PetWriteBehindQueue;
+import com.tractive.pettracker.data.PetRepository;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IngestionConfig {
+
+    @Bean
+    DeduplicationWindow deduplicationWindow(
+        @Value("${pettracker.ingest.dedup.maximum-size:100000}") long maximumSize,
+        @Value("${pettracker.ingest.dedup.window:PT10M}") Duration window
+    ) {
+        return new DeduplicationWindow(maximumSize, window);
+    }
+
+    @Bean
+    PetWriteBehindQueue petWriteBehindQueue(
+        PetRepository petRepository,
+        @Value("${pettracker.ingest.write-behind.capacity:10000}") int capacity,
+        @Value("${pettracker.ingest.write-behind.max-batch:500}") int maxBatch,
+        @Value("${pettracker.ingest.write-behind.log-directory:}") String logDirectory
+    ) throws IOException {
+        return new PetWriteBehindQueue(petRepository, capacity, maxBatch, logDirectory.isBlank() ? null : Path.of(logDirectory));
+    }
+}
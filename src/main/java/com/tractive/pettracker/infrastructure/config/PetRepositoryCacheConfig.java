@@ -0,0 +1,26 @@
+package com.tractive.pettracker.infrastructure.config;
+
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.data.cache.CachingPetRepository;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Configuration
+@ConditionalOnProperty(name = "pettracker.cache.enabled", havingValue = "true", matchIfMissing = true)
+public class PetRepositoryCacheConfig {
+
+    @Bean
+    @Primary
+    CachingPetRepository cachingPetRepository(
+        @Qualifier("petStorage") PetRepository storage,
+        @Value("${pettracker.cache.maximum-size:10000}") long maximumSize,
+        @Value("${pettracker.cache.time-to-live:PT5M}") Duration timeToLive
+    ) {
+        return new CachingPetRepository(storage, maximumSize, timeToLive);
+    }
+}
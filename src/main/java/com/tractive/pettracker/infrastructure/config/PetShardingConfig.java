@@ -0,0 +1,150 @@
+package com.tractive.pettracker.infrastructure.config;
+
+import com.tractive.pettracker.data.PetRepositoryImpl;
+import com.tractive.pettracker.data.jpa.PetEntity;
+import com.tractive.pettracker.data.jpa.PetJpaRepository;
+import com.tractive.pettracker.data.jpa.PetSecondLevelCache;
+import com.tractive.pettracker.data.jpa.PetWriteStatementsImpl;
+import com.tractive.pettracker.data.jpa.PetZoneCheckpointEntity;
+import com.tractive.pettracker.data.jpa.PetZoneEventEntity;
+import com.tractive.pettracker.data.jpa.PetZoneEventJpaRepository;
+import com.tractive.pettracker.data.shard.PetShard;
+import com.tractive.pettracker.data.shard.ShardRing;
+import com.tractive.pettracker.data.shard.ShardedPetRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.support.PersistenceExceptionTranslationInterceptor;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+// pettracker.storage=sharded: the pets live in one database per URL of pettracker.sharding.urls.
+// Each shard is migrated with the regular Flyway scripts (as the Flyway user) and gets the same stack the
+// jpa engine gets from auto-configuration, built by hand because it exists once per shard: a pool with the
+// application credentials, a persistence unit of the pet entities, a transaction manager, the Spring
+// Data repositories and a transactional PetRepositoryImpl. Everything else stays on spring.datasource.
+@Configuration
+@ConditionalOnProperty(name = "pettracker.storage", havingValue = "sharded")
+public class PetShardingConfig {
+
+    // keep in sync with INCREMENT BY of pets_id_seq and allocationSize on PetEntity
+    private static final int ID_ALLOCATION = 50;
+    // the second-level cache regions are shared by name across persistence units, which would mix up the
+    // cached counts of different shards
+    private static final Map<String, Object> SHARD_JPA_PROPERTIES = Map.of(
+        "hibernate.hbm2ddl.auto", "validate",
+        "hibernate.cache.use_second_level_cache", false,
+        "hibernate.cache.use_query_cache", false
+    );
+
+    @Bean
+    ShardedPetRepository petStorage(
+        EntityManagerFactoryBuilder entityManagerFactoryBuilder,
+        DataSourceProperties dataSource,
+        @Value("${spring.flyway.user}") String flywayUser,
+        @Value("${spring.flyway.password}") String flywayPassword,
+        @Value("${spring.flyway.locations:classpath:db/migration}") String[] flywayLocations,
+        @Value("${pettracker.sharding.urls}") List<String> urls,
+        @Value("${pettracker.sharding.virtual-nodes:128}") int virtualNodes,
+        @Value("${pettracker.sharding.rebalance-on-startup:false}") boolean rebalanceOnStartup
+    ) throws SQLException {
+        if (urls.isEmpty()) throw new IllegalStateException("pettracker.sharding.urls is required with pettracker.storage=sharded");
+        List<PetShard> shards = new ArrayList<>(urls.size());
+        try {
+            for (int i = 0; i < urls.size(); i++) {
+                Flyway flyway = Flyway.configure()
+                    .dataSource(urls.get(i), flywayUser, flywayPassword)
+                    .locations(flywayLocations)
+                    .baselineOnMigrate(true)
+                    .load();
+                flyway.migrate();
+                startIdRange(flyway.getConfiguration().getDataSource(), i);
+                shards.add(shard(i, urls.get(i), dataSource, entityManagerFactoryBuilder));
+            }
+        } catch (RuntimeException | SQLException e) {
+            shards.forEach(PetShard::close);
+            throw e;
+        }
+        ShardedPetRepository repository = new ShardedPetRepository(shards, new ShardRing(urls.size(), virtualNodes));
+        // here rather than at ApplicationReadyEvent: the web server is not accepting requests yet
+        if (rebalanceOnStartup) repository.rebalance();
+        return repository;
+    }
+
+    private static PetShard shard(int index, String url, DataSourceProperties dataSource, EntityManagerFactoryBuilder builder) {
+        HikariDataSource pool = DataSourceBuilder.create()
+            .type(HikariDataSource.class)
+            .driverClassName(dataSource.determineDriverClassName())
+            .url(url)
+            .username(dataSource.getUsername())
+            .password(dataSource.getPassword())
+            .build();
+        pool.setPoolName("pets-shard-" + index);
+
+        LocalContainerEntityManagerFactoryBean factory = builder
+            .dataSource(pool)
+            .managedTypes(PersistenceManagedTypes.of(PetEntity.class.getName(), PetZoneEventEntity.class.getName(), PetZoneCheckpointEntity.class.getName()))
+            .persistenceUnit("pets-shard-" + index)
+            .properties(SHARD_JPA_PROPERTIES)
+            .build();
+        factory.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = factory.getObject();
+
+        // the shared EntityManager joins whatever transaction the JpaTransactionManager has bound to the thread
+        EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        JpaRepositoryFactory repositories = new JpaRepositoryFactory(entityManager);
+        PetRepositoryImpl target = new PetRepositoryImpl(
+            // outside component scanning the fragment implementation is not found by name
+            repositories.getRepository(PetJpaRepository.class, RepositoryFragments.just(new PetWriteStatementsImpl(entityManager))),
+            repositories.getRepository(PetZoneEventJpaRepository.class),
+            entityManager,
+            new PetSecondLevelCache(entityManagerFactory));
+
+        // what @Transactional and @Repository do for the bean of the jpa engine
+        ProxyFactory proxy = new ProxyFactory(target);
+        proxy.setProxyTargetClass(true);
+        proxy.addAdvice(new PersistenceExceptionTranslationInterceptor(factory.getJpaDialect()));
+        proxy.addAdvice(new TransactionInterceptor(new JpaTransactionManager(entityManagerFactory), new AnnotationTransactionAttributeSource()));
+        return new PetShard(index, (PetRepositoryImpl) proxy.getProxy(), List.<AutoCloseable>of(pool, factory::destroy));
+    }
+
+    // Shard i hands out ids from PetShard.firstId(i) on. Runs once per database: the sequence is only moved
+    // forward while it is still below the range. Hibernate takes blocks of ID_ALLOCATION ending at the value
+    // it reads, so the first value read is the last id of the first block. nextval is PostgreSQL's syntax,
+    // which H2 also accepts in PostgreSQL mode.
+    private static void startIdRange(DataSource admin, int index) throws SQLException {
+        long first = PetShard.firstId(index);
+        if (index == 0) return;
+        try (Connection connection = admin.getConnection(); Statement statement = connection.createStatement()) {
+            long next;
+            try (ResultSet value = statement.executeQuery("SELECT nextval('pets_id_seq')")) {
+                value.next();
+                next = value.getLong(1);
+            }
+            if (next < first) statement.execute("ALTER SEQUENCE pets_id_seq RESTART WITH " + (first + ID_ALLOCATION - 1));
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.tractive.pettracker.infrastructure.config;
+
+import com.tractive.pettracker.api.codec.PetBinaryHttpMessageConverter;
+import java.util.List;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+    // Appended after Jackson, so clients without an explicit Accept or Content-Type keep getting JSON
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new PetBinaryHttpMessageConverter());
+    }
+}
@@ -0,0 +1,43 @@
+package db.migration;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+// V3_0 created pets_id_seq starting at 1, but on a database that already had pets the IDENTITY column had
+// handed those ids out. Moves the sequence past the highest id in the table, and grants the application
+// user the sequences it draws ids from (V2_0, V4_0, V9_0 and V10_0 only granted the tables).
+// Java rather than SQL: the restart value is computed, and reading a sequence and granting on it is
+// written differently on PostgreSQL and H2. H2 has no privileges on sequences, so there is nothing to grant.
+public class V11_0__pet_id_sequence_after_existing_ids extends BaseJavaMigration {
+
+    // keep in sync with INCREMENT BY of pets_id_seq and allocationSize on PetEntity
+    private static final int ID_ALLOCATION = 50;
+    private static final String[] SEQUENCES = {
+        "pets_id_seq", "pet_zone_events_id_seq", "power_saving_zones_id_seq", "pet_position_chunks_id_seq"
+    };
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        boolean postgres = "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+        try (Statement statement = connection.createStatement()) {
+            long maxId = single(statement, "SELECT COALESCE(MAX(id), 0) FROM pets");
+            long next = single(statement, postgres ? "SELECT nextval('pets_id_seq')" : "SELECT NEXT VALUE FOR pets_id_seq");
+            // Hibernate uses the block of ID_ALLOCATION ids ending at the value it reads, so the first value
+            // read after the restart covers maxId + 1 onwards
+            if (next <= maxId) statement.execute("ALTER SEQUENCE pets_id_seq RESTART WITH " + (maxId + ID_ALLOCATION));
+            if (postgres) statement.execute("GRANT USAGE, SELECT ON SEQUENCE " + String.join(", ", SEQUENCES) + " TO pet_tracking_user");
+        }
+    }
+
+    private static long single(Statement statement, String sql) throws SQLException {
+        try (ResultSet result = statement.executeQuery(sql)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+-- Location history of the pets in compressed chunks of up to 1024 positions (see PositionChunk).
+-- A chunk belongs to one pet and one resolution; RAW chunks are downsampled into MINUTE chunks and those
+-- into HOUR chunks once they pass their retention, so each stretch of time is stored in one tier only.
+-- No foreign key to pets: with the memory storage engine the pets are not in this database.
+CREATE SEQUENCE pet_position_chunks_id_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE pet_position_chunks (
+  id BIGINT PRIMARY KEY,
+  pet_id BIGINT NOT NULL,
+  resolution VARCHAR(8) NOT NULL,
+  start_time TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+  end_time TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+  sample_count INTEGER NOT NULL,
+  data BYTEA NOT NULL
+);
+-- Range queries start at the first chunk ending after the requested start, so reading recent history
+-- never touches the older chunks of the pet
+CREATE INDEX ix_pet_position_chunks_pet ON pet_position_chunks(pet_id, end_time);
+-- Compaction picks the chunks of one tier that have passed its retention
+CREATE INDEX ix_pet_position_chunks_tier ON pet_position_chunks(resolution, end_time);
+
+-- The open chunk of a pet is rewritten on every flush until it is full
+GRANT SELECT, INSERT, UPDATE, DELETE ON pet_position_chunks TO pet_tracking_user;
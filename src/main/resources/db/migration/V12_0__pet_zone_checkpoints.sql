@@ -0,0 +1,12 @@
+-- Number of pets outside per (pet_type, tracker_type) group as of checkpoint_at, i.e. SUM(out_of_zone_delta)
+-- of pet_zone_events up to then. A point-in-time count starts from the latest checkpoint at or before T and
+-- only adds the events after it. Every group seen in the log has a row, also at zero.
+CREATE TABLE pet_zone_checkpoints (
+  checkpoint_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+  pet_type VARCHAR(20) NOT NULL,
+  tracker_type VARCHAR(20) NOT NULL,
+  outside INTEGER NOT NULL,
+  PRIMARY KEY (checkpoint_at, pet_type, tracker_type)
+);
+
+GRANT SELECT, INSERT ON pet_zone_checkpoints TO pet_tracking_user;
@@ -0,0 +1,3 @@
+-- Sequence ids let Hibernate pre-allocate ids in blocks and batch INSERTs, which IDENTITY prevents.
+-- INCREMENT BY must match the allocationSize of the generator on PetEntity.
+CREATE SEQUENCE pets_id_seq START WITH 1 INCREMENT BY 50;
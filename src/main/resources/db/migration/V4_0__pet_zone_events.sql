@@ -0,0 +1,26 @@
+-- Append-only log of pet state changes. Each row is the effect of one write on one (pet_type, tracker_type)
+-- group; out_of_zone_delta is +1/-1 when the pet left/entered the out-of-zone set of that group, else 0.
+-- The number of pets outside at time T is SUM(out_of_zone_delta) over the rows with occurred_at <= T.
+CREATE SEQUENCE pet_zone_events_id_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE pet_zone_events (
+  id BIGINT PRIMARY KEY,
+  pet_id BIGINT NOT NULL,
+  pet_type VARCHAR(20) NOT NULL,
+  tracker_type VARCHAR(20) NOT NULL,
+  in_zone BOOLEAN NOT NULL,
+  out_of_zone_delta SMALLINT NOT NULL,
+  occurred_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+-- covers the point-in-time aggregate, so it never reads the table itself
+CREATE INDEX idx_pet_zone_events_time ON pet_zone_events(occurred_at, pet_type, tracker_type, out_of_zone_delta);
+CREATE INDEX idx_pet_zone_events_pet ON pet_zone_events(pet_id, occurred_at);
+
+-- Pets that exist before the log get one baseline row each, so the sum up to any later T includes the pets
+-- that were already outside. Their earlier history is unknown: instants before this migration count nothing.
+INSERT INTO pet_zone_events (id, pet_id, pet_type, tracker_type, in_zone, out_of_zone_delta, occurred_at)
+SELECT nextval('pet_zone_events_id_seq'), id, pet_type, tracker_type, in_zone, CASE WHEN in_zone THEN 0 ELSE 1 END, CURRENT_TIMESTAMP
+FROM pets;
+
+-- The log is never rewritten, so the application user may only append and read
+GRANT SELECT, INSERT ON pet_zone_events TO pet_tracking_user;
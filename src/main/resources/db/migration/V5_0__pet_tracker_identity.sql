@@ -0,0 +1,4 @@
+-- Natural key for tracker reports: a tracker is identified by its id within the owner's account.
+-- Pets created through the plain API have no tracker_id; NULLs never collide in the unique index.
+ALTER TABLE pets ADD COLUMN tracker_id VARCHAR(64);
+CREATE UNIQUE INDEX ux_pets_owner_tracker ON pets(owner_id, tracker_id);
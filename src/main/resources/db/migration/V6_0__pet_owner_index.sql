@@ -0,0 +1,3 @@
+-- Owner-scoped lookups. ux_pets_owner_tracker also starts with owner_id, but orders an owner's rows by
+-- tracker_id; with id as second column a keyset page of one owner is a plain range scan in id order.
+CREATE INDEX ix_pets_owner_id ON pets(owner_id, id);
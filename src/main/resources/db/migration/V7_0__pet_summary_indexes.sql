@@ -0,0 +1,6 @@
+-- Covering indexes for GET /api/pets/summary. Zone and type filters and groupings read only
+-- (in_zone, pet_type, tracker_type); lost-tracker questions ("lost cats per tracker type") read only
+-- (pet_type, lost_tracker, tracker_type). tracker_type is carried in the second index so grouping by it
+-- needs no row lookup either. Owner ranges use ix_pets_owner_id from V6_0.
+CREATE INDEX ix_pets_zone_type_tracker ON pets(in_zone, pet_type, tracker_type);
+CREATE INDEX ix_pets_type_lost_tracker ON pets(pet_type, lost_tracker, tracker_type);
@@ -0,0 +1,3 @@
+-- Row version for optimistic locking and HTTP ETags. Hibernate increments it on every entity update;
+-- the native PATCH and upsert statements increment it themselves. Existing rows start at 0.
+ALTER TABLE pets ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,14 @@
+-- Per-owner power-saving zones, evaluated against raw position fixes to derive pets.in_zone.
+-- vertices holds the polygon as big-endian (lat, lon) double pairs; zones are only ever read whole.
+CREATE SEQUENCE power_saving_zones_id_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE power_saving_zones (
+  id BIGINT PRIMARY KEY,
+  owner_id INTEGER NOT NULL,
+  name VARCHAR(64) NOT NULL,
+  vertices BYTEA NOT NULL
+);
+CREATE INDEX ix_power_saving_zones_owner ON power_saving_zones(owner_id, id);
+
+-- An owner's zones are replaced as a set, never edited in place
+GRANT SELECT, INSERT, DELETE ON power_saving_zones TO pet_tracking_user;
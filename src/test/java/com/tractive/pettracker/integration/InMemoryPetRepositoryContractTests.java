@@ -0,0 +1,13 @@
+package com.tractive.pettracker.integration;
+
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.data.memory.InMemoryPetRepository;
+
+// A fresh engine without a journal for every test
+class InMemoryPetRepositoryContractTests extends PetRepositoryContractTests {
+
+	@Override
+	protected PetRepository repository() {
+		return new InMemoryPetRepository();
+	}
+}
@@ -0,0 +1,133 @@
+package com.tractive.pettracker.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.data.memory.InMemoryPetRepository;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest(properties = {"pettracker.storage=memory", "pettracker.cache.enabled=false"})
+@AutoConfigureMockMvc
+class InMemoryStorageApplicationTests {
+
+	@TempDir
+	static Path ingestLog;
+
+	@DynamicPropertySource
+	static void ingestLog(DynamicPropertyRegistry registry) {
+		registry.add("pettracker.ingest.write-behind.log-directory", ingestLog::toString);
+	}
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Autowired
+	@Qualifier("petStorage")
+	PetRepository petStorage;
+
+	@Test
+	void whenMemoryStorageSelectedThenPetsRoundTripAndAreCounted() throws Exception {
+		assertThat(petStorage).isInstanceOf(InMemoryPetRepository.class);
+
+		var createResult = mockMvc.perform(post("/api/pets")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"CAT","trackerType":"BIG","ownerId":5,"inZone":false,"lostTracker":true}
+            """))
+			.andExpect(status().isCreated())
+			.andReturn();
+		var id = objectMapper.readTree(createResult.getResponse().getContentAsString()).get("id").asLong();
+
+		mockMvc.perform(get("/api/pets/{id}", id).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.petType").value("CAT"))
+			.andExpect(jsonPath("$.lostTracker").value(true));
+
+		mockMvc.perform(get("/api/pets/out-of-zone-summary").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[?(@.petType=='CAT' && @.trackerType=='BIG')].count").value(1));
+	}
+
+	@Test
+	void whenSummaryUnchangedThenConditionalGetIsNotModifiedUntilCountsMove() throws Exception {
+		var etag = mockMvc.perform(get("/api/pets/out-of-zone-summary").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(header().exists("ETag"))
+			.andReturn().getResponse().getHeader("ETag");
+
+		// an in-zone pet leaves the counts alone
+		mockMvc.perform(post("/api/pets")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"DOG","trackerType":"MEDIUM","ownerId":6,"inZone":true}
+            """))
+			.andExpect(status().isCreated());
+		mockMvc.perform(get("/api/pets/out-of-zone-summary").header("If-None-Match", etag))
+			.andExpect(status().isNotModified());
+
+		mockMvc.perform(post("/api/pets")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"DOG","trackerType":"MEDIUM","ownerId":6,"inZone":false}
+            """))
+			.andExpect(status().isCreated());
+		mockMvc.perform(get("/api/pets/out-of-zone-summary").header("If-None-Match", etag).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[?(@.petType=='DOG' && @.trackerType=='MEDIUM')].count").value(1));
+	}
+
+	@Test
+	void whenCreateWithRespondAsyncThenPetIsCommittedInBackground() throws Exception {
+		mockMvc.perform(post("/api/pets")
+				.header("Prefer", "respond-async")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"DOG","trackerType":"SMALL","ownerId":8123,"inZone":true}
+            """))
+			.andExpect(status().isAccepted());
+
+		await().atMost(Duration.ofSeconds(5))
+			.until(() -> petStorage.findAll().stream().anyMatch(p -> p.getOwnerId() == 8123));
+	}
+
+	@Test
+	void whenPetStaysOutsideThenOwnerAndGroupDwellTimeGrows() throws Exception {
+		mockMvc.perform(post("/api/pets")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"CAT","trackerType":"MEDIUM","ownerId":8124,"inZone":false,"lostTracker":false}
+            """))
+			.andExpect(status().isCreated());
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> {
+			var body = mockMvc.perform(get("/api/owners/{ownerId}/pets/out-of-zone-dwell", 8124).param("window", "PT5M"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+			return objectMapper.readTree(body).get(0).get("outOfZoneSeconds").asLong() >= 1;
+		});
+		mockMvc.perform(get("/api/pets/out-of-zone-dwell").param("window", "PT10M").param("step", "PT5M").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[?(@.petType=='CAT' && @.trackerType=='MEDIUM')]").isNotEmpty());
+	}
+}
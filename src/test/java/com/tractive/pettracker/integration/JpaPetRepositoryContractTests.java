@@ -0,0 +1,20 @@
+package com.tractive.pettracker.integration;
+
+import com.tractive.pettracker.data.PetRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+
+// PetRepositoryImpl on the application's H2 database
+@SpringBootTest(properties = "pettracker.cache.enabled=false")
+class JpaPetRepositoryContractTests extends PetRepositoryContractTests {
+
+	@Autowired
+	@Qualifier("petStorage")
+	PetRepository petStorage;
+
+	@Override
+	protected PetRepository repository() {
+		return petStorage;
+	}
+}
@@ -0,0 +1,40 @@
+package com.tractive.pettracker.integration;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsEndpointTests {
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Test
+	void whenPetsAreListedThenEveryLayerIsExposedToPrometheus() throws Exception {
+		mockMvc.perform(get("/api/pets").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk());
+		mockMvc.perform(get("/api/pets/{id}", 1).accept(MediaType.APPLICATION_JSON));
+
+		mockMvc.perform(get("/actuator/prometheus"))
+			.andExpect(status().isOk())
+			.andExpect(content().string(containsString("http_server_requests_seconds")))
+			.andExpect(content().string(containsString("pettracker_api_seconds")))
+			.andExpect(content().string(containsString("pettracker_service_seconds")))
+			.andExpect(content().string(containsString("pettracker_repository_seconds")))
+			.andExpect(content().string(containsString("pettracker_mapping_seconds")))
+			.andExpect(content().string(containsString("cache_gets_total{cache=\"pets\"")))
+			.andExpect(content().string(containsString("hibernate_")));
+	}
+}
@@ -0,0 +1,46 @@
+package com.tractive.pettracker.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+
+// A database that had pets before pets_id_seq existed, upgraded to the current schema
+class PetIdSequenceMigrationTests {
+
+	private static final String URL = "jdbc:h2:mem:pets-before-sequence;MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+
+	@Test
+	void whenPetsExistedBeforeTheSequenceThenItStartsAfterTheirIds() throws Exception {
+		migrate("2.0");
+		try (Connection connection = DriverManager.getConnection(URL, "admin", "adminpass");
+			 Statement statement = connection.createStatement()) {
+			for (int i = 0; i < 120; i++) {
+				statement.execute("INSERT INTO pets (pet_type, tracker_type, owner_id, in_zone) VALUES ('DOG', 'BIG', 1, TRUE)");
+			}
+		}
+
+		migrate("latest");
+
+		try (Connection connection = DriverManager.getConnection(URL, "admin", "adminpass");
+			 Statement statement = connection.createStatement();
+			 ResultSet next = statement.executeQuery("SELECT NEXT VALUE FOR pets_id_seq")) {
+			next.next();
+			// Hibernate takes the 50 ids ending at the value it reads
+			assertThat(next.getLong(1) - 49).isGreaterThan(120);
+		}
+	}
+
+	private static void migrate(String target) {
+		Flyway.configure()
+			.dataSource(URL, "admin", "adminpass")
+			.locations("classpath:db/migration")
+			.target(target)
+			.load()
+			.migrate();
+	}
+}
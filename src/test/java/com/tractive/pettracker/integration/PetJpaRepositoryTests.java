@@ -157,4 +157,19 @@ class PetJpaRepositoryTests {
         assertThat(foundDogBig).isTrue();
     }
 
+    @Test
+    void whenPatchedNativelyThenVersionIsIncremented() {
+        var petEntity = new PetEntity();
+        petEntity.setPetType(PetType.DOG);
+        petEntity.setTrackerType(TrackerType.BIG);
+        petEntity.setOwnerId(77);
+        petEntity.setInZone(true);
+        var saved = repo.saveAndFlush(petEntity);
+        assertThat(repo.findVersionById(saved.getId())).contains(0L);
+
+        repo.patchReturningPrevious(saved.getId(), false, null);
+
+        assertThat(repo.findVersionById(saved.getId())).contains(1L);
+        assertThat(repo.findVersionById(-1L)).isEmpty();
+    }
 }
@@ -0,0 +1,262 @@
+package com.tractive.pettracker.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.domain.Cat;
+import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetCount;
+import com.tractive.pettracker.domain.PetPatch;
+import com.tractive.pettracker.domain.PetSummaryDimension;
+import com.tractive.pettracker.domain.PetSummaryQuery;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+// Behaviour every storage engine has to share, run against each of them by a subclass.
+// Engines backed by a database keep their rows between tests, so every test works on owners of its own
+// and checks counts over all pets as a difference to what was there before.
+abstract class PetRepositoryContractTests {
+
+	private static final AtomicInteger OWNERS = new AtomicInteger(1_000_000);
+
+	private PetRepository repo;
+
+	protected abstract PetRepository repository();
+
+	@BeforeEach
+	void setUp() {
+		repo = repository();
+	}
+
+	@Test
+	void whenDogIsSavedThenItGetsAnIdAndRoundTrips() {
+		int owner = owner();
+		var saved = repo.save(new Pet(99_999_999L, PetType.DOG, TrackerType.MEDIUM, owner, false));
+
+		assertThat(saved.getId()).isNotNull().isNotEqualTo(99_999_999L);
+		var found = repo.findById(saved.getId()).orElseThrow();
+		assertThat(found).isNotInstanceOf(Cat.class);
+		assertThat(found.getPetType()).isEqualTo(PetType.DOG);
+		assertThat(found.getTrackerType()).isEqualTo(TrackerType.MEDIUM);
+		assertThat(found.getOwnerId()).isEqualTo(owner);
+		assertThat(found.getInZone()).isFalse();
+	}
+
+	@Test
+	void whenCatIsSavedThenLostTrackerRoundTrips() {
+		var saved = repo.save(new Cat(null, TrackerType.BIG, owner(), true, true));
+
+		var found = repo.findById(saved.getId()).orElseThrow();
+
+		assertThat(found).isInstanceOf(Cat.class);
+		assertThat(((Cat) found).getLostTracker()).isTrue();
+	}
+
+	@Test
+	void whenBatchIsSavedThenPetsComeBackInInputOrder() {
+		int owner = owner();
+		var saved = repo.saveAll(List.of(
+			new Pet(null, PetType.DOG, TrackerType.SMALL, owner, true),
+			new Cat(null, TrackerType.SMALL, owner + 1, false, false),
+			new Pet(null, PetType.DOG, TrackerType.BIG, owner + 2, true)));
+
+		assertThat(saved).extracting(Pet::getOwnerId).containsExactly(owner, owner + 1, owner + 2);
+		assertThat(saved).allSatisfy(pet -> assertThat(repo.findById(pet.getId()).orElseThrow().getOwnerId()).isEqualTo(pet.getOwnerId()));
+		assertThat(repo.findById(saved.get(1).getId()).orElseThrow()).isInstanceOf(Cat.class);
+	}
+
+	@Test
+	void whenPetIsUnknownThenItIsNotFound() {
+		assertThat(repo.findById(-1L)).isEmpty();
+		assertThat(repo.findVersion(-1L)).isEmpty();
+		assertThat(repo.patch(-1L, new PetPatch(true, null))).isEmpty();
+		assertThatThrownBy(() -> repo.update(new Pet(-1L, PetType.DOG, TrackerType.SMALL, owner(), true)))
+			.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void whenUpdateHasNoIdThenItIsRejected() {
+		assertThatThrownBy(() -> repo.update(new Pet(null, PetType.DOG, TrackerType.SMALL, owner(), true)))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessageContaining("id required for update");
+	}
+
+	@Test
+	void whenPetIsUpdatedThenTheStoredPetIsReplacedAndItsVersionAdvances() {
+		int owner = owner();
+		var saved = repo.save(new Pet(null, PetType.DOG, TrackerType.SMALL, owner, true));
+		long created = repo.findVersion(saved.getId()).orElseThrow();
+
+		repo.update(new Pet(saved.getId(), PetType.DOG, TrackerType.MEDIUM, owner, false));
+
+		var found = repo.findById(saved.getId()).orElseThrow();
+		assertThat(found.getTrackerType()).isEqualTo(TrackerType.MEDIUM);
+		assertThat(found.getInZone()).isFalse();
+		assertThat(repo.findVersion(saved.getId()).orElseThrow()).isGreaterThan(created);
+	}
+
+	@Test
+	void whenUpdateExpectsAnOlderVersionThenItFailsAndLeavesThePet() {
+		int owner = owner();
+		var saved = repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, owner, true));
+		long version = repo.findVersion(saved.getId()).orElseThrow();
+
+		repo.update(new Pet(saved.getId(), PetType.DOG, TrackerType.BIG, owner, false), version);
+
+		assertThatThrownBy(() -> repo.update(new Pet(saved.getId(), PetType.DOG, TrackerType.SMALL, owner, true), version))
+			.isInstanceOf(OptimisticLockingFailureException.class);
+		var found = repo.findById(saved.getId()).orElseThrow();
+		assertThat(found.getTrackerType()).isEqualTo(TrackerType.BIG);
+		assertThat(found.getInZone()).isFalse();
+	}
+
+	@Test
+	void whenPetIsPatchedThenOnlyTheGivenFieldsChange() {
+		int owner = owner();
+		var saved = repo.save(new Cat(null, TrackerType.SMALL, owner, true, false));
+		long created = repo.findVersion(saved.getId()).orElseThrow();
+
+		var patched = repo.patch(saved.getId(), new PetPatch(false, null)).orElseThrow();
+
+		assertThat(patched.getInZone()).isFalse();
+		assertThat(((Cat) patched).getLostTracker()).isFalse();
+		assertThat(patched.getOwnerId()).isEqualTo(owner);
+		assertThat(repo.findById(saved.getId()).orElseThrow().getInZone()).isFalse();
+		assertThat(repo.findVersion(saved.getId()).orElseThrow()).isGreaterThan(created);
+	}
+
+	@Test
+	void whenTrackerReportsAgainThenTheSamePetIsUpdated() {
+		int owner = owner();
+		var first = repo.upsertByTracker("t-1", new Pet(null, PetType.DOG, TrackerType.BIG, owner, false));
+		var second = repo.upsertByTracker("t-1", new Pet(null, PetType.DOG, TrackerType.BIG, owner, true));
+		var otherOwner = repo.upsertByTracker("t-1", new Pet(null, PetType.DOG, TrackerType.BIG, owner + 1, true));
+
+		assertThat(first.isCreated()).isTrue();
+		assertThat(second.isCreated()).isFalse();
+		assertThat(second.getPet().getId()).isEqualTo(first.getPet().getId());
+		assertThat(repo.findById(first.getPet().getId()).orElseThrow().getInZone()).isTrue();
+		assertThat(otherOwner.isCreated()).isTrue();
+		assertThat(otherOwner.getPet().getId()).isNotEqualTo(first.getPet().getId());
+	}
+
+	@Test
+	void whenPagingThenPetsComeOrderedByIdAfterTheCursor() {
+		int owner = owner();
+		var first = repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, owner, true));
+		var second = repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, owner, true));
+		var third = repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, owner, true));
+
+		assertThat(repo.findPage(first.getId() - 1, 2)).extracting(Pet::getId).containsExactly(first.getId(), second.getId());
+		assertThat(repo.findPage(second.getId(), 1)).extracting(Pet::getId).containsExactly(third.getId());
+		assertThat(repo.findAll()).extracting(Pet::getId).contains(first.getId(), second.getId(), third.getId());
+	}
+
+	@Test
+	void whenOwnerChangesThenThePetMovesToTheNewOwnersPages() {
+		int owner = owner();
+		int newOwner = owner + 1;
+		var first = repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, owner, false));
+		var second = repo.save(new Cat(null, TrackerType.SMALL, owner, true, false));
+		var third = repo.save(new Pet(null, PetType.DOG, TrackerType.SMALL, owner, false));
+
+		assertThat(repo.findPageByOwner(owner, null, 2)).extracting(Pet::getId).containsExactly(first.getId(), second.getId());
+		assertThat(repo.findPageByOwner(owner, second.getId(), 2)).extracting(Pet::getId).containsExactly(third.getId());
+
+		repo.update(new Pet(first.getId(), PetType.DOG, TrackerType.BIG, newOwner, false));
+
+		assertThat(repo.findPageByOwner(owner, null, 10)).extracting(Pet::getId).containsExactly(second.getId(), third.getId());
+		assertThat(repo.findPageByOwner(newOwner, null, 10)).extracting(Pet::getId).containsExactly(first.getId());
+		assertThat(repo.findById(first.getId()).orElseThrow().getOwnerId()).isEqualTo(newOwner);
+		assertThat(repo.countOutsideZoneGroupedByOwner(newOwner)).singleElement()
+			.extracting(OutOfZoneCount::getCount).isEqualTo(1);
+	}
+
+	@Test
+	void whenCountingOneOwnerThenOnlyTheirPetsOutsideAreCounted() {
+		int owner = owner();
+		repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, owner, false));
+		repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, owner, false));
+		repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, owner, true));
+		repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, owner + 1, false));
+
+		var counts = repo.countOutsideZoneGroupedByOwner(owner);
+
+		assertThat(counts).hasSize(1);
+		assertThat(counts.get(0).getPetType()).isEqualTo(PetType.DOG);
+		assertThat(counts.get(0).getTrackerType()).isEqualTo(TrackerType.BIG);
+		assertThat(counts.get(0).getCount()).isEqualTo(2);
+	}
+
+	@Test
+	void whenPetsAreWrittenThenCountsOutsideFollow() {
+		int owner = owner();
+		int catsBefore = outside(repo.countOutsideZoneGrouped(), PetType.CAT, TrackerType.SMALL);
+		int dogsBefore = outside(repo.countOutsideZoneGrouped(), PetType.DOG, TrackerType.BIG);
+		long generation = repo.outOfZoneGeneration();
+
+		var cat = repo.save(new Cat(null, TrackerType.SMALL, owner, false, false));
+		repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, owner, false));
+		repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, owner, true));
+		repo.update(new Cat(cat.getId(), TrackerType.SMALL, owner, true, false));
+
+		assertThat(outside(repo.countOutsideZoneGrouped(), PetType.CAT, TrackerType.SMALL)).isEqualTo(catsBefore);
+		assertThat(outside(repo.countOutsideZoneGrouped(), PetType.DOG, TrackerType.BIG)).isEqualTo(dogsBefore + 1);
+		assertThat(repo.outOfZoneGeneration()).isNotEqualTo(generation);
+	}
+
+	@Test
+	void whenCountingAtAnEarlierInstantThenThePetsOutsideThenAreCounted() throws Exception {
+		var saved = repo.save(new Pet(null, PetType.DOG, TrackerType.MEDIUM, owner(), false));
+		Thread.sleep(5);
+		var whileOutside = Instant.now();
+		Thread.sleep(5);
+
+		repo.patch(saved.getId(), new PetPatch(true, null));
+
+		int then = outside(repo.countOutsideZoneGroupedAt(whileOutside), PetType.DOG, TrackerType.MEDIUM);
+		int now = outside(repo.countOutsideZoneGroupedAt(Instant.now()), PetType.DOG, TrackerType.MEDIUM);
+		assertThat(then).isEqualTo(now + 1);
+	}
+
+	@Test
+	void whenSummarizingThenPetsAreFilteredAndGrouped() {
+		int owner = owner();
+		repo.save(new Cat(null, TrackerType.SMALL, owner, true, true));
+		repo.save(new Cat(null, TrackerType.SMALL, owner + 1, false, true));
+		repo.save(new Cat(null, TrackerType.BIG, owner + 2, true, true));
+		repo.save(new Cat(null, TrackerType.BIG, owner + 3, true, false));
+		repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, owner + 4, true));
+
+		List<PetCount> lostCats = repo.summarize(new PetSummaryQuery(
+			null, PetType.CAT, null, true, owner, owner + 4, List.of(PetSummaryDimension.TRACKER_TYPE)));
+
+		assertThat(lostCats).extracting(PetCount::getTrackerType).containsExactly(TrackerType.BIG, TrackerType.SMALL);
+		assertThat(lostCats).extracting(PetCount::getCount).containsExactly(1L, 2L);
+		assertThat(lostCats.get(0).getPetType()).isNull();
+
+		List<PetCount> inZone = repo.summarize(new PetSummaryQuery(true, null, null, null, owner + 1, owner + 4, List.of()));
+
+		assertThat(inZone).singleElement().extracting(PetCount::getCount).isEqualTo(3L);
+	}
+
+	// a block of owners nobody else uses
+	private static int owner() {
+		return OWNERS.addAndGet(10);
+	}
+
+	private static int outside(List<OutOfZoneCount> counts, PetType petType, TrackerType trackerType) {
+		return counts.stream()
+			.filter(c -> c.getPetType() == petType && c.getTrackerType() == trackerType)
+			.mapToInt(OutOfZoneCount::getCount)
+			.sum();
+	}
+}
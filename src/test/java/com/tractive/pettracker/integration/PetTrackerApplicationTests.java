@@ -1,14 +1,19 @@
 package com.tractive.pettracker.integration;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Instant;
+import java.util.UUID;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -225,4 +230,398 @@ class PetTrackerApplicationTests {
 			.andExpect(jsonPath("$[?(@.petType=='CAT' && @.trackerType=='SMALL')].count").value(1))
 			.andExpect(jsonPath("$[?(@.petType=='DOG' && @.trackerType=='BIG')].count").value(1));
 	}
+
+	@Test
+	void whenCreateBatchThenValidPetsArePersistedAndInvalidOnesReported() throws Exception {
+		var batchRequest = """
+        [{"petType":"DOG","trackerType":"BIG","ownerId":1,"inZone":false},
+         {"petType":"CAT","trackerType":"MEDIUM","ownerId":2,"inZone":false},
+         {"petType":"CAT","trackerType":"SMALL","ownerId":3,"inZone":false,"lostTracker":true}]
+    """;
+
+		var batchResult = mockMvc.perform(post("/api/pets/batch")
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_JSON)
+				.content(batchRequest))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.created").value(2))
+			.andExpect(jsonPath("$.rejected").value(1))
+			.andExpect(jsonPath("$.items[1].status").value("INVALID"))
+			.andExpect(jsonPath("$.items[1].errors.trackerType").value("Cats can only have SMALL or BIG trackers"))
+			.andReturn();
+
+		var catId = objectMapper.readTree(batchResult.getResponse().getContentAsString()).get("items").get(2).get("id").asLong();
+
+		mockMvc.perform(get("/api/pets/{id}", catId).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.petType").value("CAT"))
+			.andExpect(jsonPath("$.lostTracker").value(true));
+
+		mockMvc.perform(get("/api/pets/out-of-zone-summary").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(2));
+	}
+
+	@Test
+	void whenListPetsWithLimitThenPagesByIdWithNextLink() throws Exception {
+		var ids = new long[3];
+		for (int i = 0; i < ids.length; i++) {
+			var result = mockMvc.perform(post("/api/pets")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content("""
+                    {"petType":"DOG","trackerType":"SMALL","ownerId":%d,"inZone":true}
+                """.formatted(i)))
+				.andExpect(status().isCreated())
+				.andReturn();
+			ids[i] = objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+		}
+
+		mockMvc.perform(get("/api/pets").param("limit", "2").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(header().string("Link", containsString("after=" + ids[1])))
+			.andExpect(jsonPath("$.length()").value(2))
+			.andExpect(jsonPath("$[0].id").value(ids[0]))
+			.andExpect(jsonPath("$[1].id").value(ids[1]));
+
+		mockMvc.perform(get("/api/pets").param("after", String.valueOf(ids[1])).param("limit", "2").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(header().doesNotExist("Link"))
+			.andExpect(jsonPath("$.length()").value(1))
+			.andExpect(jsonPath("$[0].id").value(ids[2]));
+	}
+
+	@Test
+	void whenPetReturnsToZoneThenSummaryAtEarlierInstantStillCountsIt() throws Exception {
+		var result = mockMvc.perform(post("/api/pets")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"DOG","trackerType":"BIG","ownerId":9,"inZone":false}
+            """))
+			.andExpect(status().isCreated())
+			.andReturn();
+		var id = objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+		Thread.sleep(5);
+		var whileOutside = Instant.now();
+		Thread.sleep(5);
+
+		mockMvc.perform(put("/api/pets/{id}", id)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"DOG","trackerType":"BIG","ownerId":9,"inZone":true}
+            """))
+			.andExpect(status().isOk());
+
+		mockMvc.perform(get("/api/pets/out-of-zone-summary").param("at", whileOutside.toString()).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[?(@.petType=='DOG' && @.trackerType=='BIG')].count").value(1));
+
+		mockMvc.perform(get("/api/pets/out-of-zone-summary").param("at", Instant.now().toString()).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[?(@.petType=='DOG' && @.trackerType=='BIG')]").isEmpty());
+	}
+
+	@Test
+	void whenPatchPetThenOnlyGivenFieldsChangeAndSummaryFollows() throws Exception {
+		var result = mockMvc.perform(post("/api/pets")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"CAT","trackerType":"SMALL","ownerId":4,"inZone":true,"lostTracker":false}
+            """))
+			.andExpect(status().isCreated())
+			.andReturn();
+		var id = objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+
+		mockMvc.perform(patch("/api/pets/{id}", id)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"inZone":false}
+            """))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.inZone").value(false))
+			.andExpect(jsonPath("$.lostTracker").value(false))
+			.andExpect(jsonPath("$.ownerId").value(4));
+
+		mockMvc.perform(get("/api/pets/{id}", id).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.inZone").value(false));
+
+		mockMvc.perform(get("/api/pets/out-of-zone-summary").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[?(@.petType=='CAT' && @.trackerType=='SMALL')].count").value(1));
+	}
+
+	@Test
+	void whenPetUnchangedThenConditionalGetIsNotModifiedAndEveryWriteChangesTheTag() throws Exception {
+		var result = mockMvc.perform(post("/api/pets")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"DOG","trackerType":"SMALL","ownerId":12,"inZone":true}
+            """))
+			.andExpect(status().isCreated())
+			.andReturn();
+		var id = objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+
+		var created = mockMvc.perform(get("/api/pets/{id}", id).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(header().string("ETag", notNullValue()))
+			.andReturn().getResponse().getHeader("ETag");
+		mockMvc.perform(get("/api/pets/{id}", id).header("If-None-Match", created))
+			.andExpect(status().isNotModified());
+
+		mockMvc.perform(patch("/api/pets/{id}", id).contentType(MediaType.APPLICATION_JSON).content("{\"inZone\":false}"))
+			.andExpect(status().isOk());
+		var patched = mockMvc.perform(get("/api/pets/{id}", id).header("If-None-Match", created).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.inZone").value(false))
+			.andReturn().getResponse().getHeader("ETag");
+
+		mockMvc.perform(put("/api/pets/{id}", id)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"DOG","trackerType":"BIG","ownerId":12,"inZone":false}
+            """))
+			.andExpect(status().isOk());
+		mockMvc.perform(get("/api/pets/{id}", id).header("If-None-Match", patched).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.trackerType").value("BIG"))
+			.andExpect(header().string("ETag", not(patched)));
+	}
+
+	@Test
+	void whenUpdateWithStaleIfMatchThenReturns409AndPetIsUnchanged() throws Exception {
+		var result = mockMvc.perform(post("/api/pets")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"DOG","trackerType":"SMALL","ownerId":13,"inZone":true}
+            """))
+			.andExpect(status().isCreated())
+			.andReturn();
+		var id = objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+		var etag = mockMvc.perform(get("/api/pets/{id}", id)).andReturn().getResponse().getHeader("ETag");
+
+		mockMvc.perform(put("/api/pets/{id}", id)
+				.header("If-Match", etag)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"DOG","trackerType":"SMALL","ownerId":13,"inZone":false}
+            """))
+			.andExpect(status().isOk());
+		mockMvc.perform(get("/api/pets/{id}", id))
+			.andExpect(header().string("ETag", not(etag)));
+
+		mockMvc.perform(put("/api/pets/{id}", id)
+				.header("If-Match", etag)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"DOG","trackerType":"BIG","ownerId":13,"inZone":true}
+            """))
+			.andExpect(status().isConflict())
+			.andExpect(jsonPath("$.error").value("CONFLICT"));
+
+		mockMvc.perform(get("/api/pets/{id}", id).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.trackerType").value("SMALL"))
+			.andExpect(jsonPath("$.inZone").value(false));
+	}
+
+	@Test
+	void whenPatchUnknownPetThenReturns404() throws Exception {
+		mockMvc.perform(patch("/api/pets/{id}", 987654L)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"inZone":true}
+            """))
+			.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void whenTrackerReportsRepeatedlyThenOnePetIsUpsertedAndDuplicatesDropped() throws Exception {
+		var report = """
+            {"messageId":"%s","trackerId":"collar-7","pet":{"petType":"DOG","trackerType":"MEDIUM","ownerId":55,"inZone":%s}}
+        """;
+		var first = UUID.randomUUID().toString();
+		var second = UUID.randomUUID().toString();
+
+		var created = mockMvc.perform(post("/api/pets/reports").contentType(MediaType.APPLICATION_JSON).content(report.formatted(first, false)))
+			.andExpect(status().isCreated())
+			.andExpect(jsonPath("$.status").value("CREATED"))
+			.andReturn();
+		var id = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asLong();
+
+		mockMvc.perform(post("/api/pets/reports").contentType(MediaType.APPLICATION_JSON).content(report.formatted(first, false)))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.status").value("DUPLICATE"))
+			.andExpect(jsonPath("$.id").value(id));
+
+		mockMvc.perform(post("/api/pets/reports").contentType(MediaType.APPLICATION_JSON).content(report.formatted(second, true)))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.status").value("UPDATED"))
+			.andExpect(jsonPath("$.id").value(id));
+
+		mockMvc.perform(get("/api/pets/{id}", id).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.inZone").value(true));
+
+		mockMvc.perform(get("/api/pets/out-of-zone-summary").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[?(@.petType=='DOG' && @.trackerType=='MEDIUM')]").isEmpty());
+	}
+
+	@Test
+	void whenListOwnerPetsThenOnlyThatOwnersPetsArePagedAndSummarised() throws Exception {
+		int owner = 424242;
+		var ids = new long[3];
+		for (int i = 0; i < ids.length; i++) {
+			var result = mockMvc.perform(post("/api/pets")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content("""
+                    {"petType":"DOG","trackerType":"BIG","ownerId":%d,"inZone":%b}
+                """.formatted(owner, i != 1)))
+				.andExpect(status().isCreated())
+				.andReturn();
+			ids[i] = objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+		}
+		mockMvc.perform(post("/api/pets")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                    {"petType":"DOG","trackerType":"BIG","ownerId":%d,"inZone":false}
+                """.formatted(owner + 1)))
+			.andExpect(status().isCreated());
+
+		mockMvc.perform(get("/api/owners/{ownerId}/pets", owner).param("limit", "2").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(header().string("Link", containsString("after=" + ids[1])))
+			.andExpect(jsonPath("$.length()").value(2))
+			.andExpect(jsonPath("$[0].id").value(ids[0]))
+			.andExpect(jsonPath("$[1].id").value(ids[1]));
+
+		mockMvc.perform(get("/api/owners/{ownerId}/pets", owner).param("after", String.valueOf(ids[1])).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(1))
+			.andExpect(jsonPath("$[0].id").value(ids[2]));
+
+		mockMvc.perform(get("/api/owners/{ownerId}/pets/out-of-zone-summary", owner).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(1))
+			.andExpect(jsonPath("$[0].petType").value("DOG"))
+			.andExpect(jsonPath("$[0].trackerType").value("BIG"))
+			.andExpect(jsonPath("$[0].count").value(1));
+	}
+
+	@Test
+	void whenGroupedSummaryThenCountsMatchingPetsPerGroup() throws Exception {
+		int owner = 515151;
+		String[] pets = {
+			"{\"petType\":\"CAT\",\"trackerType\":\"SMALL\",\"ownerId\":%d,\"inZone\":true,\"lostTracker\":true}",
+			"{\"petType\":\"CAT\",\"trackerType\":\"SMALL\",\"ownerId\":%d,\"inZone\":false,\"lostTracker\":true}",
+			"{\"petType\":\"CAT\",\"trackerType\":\"BIG\",\"ownerId\":%d,\"inZone\":true,\"lostTracker\":false}",
+			"{\"petType\":\"DOG\",\"trackerType\":\"BIG\",\"ownerId\":%d,\"inZone\":true}"
+		};
+		for (String pet : pets) {
+			mockMvc.perform(post("/api/pets").contentType(MediaType.APPLICATION_JSON).content(pet.formatted(owner)))
+				.andExpect(status().isCreated());
+		}
+
+		mockMvc.perform(get("/api/pets/summary")
+				.param("ownerFrom", String.valueOf(owner))
+				.param("ownerTo", String.valueOf(owner))
+				.param("petType", "CAT")
+				.param("lostTracker", "true")
+				.param("groupBy", "TRACKER_TYPE,IN_ZONE")
+				.accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(2))
+			.andExpect(jsonPath("$[0].trackerType").value("SMALL"))
+			.andExpect(jsonPath("$[0].inZone").value(false))
+			.andExpect(jsonPath("$[0].count").value(1))
+			.andExpect(jsonPath("$[1].inZone").value(true))
+			.andExpect(jsonPath("$[0].petType").doesNotExist());
+
+		mockMvc.perform(get("/api/pets/summary")
+				.param("ownerFrom", String.valueOf(owner))
+				.param("ownerTo", String.valueOf(owner))
+				.param("inZone", "true")
+				.accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(3))
+			.andExpect(jsonPath("$[0].petType").value("CAT"))
+			.andExpect(jsonPath("$[0].trackerType").value("BIG"))
+			.andExpect(jsonPath("$[0].count").value(1));
+	}
+
+	@Test
+	void whenFixesLeaveAndEnterOwnersZoneThenInZoneFollows() throws Exception {
+		mockMvc.perform(put("/api/owners/{ownerId}/zones", 4711)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                [{"name":"garden","vertices":[{"lat":48.0,"lon":14.0},{"lat":48.0,"lon":14.1},{"lat":48.1,"lon":14.1},{"lat":48.1,"lon":14.0}]}]
+            """))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].id", notNullValue()));
+		var result = mockMvc.perform(post("/api/pets")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"DOG","trackerType":"BIG","ownerId":4711,"inZone":true}
+            """))
+			.andExpect(status().isCreated())
+			.andReturn();
+		var id = objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+
+		mockMvc.perform(post("/api/pets/fixes")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"petId\":%d,\"lat\":48.05,\"lon\":14.05},{\"petId\":%d,\"lat\":48.2,\"lon\":14.05}]".formatted(id, id)))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.unchanged").value(1))
+			.andExpect(jsonPath("$.transitions").value(1));
+		mockMvc.perform(get("/api/pets/{id}", id).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.inZone").value(false));
+
+		mockMvc.perform(post("/api/pets/fixes")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("[{\"petId\":%d,\"lat\":48.01,\"lon\":14.09}]".formatted(id)))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.transitions").value(1));
+		mockMvc.perform(get("/api/pets/{id}", id).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.inZone").value(true));
+		mockMvc.perform(get("/api/owners/{ownerId}/zones", 4711).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[0].name").value("garden"))
+			.andExpect(jsonPath("$[0].vertices.length()").value(4));
+	}
+
+	@Test
+	void whenFixesPostedThenHistoryReturnsThemInTimeOrder() throws Exception {
+		var result = mockMvc.perform(post("/api/pets")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"CAT","trackerType":"SMALL","ownerId":4712,"inZone":true,"lostTracker":false}
+            """))
+			.andExpect(status().isCreated())
+			.andReturn();
+		var id = objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+
+		mockMvc.perform(post("/api/pets/fixes")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                [{"petId":%d,"lat":48.31,"lon":14.29,"recordedAt":"2025-03-01T12:00:30Z"},
+                 {"petId":%d,"lat":48.30,"lon":14.28,"recordedAt":"2025-03-01T12:00:00Z"}]
+            """.formatted(id, id)))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.withoutZones").value(2));
+
+		mockMvc.perform(get("/api/pets/{id}/history", id)
+				.param("from", "2025-03-01T12:00:00Z")
+				.param("to", "2025-03-01T13:00:00Z")
+				.accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(2))
+			.andExpect(jsonPath("$[0].at").value("2025-03-01T12:00:00Z"))
+			.andExpect(jsonPath("$[0].lat").value(48.30))
+			.andExpect(jsonPath("$[1].lon").value(14.29))
+			.andExpect(jsonPath("$[1].inZone").value(true));
+		mockMvc.perform(get("/api/pets/{id}/history", 987_654_321L).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isNotFound());
+	}
 }
@@ -0,0 +1,48 @@
+package com.tractive.pettracker.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+
+// A database that had pets before pet_zone_events existed, upgraded to the current schema
+class PetZoneEventsMigrationTests {
+
+	private static final String URL = "jdbc:h2:mem:pets-before-zone-events;MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+
+	@Test
+	void whenPetsExistedBeforeTheLogThenThoseOutsideAreCountedFromIt() throws Exception {
+		migrate("3.0");
+		try (Connection connection = DriverManager.getConnection(URL, "admin", "adminpass");
+			 Statement statement = connection.createStatement()) {
+			statement.execute("INSERT INTO pets (id, pet_type, tracker_type, owner_id, in_zone) VALUES (1, 'DOG', 'BIG', 1, FALSE)");
+			statement.execute("INSERT INTO pets (id, pet_type, tracker_type, owner_id, in_zone) VALUES (2, 'DOG', 'BIG', 1, FALSE)");
+			statement.execute("INSERT INTO pets (id, pet_type, tracker_type, owner_id, in_zone) VALUES (3, 'DOG', 'BIG', 1, TRUE)");
+		}
+
+		migrate("latest");
+
+		try (Connection connection = DriverManager.getConnection(URL, "admin", "adminpass");
+			 Statement statement = connection.createStatement();
+			 ResultSet events = statement.executeQuery(
+				 "SELECT COUNT(*), SUM(out_of_zone_delta) FROM pet_zone_events WHERE pet_type = 'DOG' AND tracker_type = 'BIG'")) {
+			events.next();
+			// one baseline row per pet, +1 for the two outside
+			assertThat(events.getLong(1)).isEqualTo(3);
+			assertThat(events.getLong(2)).isEqualTo(2);
+		}
+	}
+
+	private static void migrate(String target) {
+		Flyway.configure()
+			.dataSource(URL, "admin", "adminpass")
+			.locations("classpath:db/migration")
+			.target(target)
+			.load()
+			.migrate();
+	}
+}
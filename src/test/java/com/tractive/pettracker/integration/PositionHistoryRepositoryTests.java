@@ -0,0 +1,95 @@
+package com.tractive.pettracker.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.tractive.pettracker.data.PositionHistoryRepository;
+import com.tractive.pettracker.data.jpa.PositionChunkJpaRepository;
+import com.tractive.pettracker.domain.PositionResolution;
+import com.tractive.pettracker.domain.PositionSample;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+// chunk-duration PT0S closes every chunk on the next flush, so each flush leaves the history on disk only
+@SpringBootTest(properties = "pettracker.history.chunk-duration=PT0S")
+@Transactional
+class PositionHistoryRepositoryTests {
+
+	private static final Instant NOW = Instant.parse("2025-06-01T00:00:00Z");
+
+	@Autowired
+	PositionHistoryRepository history;
+
+	@Autowired
+	PositionChunkJpaRepository chunks;
+
+	@Test
+	void whenFixesBufferedThenRangeQueryServesThemBeforeAndAfterFlush() {
+		long petId = 900_001L;
+		for (int i = 0; i < 10; i++) history.append(petId, new PositionSample(NOW.plusSeconds(i * 10L), 48.0 + i * 0.001, 14.0, i < 5));
+
+		assertThat(history.findRange(petId, NOW.plusSeconds(20), NOW.plusSeconds(50))).hasSize(4);
+
+		history.flush();
+
+		var flushed = history.findRange(petId, NOW, NOW.plusSeconds(90));
+		assertThat(flushed).hasSize(10);
+		assertThat(flushed.get(4).isInZone()).isTrue();
+		assertThat(flushed.get(5).isInZone()).isFalse();
+		assertThat(history.findRange(petId, NOW.plusSeconds(20), NOW.plusSeconds(50))).hasSize(4);
+		assertThat(history.findRange(petId, NOW.minusSeconds(60), NOW.minusSeconds(1))).isEmpty();
+	}
+
+	@Test
+	void whenRawHistoryPassesRetentionThenItIsKeptPerMinuteAndLaterPerHour() {
+		long petId = 900_002L;
+		Instant start = NOW.minus(Duration.ofDays(30));
+		for (int i = 0; i < 360; i++) history.append(petId, new PositionSample(start.plusSeconds(i * 10L), 48.0, 14.0, true));
+		history.flush();
+
+		history.compact(NOW);
+
+		var minutes = history.findRange(petId, start, start.plus(Duration.ofHours(1)));
+		assertThat(minutes).hasSize(60);
+		assertThat(minutes.get(1).getAt()).isEqualTo(start.plusSeconds(60));
+		assertThat(chunks.findOverlapping(petId, start, NOW)).allMatch(c -> c.getResolution() == PositionResolution.MINUTE);
+
+		history.compact(NOW.plus(Duration.ofDays(100)));
+
+		assertThat(history.findRange(petId, start, start.plus(Duration.ofHours(1)))).hasSize(1);
+
+		history.compact(NOW.plus(Duration.ofDays(1000)));
+
+		assertThat(history.findRange(petId, start, NOW)).isEmpty();
+	}
+
+	@Test
+	void whenRawChunkEndsInsideAMinuteThenThatMinuteIsDownsampledOnceFromBothChunks() {
+		long petId = 900_003L;
+		Instant start = NOW.minus(Duration.ofDays(30));
+		// the first chunk ends at 0:30 and the second starts at 0:40, so minute 0 is split between them
+		for (int i = 0; i < 4; i++) history.append(petId, new PositionSample(start.plusSeconds(i * 10L), 48.0, 14.0, true));
+		history.flush();
+		for (int i = 4; i < 10; i++) history.append(petId, new PositionSample(start.plusSeconds(i * 10L), 48.6, 14.0, i < 5));
+		history.flush();
+
+		// only the first chunk is past retention: its part of minute 0 waits for the rest
+		history.compact(start.plus(Duration.ofDays(7)).plusSeconds(60));
+
+		assertThat(chunks.findOverlapping(petId, start, NOW)).allMatch(c -> c.getResolution() == PositionResolution.RAW);
+		assertThat(history.findRange(petId, start, start.plusSeconds(120))).hasSize(10);
+
+		history.compact(NOW);
+
+		var minutes = history.findRange(petId, start, start.plusSeconds(120));
+		assertThat(minutes).extracting(PositionSample::getAt).containsExactly(start, start.plusSeconds(60));
+		// mean of four fixes at 48.0 and two at 48.6, zone state of the fix at 0:50
+		assertThat(minutes.get(0).getLat()).isCloseTo(48.2, within(1e-6));
+		assertThat(minutes.get(0).isInZone()).isFalse();
+		assertThat(chunks.findOverlapping(petId, start, NOW)).allMatch(c -> c.getResolution() == PositionResolution.MINUTE);
+	}
+}
@@ -0,0 +1,92 @@
+package com.tractive.pettracker.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.data.jpa.PetSecondLevelCache;
+import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetPatch;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+// Every write path must leave no stale pet or count behind, including the native PATCH and upsert
+@SpringBootTest
+@ActiveProfiles("l2cache")
+class SecondLevelCacheTests {
+
+	@Autowired
+	@Qualifier("petStorage")
+	PetRepository repository;
+
+	@Autowired
+	PetSecondLevelCache secondLevelCache;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	@Test
+	void whenPetIsReadTwiceThenTheSecondReadIsACacheHit() {
+		assertThat(secondLevelCache.isEnabled()).isTrue();
+		Pet saved = repository.save(new Pet(null, PetType.DOG, TrackerType.BIG, 515151, true));
+		secondLevelCache.evictAll();
+		Statistics statistics = statistics();
+		long hits = statistics.getSecondLevelCacheHitCount();
+
+		repository.findById(saved.getId());
+		repository.findById(saved.getId());
+
+		assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(hits + 1);
+	}
+
+	@Test
+	void whenPetIsUpdatedThenCachedPetAndCountsFollow() {
+		int owner = 515152;
+		Pet saved = repository.save(new Pet(null, PetType.DOG, TrackerType.BIG, owner, true));
+		repository.findById(saved.getId());
+		assertThat(repository.countOutsideZoneGroupedByOwner(owner)).isEmpty();
+
+		repository.update(new Pet(saved.getId(), PetType.DOG, TrackerType.BIG, owner, false));
+
+		assertThat(repository.findById(saved.getId()).orElseThrow().getInZone()).isFalse();
+		assertThat(repository.countOutsideZoneGroupedByOwner(owner)).extracting(OutOfZoneCount::getCount).containsExactly(1);
+	}
+
+	@Test
+	void whenPetIsPatchedNativelyThenCachedPetAndCountsAreEvicted() {
+		int owner = 515153;
+		Pet saved = repository.save(new Pet(null, PetType.CAT, TrackerType.SMALL, owner, true));
+		repository.findById(saved.getId());
+		assertThat(repository.countOutsideZoneGroupedByOwner(owner)).isEmpty();
+
+		repository.patch(saved.getId(), new PetPatch(false, null));
+
+		assertThat(repository.findById(saved.getId()).orElseThrow().getInZone()).isFalse();
+		assertThat(repository.countOutsideZoneGroupedByOwner(owner)).extracting(OutOfZoneCount::getCount).containsExactly(1);
+	}
+
+	@Test
+	void whenKnownTrackerReportsThenCachedPetAndCountsAreEvicted() {
+		int owner = 515154;
+		Pet first = repository.upsertByTracker("l2-tracker", new Pet(null, PetType.DOG, TrackerType.MEDIUM, owner, true)).getPet();
+		repository.findById(first.getId());
+		assertThat(repository.countOutsideZoneGroupedByOwner(owner)).isEmpty();
+
+		repository.upsertByTracker("l2-tracker", new Pet(null, PetType.DOG, TrackerType.MEDIUM, owner, false));
+
+		assertThat(repository.findById(first.getId()).orElseThrow().getInZone()).isFalse();
+		assertThat(repository.countOutsideZoneGroupedByOwner(owner)).extracting(OutOfZoneCount::getCount).containsExactly(1);
+	}
+
+	private Statistics statistics() {
+		return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+}
@@ -0,0 +1,26 @@
+package com.tractive.pettracker.integration;
+
+import com.tractive.pettracker.data.PetRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+
+// ShardedPetRepository over three H2 databases of its own
+@SpringBootTest(properties = {
+	"pettracker.storage=sharded",
+	"pettracker.cache.enabled=false",
+	"pettracker.sharding.urls=jdbc:h2:mem:pets-contract-0;MODE=PostgreSQL;DB_CLOSE_DELAY=-1,"
+		+ "jdbc:h2:mem:pets-contract-1;MODE=PostgreSQL;DB_CLOSE_DELAY=-1,"
+		+ "jdbc:h2:mem:pets-contract-2;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"
+})
+class ShardedPetRepositoryContractTests extends PetRepositoryContractTests {
+
+	@Autowired
+	@Qualifier("petStorage")
+	PetRepository petStorage;
+
+	@Override
+	protected PetRepository repository() {
+		return petStorage;
+	}
+}
@@ -0,0 +1,146 @@
+package com.tractive.pettracker.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.data.shard.PetShard;
+import com.tractive.pettracker.data.shard.ShardRing;
+import com.tractive.pettracker.data.shard.ShardedPetRepository;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+// Three H2 databases behind pettracker.storage=sharded
+@SpringBootTest(properties = {
+	"pettracker.storage=sharded",
+	"pettracker.cache.enabled=false",
+	"pettracker.sharding.urls=jdbc:h2:mem:pets-shard-0;MODE=PostgreSQL;DB_CLOSE_DELAY=-1,"
+		+ "jdbc:h2:mem:pets-shard-1;MODE=PostgreSQL;DB_CLOSE_DELAY=-1,"
+		+ "jdbc:h2:mem:pets-shard-2;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"
+})
+@AutoConfigureMockMvc
+class ShardedStorageApplicationTests {
+
+	// same ring as the application: three shards, default virtual nodes
+	private static final ShardRing RING = new ShardRing(3, 128);
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	@Autowired
+	@Qualifier("petStorage")
+	PetRepository petStorage;
+
+	@Test
+	void whenPetsOfOwnersOnEveryShardAreCreatedThenTheyAreReadBackFromAllShards() throws Exception {
+		assertThat(petStorage).isInstanceOf(ShardedPetRepository.class);
+		List<Long> ids = new ArrayList<>();
+		for (int shard = 0; shard < 3; shard++) {
+			long id = create(ownerOn(shard, 0), "CAT", "BIG", false);
+			// every shard hands out ids from its own range
+			assertThat(id).isGreaterThanOrEqualTo(PetShard.firstId(shard));
+			ids.add(id);
+		}
+
+		for (long id : ids) {
+			mockMvc.perform(get("/api/pets/{id}", id).accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id").value(id));
+		}
+
+		// keyset pages over all shards come back in id order, without gaps or repeats
+		List<Long> paged = new ArrayList<>();
+		Long after = null;
+		while (true) {
+			var request = get("/api/pets").param("limit", "2").accept(MediaType.APPLICATION_JSON);
+			if (after != null) request.param("after", after.toString());
+			JsonNode page = objectMapper.readTree(mockMvc.perform(request)
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString());
+			if (page.isEmpty()) break;
+			for (JsonNode pet : page) paged.add(pet.get("id").asLong());
+			after = paged.getLast();
+		}
+		assertThat(paged).isSorted().doesNotHaveDuplicates().containsAll(ids);
+	}
+
+	@Test
+	void whenCountingOutsideZoneThenEveryShardContributes() throws Exception {
+		int before = outsideCount("DOG", "SMALL");
+		for (int shard = 0; shard < 3; shard++) create(ownerOn(shard, 1), "DOG", "SMALL", false);
+
+		assertThat(outsideCount("DOG", "SMALL") - before).isEqualTo(3);
+	}
+
+	@Test
+	void whenUpdateMovesPetToAnOwnerOnAnotherShardThenItFollowsTheOwner() throws Exception {
+		int from = ownerOn(0, 2);
+		int to = ownerOn(1, 2);
+		long id = create(from, "DOG", "MEDIUM", false);
+		int before = outsideCount("DOG", "MEDIUM");
+
+		mockMvc.perform(put("/api/pets/{id}", id)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"DOG","trackerType":"MEDIUM","ownerId":%d,"inZone":false}
+            """.formatted(to)))
+			.andExpect(status().isOk());
+
+		mockMvc.perform(get("/api/pets/{id}", id).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.ownerId").value(to));
+		mockMvc.perform(get("/api/owners/{ownerId}/pets", to).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[?(@.id==%d)]".formatted(id)).isNotEmpty());
+		mockMvc.perform(get("/api/owners/{ownerId}/pets", from).accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$[?(@.id==%d)]".formatted(id)).isEmpty());
+		// moved, not copied: still counted once
+		assertThat(outsideCount("DOG", "MEDIUM")).isEqualTo(before);
+		assertThat(((ShardedPetRepository) petStorage).rebalance()).isZero();
+	}
+
+	private long create(int ownerId, String petType, String trackerType, boolean inZone) throws Exception {
+		var body = mockMvc.perform(post("/api/pets")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("""
+                {"petType":"%s","trackerType":"%s","ownerId":%d,"inZone":%b}
+            """.formatted(petType, trackerType, ownerId, inZone)))
+			.andExpect(status().isCreated())
+			.andReturn().getResponse().getContentAsString();
+		return objectMapper.readTree(body).get("id").asLong();
+	}
+
+	private int outsideCount(String petType, String trackerType) throws Exception {
+		var body = mockMvc.perform(get("/api/pets/out-of-zone-summary").accept(MediaType.APPLICATION_JSON))
+			.andExpect(status().isOk())
+			.andReturn().getResponse().getContentAsString();
+		for (JsonNode row : objectMapper.readTree(body)) {
+			if (row.get("petType").asText().equals(petType) && row.get("trackerType").asText().equals(trackerType)) return row.get("count").asInt();
+		}
+		return 0;
+	}
+
+	// owners are spread per test so the tests do not see each other's pets
+	private static int ownerOn(int shard, int test) {
+		for (int ownerId = 10_000 * (test + 1); ; ownerId++) {
+			if (RING.shardOf(ownerId) == shard) return ownerId;
+		}
+	}
+}
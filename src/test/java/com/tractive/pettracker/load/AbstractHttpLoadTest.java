@@ -0,0 +1,100 @@
+package com.tractive.pettracker.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+// Drives a fixed mix of GET-by-id and POST requests from many concurrent clients and logs throughput and
+// latency percentiles. Run with ./gradlew loadTest and compare the platform and virtual thread reports.
+// Tomcat is limited to 32 workers in both runs so the platform-thread run saturates like a busy node would.
+@Tag("load")
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+        "pettracker.cache.enabled=false",
+        "spring.jpa.show-sql=false",
+        "server.tomcat.threads.max=32"
+    }
+)
+abstract class AbstractHttpLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AbstractHttpLoadTest.class);
+    private static final int PETS = 200;
+    private static final int REQUESTS = 20_000;
+    private static final int CONCURRENCY = 256;
+
+    @LocalServerPort
+    int port;
+
+    abstract String mode();
+
+    @Test
+    void reportThroughputAndLatency() throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+        long[] ids = new long[PETS];
+        for (int i = 0; i < PETS; i++) {
+            HttpResponse<String> created = client.send(create(i), HttpResponse.BodyHandlers.ofString());
+            assertThat(created.statusCode()).isEqualTo(201);
+            String location = created.headers().firstValue("Location").orElseThrow();
+            ids[i] = Long.parseLong(location.substring(location.lastIndexOf('/') + 1));
+        }
+
+        long[] latencies = new long[REQUESTS];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long started = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CONCURRENCY; c++) {
+                clients.submit(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < REQUESTS) {
+                        HttpRequest request = i % 4 == 0 ? create(i) : get(ids[i % PETS]);
+                        long t0 = System.nanoTime();
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        latencies[i] = System.nanoTime() - t0;
+                        if (response.statusCode() >= 400) errors.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+
+        Arrays.sort(latencies);
+        log.info("[load] %-8s %d requests, %d clients: %.0f req/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms".formatted(
+            mode(), REQUESTS, CONCURRENCY,
+            REQUESTS / (elapsed / 1e9),
+            latencies[REQUESTS / 2] / 1e6,
+            latencies[(int) (REQUESTS * 0.99)] / 1e6,
+            latencies[REQUESTS - 1] / 1e6));
+        assertThat(errors.get()).isZero();
+    }
+
+    private HttpRequest create(int ownerId) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:%d/api/pets".formatted(port)))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(
+                "{\"petType\":\"DOG\",\"trackerType\":\"SMALL\",\"ownerId\":%d,\"inZone\":%b}".formatted(ownerId, ownerId % 2 == 0)))
+            .build();
+    }
+
+    private HttpRequest get(long id) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:%d/api/pets/%d".formatted(port, id))).GET().build();
+    }
+}
@@ -0,0 +1,151 @@
+package com.tractive.pettracker.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+// Many clients replacing the same few pets at once. Half of the writes are blind PUTs, which the service
+// retries on a version conflict; the other half read the ETag first and send it as If-Match, retrying
+// themselves on 409. Logs update throughput and latency next to the conflict counts, then checks that
+// no update was lost from the out-of-zone counters: they must match the pets as they ended up.
+@Tag("load")
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+        "pettracker.cache.enabled=false",
+        "spring.jpa.show-sql=false",
+        "server.tomcat.threads.max=32"
+    }
+)
+class ContentionLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentionLoadTest.class);
+    private static final int HOT_PETS = 8;
+    private static final int UPDATES = 10_000;
+    private static final int WRITERS = 64;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void reportThroughputUnderContentionAndKeepCountersExact() throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+        int outsideBefore = outsideCatsWithBigTracker(client);
+        long[] ids = new long[HOT_PETS];
+        for (int i = 0; i < HOT_PETS; i++) {
+            HttpResponse<String> created = client.send(
+                HttpRequest.newBuilder(uri("/api/pets")).header("Content-Type", "application/json").POST(body(true)).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertThat(created.statusCode()).isEqualTo(201);
+            ids[i] = objectMapper.readTree(created.body()).get("id").asLong();
+        }
+
+        Counter serverRetries = Metrics.counter("pettracker.update.retries");
+        double retriesBefore = serverRetries.count();
+        long[] latencies = new long[UPDATES];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        AtomicInteger surfaced = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long started = System.nanoTime();
+        try (ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < WRITERS; w++) {
+                writers.submit(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < UPDATES) {
+                        long id = ids[i % HOT_PETS];
+                        boolean inZone = ThreadLocalRandom.current().nextBoolean();
+                        long t0 = System.nanoTime();
+                        int status = i % 2 == 0 ? blindUpdate(client, id, inZone) : conditionalUpdate(client, id, inZone, conflicts);
+                        latencies[i] = System.nanoTime() - t0;
+                        // a blind PUT that lost every server-side attempt is answered 409 as well
+                        if (status == 409) surfaced.incrementAndGet();
+                        else if (status != 200) errors.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+
+        Arrays.sort(latencies);
+        log.info(("[load] contention %d updates of %d pets, %d writers: %.0f updates/s, p50 %.2f ms, p99 %.2f ms, "
+                + "%d client retries after 409, %.0f server retries, %d blind updates given up").formatted(
+            UPDATES, HOT_PETS, WRITERS,
+            UPDATES / (elapsed / 1e9),
+            latencies[UPDATES / 2] / 1e6,
+            latencies[(int) (UPDATES * 0.99)] / 1e6,
+            conflicts.get(),
+            serverRetries.count() - retriesBefore,
+            surfaced.get()));
+        assertThat(errors.get()).isZero();
+
+        int outside = 0;
+        for (long id : ids) {
+            HttpResponse<String> pet = client.send(HttpRequest.newBuilder(uri("/api/pets/" + id)).GET().build(), HttpResponse.BodyHandlers.ofString());
+            if (!objectMapper.readTree(pet.body()).get("inZone").asBoolean()) outside++;
+        }
+        assertThat(outsideCatsWithBigTracker(client) - outsideBefore).isEqualTo(outside);
+    }
+
+    private int blindUpdate(HttpClient client, long id, boolean inZone) throws Exception {
+        return client.send(put(id, inZone).build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    // Read-modify-write as a careful client would do it: on 409 it re-reads and tries again
+    private int conditionalUpdate(HttpClient client, long id, boolean inZone, AtomicInteger conflicts) throws Exception {
+        while (true) {
+            HttpResponse<Void> current = client.send(HttpRequest.newBuilder(uri("/api/pets/" + id)).GET().build(), HttpResponse.BodyHandlers.discarding());
+            String etag = current.headers().firstValue("ETag").orElseThrow();
+            int status = client.send(put(id, inZone).header("If-Match", etag).build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+            if (status != 409) return status;
+            conflicts.incrementAndGet();
+        }
+    }
+
+    private int outsideCatsWithBigTracker(HttpClient client) throws Exception {
+        HttpResponse<String> summary = client.send(HttpRequest.newBuilder(uri("/api/pets/out-of-zone-summary")).GET().build(), HttpResponse.BodyHandlers.ofString());
+        for (JsonNode row : objectMapper.readTree(summary.body())) {
+            if (row.get("petType").asText().equals("CAT") && row.get("trackerType").asText().equals("BIG")) return row.get("count").asInt();
+        }
+        return 0;
+    }
+
+    private HttpRequest.Builder put(long id, boolean inZone) {
+        return HttpRequest.newBuilder(uri("/api/pets/" + id)).header("Content-Type", "application/json").PUT(body(inZone));
+    }
+
+    private HttpRequest.BodyPublisher body(boolean inZone) {
+        return HttpRequest.BodyPublishers.ofString(
+            "{\"petType\":\"CAT\",\"trackerType\":\"BIG\",\"ownerId\":9001,\"inZone\":%b,\"lostTracker\":false}".formatted(inZone));
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:%d%s".formatted(port, path));
+    }
+}
@@ -0,0 +1,9 @@
+package com.tractive.pettracker.load;
+
+class PlatformThreadsLoadTest extends AbstractHttpLoadTest {
+
+    @Override
+    String mode() {
+        return "platform";
+    }
+}
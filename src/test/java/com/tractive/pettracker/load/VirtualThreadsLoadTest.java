@@ -0,0 +1,12 @@
+package com.tractive.pettracker.load;
+
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("virtual")
+class VirtualThreadsLoadTest extends AbstractHttpLoadTest {
+
+    @Override
+    String mode() {
+        return "virtual";
+    }
+}
@@ -0,0 +1,78 @@
+package com.tractive.pettracker.unit.api;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.tractive.pettracker.api.GeofenceController;
+import com.tractive.pettracker.api.dto.GeoPointDTO;
+import com.tractive.pettracker.api.dto.LocationFixResultDTO;
+import com.tractive.pettracker.api.dto.PowerSavingZoneDTO;
+import com.tractive.pettracker.application.service.GeofenceService;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+@WebMvcTest(GeofenceController.class)
+class GeofenceControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean
+    private GeofenceService geofenceService;
+
+    @Test
+    void whenZonesReplacedThenReturnsStoredZones() throws Exception {
+        var zone = new PowerSavingZoneDTO(50L, "home", List.of(new GeoPointDTO(0.0, 0.0), new GeoPointDTO(0.0, 1.0), new GeoPointDTO(1.0, 1.0)));
+        when(geofenceService.replaceZones(eq(7), anyList())).thenReturn(List.of(zone));
+
+        mvc.perform(put("/api/owners/7/zones")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"name\":\"home\",\"vertices\":[{\"lat\":0,\"lon\":0},{\"lat\":0,\"lon\":1},{\"lat\":1,\"lon\":1}]}]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id").value(50))
+            .andExpect(jsonPath("$[0].vertices.length()").value(3));
+    }
+
+    @Test
+    void whenZoneHasTooFewVerticesThenReturns400() throws Exception {
+        mvc.perform(put("/api/owners/7/zones")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"name\":\"line\",\"vertices\":[{\"lat\":0,\"lon\":0},{\"lat\":0,\"lon\":1}]}]"))
+            .andExpect(status().isBadRequest());
+
+        verify(geofenceService, never()).replaceZones(any(), any());
+    }
+
+    @Test
+    void whenVertexOutOfRangeThenReturns400() throws Exception {
+        mvc.perform(put("/api/owners/7/zones")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"name\":\"x\",\"vertices\":[{\"lat\":0,\"lon\":0},{\"lat\":0,\"lon\":181},{\"lat\":1,\"lon\":1}]}]"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenFixesPostedThenReturnsCounts() throws Exception {
+        when(geofenceService.ingest(anyList())).thenReturn(new LocationFixResultDTO(2, 1, 1, 0, 0, 0, 0));
+
+        mvc.perform(post("/api/pets/fixes")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"petId\":1,\"lat\":0.5,\"lon\":0.5},{\"petId\":2,\"lat\":3,\"lon\":3}]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.received").value(2))
+            .andExpect(jsonPath("$.transitions").value(1));
+    }
+}
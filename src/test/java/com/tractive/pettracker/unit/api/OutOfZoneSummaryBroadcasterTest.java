@@ -0,0 +1,82 @@
+package com.tractive.pettracker.unit.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+import com.tractive.pettracker.api.OutOfZoneSummaryBroadcaster;
+import com.tractive.pettracker.api.PetController;
+import com.tractive.pettracker.api.dto.OutsideZoneSummaryDTO;
+import com.tractive.pettracker.application.service.PetService;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+@WebMvcTest(PetController.class)
+@Import(OutOfZoneSummaryBroadcaster.class)
+class OutOfZoneSummaryBroadcasterTest {
+
+    private static final String EVENT = "event:out-of-zone-summary";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private OutOfZoneSummaryBroadcaster broadcaster;
+
+    @MockitoBean
+    private PetService petService;
+
+    // the open subscription would otherwise outlive the test in the cached context
+    @Test
+    @DirtiesContext
+    void whenSubscribedThenGetsCurrentSummaryAndOnlyChangedFrames() throws Exception {
+        var before = List.of(new OutsideZoneSummaryDTO(PetType.DOG, TrackerType.BIG, 1));
+        var after = List.of(new OutsideZoneSummaryDTO(PetType.DOG, TrackerType.BIG, 2));
+        when(petService.outOfZoneSummary()).thenReturn(before);
+
+        var result = mvc.perform(get("/api/pets/out-of-zone-summary/stream").accept(MediaType.TEXT_EVENT_STREAM))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        var response = result.getResponse();
+
+        assertThat(response.getContentType()).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+        assertThat(response.getContentAsString()).contains(EVENT).contains("\"count\":1");
+
+        broadcaster.publish();
+        assertThat(frames(response.getContentAsString())).isEqualTo(1);
+
+        // several changes between two ticks arrive as one frame with the latest counts
+        when(petService.outOfZoneSummary()).thenReturn(after);
+        broadcaster.publish();
+        broadcaster.publish();
+
+        // written by the subscriber's sender thread, not by publish
+        await().untilAsserted(() -> assertThat(response.getContentAsString()).contains("\"count\":2"));
+        assertThat(frames(response.getContentAsString())).isEqualTo(2);
+        assertThat(broadcaster.subscriberCount()).isEqualTo(1);
+    }
+
+    @Test
+    void whenNobodySubscribedThenPublishDoesNotComputeSummary() throws Exception {
+        broadcaster.publish();
+
+        verify(petService, never()).outOfZoneSummary();
+    }
+
+    private static int frames(String body) {
+        return body.split(EVENT, -1).length - 1;
+    }
+}
@@ -0,0 +1,95 @@
+package com.tractive.pettracker.unit.api;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.tractive.pettracker.api.OwnerPetController;
+import com.tractive.pettracker.api.dto.OutsideZoneSummaryDTO;
+import com.tractive.pettracker.api.dto.OwnerOutOfZoneDwellDTO;
+import com.tractive.pettracker.api.dto.PetResponseDTO;
+import com.tractive.pettracker.application.service.PetService;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+@WebMvcTest(OwnerPetController.class)
+class OwnerPetControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean
+    private PetService petService;
+
+    @Test
+    void whenListOwnerPetsPageIsFullThenReturnsNextLink() throws Exception {
+        var pet1 = new PetResponseDTO(3L, PetType.CAT, TrackerType.SMALL, 7, true, false);
+        var pet2 = new PetResponseDTO(9L, PetType.DOG, TrackerType.BIG, 7, false, null);
+        when(petService.listByOwner(7, null, 2)).thenReturn(List.of(pet1, pet2));
+
+        mvc.perform(get("/api/owners/7/pets").param("limit", "2").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].id").value(3))
+            .andExpect(jsonPath("$[1].ownerId").value(7))
+            .andExpect(header().string("Link", containsString("after=9")));
+    }
+
+    @Test
+    void whenOwnerHasNoPetsThenReturnsEmptyPage() throws Exception {
+        when(petService.listByOwner(8, null, 100)).thenReturn(List.of());
+
+        mvc.perform(get("/api/owners/8/pets").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0))
+            .andExpect(header().doesNotExist("Link"));
+    }
+
+    @Test
+    void whenOwnerIdIsNotANumberThenReturns400() throws Exception {
+        mvc.perform(get("/api/owners/abc/pets").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenGetOwnerSummaryThenReturns200AndCounts() throws Exception {
+        when(petService.outOfZoneSummaryByOwner(7)).thenReturn(List.of(new OutsideZoneSummaryDTO(PetType.DOG, TrackerType.BIG, 2)));
+
+        mvc.perform(get("/api/owners/7/pets/out-of-zone-summary").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].petType").value("DOG"))
+            .andExpect(jsonPath("$[0].count").value(2));
+    }
+
+    @Test
+    void whenGetOwnerDwellThenReturnsOneRowPerWindow() throws Exception {
+        var from = Instant.parse("2025-03-01T10:00:00Z");
+        when(petService.outOfZoneDwellByOwner(7, Duration.ofHours(2), Duration.ofHours(1))).thenReturn(List.of(
+            new OwnerOutOfZoneDwellDTO(from, from.plus(Duration.ofHours(1)), 1800, 0.5),
+            new OwnerOutOfZoneDwellDTO(from.plus(Duration.ofHours(1)), from.plus(Duration.ofHours(2)), 0, 0)));
+
+        mvc.perform(get("/api/owners/7/pets/out-of-zone-dwell").param("window", "PT2H").param("step", "PT1H").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].outOfZoneSeconds").value(1800))
+            .andExpect(jsonPath("$[1].averageOutOfZone").value(0.0));
+    }
+
+    @Test
+    void whenOwnerDwellStepDoesNotDivideWindowThenReturns400() throws Exception {
+        mvc.perform(get("/api/owners/7/pets/out-of-zone-dwell").param("window", "PT1H").param("step", "PT40M").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,95 @@
+package com.tractive.pettracker.unit.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.tractive.pettracker.api.codec.PetBinaryHttpMessageConverter;
+import com.tractive.pettracker.api.dto.PetRequestDTO;
+import com.tractive.pettracker.api.dto.PetResponseDTO;
+import com.tractive.pettracker.api.dto.TrackerReportDTO;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+class PetBinaryHttpMessageConverterTest {
+
+    private static final Type REQUESTS = new ParameterizedTypeReference<List<PetRequestDTO>>() {}.getType();
+    private static final Type RESPONSES = new ParameterizedTypeReference<List<PetResponseDTO>>() {}.getType();
+
+    private final PetBinaryHttpMessageConverter converter = new PetBinaryHttpMessageConverter();
+
+    @Test
+    void readsBatchOfRequestsWithNullFlags() throws Exception {
+        // DOG=1, MEDIUM=1, inZone=1, lostTracker=null(3) | all null enums and booleans
+        byte[] body = ByteBuffer.allocate(4 + 2 * 5)
+            .putInt(2)
+            .put((byte) 0b01_01_01_11).putInt(42)
+            .put((byte) 0xFF).putInt(-1)
+            .array();
+
+        Object read = converter.read(REQUESTS, null, new MockHttpInputMessage(body));
+
+        assertThat(read).isEqualTo(List.of(
+            new PetRequestDTO(PetType.DOG, TrackerType.MEDIUM, 42, true, null),
+            new PetRequestDTO(null, null, -1, null, null)
+        ));
+    }
+
+    @Test
+    void readsTrackerReport() throws Exception {
+        byte[] tracker = "collar-7".getBytes(StandardCharsets.UTF_8);
+        byte[] body = ByteBuffer.allocate(2 + 2 + tracker.length + 5)
+            .putShort((short) 0xFFFF)
+            .putShort((short) tracker.length).put(tracker)
+            .put((byte) 0b00_00_00_00).putInt(5)
+            .array();
+
+        Object read = converter.read(TrackerReportDTO.class, null, new MockHttpInputMessage(body));
+
+        assertThat(read).isEqualTo(new TrackerReportDTO(null, "collar-7", new PetRequestDTO(PetType.CAT, TrackerType.SMALL, 5, false, false)));
+    }
+
+    @Test
+    void writesListAsCountAndFixedWidthRecords() throws Exception {
+        var out = new MockHttpOutputMessage();
+
+        converter.write(List.of(new PetResponseDTO(3L, PetType.DOG, TrackerType.BIG, 9, false, null)), RESPONSES, PetBinaryHttpMessageConverter.MEDIA_TYPE, out);
+
+        ByteBuffer written = ByteBuffer.wrap(out.getBodyAsBytes());
+        assertThat(written.remaining()).isEqualTo(4 + 13);
+        assertThat(written.getInt()).isEqualTo(1);
+        assertThat(written.getLong()).isEqualTo(3L);
+        assertThat(written.get()).isEqualTo((byte) 0b01_10_00_11);
+        assertThat(written.getInt()).isEqualTo(9);
+        assertThat(out.getHeaders().getContentLength()).isEqualTo(17L);
+    }
+
+    @Test
+    void rejectsUnknownEnumCodeAndTrailingBytes() {
+        // tracker code 3 is null, but pet code 2 does not exist
+        byte[] badEnum = {(byte) 0b10_00_00_00, 0, 0, 0, 1};
+        byte[] trailing = {0, 0, 0, 0, 1, 0};
+
+        assertThatThrownBy(() -> converter.read(PetRequestDTO.class, null, new MockHttpInputMessage(badEnum)))
+            .isInstanceOf(HttpMessageNotReadableException.class);
+        assertThatThrownBy(() -> converter.read(PetRequestDTO.class, null, new MockHttpInputMessage(trailing)))
+            .isInstanceOf(HttpMessageNotReadableException.class);
+    }
+
+    @Test
+    void onlyNegotiatesPetTypes() {
+        assertThat(converter.canWrite(RESPONSES, List.class, PetBinaryHttpMessageConverter.MEDIA_TYPE)).isTrue();
+        assertThat(converter.canWrite(new ParameterizedTypeReference<List<String>>() {}.getType(), List.class, PetBinaryHttpMessageConverter.MEDIA_TYPE)).isFalse();
+        assertThat(converter.canRead(REQUESTS, null, PetBinaryHttpMessageConverter.MEDIA_TYPE)).isTrue();
+        assertThat(converter.canRead(PetRequestDTO.class, null, MediaType.APPLICATION_JSON)).isFalse();
+    }
+}
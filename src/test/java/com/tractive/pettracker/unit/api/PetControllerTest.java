@@ -1,26 +1,53 @@
 package com.tractive.pettracker.unit.api;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.tractive.pettracker.api.OutOfZoneSummaryBroadcaster;
 import com.tractive.pettracker.api.PetController;
+import com.tractive.pettracker.api.codec.PetBinaryHttpMessageConverter;
+import com.tractive.pettracker.api.dto.BatchItemResultDTO;
+import com.tractive.pettracker.api.dto.BatchResultDTO;
+import com.tractive.pettracker.api.dto.OutOfZoneDwellDTO;
 import com.tractive.pettracker.api.dto.OutsideZoneSummaryDTO;
+import com.tractive.pettracker.api.dto.PetPatchDTO;
 import com.tractive.pettracker.api.dto.PetRequestDTO;
 import com.tractive.pettracker.api.dto.PetResponseDTO;
+import com.tractive.pettracker.api.dto.PetSummaryDTO;
+import com.tractive.pettracker.api.dto.PetSummaryFilterDTO;
+import com.tractive.pettracker.api.dto.TrackerReportDTO;
+import com.tractive.pettracker.api.dto.TrackerReportResultDTO;
+import com.tractive.pettracker.application.exceptions.IngestionQueueFullException;
 import com.tractive.pettracker.application.exceptions.NotFoundException;
 import com.tractive.pettracker.application.service.PetService;
+import com.tractive.pettracker.domain.PetSummaryDimension;
 import com.tractive.pettracker.domain.PetType;
 import com.tractive.pettracker.domain.TrackerType;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
@@ -34,6 +61,9 @@ class PetControllerTest {
     @MockitoBean
     private PetService petService;
 
+    @MockitoBean
+    private OutOfZoneSummaryBroadcaster summaryBroadcaster;
+
     @Test
     void whenCreatePetReturns201AndLocation() throws Exception {
         var petResponseDTO = new PetResponseDTO(1L, PetType.CAT, TrackerType.SMALL, 123, false, false);
@@ -76,6 +106,46 @@ class PetControllerTest {
             .andExpect(jsonPath("$.message").value("Pet 5 not found"));
     }
 
+    @Test
+    void whenGetPetThenETagCarriesVersion() throws Exception {
+        when(petService.versionOf(42L)).thenReturn(3L);
+        when(petService.getById(42L)).thenReturn(new PetResponseDTO(42L, PetType.DOG, TrackerType.BIG, 55, true, null));
+
+        mvc.perform(get("/api/pets/{id}", 42L))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "W/\"3\""));
+    }
+
+    @Test
+    void whenIfNoneMatchIsCurrentVersionThen304WithoutLoadingPet() throws Exception {
+        when(petService.versionOf(42L)).thenReturn(3L);
+
+        mvc.perform(get("/api/pets/{id}", 42L).header("If-None-Match", "W/\"3\""))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string("ETag", "W/\"3\""))
+            .andExpect(content().string(""));
+        verify(petService, never()).getById(42L);
+    }
+
+    @Test
+    void whenIfNoneMatchIsOlderVersionThen200WithNewTag() throws Exception {
+        when(petService.versionOf(42L)).thenReturn(4L);
+        when(petService.getById(42L)).thenReturn(new PetResponseDTO(42L, PetType.DOG, TrackerType.BIG, 55, false, null));
+
+        mvc.perform(get("/api/pets/{id}", 42L).header("If-None-Match", "W/\"3\""))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "W/\"4\""))
+            .andExpect(jsonPath("$.inZone").value(false));
+    }
+
+    @Test
+    void whenConditionalGetOfUnknownIdThenReturns404() throws Exception {
+        when(petService.versionOf(5L)).thenThrow(new NotFoundException("Pet 5 not found"));
+
+        mvc.perform(get("/api/pets/{id}", 5L).header("If-None-Match", "W/\"1\"").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNotFound());
+    }
+
     @Test
     void whenCreateCatWithInvalidTrackerThenReturns400WithErrorAndMessage() throws Exception {
         mvc.perform(post("/api/pets")
@@ -94,7 +164,7 @@ class PetControllerTest {
         var pet1 = new PetResponseDTO(1L, PetType.CAT, TrackerType.SMALL, 123, true, false);
         var pet2 = new PetResponseDTO(2L, PetType.DOG, TrackerType.BIG, 456, false, true);
 
-        when(petService.list()).thenReturn(List.of(pet1, pet2));
+        when(petService.list(null, 100)).thenReturn(List.of(pet1, pet2));
 
         mvc.perform(get("/api/pets").accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isOk())
@@ -114,7 +184,7 @@ class PetControllerTest {
 
     @Test
     void whenListPetsAndEmptyThenReturns200AndEmptyArray() throws Exception {
-        when(petService.list()).thenReturn(List.of());
+        when(petService.list(null, 100)).thenReturn(List.of());
 
         mvc.perform(get("/api/pets").accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isOk())
@@ -149,6 +219,40 @@ class PetControllerTest {
             .andExpect(jsonPath("$.lostTracker").doesNotExist());
     }
 
+    @Test
+    void whenUpdateWithIfMatchThenOnlyThatVersionIsReplaced() throws Exception {
+        var petRequestDTO = new PetRequestDTO(PetType.DOG, TrackerType.MEDIUM, 456, true, null);
+        when(petService.updateIfVersion(10L, petRequestDTO, 3L))
+            .thenReturn(new PetResponseDTO(10L, PetType.DOG, TrackerType.MEDIUM, 456, true, null));
+
+        mvc.perform(put("/api/pets/{id}", 10L)
+                .header("If-Match", "W/\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                    {"petType":"DOG","trackerType":"MEDIUM","ownerId":456,"inZone":true}
+                """))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(10));
+        verify(petService, never()).update(10L, petRequestDTO);
+    }
+
+    @Test
+    void whenUpdateConflictsThenReturns409() throws Exception {
+        var petRequestDTO = new PetRequestDTO(PetType.DOG, TrackerType.MEDIUM, 456, true, null);
+        when(petService.updateIfVersion(10L, petRequestDTO, 3L))
+            .thenThrow(new OptimisticLockingFailureException("pet 10 is at version 4, not 3"));
+
+        mvc.perform(put("/api/pets/{id}", 10L)
+                .header("If-Match", "W/\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                    {"petType":"DOG","trackerType":"MEDIUM","ownerId":456,"inZone":true}
+                """))
+            .andExpect(status().isConflict())
+            .andExpect(jsonPath("$.error").value("CONFLICT"))
+            .andExpect(jsonPath("$.message").value("pet 10 is at version 4, not 3"));
+    }
+
     @Test
     void whenUpdateUnknownPetReturns404() throws Exception {
         var petRequestDTO = new PetRequestDTO(PetType.DOG, TrackerType.MEDIUM, 456, true, null);
@@ -166,6 +270,109 @@ class PetControllerTest {
             .andExpect(jsonPath("$.message").value("Pet 999 not found"));
     }
 
+    @Test
+    void whenPatchPetThenReturns200AndPatchedPet() throws Exception {
+        when(petService.patch(10L, new PetPatchDTO(false, null)))
+            .thenReturn(new PetResponseDTO(10L, PetType.DOG, TrackerType.MEDIUM, 456, false, null));
+
+        mvc.perform(patch("/api/pets/{id}", 10L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                    {"inZone":false}
+                """))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(10))
+            .andExpect(jsonPath("$.inZone").value(false));
+    }
+
+    @Test
+    void whenPatchUnknownPetReturns404() throws Exception {
+        when(petService.patch(999L, new PetPatchDTO(true, null))).thenThrow(new NotFoundException("Pet 999 not found"));
+
+        mvc.perform(patch("/api/pets/{id}", 999L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                    {"inZone":true}
+                """))
+            .andExpect(status().isNotFound())
+            .andExpect(jsonPath("$.error").value("NOT_FOUND"));
+    }
+
+    @Test
+    void whenReportCreatesPetThenReturns201AndLocation() throws Exception {
+        var report = new TrackerReportDTO("m-1", "t-1", new PetRequestDTO(PetType.DOG, TrackerType.BIG, 3, false, null));
+        when(petService.report(report)).thenReturn(TrackerReportResultDTO.created(12L));
+
+        mvc.perform(post("/api/pets/reports")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                    {"messageId":"m-1","trackerId":"t-1","pet":{"petType":"DOG","trackerType":"BIG","ownerId":3,"inZone":false}}
+                """))
+            .andExpect(status().isCreated())
+            .andExpect(header().string("Location", containsString("/api/pets/12")))
+            .andExpect(jsonPath("$.status").value("CREATED"));
+    }
+
+    @Test
+    void whenReportWithoutTrackerIdThenReturns400() throws Exception {
+        mvc.perform(post("/api/pets/reports")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                    {"messageId":"m-1","pet":{"petType":"DOG","trackerType":"BIG","ownerId":3,"inZone":false}}
+                """))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenCreateWithRespondAsyncThenReturns202WithoutBody() throws Exception {
+        when(petService.createAsync(new PetRequestDTO(PetType.DOG, TrackerType.BIG, 3, true, null))).thenReturn(true);
+
+        mvc.perform(post("/api/pets")
+                .header("Prefer", "respond-async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                    {"petType":"DOG","trackerType":"BIG","ownerId":3,"inZone":true}
+                """))
+            .andExpect(status().isAccepted())
+            .andExpect(header().string("Preference-Applied", "respond-async"))
+            .andExpect(content().string(""));
+
+        verify(petService).createAsync(new PetRequestDTO(PetType.DOG, TrackerType.BIG, 3, true, null));
+    }
+
+    @Test
+    void whenRespondAsyncCannotBeDurableThenPetIsCreatedSynchronously() throws Exception {
+        var request = new PetRequestDTO(PetType.DOG, TrackerType.BIG, 3, true, null);
+        when(petService.createAsync(request)).thenReturn(false);
+        when(petService.create(request)).thenReturn(new PetResponseDTO(7L, PetType.DOG, TrackerType.BIG, 3, true, null));
+
+        mvc.perform(post("/api/pets")
+                .header("Prefer", "respond-async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                    {"petType":"DOG","trackerType":"BIG","ownerId":3,"inZone":true}
+                """))
+            .andExpect(status().isCreated())
+            .andExpect(header().doesNotExist("Preference-Applied"))
+            .andExpect(jsonPath("$.id").value(7));
+    }
+
+    @Test
+    void whenCreateWithRespondAsyncAndQueueFullThenReturns429() throws Exception {
+        doThrow(new IngestionQueueFullException("Ingestion queue is full, retry later"))
+            .when(petService).createAsync(new PetRequestDTO(PetType.DOG, TrackerType.BIG, 3, true, null));
+
+        mvc.perform(post("/api/pets")
+                .header("Prefer", "respond-async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                    {"petType":"DOG","trackerType":"BIG","ownerId":3,"inZone":true}
+                """))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string("Retry-After", "1"))
+            .andExpect(jsonPath("$.error").value("TOO_MANY_REQUESTS"));
+    }
+
     @Test
     void whenCreatePetWithInvalidJsonReturns400() throws Exception {
         mvc.perform(post("/api/pets")
@@ -222,4 +429,229 @@ class PetControllerTest {
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.length()").value(0));
     }
+
+    @Test
+    void whenGetOutOfZoneSummaryAtInstantThenHistoricalCountsAreReturned() throws Exception {
+        var at = Instant.parse("2025-03-01T12:00:00Z");
+        when(petService.outOfZoneSummaryAt(at)).thenReturn(List.of(new OutsideZoneSummaryDTO(PetType.DOG, TrackerType.BIG, 3)));
+
+        mvc.perform(get("/api/pets/out-of-zone-summary").param("at", "2025-03-01T12:00:00Z").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].count").value(3));
+    }
+
+    @Test
+    void whenSummaryGenerationUnchangedThen304WithoutReadingCounts() throws Exception {
+        when(petService.outOfZoneSummaryGeneration()).thenReturn(7L);
+        when(petService.outOfZoneSummary()).thenReturn(List.of(new OutsideZoneSummaryDTO(PetType.CAT, TrackerType.SMALL, 1)));
+
+        String etag = mvc.perform(get("/api/pets/out-of-zone-summary").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(get("/api/pets/out-of-zone-summary").header("If-None-Match", etag).accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNotModified());
+        verify(petService, times(1)).outOfZoneSummary();
+
+        when(petService.outOfZoneSummaryGeneration()).thenReturn(8L);
+        mvc.perform(get("/api/pets/out-of-zone-summary").header("If-None-Match", etag).accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", not(etag)));
+    }
+
+    @Test
+    void whenGetOutOfZoneDwellThenWindowAndStepArePassedOn() throws Exception {
+        var from = Instant.parse("2025-03-01T11:00:00Z");
+        when(petService.outOfZoneDwell(Duration.ofHours(1), Duration.ofMinutes(30))).thenReturn(List.of(
+            new OutOfZoneDwellDTO(PetType.DOG, TrackerType.BIG, from, from.plus(Duration.ofMinutes(30)), 2700, 1.5)));
+
+        mvc.perform(get("/api/pets/out-of-zone-dwell").param("window", "PT1H").param("step", "PT30M").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].petType").value("DOG"))
+            .andExpect(jsonPath("$[0].outOfZoneSeconds").value(2700))
+            .andExpect(jsonPath("$[0].averageOutOfZone").value(1.5));
+    }
+
+    @Test
+    void whenGetOutOfZoneDwellWithoutWindowThenLastHourIsOneSlidingWindow() throws Exception {
+        when(petService.outOfZoneDwell(Duration.ofHours(1), null)).thenReturn(List.of());
+
+        mvc.perform(get("/api/pets/out-of-zone-dwell").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void whenOutOfZoneDwellWindowIsNotAnsweredFromTheCountersThenReturns400() throws Exception {
+        mvc.perform(get("/api/pets/out-of-zone-dwell").param("window", "PT48H").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/pets/out-of-zone-dwell").param("window", "PT1H").param("step", "PT7M").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/pets/out-of-zone-dwell").param("window", "PT1M").param("step", "PT30S").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+        verify(petService, never()).outOfZoneDwell(any(), any());
+    }
+
+    @Test
+    void whenGetOutOfZoneSummaryAtInstantThenNoETag() throws Exception {
+        var at = Instant.parse("2025-03-01T12:00:00Z");
+        when(petService.outOfZoneSummaryAt(at)).thenReturn(List.of());
+
+        mvc.perform(get("/api/pets/out-of-zone-summary").param("at", "2025-03-01T12:00:00Z").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("ETag"));
+    }
+
+    @Test
+    void whenCreateBatchThenReturns200AndPerItemResults() throws Exception {
+        var requests = List.of(
+            new PetRequestDTO(PetType.DOG, TrackerType.BIG, 1, true, null),
+            new PetRequestDTO(PetType.CAT, TrackerType.MEDIUM, 2, false, null)
+        );
+        var result = new BatchResultDTO(1, 1, List.of(
+            BatchItemResultDTO.created(0, 7L),
+            BatchItemResultDTO.invalid(1, Map.of("trackerType", "Cats can only have SMALL or BIG trackers"))
+        ));
+        when(petService.createBatch(requests)).thenReturn(result);
+
+        mvc.perform(post("/api/pets/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                    [{"petType":"DOG","trackerType":"BIG","ownerId":1,"inZone":true},
+                     {"petType":"CAT","trackerType":"MEDIUM","ownerId":2,"inZone":false}]
+                """))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.created").value(1))
+            .andExpect(jsonPath("$.rejected").value(1))
+            .andExpect(jsonPath("$.items[0].status").value("CREATED"))
+            .andExpect(jsonPath("$.items[0].id").value(7))
+            .andExpect(jsonPath("$.items[1].status").value("INVALID"))
+            .andExpect(jsonPath("$.items[1].errors.trackerType").value("Cats can only have SMALL or BIG trackers"));
+    }
+
+    @Test
+    void whenCreateBatchIsOverTheCapThenReturns400() throws Exception {
+        String item = "{\"petType\":\"DOG\",\"trackerType\":\"BIG\",\"ownerId\":1,\"inZone\":true}";
+
+        mvc.perform(post("/api/pets/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[" + String.join(",", Collections.nCopies(1001, item)) + "]"))
+            .andExpect(status().isBadRequest());
+
+        verify(petService, never()).createBatch(any());
+    }
+
+    @Test
+    void whenListPageIsFullThenReturnsNextLink() throws Exception {
+        var pet1 = new PetResponseDTO(3L, PetType.CAT, TrackerType.SMALL, 123, true, false);
+        var pet2 = new PetResponseDTO(8L, PetType.DOG, TrackerType.BIG, 456, false, null);
+
+        when(petService.list(1L, 2)).thenReturn(List.of(pet1, pet2));
+
+        mvc.perform(get("/api/pets").param("after", "1").param("limit", "2").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Link", containsString("after=8")))
+            .andExpect(header().string("Link", containsString("rel=\"next\"")))
+            .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    void whenListPageIsNotFullThenNoNextLink() throws Exception {
+        when(petService.list(8L, 2)).thenReturn(List.of(new PetResponseDTO(9L, PetType.CAT, TrackerType.SMALL, 1, true, false)));
+
+        mvc.perform(get("/api/pets").param("after", "8").param("limit", "2").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("Link"));
+    }
+
+    @Test
+    void whenListLimitOutOfRangeThenReturns400() throws Exception {
+        mvc.perform(get("/api/pets").param("limit", "0").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenStreamThenWritesOnePetPerLine() throws Exception {
+        var pet1 = new PetResponseDTO(1L, PetType.CAT, TrackerType.SMALL, 123, true, false);
+        var pet2 = new PetResponseDTO(2L, PetType.DOG, TrackerType.BIG, 456, false, null);
+        when(petService.list(null, 500)).thenReturn(List.of(pet1, pet2));
+
+        var result = mvc.perform(get("/api/pets/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+            .andExpect(content().string(containsString("\"id\":1")))
+            .andExpect(content().string(containsString("}\n{")));
+    }
+
+    @Test
+    void whenCreateWithBinaryBodyAndAcceptThenAnswersInBinary() throws Exception {
+        var petRequestDTO = new PetRequestDTO(PetType.CAT, TrackerType.BIG, 123, false, true);
+        when(petService.create(petRequestDTO)).thenReturn(new PetResponseDTO(7L, PetType.CAT, TrackerType.BIG, 123, false, true));
+
+        // CAT=0, BIG=2, inZone=0, lostTracker=1; ownerId 123
+        mvc.perform(post("/api/pets")
+                .contentType(PetBinaryHttpMessageConverter.MEDIA_TYPE)
+                .accept(PetBinaryHttpMessageConverter.MEDIA_TYPE)
+                .content(new byte[] {0b00_10_00_01, 0, 0, 0, 123}))
+            .andExpect(status().isCreated())
+            .andExpect(content().contentType(PetBinaryHttpMessageConverter.MEDIA_TYPE))
+            .andExpect(content().bytes(new byte[] {0, 0, 0, 0, 0, 0, 0, 7, 0b00_10_00_01, 0, 0, 0, 123}));
+    }
+
+    @Test
+    void whenListWithBinaryAcceptThenReturnsCountAndFixedWidthPets() throws Exception {
+        var pet1 = new PetResponseDTO(1L, PetType.CAT, TrackerType.SMALL, 123, true, false);
+        var pet2 = new PetResponseDTO(2L, PetType.DOG, TrackerType.BIG, 456, false, null);
+        when(petService.list(null, 100)).thenReturn(List.of(pet1, pet2));
+
+        mvc.perform(get("/api/pets").accept(PetBinaryHttpMessageConverter.MEDIA_TYPE))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(PetBinaryHttpMessageConverter.MEDIA_TYPE))
+            .andExpect(header().longValue("Content-Length", 4 + 2 * 13));
+    }
+
+    @Test
+    void whenBinaryBodyIsTruncatedThenReturns400() throws Exception {
+        mvc.perform(post("/api/pets")
+                .contentType(PetBinaryHttpMessageConverter.MEDIA_TYPE)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(new byte[] {0b00_10_00_01, 0, 0}))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenNoAcceptHeaderThenListStaysJson() throws Exception {
+        when(petService.list(null, 100)).thenReturn(List.of(new PetResponseDTO(1L, PetType.CAT, TrackerType.SMALL, 123, true, false)));
+
+        mvc.perform(get("/api/pets"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void whenGroupedSummaryThenBindsFiltersAndGroupBy() throws Exception {
+        var filter = new PetSummaryFilterDTO(null, PetType.CAT, null, true, null, null, List.of(PetSummaryDimension.TRACKER_TYPE, PetSummaryDimension.IN_ZONE));
+        when(petService.summary(filter)).thenReturn(List.of(new PetSummaryDTO(null, TrackerType.BIG, false, null, 3L)));
+
+        mvc.perform(get("/api/pets/summary")
+                .param("petType", "CAT")
+                .param("lostTracker", "true")
+                .param("groupBy", "TRACKER_TYPE,IN_ZONE")
+                .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].trackerType").value("BIG"))
+            .andExpect(jsonPath("$[0].inZone").value(false))
+            .andExpect(jsonPath("$[0].count").value(3));
+    }
+
+    @Test
+    void whenGroupedSummaryWithUnknownGroupByThenReturns400() throws Exception {
+        mvc.perform(get("/api/pets/summary").param("groupBy", "COLOUR").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+    }
 }
@@ -0,0 +1,61 @@
+package com.tractive.pettracker.unit.api;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.tractive.pettracker.api.PositionHistoryController;
+import com.tractive.pettracker.api.dto.PositionSampleDTO;
+import com.tractive.pettracker.application.exceptions.NotFoundException;
+import com.tractive.pettracker.application.service.PositionHistoryService;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+@WebMvcTest(PositionHistoryController.class)
+class PositionHistoryControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockitoBean
+    private PositionHistoryService historyService;
+
+    @Test
+    void whenRangeGivenThenReturnsSamples() throws Exception {
+        var from = Instant.parse("2025-03-01T00:00:00Z");
+        var to = Instant.parse("2025-03-02T00:00:00Z");
+        when(historyService.history(1L, from, to)).thenReturn(List.of(new PositionSampleDTO(from, 48.3, 14.3, false)));
+
+        mvc.perform(get("/api/pets/1/history").param("from", from.toString()).param("to", to.toString()).accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].lat").value(48.3))
+            .andExpect(jsonPath("$[0].inZone").value(false));
+    }
+
+    @Test
+    void whenFromAfterToThenReturns400() throws Exception {
+        mvc.perform(get("/api/pets/1/history").param("from", "2025-03-02T00:00:00Z").param("to", "2025-03-01T00:00:00Z"))
+            .andExpect(status().isBadRequest());
+
+        verify(historyService, never()).history(any(), any(), any());
+    }
+
+    @Test
+    void whenPetUnknownThenReturns404() throws Exception {
+        when(historyService.history(eq(2L), any(), any())).thenThrow(new NotFoundException("Pet 2 not found"));
+
+        mvc.perform(get("/api/pets/2/history").accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,100 @@
+package com.tractive.pettracker.unit.application;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.tractive.pettracker.application.service.GeofenceIndex;
+import com.tractive.pettracker.domain.GeoPoint;
+import com.tractive.pettracker.domain.PowerSavingZone;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class GeofenceIndexTest {
+
+    private final GeofenceIndex index = new GeofenceIndex();
+
+    @Test
+    void whenPointInsideSquareThenInZone() {
+        index.replace(1, List.of(zone(1, new GeoPoint(0, 0), new GeoPoint(0, 1), new GeoPoint(1, 1), new GeoPoint(1, 0))));
+
+        assertThat(index.contains(1, 0.5, 0.5)).isTrue();
+        assertThat(index.contains(1, 1.5, 0.5)).isFalse();
+        assertThat(index.contains(1, 0.5, -0.1)).isFalse();
+    }
+
+    @Test
+    void whenPointInNotchOfConcaveZoneThenOutside() {
+        // U shape: the notch between the arms is inside the bounding box but outside the zone
+        index.replace(1, List.of(zone(1,
+            new GeoPoint(0, 0), new GeoPoint(0, 3), new GeoPoint(3, 3), new GeoPoint(3, 2),
+            new GeoPoint(1, 2), new GeoPoint(1, 1), new GeoPoint(3, 1), new GeoPoint(3, 0))));
+
+        assertThat(index.contains(1, 2, 1.5)).isFalse();
+        assertThat(index.contains(1, 2, 0.5)).isTrue();
+        assertThat(index.contains(1, 2, 2.5)).isTrue();
+        assertThat(index.contains(1, 0.5, 1.5)).isTrue();
+    }
+
+    @Test
+    void whenOwnerHasNoZonesThenNull() {
+        index.replace(1, List.of(zone(1, new GeoPoint(0, 0), new GeoPoint(0, 1), new GeoPoint(1, 1))));
+
+        assertThat(index.contains(2, 0.1, 0.5)).isNull();
+    }
+
+    @Test
+    void whenZonesReplacedWithNothingThenOwnerHasNoZones() {
+        index.replace(1, List.of(zone(1, new GeoPoint(0, 0), new GeoPoint(0, 1), new GeoPoint(1, 1))));
+        index.replace(1, List.of());
+
+        assertThat(index.contains(1, 0.1, 0.5)).isNull();
+        assertThat(index.ownerCount()).isZero();
+    }
+
+    @Test
+    void whenPointInAnyOfSeveralZonesThenInZone() {
+        index.load(List.of(
+            zone(1, new GeoPoint(0, 0), new GeoPoint(0, 1), new GeoPoint(1, 1), new GeoPoint(1, 0)),
+            zone(1, new GeoPoint(10, 10), new GeoPoint(10, 11), new GeoPoint(11, 11), new GeoPoint(11, 10)),
+            zone(2, new GeoPoint(5, 5), new GeoPoint(5, 6), new GeoPoint(6, 6), new GeoPoint(6, 5))));
+
+        assertThat(index.contains(1, 10.5, 10.5)).isTrue();
+        assertThat(index.contains(1, 5.5, 5.5)).isFalse();
+        assertThat(index.contains(2, 5.5, 5.5)).isTrue();
+        assertThat(index.ownerCount()).isEqualTo(2);
+    }
+
+    // A star with many spikes spans many latitude bands; the banded test must agree with a plain ray cast
+    @Test
+    void whenZoneHasManyVerticesThenMatchesBruteForce() {
+        List<GeoPoint> star = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            double angle = 2 * Math.PI * i / 2000;
+            double radius = i % 2 == 0 ? 1.0 : 0.4;
+            star.add(new GeoPoint(47 + radius * Math.sin(angle), 13 + radius * Math.cos(angle)));
+        }
+        index.replace(1, List.of(zone(1, star.toArray(GeoPoint[]::new))));
+
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            double lat = 45.8 + random.nextDouble() * 2.4;
+            double lon = 11.8 + random.nextDouble() * 2.4;
+            assertThat(index.contains(1, lat, lon)).as("%f,%f", lat, lon).isEqualTo(bruteForce(star, lat, lon));
+        }
+    }
+
+    private static boolean bruteForce(List<GeoPoint> polygon, double lat, double lon) {
+        boolean inside = false;
+        for (int i = 0, j = polygon.size() - 1; i < polygon.size(); j = i++) {
+            GeoPoint a = polygon.get(i), b = polygon.get(j);
+            if ((a.getLat() > lat) != (b.getLat() > lat)
+                && lon < (b.getLon() - a.getLon()) * (lat - a.getLat()) / (b.getLat() - a.getLat()) + a.getLon()) inside = !inside;
+        }
+        return inside;
+    }
+
+    private static PowerSavingZone zone(int ownerId, GeoPoint... vertices) {
+        return new PowerSavingZone(null, ownerId, "zone", List.of(vertices));
+    }
+}
@@ -0,0 +1,195 @@
+package com.tractive.pettracker.unit.application;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.tractive.pettracker.api.dto.GeoPointDTO;
+import com.tractive.pettracker.api.dto.LocationFixDTO;
+import com.tractive.pettracker.api.dto.PowerSavingZoneDTO;
+import com.tractive.pettracker.application.service.GeofenceServiceImpl;
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.data.PositionHistoryRepository;
+import com.tractive.pettracker.data.PowerSavingZoneRepository;
+import com.tractive.pettracker.domain.GeoPoint;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetPatch;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.PositionSample;
+import com.tractive.pettracker.domain.PowerSavingZone;
+import com.tractive.pettracker.domain.TrackerType;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class GeofenceServiceImplTest {
+
+    private static final List<GeoPoint> SQUARE = List.of(new GeoPoint(0, 0), new GeoPoint(0, 1), new GeoPoint(1, 1), new GeoPoint(1, 0));
+
+    private final PetRepository petRepository = mock(PetRepository.class);
+    private final PowerSavingZoneRepository zoneRepository = mock(PowerSavingZoneRepository.class);
+    private final PositionHistoryRepository historyRepository = mock(PositionHistoryRepository.class);
+    private final GeofenceServiceImpl service = new GeofenceServiceImpl(petRepository, zoneRepository, historyRepository);
+
+    @BeforeEach
+    void loadZones() {
+        when(zoneRepository.findAll()).thenReturn(List.of(new PowerSavingZone(1L, 7, "home", SQUARE)));
+        service.refresh();
+    }
+
+    @Test
+    void whenFixMovesPetOutOfZoneThenPatchesInZone() {
+        when(petRepository.findById(1L)).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 7, true)));
+        when(petRepository.patch(eq(1L), any())).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 7, false)));
+
+        var result = service.ingest(List.of(new LocationFixDTO(1L, 2.0, 2.0, null)));
+
+        ArgumentCaptor<PetPatch> patch = ArgumentCaptor.forClass(PetPatch.class);
+        verify(petRepository).patch(eq(1L), patch.capture());
+        assertThat(patch.getValue().getInZone()).isFalse();
+        assertThat(patch.getValue().getLostTracker()).isNull();
+        assertThat(result.transitions()).isEqualTo(1);
+    }
+
+    @Test
+    void whenFixKeepsPetInZoneThenNothingIsWritten() {
+        when(petRepository.findById(1L)).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 7, true)));
+
+        var result = service.ingest(List.of(new LocationFixDTO(1L, 0.5, 0.5, null), new LocationFixDTO(1L, 0.6, 0.4, null)));
+
+        verify(petRepository, never()).patch(anyLong(), any());
+        assertThat(result.received()).isEqualTo(2);
+        assertThat(result.unchanged()).isEqualTo(2);
+    }
+
+    @Test
+    void whenFixCannotBeEvaluatedThenItIsCountedAndSkipped() {
+        when(petRepository.findById(1L)).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 8, true)));
+        when(petRepository.findById(2L)).thenReturn(Optional.empty());
+
+        var result = service.ingest(List.of(
+            new LocationFixDTO(1L, 0.5, 0.5, null),
+            new LocationFixDTO(2L, 0.5, 0.5, null),
+            new LocationFixDTO(null, 0.5, 0.5, null),
+            new LocationFixDTO(1L, 91.0, 0.5, null)));
+
+        verify(petRepository, never()).patch(anyLong(), any());
+        assertThat(result.withoutZones()).isEqualTo(1);
+        assertThat(result.unknownPets()).isEqualTo(1);
+        assertThat(result.rejected()).isEqualTo(2);
+    }
+
+    @Test
+    void whenZonesReplacedThenNextFixIsEvaluatedAgainstThem() {
+        when(zoneRepository.replaceForOwner(eq(7), any())).thenAnswer(inv -> {
+            List<PowerSavingZone> zones = inv.getArgument(1);
+            return List.of(new PowerSavingZone(2L, 7, zones.get(0).getName(), zones.get(0).getVertices()));
+        });
+        when(petRepository.findById(1L)).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 7, false)));
+        when(petRepository.patch(eq(1L), any())).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 7, true)));
+
+        var stored = service.replaceZones(7, List.of(new PowerSavingZoneDTO(null, "park",
+            List.of(new GeoPointDTO(2.0, 2.0), new GeoPointDTO(2.0, 3.0), new GeoPointDTO(3.0, 3.0)))));
+        var result = service.ingest(List.of(new LocationFixDTO(1L, 2.2, 2.5, null)));
+
+        assertThat(stored.get(0).id()).isEqualTo(2L);
+        assertThat(result.transitions()).isEqualTo(1);
+    }
+
+    @Test
+    void whenZonesAreReplacedDuringRefreshThenTheReloadDoesNotUndoThem() {
+        when(zoneRepository.replaceForOwner(eq(7), any())).thenReturn(List.of(new PowerSavingZone(2L, 7, "park",
+            List.of(new GeoPoint(2.0, 2.0), new GeoPoint(2.0, 3.0), new GeoPoint(3.0, 3.0)))));
+        // the reload reads the table, then the zone write commits before the reload is applied
+        when(zoneRepository.findAll()).thenAnswer(inv -> {
+            service.replaceZones(7, List.of(new PowerSavingZoneDTO(null, "park",
+                List.of(new GeoPointDTO(2.0, 2.0), new GeoPointDTO(2.0, 3.0), new GeoPointDTO(3.0, 3.0)))));
+            return List.of(new PowerSavingZone(1L, 7, "home", SQUARE));
+        });
+        when(petRepository.findById(1L)).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 7, false)));
+        when(petRepository.patch(eq(1L), any())).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 7, true)));
+
+        service.refresh();
+        var result = service.ingest(List.of(new LocationFixDTO(1L, 2.2, 2.5, null)));
+
+        assertThat(result.transitions()).isEqualTo(1);
+    }
+
+    @Test
+    void whenFixEvaluatedThenItIsAppendedToHistoryWithItsOwnTime() {
+        when(petRepository.findById(1L)).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 7, true)));
+        when(petRepository.findById(2L)).thenReturn(Optional.of(new Pet(2L, PetType.DOG, TrackerType.BIG, 8, false)));
+        Instant recorded = Instant.parse("2025-03-01T12:00:00Z");
+
+        service.ingest(List.of(new LocationFixDTO(1L, 0.5, 0.5, recorded), new LocationFixDTO(2L, 0.5, 0.5, null)));
+
+        ArgumentCaptor<PositionSample> first = ArgumentCaptor.forClass(PositionSample.class);
+        verify(historyRepository).append(eq(1L), first.capture());
+        assertThat(first.getValue().getAt()).isEqualTo(recorded);
+        assertThat(first.getValue().isInZone()).isTrue();
+        ArgumentCaptor<PositionSample> second = ArgumentCaptor.forClass(PositionSample.class);
+        verify(historyRepository).append(eq(2L), second.capture());
+        // owner 8 has no zones: the pet's own state is kept
+        assertThat(second.getValue().isInZone()).isFalse();
+        assertThat(second.getValue().getAt()).isNotNull();
+    }
+
+    @Test
+    void whenFixArrivesOutOfOrderThenItIsKeptInHistoryButNotApplied() {
+        Instant now = Instant.parse("2025-03-01T12:00:00Z");
+        when(petRepository.findById(1L)).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 7, true)));
+        when(petRepository.patch(eq(1L), any())).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 7, false)));
+
+        // the latest fix is outside; one from a minute earlier, inside the zone, arrives after it
+        var first = service.ingest(List.of(new LocationFixDTO(1L, 2.0, 2.0, now)));
+        when(petRepository.findById(1L)).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 7, false)));
+        var second = service.ingest(List.of(new LocationFixDTO(1L, 0.5, 0.5, now.minusSeconds(60))));
+
+        assertThat(first.transitions()).isEqualTo(1);
+        assertThat(second.transitions()).isZero();
+        assertThat(second.late()).isEqualTo(1);
+        verify(petRepository).patch(eq(1L), any());
+        verify(historyRepository, times(2)).append(eq(1L), any());
+    }
+
+    @Test
+    void whenTwoBatchesOfTheSamePetArriveTogetherThenThePetEndsInTheStateOfItsLatestFix() throws Exception {
+        Instant now = Instant.parse("2025-03-01T12:00:00Z");
+        AtomicBoolean inZone = new AtomicBoolean(true);
+        // both lookups are held until the other one has started, or for a moment if it cannot start
+        CountDownLatch lookups = new CountDownLatch(2);
+        when(petRepository.findById(1L)).thenAnswer(inv -> {
+            lookups.countDown();
+            lookups.await(200, TimeUnit.MILLISECONDS);
+            return Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 7, inZone.get()));
+        });
+        when(petRepository.patch(eq(1L), any())).thenAnswer(inv -> {
+            inZone.set(inv.<PetPatch>getArgument(1).getInZone());
+            return Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 7, inZone.get()));
+        });
+
+        // the earlier fix is outside the zone, the later one inside
+        try (ExecutorService batches = Executors.newFixedThreadPool(2)) {
+            var outside = batches.submit(() -> service.ingest(List.of(new LocationFixDTO(1L, 2.0, 2.0, now.minusSeconds(30)))));
+            var inside = batches.submit(() -> service.ingest(List.of(new LocationFixDTO(1L, 0.5, 0.5, now))));
+            outside.get(5, TimeUnit.SECONDS);
+            inside.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(inZone.get()).isTrue();
+    }
+}
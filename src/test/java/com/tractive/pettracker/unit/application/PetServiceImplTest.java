@@ -3,19 +3,41 @@ package com.tractive.pettracker.unit.application;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.tractive.pettracker.api.dto.BatchItemResultDTO;
 import com.tractive.pettracker.api.dto.OutsideZoneSummaryDTO;
+import com.tractive.pettracker.api.dto.PetPatchDTO;
 import com.tractive.pettracker.api.dto.PetRequestDTO;
+import com.tractive.pettracker.api.dto.PetSummaryFilterDTO;
+import com.tractive.pettracker.api.dto.TrackerReportDTO;
+import com.tractive.pettracker.api.dto.TrackerReportResultDTO;
+import com.tractive.pettracker.application.exceptions.IngestionQueueFullException;
 import com.tractive.pettracker.application.exceptions.NotFoundException;
+import com.tractive.pettracker.application.service.DeduplicationWindow;
 import com.tractive.pettracker.application.service.PetServiceImpl;
+import com.tractive.pettracker.application.service.PetWriteBehindQueue;
 import com.tractive.pettracker.data.PetRepository;
 import com.tractive.pettracker.domain.Cat;
 import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.OutOfZoneDwell;
 import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetCount;
+import com.tractive.pettracker.domain.PetPatch;
+import com.tractive.pettracker.domain.PetSummaryDimension;
+import com.tractive.pettracker.domain.PetSummaryQuery;
 import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.PetUpsertResult;
 import com.tractive.pettracker.domain.TrackerType;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
@@ -24,12 +46,23 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.OptimisticLockingFailureException;
 
 class PetServiceImplTest {
 
     @Mock
     private PetRepository petRepository;
 
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Spy
+    private DeduplicationWindow deduplication = new DeduplicationWindow(100, Duration.ofMinutes(1));
+
+    @Mock
+    private PetWriteBehindQueue writeBehind;
+
     @InjectMocks
     private PetServiceImpl petService;
 
@@ -180,25 +213,72 @@ class PetServiceImplTest {
         assertThrows(NotFoundException.class, () -> petService.getById(999L));
     }
 
+    @Test
+    void whenVersionOfMissingPetThenThrowsNotFound() {
+        when(petRepository.findVersion(999L)).thenReturn(Optional.empty());
+        assertThrows(NotFoundException.class, () -> petService.versionOf(999L));
+    }
+
     @Test
     void whenListEmptyThenReturnEmptyList() {
-        when(petRepository.findAll()).thenReturn(List.of());
+        when(petRepository.findPage(null, 100)).thenReturn(List.of());
 
-        var result = petService.list();
+        var result = petService.list(null, 100);
 
         assertThat(result).isNotNull();
         assertThat(result.isEmpty()).isTrue();
 
     }
 
+    @Test
+    void whenListByOwnerThenReturnsThatOwnersPage() {
+        when(petRepository.findPageByOwner(10, 5L, 50)).thenReturn(List.of(new Pet(6L, PetType.DOG, TrackerType.SMALL, 10, true)));
+
+        var result = petService.listByOwner(10, 5L, 50);
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).id()).isEqualTo(6L);
+        assertThat(result.get(0).ownerId()).isEqualTo(10);
+    }
+
+    @Test
+    void whenDwellIsAskedInStepsThenWindowsAreAlignedToTheStepAndEndWithTheCurrentOne() {
+        when(petRepository.outOfZoneDwell(any(), any())).thenReturn(List.of(
+            new OutOfZoneDwell(PetType.CAT, TrackerType.SMALL, Instant.parse("2025-03-01T10:00:00Z"), Instant.parse("2025-03-01T10:15:00Z"), 1_800_000)));
+
+        var result = petService.outOfZoneDwell(Duration.ofHours(1), Duration.ofMinutes(15));
+
+        ArgumentCaptor<Instant> from = ArgumentCaptor.forClass(Instant.class);
+        verify(petRepository).outOfZoneDwell(from.capture(), eq(Duration.ofMinutes(15)));
+        assertThat(from.getValue().toEpochMilli() % Duration.ofMinutes(15).toMillis()).isEqualTo(0L);
+        assertThat(Duration.between(from.getValue(), Instant.now()).compareTo(Duration.ofMinutes(45)) >= 0).isTrue();
+        assertThat(Duration.between(from.getValue(), Instant.now()).compareTo(Duration.ofHours(1)) <= 0).isTrue();
+        assertThat(result.get(0).outOfZoneSeconds()).isEqualTo(1800L);
+        assertThat(result.get(0).averageOutOfZone()).isEqualTo(2.0);
+    }
+
+    @Test
+    void whenDwellIsAskedWithoutStepThenOneWindowFromWholeMinuteToNow() {
+        when(petRepository.outOfZoneDwellByOwner(eq(10), any(), any())).thenReturn(List.of());
+
+        petService.outOfZoneDwellByOwner(10, Duration.ofMinutes(30), null);
+
+        ArgumentCaptor<Instant> from = ArgumentCaptor.forClass(Instant.class);
+        ArgumentCaptor<Duration> step = ArgumentCaptor.forClass(Duration.class);
+        verify(petRepository).outOfZoneDwellByOwner(eq(10), from.capture(), step.capture());
+        assertThat(from.getValue().toEpochMilli() % 60_000).isEqualTo(0L);
+        assertThat(step.getValue().compareTo(Duration.ofMinutes(30)) >= 0).isTrue();
+        assertThat(step.getValue().compareTo(Duration.ofMinutes(31)) <= 0).isTrue();
+    }
+
     @Test
     void whenListHasPetsThenReturnMappedDtos() {
         var cat = new Cat(1L, TrackerType.BIG, 10, true, true);
         var dog = new Pet(2L, PetType.DOG, TrackerType.SMALL, 20, false);
 
-        when(petRepository.findAll()).thenReturn(List.of(cat, dog));
+        when(petRepository.findPage(null, 100)).thenReturn(List.of(cat, dog));
 
-        var result = petService.list();
+        var result = petService.list(null, 100);
 
         assertThat(result.size()).isEqualTo(2);
 
@@ -222,8 +302,9 @@ class PetServiceImplTest {
     @Test
     void whenUpdateExistingPetThenReturnsUpdatedPet() {
         var existingPet = new Pet(1L, PetType.DOG, TrackerType.SMALL, 10, true);
+        when(petRepository.findVersion(1L)).thenReturn(Optional.of(2L));
         when(petRepository.findById(1L)).thenReturn(Optional.of(existingPet));
-        when(petRepository.update(any(Pet.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(petRepository.update(any(Pet.class), eq(2L))).thenAnswer(invocation -> invocation.getArgument(0));
 
         var updateDto = new PetRequestDTO(PetType.DOG, TrackerType.MEDIUM, 10, false, null);
         var updatedPetDto = petService.update(1L, updateDto);
@@ -236,6 +317,55 @@ class PetServiceImplTest {
         assertThat(updatedPetDto.lostTracker()).isNull();
     }
 
+    @Test
+    void whenZoneFlipLosesARaceThenItIsRetriedOnTheFreshRow() {
+        when(petRepository.findVersion(1L)).thenReturn(Optional.of(2L), Optional.of(3L));
+        when(petRepository.findById(1L)).thenReturn(
+            Optional.of(new Pet(1L, PetType.DOG, TrackerType.SMALL, 10, true)),
+            Optional.of(new Pet(1L, PetType.DOG, TrackerType.SMALL, 11, true)));
+        when(petRepository.update(any(Pet.class), eq(2L))).thenThrow(new OptimisticLockingFailureException("pet 1 changed"));
+        when(petRepository.update(any(Pet.class), eq(3L))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        var updated = petService.update(1L, new PetRequestDTO(PetType.DOG, TrackerType.SMALL, 10, false, null));
+
+        // the flip is applied to the row as the racing write left it, keeping its new owner
+        assertThat(updated.inZone()).isFalse();
+        assertThat(updated.ownerId()).isEqualTo(11);
+    }
+
+    @Test
+    void whenZoneFlipKeepsLosingThenConflictReachesTheCaller() {
+        when(petRepository.findVersion(1L)).thenReturn(Optional.of(2L));
+        when(petRepository.findById(1L)).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.SMALL, 10, true)));
+        when(petRepository.update(any(Pet.class), eq(2L))).thenThrow(new OptimisticLockingFailureException("pet 1 changed"));
+
+        assertThrows(OptimisticLockingFailureException.class,
+            () -> petService.update(1L, new PetRequestDTO(PetType.DOG, TrackerType.SMALL, 10, false, null)));
+        verify(petRepository, times(3)).update(any(Pet.class), eq(2L));
+    }
+
+    @Test
+    void whenUpdateOtherThanZoneFlipLosesARaceThenConflictIsNotRetried() {
+        when(petRepository.findVersion(1L)).thenReturn(Optional.of(2L));
+        when(petRepository.findById(1L)).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.SMALL, 10, true)));
+        when(petRepository.update(any(Pet.class), eq(2L))).thenThrow(new OptimisticLockingFailureException("pet 1 changed"));
+
+        assertThrows(OptimisticLockingFailureException.class,
+            () -> petService.update(1L, new PetRequestDTO(PetType.DOG, TrackerType.SMALL, 12, true, null)));
+        verify(petRepository, times(1)).update(any(Pet.class), eq(2L));
+        verify(petRepository, never()).update(any(Pet.class));
+    }
+
+    @Test
+    void whenUpdateIfVersionConflictsThenItIsNotRetried() {
+        when(petRepository.findById(1L)).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.SMALL, 10, true)));
+        when(petRepository.update(any(Pet.class), eq(4L))).thenThrow(new OptimisticLockingFailureException("pet 1 is at version 5"));
+
+        assertThrows(OptimisticLockingFailureException.class,
+            () -> petService.updateIfVersion(1L, new PetRequestDTO(PetType.DOG, TrackerType.SMALL, 10, false, null), 4L));
+        verify(petRepository, times(1)).update(any(Pet.class), eq(4L));
+    }
+
     @Test
     void whenUpdateNonExistingPetThenThrowsNotFoundException() {
         when(petRepository.findById(999L)).thenReturn(Optional.empty());
@@ -244,6 +374,118 @@ class PetServiceImplTest {
         assertThrows(NotFoundException.class, () -> petService.update(999L, updateDto));
     }
 
+    @Test
+    void whenPatchExistingPetThenReturnsPatchedPetWithoutLoadingItFirst() {
+        when(petRepository.patch(any(), any(PetPatch.class)))
+            .thenReturn(Optional.of(new Cat(3L, TrackerType.BIG, 7, false, true)));
+
+        var patched = petService.patch(3L, new PetPatchDTO(false, true));
+
+        assertThat(patched.id()).isEqualTo(3L);
+        assertThat(patched.inZone()).isFalse();
+        assertThat(patched.lostTracker()).isTrue();
+        var captor = ArgumentCaptor.forClass(PetPatch.class);
+        verify(petRepository).patch(org.mockito.ArgumentMatchers.eq(3L), captor.capture());
+        assertThat(captor.getValue().getInZone()).isFalse();
+        assertThat(captor.getValue().getLostTracker()).isTrue();
+        verify(petRepository, org.mockito.Mockito.never()).findById(any());
+    }
+
+    @Test
+    void whenPatchNonExistingPetThenThrowsNotFoundException() {
+        when(petRepository.patch(any(), any(PetPatch.class))).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> petService.patch(999L, new PetPatchDTO(true, null)));
+    }
+
+    @Test
+    void whenReportIsRepeatedWithSameMessageIdThenOnlyFirstReachesRepository() {
+        when(petRepository.upsertByTracker(eq("t-1"), any(Pet.class)))
+            .thenReturn(new PetUpsertResult(new Pet(5L, PetType.DOG, TrackerType.BIG, 1, false), true));
+        var report = new TrackerReportDTO("m-1", "t-1", new PetRequestDTO(PetType.DOG, TrackerType.BIG, 1, false, null));
+
+        var first = petService.report(report);
+        var retry = petService.report(report);
+
+        assertThat(first.status()).isEqualTo(TrackerReportResultDTO.Status.CREATED);
+        assertThat(retry.status()).isEqualTo(TrackerReportResultDTO.Status.DUPLICATE);
+        assertThat(retry.id()).isEqualTo(5L);
+        verify(petRepository, org.mockito.Mockito.times(1)).upsertByTracker(any(), any(Pet.class));
+    }
+
+    @Test
+    void whenTwoTrackersSendTheSameMessageIdThenBothReportsAreApplied() {
+        when(petRepository.upsertByTracker(eq("t-a"), any(Pet.class)))
+            .thenReturn(new PetUpsertResult(new Pet(7L, PetType.DOG, TrackerType.BIG, 1, false), true));
+        when(petRepository.upsertByTracker(eq("t-b"), any(Pet.class)))
+            .thenReturn(new PetUpsertResult(new Pet(8L, PetType.DOG, TrackerType.BIG, 1, true), true));
+
+        // both trackers number their messages from 1
+        var a = petService.report(new TrackerReportDTO("1", "t-a", new PetRequestDTO(PetType.DOG, TrackerType.BIG, 1, false, null)));
+        var b = petService.report(new TrackerReportDTO("1", "t-b", new PetRequestDTO(PetType.DOG, TrackerType.BIG, 1, true, null)));
+
+        assertThat(a.status()).isEqualTo(TrackerReportResultDTO.Status.CREATED);
+        assertThat(b.status()).isEqualTo(TrackerReportResultDTO.Status.CREATED);
+        assertThat(b.id()).isEqualTo(8L);
+        verify(petRepository, times(2)).upsertByTracker(any(), any(Pet.class));
+    }
+
+    @Test
+    void whenReportWriteFailsThenRetryWithSameMessageIdIsProcessed() {
+        when(petRepository.upsertByTracker(any(), any(Pet.class)))
+            .thenThrow(new IllegalStateException("storage down"))
+            .thenReturn(new PetUpsertResult(new Pet(6L, PetType.DOG, TrackerType.BIG, 1, true), false));
+        var report = new TrackerReportDTO("m-2", "t-2", new PetRequestDTO(PetType.DOG, TrackerType.BIG, 1, true, null));
+
+        assertThrows(IllegalStateException.class, () -> petService.report(report));
+        var retry = petService.report(report);
+
+        assertThat(retry.status()).isEqualTo(TrackerReportResultDTO.Status.UPDATED);
+        assertThat(retry.id()).isEqualTo(6L);
+    }
+
+    @Test
+    void whenConcurrentFirstReportsCollideThenUpsertIsRetriedOnce() {
+        when(petRepository.upsertByTracker(any(), any(Pet.class)))
+            .thenThrow(new org.springframework.dao.DataIntegrityViolationException("ux_pets_owner_tracker"))
+            .thenReturn(new PetUpsertResult(new Pet(7L, PetType.DOG, TrackerType.BIG, 1, true), false));
+
+        var result = petService.report(new TrackerReportDTO(null, "t-3", new PetRequestDTO(PetType.DOG, TrackerType.BIG, 1, true, null)));
+
+        assertThat(result.status()).isEqualTo(TrackerReportResultDTO.Status.UPDATED);
+        verify(petRepository, times(2)).upsertByTracker(any(), any(Pet.class));
+    }
+
+    @Test
+    void whenCreateAsyncThenPetIsBufferedWithoutTouchingRepository() {
+        when(writeBehind.isDurable()).thenReturn(true);
+        when(writeBehind.offer(any(Pet.class))).thenReturn(true);
+
+        assertThat(petService.createAsync(new PetRequestDTO(PetType.CAT, TrackerType.SMALL, 3, true, null))).isTrue();
+
+        var captor = ArgumentCaptor.forClass(Pet.class);
+        verify(writeBehind).offer(captor.capture());
+        assertThat(captor.getValue()).isInstanceOf(Cat.class);
+        verify(petRepository, org.mockito.Mockito.never()).save(any(Pet.class));
+    }
+
+    @Test
+    void whenCreateAsyncAndBufferIsFullThenThrowsQueueFull() {
+        when(writeBehind.isDurable()).thenReturn(true);
+        when(writeBehind.offer(any(Pet.class))).thenReturn(false);
+
+        assertThrows(IngestionQueueFullException.class,
+            () -> petService.createAsync(new PetRequestDTO(PetType.DOG, TrackerType.SMALL, 3, true, null)));
+    }
+
+    @Test
+    void whenWriteBehindHasNoLogThenCreateAsyncTakesNothing() {
+        when(writeBehind.isDurable()).thenReturn(false);
+
+        assertThat(petService.createAsync(new PetRequestDTO(PetType.DOG, TrackerType.SMALL, 3, true, null))).isFalse();
+        verify(writeBehind, org.mockito.Mockito.never()).offer(any(Pet.class));
+    }
+
     @Test
     void whenOutOfZoneSummaryThenReturnsCorrectDtoList() {
         var counts = List.of(
@@ -267,4 +509,48 @@ class PetServiceImplTest {
         assertThat(second.trackerType()).isEqualTo(TrackerType.BIG);
         assertThat(second.count()).isEqualTo(2L);
     }
+
+    @Test
+    void whenCreateBatchThenValidItemsAreSavedTogetherAndInvalidOnesReported() {
+        var cat = new PetRequestDTO(PetType.CAT, TrackerType.SMALL, 1, false, true);
+        var invalidCat = new PetRequestDTO(PetType.CAT, TrackerType.MEDIUM, 2, false, null);
+        var dog = new PetRequestDTO(PetType.DOG, TrackerType.BIG, 3, true, null);
+
+        when(petRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Pet> pets = invocation.getArgument(0);
+            for (int i = 0; i < pets.size(); i++) pets.get(i).setId(100L + i);
+            return pets;
+        });
+
+        var result = petService.createBatch(List.of(cat, invalidCat, dog));
+
+        assertThat(result.created()).isEqualTo(2);
+        assertThat(result.rejected()).isEqualTo(1);
+        assertThat(result.items().get(0).status()).isEqualTo(BatchItemResultDTO.Status.CREATED);
+        assertThat(result.items().get(0).id()).isEqualTo(100L);
+        assertThat(result.items().get(1).status()).isEqualTo(BatchItemResultDTO.Status.INVALID);
+        assertThat(result.items().get(1).errors().get("trackerType")).isEqualTo("Cats can only have SMALL or BIG trackers");
+        assertThat(result.items().get(2).status()).isEqualTo(BatchItemResultDTO.Status.CREATED);
+        assertThat(result.items().get(2).id()).isEqualTo(101L);
+    }
+
+    @Test
+    void whenSummaryWithoutGroupByThenGroupsByPetAndTrackerType() {
+        var captor = ArgumentCaptor.forClass(PetSummaryQuery.class);
+        when(petRepository.summarize(captor.capture())).thenReturn(List.of(new PetCount(PetType.CAT, TrackerType.SMALL, null, null, 4L)));
+
+        var result = petService.summary(new PetSummaryFilterDTO(true, null, null, null, 10, 20, null));
+
+        var query = captor.getValue();
+        assertThat(query.getInZone()).isTrue();
+        assertThat(query.getOwnerFrom()).isEqualTo(10);
+        assertThat(query.getOwnerTo()).isEqualTo(20);
+        assertThat(query.getGroupBy().size()).isEqualTo(2);
+        assertThat(query.getGroupBy().contains(PetSummaryDimension.PET_TYPE)).isTrue();
+        assertThat(query.getGroupBy().contains(PetSummaryDimension.TRACKER_TYPE)).isTrue();
+        assertThat(result.size()).isEqualTo(1);
+        assertThat(result.get(0).petType()).isEqualTo(PetType.CAT);
+        assertThat(result.get(0).inZone()).isNull();
+        assertThat(result.get(0).count()).isEqualTo(4L);
+    }
 }
@@ -0,0 +1,165 @@
+package com.tractive.pettracker.unit.application;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.tractive.pettracker.application.service.PetWriteBehindQueue;
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+
+class PetWriteBehindQueueTest {
+
+    private final PetRepository petRepository = mock(PetRepository.class);
+    private final List<Integer> committedBatches = new CopyOnWriteArrayList<>();
+    private PetWriteBehindQueue queue;
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void stop() {
+        if (queue != null && queue.isRunning()) queue.stop();
+    }
+
+    @Test
+    void whenPetsAreBufferedBeforeWriterRunsThenTheyAreCommittedTogether() throws Exception {
+        recordBatches();
+        queue = new PetWriteBehindQueue(petRepository, 100, 50, dir);
+        for (int i = 0; i < 3; i++) assertThat(queue.offer(pet(i))).isTrue();
+
+        queue.start();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> committedBatches.stream().mapToInt(Integer::intValue).sum() == 3);
+        assertThat(committedBatches).containsExactly(3);
+    }
+
+    @Test
+    void whenBatchExceedsMaxBatchThenItIsSplitAcrossCommits() throws Exception {
+        recordBatches();
+        queue = new PetWriteBehindQueue(petRepository, 100, 2, dir);
+        for (int i = 0; i < 5; i++) queue.offer(pet(i));
+
+        queue.start();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> committedBatches.stream().mapToInt(Integer::intValue).sum() == 5);
+        assertThat(committedBatches).allMatch(size -> size <= 2);
+    }
+
+    @Test
+    void whenBufferIsFullThenOfferIsRejected() throws Exception {
+        queue = new PetWriteBehindQueue(petRepository, 1, 1, dir);
+
+        assertThat(queue.offer(pet(1))).isTrue();
+        assertThat(queue.offer(pet(2))).isFalse();
+        assertThat(queue.depth()).isEqualTo(1);
+    }
+
+    @Test
+    void whenStoppedThenRemainingPetsAreCommittedFirst() throws Exception {
+        recordBatches();
+        queue = new PetWriteBehindQueue(petRepository, 100, 50, dir);
+        queue.start();
+        for (int i = 0; i < 10; i++) queue.offer(pet(i));
+
+        queue.stop();
+
+        assertThat(queue.depth()).isZero();
+        assertThat(committedBatches.stream().mapToInt(Integer::intValue).sum()).isEqualTo(10);
+    }
+
+    @Test
+    void whenCommitFailsTransientlyThenTheBatchIsRetried() throws Exception {
+        var attempts = new AtomicInteger();
+        when(petRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            if (attempts.getAndIncrement() == 0) throw new QueryTimeoutException("lock wait");
+            List<Pet> batch = invocation.getArgument(0);
+            committedBatches.add(batch.size());
+            return batch;
+        });
+        queue = new PetWriteBehindQueue(petRepository, 100, 50, dir);
+        for (int i = 0; i < 3; i++) queue.offer(pet(i));
+
+        queue.start();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> committedBatches.contains(3));
+        assertThat(attempts.get()).isEqualTo(2);
+    }
+
+    @Test
+    void whenOnePetOfABatchIsRejectedThenOnlyThatPetFails() throws Exception {
+        List<Integer> committedOwners = new CopyOnWriteArrayList<>();
+        when(petRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Pet> batch = invocation.getArgument(0);
+            if (batch.stream().anyMatch(p -> p.getOwnerId() == 2)) throw new DataIntegrityViolationException("owner 2");
+            batch.forEach(p -> committedOwners.add(p.getOwnerId()));
+            return batch;
+        });
+        queue = new PetWriteBehindQueue(petRepository, 100, 50, dir);
+        for (int i = 1; i <= 4; i++) queue.offer(pet(i));
+
+        queue.start();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> committedOwners.size() == 3);
+        assertThat(committedOwners).containsExactly(1, 3, 4);
+    }
+
+    @Test
+    void whenProcessDiesBeforeTheWriterCommitsThenAcceptedPetsAreCommittedOnTheNextStart() throws Exception {
+        List<Integer> committedOwners = new CopyOnWriteArrayList<>();
+        when(petRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Pet> batch = invocation.getArgument(0);
+            batch.forEach(p -> committedOwners.add(p.getOwnerId()));
+            return batch;
+        });
+        var crashed = new PetWriteBehindQueue(petRepository, 100, 50, dir);
+        for (int i = 1; i <= 3; i++) assertThat(crashed.offer(pet(i))).isTrue();
+
+        queue = new PetWriteBehindQueue(petRepository, 100, 50, dir);
+        queue.start();
+        await().atMost(Duration.ofSeconds(5)).until(() -> committedOwners.size() == 3);
+        queue.offer(pet(4));
+        queue.stop();
+
+        // everything is marked committed, so a further start has nothing to replay
+        queue = new PetWriteBehindQueue(petRepository, 100, 50, dir);
+        queue.start();
+        queue.stop();
+        assertThat(committedOwners).containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    void whenThereIsNoLogThenNothingIsAccepted() throws Exception {
+        queue = new PetWriteBehindQueue(petRepository, 100, 50, null);
+
+        assertThat(queue.isDurable()).isFalse();
+        assertThat(queue.offer(pet(1))).isFalse();
+        assertThat(queue.depth()).isZero();
+    }
+
+    private void recordBatches() {
+        when(petRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Pet> batch = invocation.getArgument(0);
+            committedBatches.add(batch.size());
+            return batch;
+        });
+    }
+
+    private static Pet pet(int ownerId) {
+        return new Pet(null, PetType.DOG, TrackerType.BIG, ownerId, true);
+    }
+}
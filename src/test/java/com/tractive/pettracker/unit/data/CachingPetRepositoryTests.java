@@ -0,0 +1,95 @@
+package com.tractive.pettracker.unit.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.tractive.pettracker.data.PetRepository;
+import com.tractive.pettracker.data.cache.CachingPetRepository;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class CachingPetRepositoryTests {
+
+    private final PetRepository delegate = mock(PetRepository.class);
+    private final CachingPetRepository repo = new CachingPetRepository(delegate, 100, Duration.ofMinutes(5));
+
+    @Test
+    void whenFindByIdTwiceThenDelegateIsHitOnce() {
+        when(delegate.findById(1L)).thenReturn(Optional.of(new Pet(1L, PetType.DOG, TrackerType.BIG, 10, true)));
+
+        var first = repo.findById(1L);
+        var second = repo.findById(1L);
+
+        assertThat(first).isPresent();
+        assertThat(second).containsSame(first.get());
+        verify(delegate, times(1)).findById(1L);
+        assertThat(repo.stats().hitCount()).isEqualTo(1);
+        assertThat(repo.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void whenPetIsMissingThenNothingIsCached() {
+        when(delegate.findById(2L)).thenReturn(Optional.empty());
+
+        assertThat(repo.findById(2L)).isEmpty();
+        assertThat(repo.findById(2L)).isEmpty();
+
+        verify(delegate, times(2)).findById(2L);
+        assertThat(repo.size()).isZero();
+    }
+
+    @Test
+    void whenUpdateThenCachedPetIsInvalidated() {
+        var before = new Pet(3L, PetType.DOG, TrackerType.BIG, 10, true);
+        var after = new Pet(3L, PetType.DOG, TrackerType.BIG, 10, false);
+        when(delegate.findById(3L)).thenReturn(Optional.of(before), Optional.of(after));
+        when(delegate.update(any(Pet.class))).thenReturn(after);
+
+        repo.findById(3L);
+        repo.update(after);
+        var reloaded = repo.findById(3L);
+
+        assertThat(reloaded).containsSame(after);
+        verify(delegate, times(2)).findById(3L);
+    }
+
+    @Test
+    void whenWriteCommitsWhileOldRowIsLoadingThenOldRowDoesNotStayCached() throws Exception {
+        var before = new Pet(4L, PetType.DOG, TrackerType.BIG, 10, true);
+        var after = new Pet(4L, PetType.DOG, TrackerType.BIG, 10, false);
+        var loading = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var loads = new AtomicInteger();
+        when(delegate.findById(4L)).thenAnswer(invocation -> {
+            if (loads.getAndIncrement() > 0) return Optional.of(after);
+            // the old row is read, then the writer commits before it is cached
+            loading.countDown();
+            release.await();
+            return Optional.of(before);
+        });
+        when(delegate.update(any(Pet.class))).thenReturn(after);
+
+        var reader = new Thread(() -> repo.findById(4L));
+        reader.start();
+        loading.await();
+        var writer = new Thread(() -> repo.update(after));
+        writer.start();
+        // the writer's invalidation waits for the load instead of running before its result is stored
+        assertThat(writer.join(Duration.ofMillis(200))).isFalse();
+        release.countDown();
+        reader.join();
+        writer.join();
+
+        assertThat(repo.findById(4L)).containsSame(after);
+    }
+}
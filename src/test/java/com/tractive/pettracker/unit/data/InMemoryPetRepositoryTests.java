@@ -0,0 +1,293 @@
+package com.tractive.pettracker.unit.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.tractive.pettracker.data.memory.InMemoryPetRepository;
+import com.tractive.pettracker.domain.Cat;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetPatch;
+import com.tractive.pettracker.domain.PetSummaryDimension;
+import com.tractive.pettracker.domain.PetSummaryQuery;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.util.unit.DataSize;
+
+class InMemoryPetRepositoryTests {
+
+    private final InMemoryPetRepository repo = new InMemoryPetRepository();
+
+    @Test
+    void saveShouldAssignNewIdAndReturnDomain() {
+        var saved = repo.save(new Pet(99L, PetType.DOG, TrackerType.SMALL, 10, true));
+
+        assertThat(saved.getId()).isEqualTo(1L);
+        assertThat(saved.getPetType()).isEqualTo(PetType.DOG);
+        assertThat(saved.getTrackerType()).isEqualTo(TrackerType.SMALL);
+        assertThat(saved.getOwnerId()).isEqualTo(10);
+        assertThat(saved.getInZone()).isTrue();
+    }
+
+    @Test
+    void saveCatShouldRoundTripLostTracker() {
+        var saved = repo.save(new Cat(null, TrackerType.BIG, 42, false, true));
+
+        var found = repo.findById(saved.getId()).orElseThrow();
+
+        assertThat(found).isInstanceOf(Cat.class);
+        assertThat(((Cat) found).getLostTracker()).isTrue();
+    }
+
+    @Test
+    void updateShouldThrowIfIdIsNull() {
+        assertThatThrownBy(() -> repo.update(new Pet(null, PetType.DOG, TrackerType.SMALL, 1, true)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("id required for update");
+    }
+
+    @Test
+    void updateShouldThrowIfPetIsUnknown() {
+        assertThatThrownBy(() -> repo.update(new Pet(7L, PetType.DOG, TrackerType.SMALL, 1, true)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void updateShouldReplaceStoredPet() {
+        var saved = repo.save(new Pet(null, PetType.DOG, TrackerType.SMALL, 20, true));
+
+        repo.update(new Pet(saved.getId(), PetType.DOG, TrackerType.MEDIUM, 20, false));
+
+        var found = repo.findById(saved.getId()).orElseThrow();
+        assertThat(found.getTrackerType()).isEqualTo(TrackerType.MEDIUM);
+        assertThat(found.getInZone()).isFalse();
+    }
+
+    @Test
+    void countOutsideZoneGroupedAtShouldReturnCountsAsOfThatInstant() throws Exception {
+        var saved = repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, 1, false));
+        Thread.sleep(5);
+        var whileOutside = Instant.now();
+        Thread.sleep(5);
+        repo.update(new Pet(saved.getId(), PetType.DOG, TrackerType.BIG, 1, true));
+
+        assertThat(repo.countOutsideZoneGroupedAt(Instant.EPOCH)).isEmpty();
+        var past = repo.countOutsideZoneGroupedAt(whileOutside);
+        assertThat(past).hasSize(1);
+        assertThat(past.get(0).getCount()).isEqualTo(1);
+        assertThat(repo.countOutsideZoneGroupedAt(Instant.now())).isEmpty();
+    }
+
+    @Test
+    void patchShouldChangeOnlyGivenFieldsAndUpdateCounts() {
+        var saved = repo.save(new Cat(null, TrackerType.SMALL, 3, true, false));
+
+        var patched = repo.patch(saved.getId(), new PetPatch(false, null)).orElseThrow();
+
+        assertThat(patched.getInZone()).isFalse();
+        assertThat(((Cat) patched).getLostTracker()).isFalse();
+        assertThat(patched.getOwnerId()).isEqualTo(3);
+        assertThat(repo.countOutsideZoneGrouped()).hasSize(1);
+        assertThat(repo.patch(99L, new PetPatch(true, null))).isEmpty();
+    }
+
+    @Test
+    void upsertByTrackerShouldCreateOnceAndThenUpdateSamePet() {
+        var first = repo.upsertByTracker("t-1", new Pet(null, PetType.DOG, TrackerType.BIG, 3, false));
+        var second = repo.upsertByTracker("t-1", new Pet(null, PetType.DOG, TrackerType.BIG, 3, true));
+        var otherOwner = repo.upsertByTracker("t-1", new Pet(null, PetType.DOG, TrackerType.BIG, 4, true));
+
+        assertThat(first.isCreated()).isTrue();
+        assertThat(second.isCreated()).isFalse();
+        assertThat(second.getPet().getId()).isEqualTo(first.getPet().getId());
+        assertThat(otherOwner.isCreated()).isTrue();
+        assertThat(repo.findAll()).hasSize(2);
+        assertThat(repo.countOutsideZoneGrouped()).isEmpty();
+    }
+
+    @Test
+    void findVersionShouldAdvanceWithEveryWrite() {
+        var saved = repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, 3, true));
+        long created = repo.findVersion(saved.getId()).orElseThrow();
+
+        repo.patch(saved.getId(), new PetPatch(true, null));
+        long patched = repo.findVersion(saved.getId()).orElseThrow();
+        repo.update(new Pet(saved.getId(), PetType.DOG, TrackerType.BIG, 4, true));
+
+        assertThat(patched).isGreaterThan(created);
+        assertThat(repo.findVersion(saved.getId())).contains(patched + 1);
+        assertThat(repo.findVersion(99L)).isEmpty();
+    }
+
+    @Test
+    void updateWithExpectedVersionShouldOnlyReplaceThatVersion() {
+        var saved = repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, 3, true));
+        long version = repo.findVersion(saved.getId()).orElseThrow();
+
+        repo.update(new Pet(saved.getId(), PetType.DOG, TrackerType.BIG, 3, false), version);
+
+        assertThatThrownBy(() -> repo.update(new Pet(saved.getId(), PetType.DOG, TrackerType.SMALL, 3, true), version))
+            .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(repo.findById(saved.getId()).orElseThrow().getInZone()).isFalse();
+        assertThat(repo.countOutsideZoneGrouped()).hasSize(1);
+    }
+
+    @Test
+    void findByIdShouldReturnEmptyIfNotFound() {
+        assertThat(repo.findById(99L)).isEmpty();
+        assertThat(repo.findById(-1L)).isEmpty();
+    }
+
+    @Test
+    void findPageShouldReturnPetsOrderedByIdAfterCursor() {
+        for (int i = 0; i < 5; i++) repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, i, true));
+
+        assertThat(repo.findPage(null, 2)).extracting(Pet::getId).containsExactly(1L, 2L);
+        assertThat(repo.findPage(2L, 2)).extracting(Pet::getId).containsExactly(3L, 4L);
+        assertThat(repo.findPage(4L, 2)).extracting(Pet::getId).containsExactly(5L);
+        assertThat(repo.findPage(5L, 2)).isEmpty();
+        assertThat(repo.findAll()).hasSize(5);
+    }
+
+    @Test
+    void findPageByOwnerShouldFollowOwnerChanges() {
+        var first = repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, 1, false));
+        repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, 2, false));
+        var third = repo.save(new Cat(null, TrackerType.SMALL, 1, true, false));
+        var fourth = repo.save(new Pet(null, PetType.DOG, TrackerType.SMALL, 1, false));
+
+        assertThat(repo.findPageByOwner(1, null, 2)).extracting(Pet::getId).containsExactly(first.getId(), third.getId());
+        assertThat(repo.findPageByOwner(1, third.getId(), 2)).extracting(Pet::getId).containsExactly(fourth.getId());
+
+        repo.update(new Pet(first.getId(), PetType.DOG, TrackerType.BIG, 2, false));
+
+        assertThat(repo.findPageByOwner(1, null, 10)).extracting(Pet::getId).containsExactly(third.getId(), fourth.getId());
+        assertThat(repo.findPageByOwner(2, null, 10)).hasSize(2);
+        assertThat(repo.findPageByOwner(3, null, 10)).isEmpty();
+    }
+
+    @Test
+    void countOutsideZoneGroupedByOwnerShouldCountOnlyThatOwner() {
+        repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, 1, false));
+        repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, 1, false));
+        repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, 1, true));
+        repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, 2, false));
+
+        var counts = repo.countOutsideZoneGroupedByOwner(1);
+
+        assertThat(counts).hasSize(1);
+        assertThat(counts.get(0).getPetType()).isEqualTo(PetType.DOG);
+        assertThat(counts.get(0).getTrackerType()).isEqualTo(TrackerType.BIG);
+        assertThat(counts.get(0).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void summarizeShouldFilterAndGroup() {
+        repo.save(new Cat(null, TrackerType.SMALL, 1, true, true));
+        repo.save(new Cat(null, TrackerType.SMALL, 2, false, true));
+        repo.save(new Cat(null, TrackerType.BIG, 3, true, true));
+        repo.save(new Cat(null, TrackerType.BIG, 4, true, false));
+        repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, 5, true));
+
+        var lostCats = repo.summarize(new PetSummaryQuery(null, PetType.CAT, null, true, null, null, List.of(PetSummaryDimension.TRACKER_TYPE)));
+
+        assertThat(lostCats).hasSize(2);
+        assertThat(lostCats.get(0).getTrackerType()).isEqualTo(TrackerType.BIG);
+        assertThat(lostCats.get(0).getCount()).isEqualTo(1);
+        assertThat(lostCats.get(1).getTrackerType()).isEqualTo(TrackerType.SMALL);
+        assertThat(lostCats.get(1).getCount()).isEqualTo(2);
+        assertThat(lostCats.get(0).getPetType()).isNull();
+
+        var inZoneOwners2To5 = repo.summarize(new PetSummaryQuery(true, null, null, null, 2, 5, List.of()));
+
+        assertThat(inZoneOwners2To5).hasSize(1);
+        assertThat(inZoneOwners2To5.get(0).getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void countOutsideZoneGroupedShouldFollowWrites() {
+        var cat = repo.save(new Cat(null, TrackerType.SMALL, 1, false, false));
+        repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, 2, false));
+        repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, 3, true));
+        repo.update(new Cat(cat.getId(), TrackerType.SMALL, 1, true, false));
+
+        var counts = repo.countOutsideZoneGrouped();
+
+        assertThat(counts).hasSize(1);
+        assertThat(counts.get(0).getPetType()).isEqualTo(PetType.DOG);
+        assertThat(counts.get(0).getTrackerType()).isEqualTo(TrackerType.BIG);
+        assertThat(counts.get(0).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentZoneFlipsShouldKeepCountersExact() throws Exception {
+        var pets = List.of(
+            repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, 1, true)),
+            repo.save(new Pet(null, PetType.DOG, TrackerType.BIG, 2, true))
+        );
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            int worker = t;
+            pool.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    var pet = pets.get((worker + i) % pets.size());
+                    repo.update(new Pet(pet.getId(), PetType.DOG, TrackerType.BIG, pet.getOwnerId(), i % 2 == 0));
+                }
+            });
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        long outside = repo.findAll().stream().filter(p -> !p.getInZone()).count();
+        int counted = repo.countOutsideZoneGrouped().stream().mapToInt(c -> c.getCount()).sum();
+        assertThat(counted).isEqualTo((int) outside);
+    }
+
+    @Test
+    void restartShouldReplayTheLog(@TempDir Path dir) throws Exception {
+        var first = new InMemoryPetRepository(dir.toString(), DataSize.ofKilobytes(1));
+        // 1 KB segments force several rotations
+        for (int i = 0; i < 100; i++) first.save(new Pet(null, PetType.DOG, TrackerType.SMALL, i, true));
+        var cat = first.save(new Cat(null, TrackerType.BIG, 7, true, false));
+        first.patch(cat.getId(), new PetPatch(false, true));
+        first.upsertByTracker("collar-1", new Pet(null, PetType.DOG, TrackerType.MEDIUM, 9, false));
+        first.sync();
+
+        var restarted = new InMemoryPetRepository(dir.toString(), DataSize.ofKilobytes(1));
+
+        assertThat(restarted.findAll()).hasSize(102);
+        var restoredCat = (Cat) restarted.findById(cat.getId()).orElseThrow();
+        assertThat(restoredCat.getInZone()).isFalse();
+        assertThat(restoredCat.getLostTracker()).isTrue();
+        assertThat(restarted.countOutsideZoneGrouped()).usingRecursiveComparison().isEqualTo(first.countOutsideZoneGrouped());
+        assertThat(restarted.countOutsideZoneGroupedAt(Instant.now())).usingRecursiveComparison().isEqualTo(first.countOutsideZoneGroupedAt(Instant.now()));
+        assertThat(restarted.upsertByTracker("collar-1", new Pet(null, PetType.DOG, TrackerType.MEDIUM, 9, true)).isCreated()).isFalse();
+        assertThat(restarted.save(new Pet(null, PetType.DOG, TrackerType.SMALL, 1, true)).getId()).isEqualTo(103L);
+    }
+
+    @Test
+    void restartShouldLoadSnapshotAndReplayWritesAfterIt(@TempDir Path dir) throws Exception {
+        var first = new InMemoryPetRepository(dir.toString(), DataSize.ofKilobytes(64));
+        var dog = first.save(new Pet(null, PetType.DOG, TrackerType.SMALL, 1, true));
+        first.upsertByTracker("collar-1", new Pet(null, PetType.CAT, TrackerType.SMALL, 2, true));
+        first.snapshot();
+        first.update(new Pet(dog.getId(), PetType.DOG, TrackerType.SMALL, 1, false));
+        first.save(new Pet(null, PetType.DOG, TrackerType.BIG, 3, false));
+        first.close();
+
+        var restarted = new InMemoryPetRepository(dir.toString(), DataSize.ofKilobytes(64));
+
+        assertThat(restarted.findAll()).hasSize(3);
+        assertThat(restarted.findById(dog.getId()).orElseThrow().getInZone()).isFalse();
+        assertThat(restarted.countOutsideZoneGrouped()).hasSize(2);
+        assertThat(restarted.upsertByTracker("collar-1", new Pet(null, PetType.CAT, TrackerType.SMALL, 2, false)).isCreated()).isFalse();
+    }
+}
@@ -0,0 +1,144 @@
+package com.tractive.pettracker.unit.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.tractive.pettracker.data.OutOfZoneCounters;
+import com.tractive.pettracker.domain.Cat;
+import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class OutOfZoneCountersTests {
+
+    private final OutOfZoneCounters counters = new OutOfZoneCounters();
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.unbindResourceIfPossible(counters);
+    }
+
+    @Test
+    void whenOutsidePetCreatedThenItsGroupIsIncremented() {
+        counters.record(null, new Cat(1L, TrackerType.SMALL, 1, false, false));
+        counters.record(null, new Pet(2L, PetType.DOG, TrackerType.BIG, 2, true));
+
+        var snapshot = counters.snapshot();
+
+        assertThat(snapshot).hasSize(1);
+        assertThat(snapshot.get(0).getPetType()).isEqualTo(PetType.CAT);
+        assertThat(snapshot.get(0).getTrackerType()).isEqualTo(TrackerType.SMALL);
+        assertThat(snapshot.get(0).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void whenUpdateChangesNothingRelevantThenCountsAndModificationsAreUntouched() {
+        counters.record(null, new Pet(1L, PetType.DOG, TrackerType.BIG, 1, false));
+        long modifications = counters.modifications();
+
+        counters.record(new Pet(1L, PetType.DOG, TrackerType.BIG, 1, false), new Pet(1L, PetType.DOG, TrackerType.BIG, 99, false));
+
+        assertThat(counters.modifications()).isEqualTo(modifications);
+        assertThat(counters.snapshot().get(0).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void whenUpdateMovesPetBetweenGroupsThenCountsFollow() {
+        var before = new Pet(1L, PetType.DOG, TrackerType.BIG, 1, false);
+        counters.record(null, before);
+
+        counters.record(before, new Pet(1L, PetType.DOG, TrackerType.MEDIUM, 1, false));
+
+        var snapshot = counters.snapshot();
+        assertThat(snapshot).hasSize(1);
+        assertThat(snapshot.get(0).getTrackerType()).isEqualTo(TrackerType.MEDIUM);
+        assertThat(snapshot.get(0).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void whenPetReturnsToZoneThenGroupDisappears() {
+        var outside = new Pet(1L, PetType.DOG, TrackerType.BIG, 1, false);
+        counters.record(null, outside);
+
+        counters.record(outside, new Pet(1L, PetType.DOG, TrackerType.BIG, 1, true));
+
+        assertThat(counters.snapshot()).isEmpty();
+    }
+
+    @Test
+    void whenInsideTransactionThenDeltasArePendingUntilCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        counters.record(null, new Pet(1L, PetType.DOG, TrackerType.BIG, 1, false));
+
+        assertThat(counters.snapshot()).hasSize(1);
+        assertThat(counters.modifications()).isZero();
+
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(counters.snapshot()).hasSize(1);
+        assertThat(counters.modifications()).isEqualTo(1);
+    }
+
+    @Test
+    void whenTransactionRollsBackThenDeltasAreDiscarded() {
+        TransactionSynchronizationManager.initSynchronization();
+        counters.record(null, new Pet(1L, PetType.DOG, TrackerType.BIG, 1, false));
+
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(counters.snapshot()).isEmpty();
+    }
+
+    @Test
+    void generationMovesOnlyWhenTheSnapshotCanChange() {
+        long initial = counters.generation();
+        counters.record(null, new Pet(1L, PetType.DOG, TrackerType.BIG, 1, true));
+        assertThat(counters.generation()).isEqualTo(initial);
+
+        counters.record(null, new Pet(2L, PetType.DOG, TrackerType.BIG, 1, false));
+        long afterWrite = counters.generation();
+        assertThat(afterWrite).isGreaterThan(initial);
+
+        assertThat(counters.reconcile(counters.snapshot(), counters.modifications())).isFalse();
+        assertThat(counters.generation()).isEqualTo(afterWrite);
+
+        counters.reset(List.of());
+        assertThat(counters.generation()).isGreaterThan(afterWrite);
+    }
+
+    @Test
+    void whenReconcileFindsDriftThenCountsAreReset() {
+        counters.reset(List.of(new OutOfZoneCount(PetType.CAT, TrackerType.BIG, 3)));
+
+        boolean drift = counters.reconcile(List.of(new OutOfZoneCount(PetType.CAT, TrackerType.BIG, 4)), counters.modifications());
+
+        assertThat(drift).isTrue();
+        assertThat(counters.snapshot().get(0).getCount()).isEqualTo(4);
+    }
+
+    @Test
+    void whenWriteHappensDuringReconcileThenPassIsSkipped() {
+        counters.reset(List.of());
+        long modifications = counters.modifications();
+        counters.record(null, new Pet(1L, PetType.DOG, TrackerType.BIG, 1, false));
+
+        boolean drift = counters.reconcile(List.of(), modifications);
+
+        assertThat(drift).isFalse();
+        assertThat(counters.snapshot()).hasSize(1);
+    }
+
+    private void completeTransaction(int status) {
+        var synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization s : synchronizations) s.afterCompletion(status);
+    }
+}
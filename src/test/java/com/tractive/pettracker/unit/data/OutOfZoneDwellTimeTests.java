@@ -0,0 +1,174 @@
+package com.tractive.pettracker.unit.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.tractive.pettracker.data.OutOfZoneDwellTime;
+import com.tractive.pettracker.domain.Cat;
+import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class OutOfZoneDwellTimeTests {
+
+    private static final Instant START = Instant.parse("2025-01-01T00:00:00Z");
+
+    private final MutableClock clock = new MutableClock(START);
+    private final OutOfZoneDwellTime dwell = new OutOfZoneDwellTime(clock);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.unbindResourceIfPossible(dwell);
+    }
+
+    @Test
+    void whenPetIsOutsideForAWhileThenItsGroupAndOwnerAccumulateThatTime() {
+        var outside = new Pet(1L, PetType.DOG, TrackerType.BIG, 7, false);
+        dwell.record(null, outside);
+        clock.advance(Duration.ofMinutes(90));
+        dwell.record(outside, new Pet(1L, PetType.DOG, TrackerType.BIG, 7, true));
+        clock.advance(Duration.ofMinutes(30));
+
+        var rows = dwell.byGroup(START, Duration.ofHours(1));
+
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(0).getPetType()).isEqualTo(PetType.DOG);
+        assertThat(rows.get(0).getTrackerType()).isEqualTo(TrackerType.BIG);
+        assertThat(rows.get(0).getOutsideMillis()).isEqualTo(Duration.ofHours(1).toMillis());
+        assertThat(rows.get(1).getFrom()).isEqualTo(START.plus(Duration.ofHours(1)));
+        assertThat(rows.get(1).getOutsideMillis()).isEqualTo(Duration.ofMinutes(30).toMillis());
+        assertThat(dwell.byOwner(7, START, Duration.ofHours(2)).get(0).getOutsideMillis()).isEqualTo(Duration.ofMinutes(90).toMillis());
+    }
+
+    @Test
+    void whenPetsAreStillOutsideThenTimeUpToNowIsCounted() {
+        dwell.record(null, new Cat(1L, TrackerType.SMALL, 7, false, false));
+        dwell.record(null, new Cat(2L, TrackerType.SMALL, 8, false, false));
+        clock.advance(Duration.ofSeconds(150));
+
+        var rows = dwell.byGroup(START, Duration.ofMinutes(1));
+
+        assertThat(rows).extracting(r -> r.getOutsideMillis()).containsExactly(120_000L, 120_000L, 60_000L);
+        assertThat(rows.get(2).getTo()).isEqualTo(clock.instant());
+        assertThat(dwell.byOwner(8, START, Duration.ofMinutes(5)).get(0).getOutsideMillis()).isEqualTo(150_000L);
+    }
+
+    @Test
+    void whenPetChangesGroupAndOwnerWhileOutsideThenTimeMovesWithIt() {
+        var before = new Pet(1L, PetType.DOG, TrackerType.BIG, 7, false);
+        dwell.record(null, before);
+        clock.advance(Duration.ofMinutes(10));
+        dwell.record(before, new Pet(1L, PetType.DOG, TrackerType.MEDIUM, 8, false));
+        clock.advance(Duration.ofMinutes(5));
+
+        var rows = dwell.byGroup(START, Duration.ofHours(1));
+
+        assertThat(rows).extracting(r -> r.getTrackerType()).containsExactly(TrackerType.MEDIUM, TrackerType.BIG);
+        assertThat(rows).extracting(r -> r.getOutsideMillis()).containsExactly(300_000L, 600_000L);
+        assertThat(dwell.byOwner(7, START, Duration.ofHours(1)).get(0).getOutsideMillis()).isEqualTo(600_000L);
+        assertThat(dwell.byOwner(8, START, Duration.ofHours(1)).get(0).getOutsideMillis()).isEqualTo(300_000L);
+    }
+
+    @Test
+    void whenWriteIsRolledBackThenNoTimeIsCounted() {
+        TransactionSynchronizationManager.initSynchronization();
+        dwell.record(null, new Pet(1L, PetType.DOG, TrackerType.BIG, 7, false));
+        for (TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations()) {
+            s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+        clock.advance(Duration.ofMinutes(10));
+
+        assertThat(dwell.byGroup(START, Duration.ofHours(1))).isEmpty();
+        assertThat(dwell.byOwner(7, START, Duration.ofHours(1)).get(0).getOutsideMillis()).isZero();
+    }
+
+    @Test
+    void whenWriteCommitsThenTimeCountsFromTheCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        dwell.record(null, new Pet(1L, PetType.DOG, TrackerType.BIG, 7, false));
+        clock.advance(Duration.ofMinutes(1));
+        for (TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations()) {
+            s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+        clock.advance(Duration.ofMinutes(2));
+
+        assertThat(dwell.byGroup(START, Duration.ofHours(1)).get(0).getOutsideMillis()).isEqualTo(120_000L);
+    }
+
+    @Test
+    void whenResetThenSeededPetsCountAsOutsideFromThen() {
+        dwell.record(null, new Pet(1L, PetType.DOG, TrackerType.BIG, 7, false));
+        clock.advance(Duration.ofMinutes(5));
+        dwell.reset(List.of(new OutOfZoneCount(PetType.CAT, TrackerType.SMALL, 3)), Map.of(9, 3));
+        clock.advance(Duration.ofMinutes(2));
+
+        var rows = dwell.byGroup(START, Duration.ofHours(1));
+
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0).getPetType()).isEqualTo(PetType.CAT);
+        assertThat(rows.get(0).getOutsideMillis()).isEqualTo(3 * 120_000L);
+        assertThat(dwell.byOwner(9, START, Duration.ofHours(1)).get(0).getOutsideMillis()).isEqualTo(3 * 120_000L);
+        assertThat(dwell.byOwner(7, START, Duration.ofHours(1)).get(0).getOutsideMillis()).isZero();
+    }
+
+    @Test
+    void whenTimePassesTheRetentionThenOldTimeIsForgotten() {
+        var outside = new Pet(1L, PetType.DOG, TrackerType.BIG, 7, false);
+        dwell.record(null, outside);
+        clock.advance(Duration.ofHours(1));
+        dwell.record(outside, new Pet(1L, PetType.DOG, TrackerType.BIG, 7, true));
+        clock.advance(OutOfZoneDwellTime.RETENTION);
+
+        Instant from = clock.instant().minus(OutOfZoneDwellTime.RETENTION);
+        assertThat(dwell.byGroup(from, OutOfZoneDwellTime.RETENTION)).isEmpty();
+        assertThat(dwell.byOwner(7, from, OutOfZoneDwellTime.RETENTION).get(0).getOutsideMillis()).isZero();
+    }
+
+    @Test
+    void whenImmediateThenChangesApplyEvenInsideATransaction() {
+        var immediate = OutOfZoneDwellTime.immediate(clock);
+        TransactionSynchronizationManager.initSynchronization();
+        immediate.record(null, new Pet(1L, PetType.DOG, TrackerType.BIG, 7, false));
+        TransactionSynchronizationManager.clearSynchronization();
+        clock.advance(Duration.ofMinutes(1));
+
+        assertThat(immediate.byGroup(START, Duration.ofHours(1)).get(0).getOutsideMillis()).isEqualTo(60_000L);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() { return ZoneOffset.UTC; }
+
+        @Override
+        public Clock withZone(ZoneId zone) { return this; }
+
+        @Override
+        public Instant instant() { return now; }
+    }
+}
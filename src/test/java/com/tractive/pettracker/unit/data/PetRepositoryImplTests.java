@@ -2,17 +2,30 @@ package com.tractive.pettracker.unit.data;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 import com.tractive.pettracker.data.PetRepositoryImpl;
 import com.tractive.pettracker.data.jpa.PetEntity;
 import com.tractive.pettracker.data.jpa.PetJpaRepository;
+import com.tractive.pettracker.data.jpa.PetRow;
+import com.tractive.pettracker.data.jpa.PetSecondLevelCache;
+import com.tractive.pettracker.data.jpa.PetZoneEventEntity;
+import com.tractive.pettracker.data.jpa.PetZoneEventJpaRepository;
 import com.tractive.pettracker.domain.Cat;
+import com.tractive.pettracker.domain.OutOfZoneCount;
 import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetPatch;
 import com.tractive.pettracker.domain.PetType;
 import com.tractive.pettracker.domain.TrackerType;
+import jakarta.persistence.EntityManager;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,14 +41,23 @@ class PetRepositoryImplTests {
     @TestConfiguration
     static class TestConfig {
         @Bean
-        PetRepositoryImpl petRepositoryImpl(PetJpaRepository jpa) {
-            return new PetRepositoryImpl(jpa);
+        PetRepositoryImpl petRepositoryImpl(PetJpaRepository jpa, PetZoneEventJpaRepository events, EntityManager entityManager, PetSecondLevelCache secondLevelCache) {
+            return new PetRepositoryImpl(jpa, events, entityManager, secondLevelCache);
         }
     }
 
     @MockitoBean
     private PetJpaRepository jpa;
 
+    @MockitoBean
+    private PetZoneEventJpaRepository events;
+
+    @MockitoBean
+    private EntityManager entityManager;
+
+    @MockitoBean
+    private PetSecondLevelCache secondLevelCache;
+
     @Autowired
     private PetRepositoryImpl repo;
 
@@ -86,6 +108,14 @@ class PetRepositoryImplTests {
         savedPetEntity.setOwnerId(20);
         savedPetEntity.setInZone(false);
 
+        var existing = new PetEntity();
+        existing.setId(42L);
+        existing.setPetType(PetType.DOG);
+        existing.setTrackerType(TrackerType.SMALL);
+        existing.setOwnerId(20);
+        existing.setInZone(true);
+
+        when(jpa.findById(42L)).thenReturn(Optional.of(existing));
         when(jpa.save(any(PetEntity.class))).thenReturn(savedPetEntity);
 
         var updated = repo.update(pet);
@@ -99,6 +129,40 @@ class PetRepositoryImplTests {
         var captor = ArgumentCaptor.forClass(PetEntity.class);
         verify(jpa).save(captor.capture());
         assertThat(captor.getValue().getId()).isEqualTo(42L);
+        // the managed entity is changed in place, so Hibernate keeps and increments its version
+        assertThat(captor.getValue()).isSameAs(existing);
+        assertThat(existing.getTrackerType()).isEqualTo(TrackerType.MEDIUM);
+    }
+
+    @Test
+    void updateOfUnknownIdShouldThrowInsteadOfInserting() {
+        when(jpa.findById(43L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> repo.update(new Pet(43L, PetType.DOG, TrackerType.MEDIUM, 20, false)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("pet 43 not found");
+        verify(jpa, never()).save(any());
+    }
+
+    @Test
+    void updateWithStaleExpectedVersionShouldThrowWithoutWriting() {
+        var entity = mock(PetEntity.class);
+        when(entity.getVersion()).thenReturn(5L);
+        when(jpa.findById(44L)).thenReturn(Optional.of(entity));
+
+        assertThatThrownBy(() -> repo.update(new Pet(44L, PetType.DOG, TrackerType.MEDIUM, 20, false), 4L))
+            .isInstanceOf(OptimisticLockingFailureException.class)
+            .hasMessageContaining("version 5, not 4");
+        verify(jpa, never()).save(any());
+        verifyNoInteractions(events);
+    }
+
+    @Test
+    void findVersionShouldReadOnlyTheVersionColumn() {
+        when(jpa.findVersionById(7L)).thenReturn(Optional.of(3L));
+
+        assertThat(repo.findVersion(7L)).contains(3L);
+        verify(jpa, never()).findById(any());
     }
 
     @Test
@@ -172,6 +236,7 @@ class PetRepositoryImplTests {
         Object[] row2 = new Object[] { PetType.DOG, TrackerType.BIG, 5L };
 
         when(jpa.countOutsideZoneGrouped()).thenReturn(List.of(row1, row2));
+        repo.seedOutOfZoneCounters();
 
         var results = repo.countOutsideZoneGrouped();
 
@@ -189,4 +254,302 @@ class PetRepositoryImplTests {
         assertThat(dogCount).isNotNull();
         assertThat(dogCount.getCount()).isEqualTo(5);
     }
+
+    @Test
+    void countOutsideZoneGroupedShouldApplyWriteDeltasWithoutQueryingAgain() {
+        when(jpa.countOutsideZoneGrouped()).thenReturn(List.of());
+        repo.seedOutOfZoneCounters();
+
+        var savedPetEntity = new PetEntity();
+        savedPetEntity.setId(3L);
+        savedPetEntity.setPetType(PetType.CAT);
+        savedPetEntity.setTrackerType(TrackerType.BIG);
+        savedPetEntity.setOwnerId(30);
+        savedPetEntity.setInZone(false);
+        savedPetEntity.setLostTracker(false);
+        when(jpa.save(any(PetEntity.class))).thenReturn(savedPetEntity);
+
+        repo.save(new Cat(null, TrackerType.BIG, 30, false, false));
+        var results = repo.countOutsideZoneGrouped();
+
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).getPetType()).isEqualTo(PetType.CAT);
+        assertThat(results.get(0).getTrackerType()).isEqualTo(TrackerType.BIG);
+        assertThat(results.get(0).getCount()).isEqualTo(1);
+        verify(jpa, times(1)).countOutsideZoneGrouped();
+    }
+
+    @Test
+    void reconcileShouldResetCountersToDatabaseAggregate() {
+        when(jpa.countOutsideZoneGrouped()).thenReturn(List.of());
+        repo.seedOutOfZoneCounters();
+
+        Object[] row = new Object[] { PetType.DOG, TrackerType.SMALL, 2L };
+        when(jpa.refreshOutsideZoneGrouped()).thenReturn(List.<Object[]>of(row));
+        repo.reconcileOutOfZoneCounters();
+
+        var results = repo.countOutsideZoneGrouped();
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void findPageShouldStartAfterZeroWhenNoCursorGiven() {
+        var petEntity = new PetEntity();
+        petEntity.setId(1L);
+        petEntity.setPetType(PetType.DOG);
+        petEntity.setTrackerType(TrackerType.BIG);
+        petEntity.setOwnerId(5);
+        petEntity.setInZone(true);
+
+        when(jpa.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(10))).thenReturn(List.of(petEntity));
+
+        var page = repo.findPage(null, 10);
+
+        assertThat(page).hasSize(1);
+        assertThat(page.get(0).getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void findPageByOwnerShouldUseOwnerScopedQuery() {
+        var petEntity = new PetEntity();
+        petEntity.setId(3L);
+        petEntity.setPetType(PetType.CAT);
+        petEntity.setTrackerType(TrackerType.SMALL);
+        petEntity.setOwnerId(7);
+        petEntity.setInZone(true);
+        petEntity.setLostTracker(false);
+
+        when(jpa.findByOwnerIdAndIdGreaterThanOrderByIdAsc(7, 2L, Limit.of(10))).thenReturn(List.of(petEntity));
+
+        var page = repo.findPageByOwner(7, 2L, 10);
+
+        assertThat(page).hasSize(1);
+        assertThat(page.get(0).getOwnerId()).isEqualTo(7);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void updateBackIntoZoneShouldAppendNegativeOutOfZoneTransition() {
+        var outside = new PetEntity();
+        outside.setId(8L);
+        outside.setPetType(PetType.DOG);
+        outside.setTrackerType(TrackerType.BIG);
+        outside.setOwnerId(1);
+        outside.setInZone(false);
+
+        var inside = new PetEntity();
+        inside.setId(8L);
+        inside.setPetType(PetType.DOG);
+        inside.setTrackerType(TrackerType.BIG);
+        inside.setOwnerId(1);
+        inside.setInZone(true);
+
+        when(jpa.findById(8L)).thenReturn(Optional.of(outside));
+        when(jpa.save(any(PetEntity.class))).thenReturn(inside);
+
+        repo.update(new Pet(8L, PetType.DOG, TrackerType.BIG, 1, true));
+
+        ArgumentCaptor<List<PetZoneEventEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(events).saveAll(captor.capture());
+        assertThat(captor.getValue()).hasSize(1);
+        var event = captor.getValue().get(0);
+        assertThat(event.getPetId()).isEqualTo(8L);
+        assertThat(event.getInZone()).isTrue();
+        assertThat(event.getOutOfZoneDelta()).isEqualTo((short) -1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void updateWithoutTransitionShouldAppendNothing() {
+        var entity = new PetEntity();
+        entity.setId(9L);
+        entity.setPetType(PetType.DOG);
+        entity.setTrackerType(TrackerType.BIG);
+        entity.setOwnerId(1);
+        entity.setInZone(true);
+
+        when(jpa.findById(9L)).thenReturn(Optional.of(entity));
+        when(jpa.save(any(PetEntity.class))).thenReturn(entity);
+
+        repo.update(new Pet(9L, PetType.DOG, TrackerType.BIG, 1, true));
+
+        ArgumentCaptor<List<PetZoneEventEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(events).saveAll(captor.capture());
+        assertThat(captor.getValue()).isEmpty();
+    }
+
+    @Test
+    void countOutsideZoneGroupedAtShouldStartFromTheLatestCheckpoint() {
+        var checkpoint = Instant.parse("2025-01-01T00:00:00Z");
+        var at = Instant.parse("2025-01-01T00:30:00Z");
+        when(events.findLatestCheckpointAt(at)).thenReturn(checkpoint);
+        when(events.findCheckpoint(checkpoint)).thenReturn(List.of(
+            new Object[] { PetType.CAT, TrackerType.BIG, 4 },
+            new Object[] { PetType.DOG, TrackerType.SMALL, 1 }));
+        when(events.sumOutOfZoneDeltasBetween(checkpoint, at)).thenReturn(List.of(
+            new Object[] { PetType.CAT, TrackerType.BIG, 2L },
+            new Object[] { PetType.DOG, TrackerType.SMALL, -1L }));
+
+        var results = repo.countOutsideZoneGroupedAt(at);
+
+        assertThat(results).extracting(OutOfZoneCount::getPetType, OutOfZoneCount::getCount).containsExactly(tuple(PetType.CAT, 6));
+        verify(events, never()).countOutsideZoneGroupedAt(any());
+    }
+
+    @Test
+    void countOutsideZoneGroupedAtShouldMapHistoricalAggregate() {
+        var at = Instant.parse("2025-01-01T00:00:00Z");
+        Object[] row = new Object[] { PetType.CAT, TrackerType.BIG, 4L };
+        when(events.countOutsideZoneGroupedAt(at)).thenReturn(List.<Object[]>of(row));
+
+        var results = repo.countOutsideZoneGroupedAt(at);
+
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).getPetType()).isEqualTo(PetType.CAT);
+        assertThat(results.get(0).getCount()).isEqualTo(4);
+        verify(jpa, never()).countOutsideZoneGrouped();
+    }
+
+    @Test
+    void patchShouldDeriveNewStateFromPreviousRowAndRecordDelta() {
+        when(jpa.countOutsideZoneGrouped()).thenReturn(List.of());
+        repo.seedOutOfZoneCounters();
+        Object[] previous = new Object[] { 5L, "CAT", "SMALL", 2, true, false };
+        when(jpa.patchReturningPrevious(5L, false, null)).thenReturn(List.<Object[]>of(previous));
+
+        var patched = repo.patch(5L, new PetPatch(false, null));
+
+        assertThat(patched).isPresent();
+        assertThat(patched.get()).isInstanceOf(Cat.class);
+        assertThat(patched.get().getInZone()).isFalse();
+        assertThat(patched.get().getOwnerId()).isEqualTo(2);
+        assertThat(repo.countOutsideZoneGrouped()).hasSize(1);
+        verify(jpa, never()).findById(any());
+        verify(jpa, never()).save(any());
+    }
+
+    @Test
+    void patchShouldReturnEmptyWhenNoRowWasUpdated() {
+        when(jpa.patchReturningPrevious(6L, true, null)).thenReturn(List.of());
+
+        assertThat(repo.patch(6L, new PetPatch(true, null))).isEmpty();
+        verifyNoInteractions(events);
+    }
+
+    @Test
+    void upsertByTrackerShouldReadGeneratedIdWhenTrackerIsNew() {
+        when(jpa.countOutsideZoneGrouped()).thenReturn(List.of());
+        repo.seedOutOfZoneCounters();
+        when(jpa.upsertByTrackerReturningPrevious(4, "t-9", "DOG", "BIG", false, null)).thenReturn(List.of());
+        when(jpa.findIdByTracker(4, "t-9")).thenReturn(51L);
+
+        var result = repo.upsertByTracker("t-9", new Pet(null, PetType.DOG, TrackerType.BIG, 4, false));
+
+        assertThat(result.isCreated()).isTrue();
+        assertThat(result.getPet().getId()).isEqualTo(51L);
+        assertThat(repo.countOutsideZoneGrouped()).hasSize(1);
+    }
+
+    @Test
+    void upsertByTrackerShouldUsePreviousRowWhenTrackerIsKnown() {
+        Object[] previous = new Object[] { 51L, "DOG", "BIG", 4, false, null };
+        when(jpa.upsertByTrackerReturningPrevious(4, "t-9", "DOG", "BIG", true, null)).thenReturn(List.<Object[]>of(previous));
+
+        var result = repo.upsertByTracker("t-9", new Pet(null, PetType.DOG, TrackerType.BIG, 4, true));
+
+        assertThat(result.isCreated()).isFalse();
+        assertThat(result.getPet().getId()).isEqualTo(51L);
+        assertThat(result.getPet().getInZone()).isTrue();
+        verify(jpa, never()).findIdByTracker(any(), any());
+    }
+
+    @Test
+    void exportRowsShouldKeepTrackerAndVersion() {
+        Object[] row = new Object[] { 7L, "CAT", "BIG", 3, false, true, "t-7", 4L };
+        when(jpa.findRowsAfter(0L, 10)).thenReturn(List.<Object[]>of(row));
+
+        var rows = repo.exportRows(null, 10);
+
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0).pet()).isInstanceOf(Cat.class);
+        assertThat(rows.get(0).trackerId()).isEqualTo("t-7");
+        assertThat(rows.get(0).version()).isEqualTo(4L);
+    }
+
+    @Test
+    void importRowsShouldReplaceACopyLeftByAnInterruptedMove() {
+        when(jpa.countOutsideZoneGrouped()).thenReturn(List.<Object[]>of(new Object[] { PetType.DOG, TrackerType.BIG, 1L }));
+        repo.seedOutOfZoneCounters();
+        var copied = new PetRow(new Pet(8L, PetType.DOG, TrackerType.BIG, 3, false), null, 2L);
+        var replacing = new PetRow(new Pet(9L, PetType.DOG, TrackerType.BIG, 3, true), null, 5L);
+        // 9 is there from an earlier attempt, still outside at version 4
+        when(jpa.lockRows(List.of(8L, 9L))).thenReturn(List.<Object[]>of(new Object[] { 9L, "DOG", "BIG", 3, false, null, null, 4L }));
+
+        repo.importRows(List.of(copied, replacing));
+
+        verify(jpa).deleteRow(9L, 4L);
+        verify(jpa).insertRow(8L, "DOG", "BIG", 3, null, false, null, 2L);
+        verify(jpa).insertRow(9L, "DOG", "BIG", 3, null, true, null, 5L);
+        verify(jpa, never()).deleteRow(eq(8L), anyLong());
+        assertThat(repo.countOutsideZoneGrouped()).singleElement().satisfies(c -> assertThat(c.getCount()).isEqualTo(1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void moveOutShouldDeleteTheLockedRowsOnlyAfterTheyWereCopied() {
+        when(jpa.countOutsideZoneGrouped()).thenReturn(List.<Object[]>of(new Object[] { PetType.DOG, TrackerType.BIG, 1L }));
+        repo.seedOutOfZoneCounters();
+        when(jpa.lockRows(List.of(8L))).thenReturn(List.<Object[]>of(new Object[] { 8L, "DOG", "BIG", 3, false, null, null, 2L }));
+        when(jpa.deleteRow(8L, 2L)).thenReturn(1);
+        List<PetRow> copied = new ArrayList<>();
+
+        var moved = repo.moveOut(List.of(8L), rows -> {
+            verify(jpa, never()).deleteRow(any(), anyLong());
+            copied.addAll(rows);
+            return rows;
+        });
+
+        assertThat(moved).isEqualTo(copied).singleElement().satisfies(r -> assertThat(r.version()).isEqualTo(2L));
+        assertThat(repo.countOutsideZoneGrouped()).isEmpty();
+        ArgumentCaptor<List<PetZoneEventEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(events).saveAll(captor.capture());
+        assertThat(captor.getValue()).singleElement().satisfies(e -> assertThat(e.getOutOfZoneDelta()).isEqualTo((short) -1));
+    }
+
+    @Test
+    void moveOutShouldFailWhenTheRowChangedSinceItWasCopied() {
+        when(jpa.lockRows(List.of(8L))).thenReturn(List.<Object[]>of(new Object[] { 8L, "DOG", "BIG", 3, false, null, null, 2L }));
+        when(jpa.deleteRow(8L, 2L)).thenReturn(0);
+
+        assertThatThrownBy(() -> repo.moveOut(List.of(8L), rows -> rows))
+            .isInstanceOf(OptimisticLockingFailureException.class);
+        verify(events, never()).saveAll(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void removeRowsShouldTakeThePetOutOfTheCountsAndTheHistory() {
+        when(jpa.countOutsideZoneGrouped()).thenReturn(List.<Object[]>of(new Object[] { PetType.DOG, TrackerType.BIG, 1L }));
+        repo.seedOutOfZoneCounters();
+        when(jpa.deleteRow(8L, 2L)).thenReturn(1);
+
+        int removed = repo.removeRows(List.of(new PetRow(new Pet(8L, PetType.DOG, TrackerType.BIG, 3, false), null, 2L)));
+
+        assertThat(removed).isEqualTo(1);
+        assertThat(repo.countOutsideZoneGrouped()).isEmpty();
+        ArgumentCaptor<List<PetZoneEventEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(events).saveAll(captor.capture());
+        assertThat(captor.getValue()).singleElement().satisfies(e -> assertThat(e.getOutOfZoneDelta()).isEqualTo((short) -1));
+    }
+
+    @Test
+    void removeRowsShouldLeaveACopyThatWasWrittenSince() {
+        when(jpa.deleteRow(8L, 2L)).thenReturn(0);
+
+        int removed = repo.removeRows(List.of(new PetRow(new Pet(8L, PetType.DOG, TrackerType.BIG, 3, false), null, 2L)));
+
+        assertThat(removed).isZero();
+        verify(secondLevelCache, never()).evictAfterNativeWrite(any());
+    }
 }
@@ -0,0 +1,56 @@
+package com.tractive.pettracker.unit.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import com.tractive.pettracker.data.history.PositionChunk;
+import com.tractive.pettracker.domain.PositionSample;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PositionChunkTests {
+
+    @Test
+    void whenEncodedThenDecodesToSameSamplesWithinCentimetres() {
+        PositionChunk chunk = new PositionChunk();
+        chunk.append(1_700_000_000_000L, 48.3069, 14.2858, true);
+        chunk.append(1_700_000_010_000L, 48.30712345, 14.28599999, false);
+        chunk.append(1_700_000_005_000L, -33.8688, 151.2093, true);
+        chunk.append(1_700_000_020_000L, 89.9999999, -179.9999999, false);
+
+        List<PositionSample> decoded = PositionChunk.decode(chunk.encode());
+
+        assertThat(decoded).hasSize(4);
+        assertThat(decoded.get(1).getAt()).isEqualTo(Instant.ofEpochMilli(1_700_000_010_000L));
+        assertThat(decoded.get(1).getLat()).isCloseTo(48.30712345, offset(1e-7));
+        assertThat(decoded.get(1).isInZone()).isFalse();
+        // out of order and across the globe
+        assertThat(decoded.get(2).getAt()).isEqualTo(Instant.ofEpochMilli(1_700_000_005_000L));
+        assertThat(decoded.get(2).getLon()).isCloseTo(151.2093, offset(1e-7));
+        assertThat(decoded.get(3).getLon()).isCloseTo(-179.9999999, offset(1e-7));
+        assertThat(chunk.minTime()).isEqualTo(Instant.ofEpochMilli(1_700_000_000_000L));
+        assertThat(chunk.maxTime()).isEqualTo(Instant.ofEpochMilli(1_700_000_020_000L));
+    }
+
+    @Test
+    void whenFixesAreCloseInTimeAndSpaceThenAFewBytesPerSample() {
+        PositionChunk chunk = new PositionChunk();
+        for (int i = 0; i < PositionChunk.MAX_SAMPLES; i++) {
+            // a walk: one fix every 10 s, a few metres apart
+            chunk.append(1_700_000_000_000L + i * 10_000L, 48.3 + i * 0.00003, 14.28 + i * 0.00002, i % 100 < 80);
+        }
+
+        byte[] encoded = chunk.encode();
+
+        assertThat(chunk.isFull()).isTrue();
+        // 8-byte timestamp + two 8-byte doubles + flag would be 25 bytes per sample
+        assertThat(encoded.length).isLessThan(PositionChunk.MAX_SAMPLES * 8);
+        assertThat(PositionChunk.decode(encoded)).hasSize(PositionChunk.MAX_SAMPLES);
+    }
+
+    @Test
+    void whenChunkIsEmptyThenDecodesToNothing() {
+        assertThat(PositionChunk.decode(new PositionChunk().encode())).isEmpty();
+    }
+}
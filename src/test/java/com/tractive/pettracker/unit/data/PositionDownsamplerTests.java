@@ -0,0 +1,48 @@
+package com.tractive.pettracker.unit.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import com.tractive.pettracker.data.history.PositionDownsampler;
+import com.tractive.pettracker.domain.PositionResolution;
+import com.tractive.pettracker.domain.PositionSample;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PositionDownsamplerTests {
+
+    private static final Instant T = Instant.parse("2025-03-01T12:00:00Z");
+
+    @Test
+    void whenSamplesShareAMinuteThenOnePerMinuteWithMeanPositionAndLastZoneState() {
+        var samples = List.of(
+            new PositionSample(T.plusSeconds(50), 48.2, 14.2, false),
+            new PositionSample(T.plusSeconds(10), 48.0, 14.0, true),
+            new PositionSample(T.plusSeconds(30), 48.1, 14.1, true),
+            new PositionSample(T.plusSeconds(70), 50.0, 15.0, true));
+
+        var minutes = PositionDownsampler.downsample(samples, PositionResolution.MINUTE);
+
+        assertThat(minutes).hasSize(2);
+        assertThat(minutes.get(0).getAt()).isEqualTo(T);
+        assertThat(minutes.get(0).getLat()).isCloseTo(48.1, offset(1e-9));
+        assertThat(minutes.get(0).getLon()).isCloseTo(14.1, offset(1e-9));
+        assertThat(minutes.get(0).isInZone()).isFalse();
+        assertThat(minutes.get(1).getAt()).isEqualTo(T.plusSeconds(60));
+        assertThat(minutes.get(1).isInZone()).isTrue();
+    }
+
+    @Test
+    void whenDownsampledToHoursThenBucketsStartOnTheHour() {
+        var samples = List.of(
+            new PositionSample(T.plusSeconds(61), 1, 1, true),
+            new PositionSample(T.plusSeconds(3599), 3, 3, true),
+            new PositionSample(T.plusSeconds(3600), 5, 5, false));
+
+        var hours = PositionDownsampler.downsample(samples, PositionResolution.HOUR);
+
+        assertThat(hours).extracting(PositionSample::getAt).containsExactly(T, T.plusSeconds(3600));
+        assertThat(hours.get(0).getLat()).isCloseTo(2, offset(1e-9));
+    }
+}
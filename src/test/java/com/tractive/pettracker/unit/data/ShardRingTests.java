@@ -0,0 +1,63 @@
+package com.tractive.pettracker.unit.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.tractive.pettracker.data.shard.ShardRing;
+import org.junit.jupiter.api.Test;
+
+class ShardRingTests {
+
+    private static final int OWNERS = 100_000;
+
+    @Test
+    void whenOwnersAreHashedThenEveryShardGetsAFairShare() {
+        var ring = new ShardRing(4, 128);
+        int[] owners = new int[4];
+
+        for (int ownerId = 1; ownerId <= OWNERS; ownerId++) owners[ring.shardOf(ownerId)]++;
+
+        for (int count : owners) assertThat(count).isBetween(OWNERS / 4 * 3 / 4, OWNERS / 4 * 5 / 4);
+    }
+
+    @Test
+    void whenRingIsBuiltAgainThenOwnersLandOnTheSameShard() {
+        var first = new ShardRing(3, 64);
+        var second = new ShardRing(3, 64);
+
+        for (int ownerId = -1000; ownerId <= 1000; ownerId++) {
+            assertThat(second.shardOf(ownerId)).isEqualTo(first.shardOf(ownerId));
+        }
+    }
+
+    @Test
+    void whenShardIsAddedThenOnlyOwnersOfTheNewShardMove() {
+        var before = new ShardRing(3, 128);
+        var after = new ShardRing(4, 128);
+        int moved = 0;
+
+        for (int ownerId = 1; ownerId <= OWNERS; ownerId++) {
+            if (before.shardOf(ownerId) == after.shardOf(ownerId)) continue;
+            assertThat(after.shardOf(ownerId)).isEqualTo(3);
+            moved++;
+        }
+
+        // about a quarter; a modulo over the shard count would move three quarters
+        assertThat(moved).isBetween(OWNERS / 4 * 3 / 4, OWNERS / 4 * 5 / 4);
+    }
+
+    @Test
+    void whenSingleShardThenEveryOwnerIsOnIt() {
+        var ring = new ShardRing(1, 8);
+
+        assertThat(ring.shardOf(Integer.MIN_VALUE)).isZero();
+        assertThat(ring.shardOf(0)).isZero();
+        assertThat(ring.shardOf(Integer.MAX_VALUE)).isZero();
+    }
+
+    @Test
+    void whenNoShardsThenRingIsRejected() {
+        assertThatThrownBy(() -> new ShardRing(0, 128)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ShardRing(2, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,249 @@
+package com.tractive.pettracker.unit.data;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.tractive.pettracker.data.PetRepositoryImpl;
+import com.tractive.pettracker.data.jpa.PetRow;
+import com.tractive.pettracker.data.shard.PetShard;
+import com.tractive.pettracker.data.shard.ShardRing;
+import com.tractive.pettracker.data.shard.ShardedPetRepository;
+import com.tractive.pettracker.domain.Cat;
+import com.tractive.pettracker.domain.OutOfZoneCount;
+import com.tractive.pettracker.domain.Pet;
+import com.tractive.pettracker.domain.PetCount;
+import com.tractive.pettracker.domain.PetSummaryDimension;
+import com.tractive.pettracker.domain.PetSummaryQuery;
+import com.tractive.pettracker.domain.PetType;
+import com.tractive.pettracker.domain.TrackerType;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+class ShardedPetRepositoryTests {
+
+    private final ShardRing ring = new ShardRing(2, 64);
+    private final PetRepositoryImpl first = mock(PetRepositoryImpl.class);
+    private final PetRepositoryImpl second = mock(PetRepositoryImpl.class);
+    private final ShardedPetRepository repo = new ShardedPetRepository(
+        List.of(new PetShard(0, first, List.of()), new PetShard(1, second, List.of())), ring);
+
+    @AfterEach
+    void close() {
+        repo.close();
+    }
+
+    @Test
+    void whenPetIsSavedThenOnlyTheShardOfItsOwnerIsWritten() {
+        int ownerId = ownerOn(1);
+        var pet = new Pet(null, PetType.DOG, TrackerType.BIG, ownerId, true);
+        when(second.save(pet)).thenReturn(new Pet(PetShard.firstId(1), PetType.DOG, TrackerType.BIG, ownerId, true));
+
+        var saved = repo.save(pet);
+
+        assertThat(saved.getId()).isEqualTo(PetShard.firstId(1));
+        verify(first, never()).save(any());
+    }
+
+    @Test
+    void whenBatchSpansShardsThenResultsComeBackInInputOrder() {
+        var a = new Pet(null, PetType.DOG, TrackerType.BIG, ownerOn(0), true);
+        var b = new Pet(null, PetType.CAT, TrackerType.SMALL, ownerOn(1), false);
+        var c = new Pet(null, PetType.DOG, TrackerType.MEDIUM, ownerOn(0), false);
+        when(first.saveAll(List.of(a, c))).thenReturn(List.of(withId(a, 1L), withId(c, 2L)));
+        when(second.saveAll(List.of(b))).thenReturn(List.of(withId(b, PetShard.firstId(1))));
+
+        var saved = repo.saveAll(List.of(a, b, c));
+
+        assertThat(saved).extracting(Pet::getId).containsExactly(1L, PetShard.firstId(1), 2L);
+    }
+
+    @Test
+    void whenPagingAllPetsThenShardPagesAreMergedById() {
+        when(first.findPage(5L, 3)).thenReturn(List.of(pet(6L), pet(9L), pet(12L)));
+        when(second.findPage(5L, 3)).thenReturn(List.of(pet(7L), pet(8L)));
+
+        var page = repo.findPage(5L, 3);
+
+        assertThat(page).extracting(Pet::getId).containsExactly(6L, 7L, 8L);
+    }
+
+    @Test
+    void whenCountingOutsideZoneThenShardCountsAreSummedPerGroup() {
+        when(first.countOutsideZoneGrouped()).thenReturn(List.of(
+            new OutOfZoneCount(PetType.DOG, TrackerType.BIG, 2), new OutOfZoneCount(PetType.CAT, TrackerType.SMALL, 1)));
+        when(second.countOutsideZoneGrouped()).thenReturn(List.of(new OutOfZoneCount(PetType.CAT, TrackerType.SMALL, 4)));
+
+        var counts = repo.countOutsideZoneGrouped();
+
+        assertThat(counts).extracting(OutOfZoneCount::getPetType, OutOfZoneCount::getTrackerType, OutOfZoneCount::getCount)
+            .containsExactlyInAnyOrder(
+                tuple(PetType.DOG, TrackerType.BIG, 2),
+                tuple(PetType.CAT, TrackerType.SMALL, 5));
+    }
+
+    @Test
+    void whenSummarizingThenGroupsOfAllShardsAreMergedInSummaryOrder() {
+        var query = new PetSummaryQuery(null, null, null, null, null, null, List.of(PetSummaryDimension.PET_TYPE));
+        when(first.summarize(query)).thenReturn(List.of(new PetCount(PetType.DOG, null, null, null, 3)));
+        when(second.summarize(query)).thenReturn(List.of(
+            new PetCount(PetType.CAT, null, null, null, 1), new PetCount(PetType.DOG, null, null, null, 2)));
+
+        var summary = repo.summarize(query);
+
+        assertThat(summary).extracting(PetCount::getPetType, PetCount::getCount).containsExactly(
+            tuple(PetType.CAT, 1L),
+            tuple(PetType.DOG, 5L));
+    }
+
+    @Test
+    void whenPetIsNotOnTheShardOfItsIdThenTheOtherShardsAreAsked() {
+        long id = 42L;
+        when(first.findById(id)).thenReturn(Optional.empty());
+        when(second.findById(id)).thenReturn(Optional.of(pet(id)));
+
+        assertThat(repo.findById(id)).map(Pet::getId).contains(id);
+    }
+
+    @Test
+    void whenPetIsOnTheShardOfItsIdThenNoOtherShardIsAsked() {
+        long id = PetShard.firstId(1) + 7;
+        when(second.findById(id)).thenReturn(Optional.of(pet(id)));
+
+        assertThat(repo.findById(id)).isPresent();
+        verify(first, never()).findById(any());
+    }
+
+    @Test
+    void whenUpdateGivesPetAnOwnerOnAnotherShardThenTheNewStateIsWrittenThereByTheMove() {
+        long id = 3L;
+        var before = new Pet(id, PetType.DOG, TrackerType.BIG, ownerOn(0), true);
+        var moved = new Pet(id, PetType.DOG, TrackerType.BIG, ownerOn(1), false);
+        when(first.findVersion(id)).thenReturn(Optional.of(1L));
+        when(first.moveOut(eq(List.of(id)), any())).thenAnswer(moveOut(List.of(new PetRow(before, "t-3", 1L))));
+
+        var updated = repo.update(moved, 1L);
+
+        assertThat(updated.getOwnerId()).isEqualTo(moved.getOwnerId());
+        // the old owner's shard never commits the new owner
+        verify(first, never()).update(any());
+        verify(first, never()).update(any(), anyLong());
+        verify(second).importRows(List.of(new PetRow(moved, "t-3", 2L)));
+        verify(second, never()).removeRows(anyList());
+    }
+
+    @Test
+    void whenUpdateToAnotherShardExpectsAnotherVersionThenNothingIsWritten() {
+        long id = 3L;
+        var before = new Pet(id, PetType.DOG, TrackerType.BIG, ownerOn(0), true);
+        var moved = new Pet(id, PetType.DOG, TrackerType.BIG, ownerOn(1), false);
+        when(first.findVersion(id)).thenReturn(Optional.of(2L));
+        when(first.moveOut(eq(List.of(id)), any())).thenAnswer(moveOut(List.of(new PetRow(before, "t-3", 2L))));
+
+        assertThatThrownBy(() -> repo.update(moved, 1L)).isInstanceOf(OptimisticLockingFailureException.class);
+        verify(second, never()).importRows(anyList());
+    }
+
+    @Test
+    void whenSourceFailsAfterTheUpdatedPetWasCopiedThenTheCopyIsTakenBack() {
+        long id = 3L;
+        var before = new Pet(id, PetType.DOG, TrackerType.BIG, ownerOn(0), true);
+        var moved = new Pet(id, PetType.DOG, TrackerType.BIG, ownerOn(1), false);
+        when(first.findVersion(id)).thenReturn(Optional.of(1L));
+        when(first.moveOut(eq(List.of(id)), any())).thenAnswer(invocation -> {
+            moveOut(List.of(new PetRow(before, null, 1L))).answer(invocation);
+            throw new OptimisticLockingFailureException("pet 3 changed while it was moved");
+        });
+
+        assertThatThrownBy(() -> repo.update(moved)).isInstanceOf(OptimisticLockingFailureException.class);
+        var order = inOrder(second);
+        order.verify(second).importRows(List.of(new PetRow(moved, null, 2L)));
+        order.verify(second).removeRows(List.of(new PetRow(moved, null, 2L)));
+    }
+
+    @Test
+    void whenPetChangesWhileItIsRebalancedThenTheCopyIsTakenBackAndTheMoveRetried() {
+        var moved = new Pet(3L, PetType.DOG, TrackerType.BIG, ownerOn(1), false);
+        var stale = List.of(new PetRow(moved, null, 1L));
+        var fresh = List.of(new PetRow(moved, null, 2L));
+        when(first.exportRows(null, 500)).thenReturn(stale);
+        when(second.exportRows(null, 500)).thenReturn(List.of());
+        when(first.moveOut(eq(List.of(3L)), any()))
+            .thenAnswer(invocation -> {
+                moveOut(stale).answer(invocation);
+                throw new OptimisticLockingFailureException("pet 3 changed while it was moved");
+            })
+            .thenAnswer(moveOut(fresh));
+
+        assertThat(repo.rebalance()).isEqualTo(1);
+
+        verify(second).exportRows(null, 500);
+        var order = inOrder(second);
+        order.verify(second).importRows(stale);
+        order.verify(second).removeRows(stale);
+        order.verify(second).importRows(fresh);
+        order.verifyNoMoreInteractions();
+    }
+
+    @Test
+    void whenRebalancingThenOnlyPetsOfOwnersOnAnotherShardMove() {
+        var staying = new PetRow(new Pet(1L, PetType.DOG, TrackerType.BIG, ownerOn(0), true), null, 0L);
+        var leaving = new PetRow(new Cat(2L, TrackerType.SMALL, ownerOn(1), false, false), "t-2", 4L);
+        when(first.exportRows(null, 500)).thenReturn(List.of(staying, leaving));
+        when(second.exportRows(null, 500)).thenReturn(List.of());
+        when(first.moveOut(eq(List.of(2L)), any())).thenAnswer(moveOut(List.of(leaving)));
+
+        int moved = repo.rebalance();
+
+        assertThat(moved).isEqualTo(1);
+        verify(second).importRows(List.of(leaving));
+        verify(first, never()).importRows(anyList());
+        verify(second, never()).moveOut(anyList(), any());
+    }
+
+    @Test
+    void whenOwnerChangedAgainBeforeTheMoveThenThePetStays() {
+        var leaving = new PetRow(new Pet(2L, PetType.DOG, TrackerType.BIG, ownerOn(1), true), null, 0L);
+        var backAgain = new PetRow(new Pet(2L, PetType.DOG, TrackerType.BIG, ownerOn(0), true), null, 1L);
+        when(first.exportRows(null, 500)).thenReturn(List.of(leaving));
+        when(second.exportRows(null, 500)).thenReturn(List.of());
+        when(first.moveOut(eq(List.of(2L)), any())).thenAnswer(moveOut(List.of(backAgain)));
+
+        assertThat(repo.rebalance()).isZero();
+        verify(second).importRows(List.of());
+    }
+
+    // Runs the copy step on the rows the locked read would return, as PetRepositoryImpl.moveOut does
+    @SuppressWarnings("unchecked")
+    private static Answer<List<PetRow>> moveOut(List<PetRow> locked) {
+        return invocation -> ((Function<List<PetRow>, List<PetRow>>) invocation.getArgument(1)).apply(locked);
+    }
+
+    private int ownerOn(int shard) {
+        for (int ownerId = 1; ; ownerId++) {
+            if (ring.shardOf(ownerId) == shard) return ownerId;
+        }
+    }
+
+    private static Pet pet(long id) {
+        return new Pet(id, PetType.DOG, TrackerType.BIG, 1, true);
+    }
+
+    private static Pet withId(Pet pet, long id) {
+        return new Pet(id, pet.getPetType(), pet.getTrackerType(), pet.getOwnerId(), pet.getInZone());
+    }
+}